@@ -1,12 +1,15 @@
 package com.dariel.batchdemo;
 
+import com.dariel.batchdemo.advanced.ingestion.InboxIngestionService;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
@@ -20,11 +23,19 @@ public class SpringBatchDemoApplication {
      * Runs both demo jobs sequentially:
      * 1. basicsJob - Simple CSV to CSV example
      * 2. customerJob - Advanced database and aggregation example
+     * 
+     * With batchdemo.repository-retention.enabled=true, repositoryMaintenanceJob then
+     * removes old job instances from the job repository.
+     * 
+     * Not used in continuous ingestion mode (batchdemo.ingestion.enabled=true).
      */
     @Bean
+    @ConditionalOnProperty(name = "batchdemo.ingestion.enabled", havingValue = "false", matchIfMissing = true)
     public CommandLineRunner runBothJobs(JobLauncher jobLauncher, 
                                          Job basicsJob, 
-                                         Job customerJob) {
+                                         Job customerJob,
+                                         Job repositoryMaintenanceJob,
+                                         @Value("${batchdemo.repository-retention.enabled:false}") boolean retentionEnabled) {
         return args -> {
             // Run basics job first
             System.out.println("\n" + "=".repeat(70));
@@ -48,6 +59,47 @@ public class SpringBatchDemoApplication {
                     .addLong("time", System.currentTimeMillis() + 1)
                     .toJobParameters();
             jobLauncher.run(customerJob, customerParams);
+
+            if (retentionEnabled) {
+                runMaintenance(jobLauncher, repositoryMaintenanceJob);
+            }
         };
     }
+
+    /**
+     * Continuous ingestion mode (batchdemo.ingestion.enabled=true):
+     * keeps the JVM running and loads files dropped into the inbox as micro-batches
+     * of customerJob, until the application is stopped.
+     * With batchdemo.repository-retention.enabled=true, repositoryMaintenanceJob runs first,
+     * then again every batchdemo.repository-retention.every-batches micro-batches.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "batchdemo.ingestion.enabled", havingValue = "true")
+    public CommandLineRunner runIngestion(InboxIngestionService inboxIngestionService,
+                                          JobLauncher jobLauncher,
+                                          Job repositoryMaintenanceJob,
+                                          @Value("${batchdemo.repository-retention.enabled:false}") boolean retentionEnabled) {
+        return args -> {
+            if (retentionEnabled) {
+                runMaintenance(jobLauncher, repositoryMaintenanceJob);
+            }
+
+            System.out.println("\n" + "=".repeat(70));
+            System.out.println("CONTINUOUS INGESTION (customerJob per micro-batch of new files)");
+            System.out.println("=".repeat(70) + "\n");
+
+            inboxIngestionService.run();
+        };
+    }
+
+    private static void runMaintenance(JobLauncher jobLauncher, Job repositoryMaintenanceJob) throws Exception {
+        System.out.println("\n" + "=".repeat(70));
+        System.out.println("RUNNING REPOSITORY MAINTENANCE JOB (Retention of BATCH_* metadata)");
+        System.out.println("=".repeat(70) + "\n");
+
+        JobParameters maintenanceParams = new JobParametersBuilder()
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters();
+        jobLauncher.run(repositoryMaintenanceJob, maintenanceParams);
+    }
 }
@@ -0,0 +1,152 @@
+package com.dariel.batchdemo.advanced.aggregation;
+
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * CountryAggregation - Running totals for one group of customers.
+ *
+ * The group is usually a country, but any grouping key works (email domain,
+ * composite keys, ...); the key ends up in CountryStatistics.country.
+ *
+ * Aggregations are mergeable, so partial results (spilled to disk, or computed
+ * by different threads) can be combined into the same final statistics.
+ *
+ * Besides count and total, a QuantileSketch of the purchase amounts gives the
+ * median, p95 and p99 in the same single pass, in bounded memory per group.
+ * Two HyperLogLog sketches estimate the number of unique emails and unique email
+ * domains the same way, without keeping a set of every email seen.
+ */
+public class CountryAggregation {
+
+    // Rough heap cost of one group: map entry, this object and the key String header
+    private static final long BASE_BYTES = 112;
+
+    private final String country;
+    private long count = 0;
+    private double totalRevenue = 0.0;
+    private final QuantileSketch purchaseAmounts;
+    private final HyperLogLog uniqueEmails;
+    private final HyperLogLog uniqueEmailDomains;
+
+    public CountryAggregation(String country) {
+        this(country, HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param distinctCountPrecision HyperLogLog precision of the unique email / domain counts
+     */
+    public CountryAggregation(String country, int distinctCountPrecision) {
+        this(country, new QuantileSketch(), new HyperLogLog(distinctCountPrecision),
+                new HyperLogLog(distinctCountPrecision));
+    }
+
+    private CountryAggregation(String country, QuantileSketch purchaseAmounts,
+                               HyperLogLog uniqueEmails, HyperLogLog uniqueEmailDomains) {
+        this.country = country;
+        this.purchaseAmounts = purchaseAmounts;
+        this.uniqueEmails = uniqueEmails;
+        this.uniqueEmailDomains = uniqueEmailDomains;
+    }
+
+    public void addCustomer(Double purchaseAmount) {
+        addCustomer(purchaseAmount, null);
+    }
+
+    public void addCustomer(Double purchaseAmount, String email) {
+        count++;
+        if (purchaseAmount != null) {
+            totalRevenue += purchaseAmount;
+            purchaseAmounts.add(purchaseAmount);
+        }
+        if (email != null && !email.isBlank()) {
+            // Emails are case-insensitive in practice: count John@X.com and john@x.com once
+            String normalized = email.trim().toLowerCase(Locale.ROOT);
+            uniqueEmails.add(normalized);
+            int at = normalized.lastIndexOf('@');
+            if (at >= 0 && at < normalized.length() - 1) {
+                uniqueEmailDomains.add(normalized.substring(at + 1));
+            }
+        }
+    }
+
+    /**
+     * Adds another partial aggregation of the same group into this one.
+     */
+    public void merge(CountryAggregation other) {
+        count += other.count;
+        totalRevenue += other.totalRevenue;
+        purchaseAmounts.merge(other.purchaseAmounts);
+        uniqueEmails.merge(other.uniqueEmails);
+        uniqueEmailDomains.merge(other.uniqueEmailDomains);
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    public QuantileSketch getPurchaseAmounts() {
+        return purchaseAmounts;
+    }
+
+    public HyperLogLog getUniqueEmails() {
+        return uniqueEmails;
+    }
+
+    public HyperLogLog getUniqueEmailDomains() {
+        return uniqueEmailDomains;
+    }
+
+    /**
+     * Estimated heap footprint, used to enforce the aggregation memory budget.
+     * (Grows a little while the sketches add buckets and registers.)
+     */
+    public long estimatedBytes() {
+        return BASE_BYTES + 2L * country.length() + purchaseAmounts.estimatedBytes()
+                + uniqueEmails.estimatedBytes() + uniqueEmailDomains.estimatedBytes();
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(country);
+        out.writeLong(count);
+        out.writeDouble(totalRevenue);
+        purchaseAmounts.writeTo(out);
+        uniqueEmails.writeTo(out);
+        uniqueEmailDomains.writeTo(out);
+    }
+
+    public static CountryAggregation readFrom(DataInput in) throws IOException {
+        String country = in.readUTF();
+        long count = in.readLong();
+        double totalRevenue = in.readDouble();
+        CountryAggregation aggregation = new CountryAggregation(country, QuantileSketch.readFrom(in),
+                HyperLogLog.readFrom(in), HyperLogLog.readFrom(in));
+        aggregation.count = count;
+        aggregation.totalRevenue = totalRevenue;
+        return aggregation;
+    }
+
+    public CountryStatistics toStatistics() {
+        double average = count > 0 ? totalRevenue / count : 0.0;
+        CountryStatistics statistics = new CountryStatistics(country, count, totalRevenue, average);
+        boolean hasAmounts = purchaseAmounts.getCount() > 0;
+        statistics.setMedianPurchaseAmount(hasAmounts ? purchaseAmounts.quantile(0.50) : 0.0);
+        statistics.setP95PurchaseAmount(hasAmounts ? purchaseAmounts.quantile(0.95) : 0.0);
+        statistics.setP99PurchaseAmount(hasAmounts ? purchaseAmounts.quantile(0.99) : 0.0);
+        statistics.setUniqueEmails(uniqueEmails.estimate());
+        statistics.setUniqueEmailDomains(uniqueEmailDomains.estimate());
+        return statistics;
+    }
+}
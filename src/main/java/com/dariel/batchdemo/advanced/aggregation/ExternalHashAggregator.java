@@ -0,0 +1,310 @@
+package com.dariel.batchdemo.advanced.aggregation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * ExternalHashAggregator - Group-by aggregation with a memory budget.
+ *
+ * While the groups fit in the budget this is a plain HashMap. Once the estimated
+ * size of the groups goes over the budget, every group is written to one of
+ * {@value #PARTITIONS} partition files (chosen by a hash of the key) and the map is
+ * cleared. Because a key always hashes to the same partition, each partition can
+ * later be merged on its own, one at a time, with the same memory budget.
+ *
+ * If a single partition is still too large to merge, it is split again with a
+ * differently salted hash (up to {@value #MAX_LEVELS} levels deep).
+ *
+ * Results are produced lazily, one partition at a time, so the full result set never
+ * has to be in memory either.
+ */
+public class ExternalHashAggregator implements AutoCloseable {
+
+    static final int PARTITIONS = 16;
+    static final int MAX_LEVELS = 4;
+
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    private final int distinctCountPrecision;
+
+    private final Map<String, CountryAggregation> groups = new HashMap<>();
+    private long usedBytes;
+
+    private SpillFiles spillFiles;
+    private int spillCount;
+    private final List<Path> createdFiles = new ArrayList<>();
+
+    /**
+     * @param memoryBudgetBytes estimated heap the in-memory groups may use before spilling
+     * @param spillDirectory    where partition files are created (deleted again on close)
+     */
+    public ExternalHashAggregator(long memoryBudgetBytes, Path spillDirectory) {
+        this(memoryBudgetBytes, spillDirectory, HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param distinctCountPrecision HyperLogLog precision of the unique email / domain counts
+     */
+    public ExternalHashAggregator(long memoryBudgetBytes, Path spillDirectory, int distinctCountPrecision) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+        this.distinctCountPrecision = distinctCountPrecision;
+    }
+
+    /**
+     * Adds one customer's purchase to its group.
+     */
+    public void add(String key, Double purchaseAmount) throws IOException {
+        add(key, purchaseAmount, null);
+    }
+
+    /**
+     * Adds one customer's purchase and email to its group.
+     */
+    public void add(String key, Double purchaseAmount, String email) throws IOException {
+        CountryAggregation aggregation = groups.get(key);
+        if (aggregation == null) {
+            aggregation = new CountryAggregation(key, distinctCountPrecision);
+            groups.put(key, aggregation);
+            usedBytes += aggregation.estimatedBytes();
+        }
+        long before = aggregation.estimatedBytes(); // Only grows when the sketches add buckets
+        aggregation.addCustomer(purchaseAmount, email);
+        usedBytes += aggregation.estimatedBytes() - before;
+
+        if (usedBytes > memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Merges a partial aggregation (e.g. from another partition) into its group.
+     */
+    public void merge(CountryAggregation partial) throws IOException {
+        CountryAggregation aggregation = groups.get(partial.getCountry());
+        if (aggregation == null) {
+            groups.put(partial.getCountry(), partial);
+            usedBytes += partial.estimatedBytes();
+        } else {
+            long before = aggregation.estimatedBytes();
+            aggregation.merge(partial);
+            usedBytes += aggregation.estimatedBytes() - before;
+        }
+
+        if (usedBytes > memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Number of times the in-memory groups were written out to disk.
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * Number of groups currently held in memory (all groups if nothing was spilled).
+     */
+    public int getInMemoryGroupCount() {
+        return groups.size();
+    }
+
+    /**
+     * The groups currently held in memory (all groups if nothing was spilled), as a read-only view.
+     */
+    public Collection<CountryAggregation> getInMemoryGroups() {
+        return Collections.unmodifiableCollection(groups.values());
+    }
+
+    /**
+     * Finishes the input and returns the final aggregations.
+     * Without spilling this is just the in-memory groups; otherwise partitions are
+     * merged from disk as the iterator advances.
+     */
+    public Iterator<CountryAggregation> results() throws IOException {
+        if (spillFiles == null) {
+            return groups.values().iterator();
+        }
+
+        spill(); // The remaining groups join their partitions on disk
+        Deque<Partition> pending = new ArrayDeque<>(spillFiles.close());
+        spillFiles = null;
+        return new PartitionMergingIterator(pending);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillFiles != null) {
+            spillFiles.close();
+            spillFiles = null;
+        }
+        for (Path file : createdFiles) {
+            Files.deleteIfExists(file);
+        }
+        createdFiles.clear();
+        groups.clear();
+    }
+
+    private void spill() throws IOException {
+        if (spillFiles == null) {
+            spillFiles = new SpillFiles(0);
+        }
+        for (CountryAggregation aggregation : groups.values()) {
+            spillFiles.write(aggregation);
+        }
+        groups.clear();
+        usedBytes = 0;
+        spillCount++;
+    }
+
+    /**
+     * Loads one partition into memory, merging duplicate keys. If the partition turns
+     * out to be larger than the budget, it is re-partitioned one level deeper instead.
+     */
+    private Map<String, CountryAggregation> mergePartition(Partition partition, Deque<Partition> pending) throws IOException {
+        Map<String, CountryAggregation> merged = new HashMap<>();
+        long bytes = 0;
+        SpillFiles deeper = null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(partition.file())))) {
+            while (true) {
+                CountryAggregation aggregation;
+                try {
+                    aggregation = CountryAggregation.readFrom(in);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (deeper != null) {
+                    deeper.write(aggregation);
+                    continue;
+                }
+
+                CountryAggregation existing = merged.get(aggregation.getCountry());
+                if (existing == null) {
+                    merged.put(aggregation.getCountry(), aggregation);
+                    bytes += aggregation.estimatedBytes();
+                } else {
+                    long before = existing.estimatedBytes();
+                    existing.merge(aggregation);
+                    bytes += existing.estimatedBytes() - before;
+                }
+
+                if (bytes > memoryBudgetBytes && partition.level() + 1 < MAX_LEVELS) {
+                    // Still too big: split this partition with a new hash salt
+                    deeper = new SpillFiles(partition.level() + 1);
+                    for (CountryAggregation group : merged.values()) {
+                        deeper.write(group);
+                    }
+                    merged.clear();
+                    spillCount++;
+                }
+            }
+        }
+        Files.deleteIfExists(partition.file());
+
+        if (deeper != null) {
+            deeper.close().forEach(pending::push);
+            return Map.of();
+        }
+        return merged;
+    }
+
+    /**
+     * Spreads the key hash differently for each partitioning level (murmur3 finaliser).
+     */
+    static int partitionOf(String key, int level) {
+        int h = key.hashCode() + level * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, PARTITIONS);
+    }
+
+    private record Partition(Path file, int level) {
+    }
+
+    /**
+     * One open output stream per partition of a given level.
+     */
+    private final class SpillFiles {
+        private final int level;
+        private final Path[] files = new Path[PARTITIONS];
+        private final DataOutputStream[] outputs = new DataOutputStream[PARTITIONS];
+
+        SpillFiles(int level) throws IOException {
+            this.level = level;
+            Files.createDirectories(spillDirectory);
+            for (int i = 0; i < PARTITIONS; i++) {
+                files[i] = Files.createTempFile(spillDirectory, "aggregation-l" + level + "-p" + i + "-", ".spill");
+                createdFiles.add(files[i]);
+                outputs[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(files[i]), 64 * 1024));
+            }
+        }
+
+        void write(CountryAggregation aggregation) throws IOException {
+            aggregation.writeTo(outputs[partitionOf(aggregation.getCountry(), level)]);
+        }
+
+        List<Partition> close() throws IOException {
+            List<Partition> partitions = new ArrayList<>(PARTITIONS);
+            for (int i = 0; i < PARTITIONS; i++) {
+                outputs[i].close();
+                partitions.add(new Partition(files[i], level));
+            }
+            return partitions;
+        }
+    }
+
+    /**
+     * Emits the groups of one partition at a time.
+     */
+    private final class PartitionMergingIterator implements Iterator<CountryAggregation> {
+        private final Deque<Partition> pending;
+        private Iterator<CountryAggregation> current = Collections.emptyIterator();
+
+        PartitionMergingIterator(Deque<Partition> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && !pending.isEmpty()) {
+                try {
+                    current = mergePartition(pending.pop(), pending).values().iterator();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not merge aggregation partition", e);
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public CountryAggregation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
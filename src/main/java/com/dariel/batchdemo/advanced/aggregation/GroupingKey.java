@@ -0,0 +1,70 @@
+package com.dariel.batchdemo.advanced.aggregation;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * GroupingKey - Built-in ways of grouping customers for aggregateStep.
+ *
+ * Any Function&lt;Customer, String&gt; can be used as a grouping key; these are the
+ * ones that can be selected with batchdemo.aggregation.group-by.
+ */
+public enum GroupingKey implements Function<Customer, String> {
+
+    // One group per country (the default, ~50 groups)
+    COUNTRY {
+        @Override
+        public String apply(Customer customer) {
+            return country(customer);
+        }
+    },
+
+    // One group per email domain (high cardinality)
+    EMAIL_DOMAIN {
+        @Override
+        public String apply(Customer customer) {
+            return emailDomain(customer);
+        }
+    },
+
+    // Composite key: country and email domain
+    COUNTRY_AND_EMAIL_DOMAIN {
+        @Override
+        public String apply(Customer customer) {
+            return country(customer) + "|" + emailDomain(customer);
+        }
+    },
+
+    // Customers bucketed by id, 1000 ids per bucket
+    ID_BUCKET {
+        @Override
+        public String apply(Customer customer) {
+            return customer.getId() != null ? String.valueOf(customer.getId() / 1000) : "UNKNOWN";
+        }
+    },
+
+    // Purchase amount in buckets of 100, e.g. "200-300" for 200.00 up to 299.99
+    PURCHASE_BUCKET {
+        @Override
+        public String apply(Customer customer) {
+            Double amount = customer.getPurchaseAmount();
+            if (amount == null) {
+                return "UNKNOWN";
+            }
+            long low = (long) Math.floor(amount / 100) * 100;
+            return low + "-" + (low + 100);
+        }
+    };
+
+    private static String country(Customer customer) {
+        return customer.getCountry() != null ? customer.getCountry() : "UNKNOWN";
+    }
+
+    private static String emailDomain(Customer customer) {
+        String email = customer.getEmail();
+        int at = email != null ? email.lastIndexOf('@') : -1;
+        return at >= 0 ? email.substring(at + 1).toLowerCase(Locale.ROOT) : "UNKNOWN";
+    }
+}
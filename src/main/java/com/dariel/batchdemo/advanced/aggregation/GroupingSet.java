@@ -0,0 +1,73 @@
+package com.dariel.batchdemo.advanced.aggregation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * GroupingSet - One roll-up level: the combination of grouping keys a group is made of.
+ *
+ * Written like "COUNTRY", "COUNTRY+PURCHASE_BUCKET" or "ALL" (no key at all: one group
+ * with the grand total), as in SQL's GROUP BY GROUPING SETS ((country), (country, bucket), ()).
+ *
+ * @param name       the grouping set as configured, e.g. "COUNTRY+PURCHASE_BUCKET"
+ * @param dimensions the grouping keys, in the order they appear in the group key
+ */
+public record GroupingSet(String name, List<GroupingKey> dimensions) {
+
+    public static final String ALL = "ALL";
+
+    // Separates the dimension values in a composite group key
+    static final String KEY_SEPARATOR = "|";
+
+    public GroupingSet {
+        dimensions = List.copyOf(dimensions);
+    }
+
+    public static GroupingSet parse(String definition) {
+        String name = definition.trim().toUpperCase(Locale.ROOT);
+        if (name.isEmpty() || name.equals(ALL) || name.equals("()")) {
+            return new GroupingSet(ALL, List.of());
+        }
+        List<GroupingKey> dimensions = new ArrayList<>();
+        for (String dimension : name.split("\\+")) {
+            dimensions.add(GroupingKey.valueOf(dimension.trim()));
+        }
+        return new GroupingSet(name, dimensions);
+    }
+
+    /**
+     * Parses a comma-separated list, e.g. "COUNTRY, PURCHASE_BUCKET, COUNTRY+PURCHASE_BUCKET, ALL".
+     */
+    public static List<GroupingSet> parseAll(String definitions) {
+        List<GroupingSet> groupingSets = new ArrayList<>();
+        for (String definition : definitions.split(",")) {
+            GroupingSet groupingSet = parse(definition);
+            if (groupingSets.stream().noneMatch(existing -> existing.name().equals(groupingSet.name()))) {
+                groupingSets.add(groupingSet);
+            }
+        }
+        return groupingSets;
+    }
+
+    /**
+     * The group key of one customer, from the dimension values already computed for it
+     * (indexed by GroupingKey ordinal).
+     */
+    String keyOf(String[] dimensionValues) {
+        if (dimensions.isEmpty()) {
+            return ALL;
+        }
+        if (dimensions.size() == 1) {
+            return dimensionValues[dimensions.get(0).ordinal()];
+        }
+        StringBuilder key = new StringBuilder();
+        for (GroupingKey dimension : dimensions) {
+            if (key.length() > 0) {
+                key.append(KEY_SEPARATOR);
+            }
+            key.append(dimensionValues[dimension.ordinal()]);
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,221 @@
+package com.dariel.batchdemo.advanced.aggregation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog - Approximate number of distinct values (unique emails, unique domains, ...).
+ *
+ * Counting exactly needs a HashSet of every value seen. HyperLogLog keeps 2^precision
+ * small registers instead:
+ * - each value is hashed to 64 bits; the first {@code precision} bits pick a register
+ * - the register keeps the longest run of leading zeros seen in the remaining bits
+ * - many distinct values make long runs likely, so the registers' harmonic mean
+ *   gives the cardinality (with linear counting for small cardinalities)
+ *
+ * The standard error is about 1.04 / sqrt(2^precision): 1.6% at precision 12 (4 KB),
+ * 0.4% at precision 16 (64 KB), whatever the number of values.
+ *
+ * Small sets (most groups in high-cardinality groupings) are kept as a short list of
+ * (register, value) pairs and only switch to the full register array once that list
+ * would use more memory - a group with 3 customers does not need 4 KB.
+ *
+ * Two sketches of the same precision merge by taking the maximum of each register,
+ * which gives exactly the sketch of the union of their values.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private final int precision;
+    private final int registerCount;
+
+    // Sparse mode: entries (register << 6 | value), at most one per register
+    private int[] sparse = new int[4];
+    private int sparseSize;
+
+    // Dense mode (null while sparse)
+    private byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between "
+                    + MIN_PRECISION + " and " + MAX_PRECISION + ", was " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - precision));
+        // Leading zeros after the register bits, + 1 (a marker bit stops the count at 64 - precision)
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        update(register, rank);
+    }
+
+    /**
+     * Adds all values counted by another sketch of the same precision.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge a HyperLogLog of precision "
+                    + other.precision + " into one of precision " + precision);
+        }
+        if (other.registers != null) {
+            toDense();
+            for (int i = 0; i < registerCount; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                update(other.sparse[i] >>> 6, other.sparse[i] & 0x3F);
+            }
+        }
+    }
+
+    /**
+     * Estimated number of distinct values added.
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros;
+        if (registers == null) {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += Math.scalb(1.0, -(sparse[i] & 0x3F));
+            }
+        } else {
+            zeros = 0;
+            for (byte register : registers) {
+                sum += Math.scalb(1.0, -register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        }
+        double estimate = alpha() * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeros); // Linear counting
+        }
+        return Math.round(estimate);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Estimated heap footprint.
+     */
+    public long estimatedBytes() {
+        return 40 + (registers != null ? 16 + registerCount : 16 + 4L * sparse.length);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        if (registers == null) {
+            out.writeBoolean(false);
+            out.writeInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++) {
+                out.writeInt(sparse[i]);
+            }
+        } else {
+            out.writeBoolean(true);
+            out.write(registers);
+        }
+    }
+
+    public static HyperLogLog readFrom(DataInput in) throws IOException {
+        HyperLogLog sketch = new HyperLogLog(in.readByte());
+        if (in.readBoolean()) {
+            sketch.registers = new byte[sketch.registerCount];
+            in.readFully(sketch.registers);
+            sketch.sparse = null;
+        } else {
+            int size = in.readInt();
+            sketch.sparse = new int[Math.max(4, size)];
+            for (int i = 0; i < size; i++) {
+                sketch.sparse[i] = in.readInt();
+            }
+            sketch.sparseSize = size;
+        }
+        return sketch;
+    }
+
+    private void update(int register, int rank) {
+        if (registers != null) {
+            if (rank > registers[register]) {
+                registers[register] = (byte) rank;
+            }
+            return;
+        }
+        for (int i = 0; i < sparseSize; i++) {
+            if (sparse[i] >>> 6 == register) {
+                if (rank > (sparse[i] & 0x3F)) {
+                    sparse[i] = register << 6 | rank;
+                }
+                return;
+            }
+        }
+        if (sparseSize == sparse.length) {
+            if (4 * (sparseSize * 2) >= registerCount) {
+                // The list would outgrow the register array: switch to dense
+                toDense();
+                update(register, rank);
+                return;
+            }
+            sparse = Arrays.copyOf(sparse, sparseSize * 2);
+        }
+        sparse[sparseSize++] = register << 6 | rank;
+    }
+
+    private void toDense() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 6] = (byte) (sparse[i] & 0x3F);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private double alpha() {
+        return switch (registerCount) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / registerCount);
+        };
+    }
+
+    /**
+     * 64-bit FNV-1a, finished with the SplitMix64 mixer so that all bits are well spread.
+     */
+    static long hash(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 30;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 27;
+        h *= 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return h;
+    }
+}
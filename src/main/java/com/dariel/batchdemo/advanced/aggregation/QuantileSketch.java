@@ -0,0 +1,278 @@
+package com.dariel.batchdemo.advanced.aggregation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * QuantileSketch - Approximate percentiles (median, p95, p99, ...) of a stream of amounts.
+ *
+ * The exact way keeps every purchase of a group and sorts them. This sketch keeps
+ * counts in logarithmic buckets instead (the DDSketch / HDR-histogram idea):
+ * - a value x goes to bucket ceil(log(x) / log(gamma)), with gamma = (1 + a) / (1 - a)
+ * - every value in a bucket is within a relative error of a from the bucket's center
+ * - a percentile walks the buckets until it reaches the wanted rank
+ *
+ * With a = 1% any percentile is within 1% of a real purchase amount at that rank
+ * (and clamped to the exact minimum and maximum). Amounts from 0.01 to 1,000,000 span
+ * about 920 buckets, so memory is small and bounded whatever the number of customers:
+ * at most {@code maxBuckets} counters per sign. If the values span more than that, the
+ * lowest buckets are folded together (only the smallest amounts lose accuracy).
+ *
+ * Two sketches with the same accuracy merge exactly by adding their bucket counts, so
+ * partial sketches (spilled, checkpointed, or from other threads) give the same
+ * percentiles as one sketch over all the values.
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBuckets;
+
+    private final BucketStore positive;
+    private final BucketStore negative; // Buckets of -x for negative values
+    private long zeroCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * @param relativeAccuracy relative error of the percentiles, e.g. 0.01 for 1%
+     * @param maxBuckets       upper bound of counters per sign (the memory limit)
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1, was " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBuckets = maxBuckets;
+        this.positive = new BucketStore(maxBuckets);
+        this.negative = new BucketStore(maxBuckets);
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value > Double.MIN_NORMAL) {
+            positive.add(index(value), 1);
+        } else if (value < -Double.MIN_NORMAL) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values of another sketch (same accuracy) into this one.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with accuracy "
+                    + other.relativeAccuracy + " into " + relativeAccuracy);
+        }
+        positive.addAll(other.positive);
+        negative.addAll(other.negative);
+        zeroCount += other.zeroCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return positive.total + negative.total + zeroCount;
+    }
+
+    /**
+     * The value at the given quantile (0.5 = median, 0.99 = p99), or NaN if the sketch is empty.
+     */
+    public double quantile(double quantile) {
+        long count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (quantile <= 0) {
+            return min;
+        }
+        if (quantile >= 1) {
+            return max;
+        }
+        // 0-based rank of the wanted value among all values, sorted ascending
+        long rank = (long) Math.floor(quantile * (count - 1));
+
+        double value;
+        if (rank < negative.total) {
+            // Most negative first: negative buckets by descending index
+            value = -valueOf(negative.indexAtRank(negative.total - 1 - rank));
+        } else if (rank < negative.total + zeroCount) {
+            value = 0;
+        } else {
+            value = valueOf(positive.indexAtRank(rank - negative.total - zeroCount));
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Estimated heap footprint (object headers plus the bucket arrays).
+     */
+    public long estimatedBytes() {
+        return 96 + positive.estimatedBytes() + negative.estimatedBytes();
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(relativeAccuracy);
+        out.writeInt(maxBuckets);
+        out.writeLong(zeroCount);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        positive.writeTo(out);
+        negative.writeTo(out);
+    }
+
+    public static QuantileSketch readFrom(DataInput in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(in.readDouble(), in.readInt());
+        sketch.zeroCount = in.readLong();
+        sketch.min = in.readDouble();
+        sketch.max = in.readDouble();
+        sketch.positive.readFrom(in);
+        sketch.negative.readFrom(in);
+        return sketch;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Center of a bucket: within the relative accuracy of every value in it.
+     */
+    private double valueOf(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Counters for a contiguous range of bucket indexes, grown on demand up to maxBuckets.
+     */
+    private static final class BucketStore {
+        private final int maxBuckets;
+        private long[] counts;
+        private int offset;                     // Bucket index of counts[0]
+        private int minIndex = Integer.MAX_VALUE; // Range in use (empty: min > max)
+        private int maxIndex = Integer.MIN_VALUE;
+        private long total;
+
+        BucketStore(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        void add(int index, long count) {
+            int newMin = Math.min(minIndex, index);
+            int newMax = Math.max(maxIndex, index);
+            if ((long) newMax - newMin + 1 > maxBuckets) {
+                // Too wide: keep the highest buckets and fold the lowest ones into the first kept bucket
+                newMin = newMax - maxBuckets + 1;
+                index = Math.max(index, newMin);
+            }
+            if (newMin != minIndex || newMax != maxIndex) {
+                resize(newMin, newMax);
+            }
+            counts[index - offset] += count;
+            total += count;
+        }
+
+        void addAll(BucketStore other) {
+            for (int index = other.minIndex; index <= other.maxIndex; index++) {
+                long count = other.counts[index - other.offset];
+                if (count > 0) {
+                    add(index, count);
+                }
+            }
+        }
+
+        /**
+         * Bucket index of the value at the given 0-based rank (ascending).
+         */
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int index = minIndex; index <= maxIndex; index++) {
+                seen += counts[index - offset];
+                if (seen > rank) {
+                    return index;
+                }
+            }
+            return maxIndex;
+        }
+
+        long estimatedBytes() {
+            return counts == null ? 0 : 16 + 8L * counts.length;
+        }
+
+        private void resize(int newMin, int newMax) {
+            if (counts != null && newMin >= offset && newMax < offset + counts.length) {
+                foldBelow(newMin);
+            } else {
+                // Grow with some headroom on both sides, never beyond maxBuckets
+                int used = newMax - newMin + 1;
+                int length = Math.min(maxBuckets, Math.max(used + 8, counts == null ? 0 : counts.length * 2));
+                int newOffset = newMin - (length - used) / 2;
+                long[] grown = new long[length];
+                for (int index = minIndex; index <= maxIndex; index++) {
+                    grown[Math.max(index, newMin) - newOffset] += counts[index - offset];
+                }
+                counts = grown;
+                offset = newOffset;
+            }
+            minIndex = newMin;
+            maxIndex = newMax;
+        }
+
+        private void foldBelow(int newMin) {
+            long folded = 0;
+            for (int index = minIndex; index < newMin && index <= maxIndex; index++) {
+                folded += counts[index - offset];
+                counts[index - offset] = 0;
+            }
+            counts[newMin - offset] += folded;
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            // Sparse: only the buckets that have values
+            int used = 0;
+            for (int index = minIndex; index <= maxIndex; index++) {
+                if (counts[index - offset] > 0) {
+                    used++;
+                }
+            }
+            out.writeInt(used);
+            for (int index = minIndex; index <= maxIndex; index++) {
+                long count = counts[index - offset];
+                if (count > 0) {
+                    out.writeInt(index);
+                    out.writeLong(count);
+                }
+            }
+        }
+
+        void readFrom(DataInput in) throws IOException {
+            int used = in.readInt();
+            for (int i = 0; i < used; i++) {
+                int index = in.readInt();
+                add(index, in.readLong());
+            }
+        }
+    }
+}
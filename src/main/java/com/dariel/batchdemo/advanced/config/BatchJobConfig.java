@@ -1,38 +1,104 @@
 package com.dariel.batchdemo.advanced.config;
 
+import com.dariel.batchdemo.advanced.aggregation.GroupingKey;
+import com.dariel.batchdemo.advanced.aggregation.GroupingSet;
 import com.dariel.batchdemo.advanced.domain.CountryStatistics;
 import com.dariel.batchdemo.advanced.domain.Customer;
-import com.dariel.batchdemo.advanced.monitoring.ChunkLoggingListener;
+import com.dariel.batchdemo.advanced.domain.GroupedStatistics;
+import com.dariel.batchdemo.advanced.enrichment.CountryReferenceRepository;
+import com.dariel.batchdemo.advanced.enrichment.CustomerEnrichmentWriter;
+import com.dariel.batchdemo.advanced.faulttolerance.BisectingItemWriter;
+import com.dariel.batchdemo.advanced.faulttolerance.QuarantineRepository;
+import com.dariel.batchdemo.advanced.faulttolerance.QuarantineSkipListener;
+import com.dariel.batchdemo.advanced.ingestion.InboxIngestionService;
+import com.dariel.batchdemo.advanced.input.CustomerFilePartitioner;
+import com.dariel.batchdemo.advanced.input.GzipResource;
+import com.dariel.batchdemo.advanced.input.LargestFirstPartitionHandler;
+import com.dariel.batchdemo.advanced.loading.ShadowTable;
+import com.dariel.batchdemo.advanced.maintenance.JobRepositoryRetention;
+import com.dariel.batchdemo.advanced.maintenance.RepositoryPurgeTasklet;
+import com.dariel.batchdemo.advanced.memoization.FingerprintSource;
+import com.dariel.batchdemo.advanced.memoization.StepMemoRepository;
+import com.dariel.batchdemo.advanced.memoization.StepMemoizer;
+import com.dariel.batchdemo.advanced.memoization.TableVersions;
 import com.dariel.batchdemo.advanced.monitoring.DemoJobExecutionListener;
 import com.dariel.batchdemo.advanced.monitoring.DemoStepExecutionListener;
+import com.dariel.batchdemo.advanced.monitoring.JfrBatchListener;
+import com.dariel.batchdemo.advanced.monitoring.ProgressReporter;
+import com.dariel.batchdemo.advanced.preview.CsvLineSampler;
+import com.dariel.batchdemo.advanced.preview.PreviewTasklet;
 import com.dariel.batchdemo.advanced.processing.CountryStatisticsProcessor;
 import com.dariel.batchdemo.advanced.processing.CountryStatisticsReader;
+import com.dariel.batchdemo.advanced.processing.CountryStatisticsWriter;
 import com.dariel.batchdemo.advanced.processing.CustomerProcessor;
+import com.dariel.batchdemo.advanced.processing.DuplicateCustomerFilter;
+import com.dariel.batchdemo.advanced.processing.ExternalSortTasklet;
+import com.dariel.batchdemo.advanced.processing.GroupedStatisticsWriter;
+import com.dariel.batchdemo.advanced.processing.KeysetPartitionedAggregation;
+import com.dariel.batchdemo.advanced.processing.RollupStatisticsReader;
+import com.dariel.batchdemo.advanced.serving.CountryStatisticsQueryService;
+import com.dariel.batchdemo.advanced.serving.SnapshotPublishingListener;
+import com.dariel.batchdemo.advanced.sharding.CustomerShards;
+import com.dariel.batchdemo.advanced.sharding.ShardKey;
+import com.dariel.batchdemo.advanced.storage.ColumnarCustomerReader;
+import com.dariel.batchdemo.advanced.storage.ColumnarCustomerWriter;
+import com.dariel.batchdemo.advanced.validation.ValidationProperties;
+import com.dariel.batchdemo.advanced.validation.ValidationRuleEngine;
+import com.dariel.batchdemo.common.output.NioDelimitedItemWriter;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.builder.SimpleJobBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
 import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.FlatFileParseException;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.support.CompositeItemProcessor;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.WritableResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * BatchJobConfig - Advanced Spring Batch demo with database integration and aggregation.
@@ -46,6 +112,7 @@ import javax.sql.DataSource;
  * For example, with chunk size 25: read 25 items, process them, write them all at once.
  */
 @Configuration
+@EnableConfigurationProperties(ValidationProperties.class)
 public class BatchJobConfig {
 
     // How many items to process before writing to database
@@ -63,17 +130,244 @@ public class BatchJobConfig {
      * This job has TWO steps:
      * 1. processStep - Reads CSV, processes customers, writes to database
      * 2. aggregateStep - Reads customers from database, aggregates by country, writes statistics
+     * 
+     * With batchdemo.sort.enabled=true, a sortCustomersStep runs first and
+     * processStep reads the sorted copy of the CSV file.
+     * 
+     * With batchdemo.input.directory set, processFilesStep replaces processStep and
+     * loads every file of the directory in parallel (sorting does not apply then).
+     * Not with deduplication, fault tolerance or the columnar snapshot.
+     * 
+     * With batchdemo.rollup.enabled=true, a rollupStep runs last and computes all the
+     * configured grouping sets in one more scan of the customers.
+     * 
+     * With batchdemo.shadow-load.enabled=true, processStep and aggregateStep write into
+     * shadow tables, and swapCustomersStep / swapCountryStatisticsStep swap each one in
+     * for the live table once it is complete (see ShadowTable). Not with sharding or deduplication.
+     * 
+     * With batchdemo.preview.enabled=true, the job is only previewStep: estimated
+     * statistics from a sample of the input, in seconds, without loading anything.
+     * 
+     * With batchdemo.memoization.enabled=true, a step whose inputs (files, table
+     * versions, configuration, code) did not change since it last completed is skipped
+     * and reports the counts of that execution (see MemoizedStep).
      */
     @Bean
     public Job customerJob(JobRepository jobRepository, 
+                          Step sortCustomersStep,
                           Step processStep, 
+                          Step processFilesStep,
                           Step aggregateStep,
-                          DemoJobExecutionListener jobExecutionListener) {
-        return new JobBuilder("customerJob", jobRepository)
+                          Step rollupStep,
+                          Step prepareShadowTablesStep,
+                          Step swapCustomersStep,
+                          Step swapCountryStatisticsStep,
+                          Step previewStep,
+                          ObjectProvider<CustomerShards> customerShards,
+                          StepMemoizer stepMemoizer,
+                          DemoJobExecutionListener jobExecutionListener,
+                          JfrBatchListener jfrBatchListener,
+                          @Value("${batchdemo.monitoring.jfr-events:false}") boolean jfrEvents,
+                          @Value("${batchdemo.input.file:classpath:data/customers.csv}") Resource csvFile,
+                          @Value("${batchdemo.sort.enabled:false}") boolean sortEnabled,
+                          @Value("${batchdemo.sort.output:customers-sorted.csv}") String sortedFile,
+                          @Value("${batchdemo.input.directory:}") String inputDirectory,
+                          @Value("${batchdemo.input.pattern:*.csv}") String filePattern,
+                          @Value("${batchdemo.columnar-snapshot.enabled:false}") boolean columnarSnapshotEnabled,
+                          @Value("${batchdemo.columnar-snapshot.path:customers.col}") String snapshotPath,
+                          @Value("${batchdemo.output.nio-writer:false}") boolean nioWriter,
+                          @Value("${batchdemo.output.gzip:false}") boolean gzip,
+                          @Value("${batchdemo.rollup.enabled:false}") boolean rollupEnabled,
+                          @Value("${batchdemo.shadow-load.enabled:false}") boolean shadowLoadEnabled,
+                          @Value("${batchdemo.deduplication.enabled:false}") boolean deduplicationEnabled,
+                          @Value("${batchdemo.fault-tolerance.enabled:false}") boolean faultToleranceEnabled,
+                          @Value("${batchdemo.preview.enabled:false}") boolean previewEnabled) {
+        if (shadowLoadEnabled && customerShards.getIfAvailable() != null) {
+            // Sharded customers live in the shard databases, not in the main customers table
+            throw new IllegalStateException("batchdemo.shadow-load cannot be combined with batchdemo.sharding");
+        }
+        if (shadowLoadEnabled && deduplicationEnabled) {
+            // The index drops customers loaded before, and the swap drops the table that held them
+            throw new IllegalStateException("batchdemo.shadow-load cannot be combined with batchdemo.deduplication");
+        }
+        if (faultToleranceEnabled && customerShards.getIfAvailable() != null) {
+            // Shard writes upsert by id, so a duplicate customer never fails and is never quarantined
+            throw new IllegalStateException("batchdemo.fault-tolerance cannot be combined with batchdemo.sharding");
+        }
+        if (!inputDirectory.isBlank()) {
+            // processFileStep workers only validate and write: these features belong to processStep
+            if (deduplicationEnabled) {
+                throw new IllegalStateException("batchdemo.input.directory cannot be combined with batchdemo.deduplication");
+            }
+            if (faultToleranceEnabled) {
+                throw new IllegalStateException("batchdemo.input.directory cannot be combined with batchdemo.fault-tolerance");
+            }
+            if (columnarSnapshotEnabled) {
+                // aggregateStep would scan a stale (or missing) snapshot instead of the loaded customers
+                throw new IllegalStateException("batchdemo.input.directory cannot be combined with batchdemo.columnar-snapshot");
+            }
+        }
+        JobBuilder job = new JobBuilder("customerJob", jobRepository)
                 .incrementer(new RunIdIncrementer()) // Allows running the job multiple times
-                .listener(jobExecutionListener) // Log job start/end with visual formatting
-                .start(processStep) // Step 1: Process customers from CSV
-                .next(aggregateStep) // Step 2: Aggregate customers by country
+                .listener(jobExecutionListener); // Log job start/end with visual formatting
+        if (jfrEvents) {
+            job.listener(jfrBatchListener);
+        }
+        if (previewEnabled) {
+            return job.start(previewStep).build(); // Optional: estimates from a sample, nothing is loaded
+        }
+
+        if (stepMemoizer.isEnabled()) {
+            if (shadowLoadEnabled) {
+                // A skipped load would leave its shadow table empty, and the swap would publish it
+                throw new IllegalStateException("batchdemo.memoization cannot be combined with batchdemo.shadow-load");
+            }
+            // What each step reads and writes: a step is skipped while all of it is unchanged
+            List<FingerprintSource> snapshot = columnarSnapshotEnabled
+                    ? List.of(stepMemoizer.file(snapshotPath)) : List.of();
+            String statisticsFile = nioWriter && gzip ? "country-statistics.csv.gz" : "country-statistics.csv";
+            sortCustomersStep = stepMemoizer.memoize(sortCustomersStep,
+                    List.of(stepMemoizer.file(csvFile)), List.of(stepMemoizer.file(sortedFile)), List.of());
+            processStep = stepMemoizer.memoize(processStep,
+                    List.of(sortEnabled ? stepMemoizer.file(sortedFile) : stepMemoizer.file(csvFile)),
+                    snapshot, List.of("customers"));
+            processFilesStep = stepMemoizer.memoize(processFilesStep,
+                    List.of(stepMemoizer.directory(Path.of(inputDirectory), filePattern)), List.of(), List.of("customers"));
+            List<FingerprintSource> aggregateInputs = new ArrayList<>(snapshot);
+            aggregateInputs.add(stepMemoizer.table("customers"));
+            aggregateStep = stepMemoizer.memoize(aggregateStep,
+                    aggregateInputs, List.of(stepMemoizer.file(statisticsFile)), List.of());
+            rollupStep = stepMemoizer.memoize(rollupStep,
+                    List.of(stepMemoizer.table("customers")), List.of(), List.of("grouping_set_statistics"));
+        }
+
+        Step loadStep = inputDirectory.isBlank() ? processStep : processFilesStep;
+        SimpleJobBuilder steps;
+        if (shadowLoadEnabled) {
+            steps = job.start(prepareShadowTablesStep); // Optional: create the empty shadow tables
+            if (sortEnabled && inputDirectory.isBlank()) {
+                steps.next(sortCustomersStep);
+            }
+            steps.next(loadStep);
+        } else if (!inputDirectory.isBlank()) {
+            steps = job.start(processFilesStep); // Step 1: Process all customer files of a directory
+        } else if (sortEnabled) {
+            steps = job.start(sortCustomersStep).next(processStep); // Optional: sort the CSV file first
+        } else {
+            steps = job.start(processStep); // Step 1: Process customers from CSV
+        }
+        if (shadowLoadEnabled) {
+            steps.next(swapCustomersStep); // Build the indexes and swap in the loaded customers
+        }
+        steps.next(aggregateStep); // Step 2: Aggregate customers by country
+        if (shadowLoadEnabled) {
+            steps.next(swapCountryStatisticsStep);
+        }
+        if (rollupEnabled) {
+            steps.next(rollupStep); // Optional: all configured grouping sets in a single pass
+        }
+        return steps.build();
+    }
+
+    // ============================================================================
+    // PREVIEW: ESTIMATED STATISTICS FROM A SAMPLE OF THE INPUT
+    // ============================================================================
+
+    /**
+     * PREVIEW STEP: Estimates the country statistics from a sample of the input.
+     * 
+     * Samples batchdemo.preview.sample-size lines of the input file (or of every file
+     * of batchdemo.input.directory), validates them like processStep, and writes
+     * estimated counts, totals and averages with their margins of error to
+     * batchdemo.preview.output. Plain files are sampled by seeking to random offsets,
+     * so the preview takes about as long for a 100 GB file as for a small one
+     * (gzip files and resources inside the jar are read in full).
+     */
+    @Bean
+    public Step previewStep(JobRepository jobRepository,
+                            PlatformTransactionManager transactionManager,
+                            CustomerProcessor customerProcessor,
+                            @Value("${batchdemo.input.file:classpath:data/customers.csv}") Resource csvFile,
+                            @Value("${batchdemo.input.directory:}") String inputDirectory,
+                            @Value("${batchdemo.input.pattern:*.csv}") String filePattern,
+                            @Value("${batchdemo.input.gzip-threads:4}") int gzipThreads,
+                            @Value("${batchdemo.preview.sample-size:2000}") int sampleSize,
+                            @Value("${batchdemo.preview.mode:STRATIFIED}") CsvLineSampler.Mode mode,
+                            @Value("${batchdemo.preview.z-score:1.96}") double zScore,
+                            @Value("${batchdemo.preview.seed:0}") long seed,
+                            @Value("${batchdemo.preview.output:country-statistics-preview.csv}") String output,
+                            DemoStepExecutionListener stepExecutionListener) throws IOException {
+        List<Resource> inputs = new ArrayList<>();
+        if (inputDirectory.isBlank()) {
+            inputs.add(GzipResource.decompressIfNeeded(csvFile, gzipThreads));
+        } else if (Files.isDirectory(Path.of(inputDirectory))) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(inputDirectory), filePattern)) {
+                for (Path file : files) {
+                    inputs.add(GzipResource.decompressIfNeeded(new FileSystemResource(file), gzipThreads));
+                }
+            }
+        }
+
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer(DelimitedLineTokenizer.DELIMITER_COMMA);
+        tokenizer.setNames("id", "firstName", "lastName", "email", "country", "purchaseAmount");
+        BeanWrapperFieldSetMapper<Customer> fieldSetMapper = new BeanWrapperFieldSetMapper<>();
+        fieldSetMapper.setTargetType(Customer.class);
+        DefaultLineMapper<Customer> lineMapper = new DefaultLineMapper<>(); // Same mapping as customerReader
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(fieldSetMapper);
+
+        CsvLineSampler sampler = new CsvLineSampler(sampleSize, mode, seed != 0 ? seed : System.nanoTime());
+        return new StepBuilder("previewStep", jobRepository)
+                .tasklet(new PreviewTasklet(inputs, sampler, lineMapper, customerProcessor, zScore, Path.of(output)),
+                        transactionManager)
+                .listener(stepExecutionListener)
+                .build();
+    }
+
+    /**
+     * Memoization of customerJob's steps (batchdemo.memoization.enabled=true).
+     * 
+     * Memos and table versions are kept in the database next to the customers, so they
+     * last as long as the data does (with the in-memory demo database: one JVM, e.g.
+     * the ingestion service running customerJob again and again).
+     */
+    @Bean
+    public StepMemoizer stepMemoizer(JobRepository jobRepository,
+                                     DataSource dataSource,
+                                     ConfigurableEnvironment environment,
+                                     @Value("${batchdemo.memoization.enabled:false}") boolean enabled,
+                                     @Value("${batchdemo.memoization.file-fingerprint:SIZE_MTIME}")
+                                     FingerprintSource.FileMode fileMode) {
+        return new StepMemoizer(enabled, jobRepository, new StepMemoRepository(dataSource), new TableVersions(dataSource),
+                fileMode, List.of(StepMemoizer.configuration(environment, "batchdemo."), StepMemoizer.code(BatchJobConfig.class)));
+    }
+
+    // ============================================================================
+    // OPTIONAL STEP 0: SORT THE CSV FILE
+    // ============================================================================
+
+    /**
+     * OPTIONAL STEP: Sorts customers.csv by a column (country by default) with bounded memory.
+     * 
+     * Uses an external merge sort (sorted runs on disk + k-way merge), so files much
+     * larger than the heap can be sorted. processStep then reads the sorted copy.
+     */
+    @Bean
+    public Step sortCustomersStep(JobRepository jobRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${batchdemo.input.file:classpath:data/customers.csv}") Resource csvFile,
+                                  @Value("${batchdemo.input.gzip-threads:4}") int gzipThreads,
+                                  @Value("${batchdemo.sort.output:customers-sorted.csv}") String sortedFile,
+                                  @Value("${batchdemo.sort.key:country}") String sortKey,
+                                  @Value("${batchdemo.sort.memory-budget-mb:64}") long memoryBudgetMb,
+                                  @Value("${batchdemo.sort.temp-directory:${java.io.tmpdir}}") String tempDirectory,
+                                  DemoStepExecutionListener stepExecutionListener) {
+        ExternalSortTasklet sortTasklet = new ExternalSortTasklet(
+                GzipResource.decompressIfNeeded(csvFile, gzipThreads), Path.of(sortedFile), sortKey,
+                memoryBudgetMb * 1024 * 1024, Path.of(tempDirectory));
+        return new StepBuilder("sortCustomersStep", jobRepository)
+                .tasklet(sortTasklet, transactionManager)
+                .listener(stepExecutionListener)
                 .build();
     }
 
@@ -87,26 +381,113 @@ public class BatchJobConfig {
      * This step:
      * 1. Reads customers from CSV file
      * 2. Processes each customer (validates and cleans)
+     *    (and optionally drops customers loaded before, see batchdemo.deduplication)
      * 3. Writes valid customers to database
+     *    (or to several databases at once, see batchdemo.sharding)
+     *    (and optionally to a columnar snapshot file, see batchdemo.columnar-snapshot)
+     *    (optionally adding region, currency and tax rate first, see batchdemo.enrichment)
      * 
      * A step = READ + PROCESS + WRITE
+     * 
+     * With batchdemo.fault-tolerance.enabled=true, bad records no longer fail the job:
+     * unparseable CSV lines are skipped, a failed database write is bisected to find
+     * the bad customers, and both end up in the quarantined_records table.
      */
     @Bean
     public Step processStep(JobRepository jobRepository,
                            PlatformTransactionManager transactionManager,
                            FlatFileItemReader<Customer> customerReader,
                            CustomerProcessor customerProcessor,
+                           DuplicateCustomerFilter duplicateCustomerFilter,
+                           @Value("${batchdemo.deduplication.enabled:false}") boolean deduplicationEnabled,
                            JdbcBatchItemWriter<Customer> customerWriter,
-                           ChunkLoggingListener chunkLoggingListener,
-                           DemoStepExecutionListener stepExecutionListener) {
-        return new StepBuilder("processStep", jobRepository)
+                           ObjectProvider<CustomerShards> customerShards,
+                           ColumnarCustomerWriter columnarCustomerWriter,
+                           @Value("${batchdemo.columnar-snapshot.enabled:false}") boolean columnarSnapshotEnabled,
+                           CountryReferenceRepository countryReferenceRepository,
+                           @Value("${batchdemo.enrichment.enabled:false}") boolean enrichmentEnabled,
+                           @Value("${batchdemo.enrichment.cache-size:1000}") int enrichmentCacheSize,
+                           QuarantineRepository quarantineRepository,
+                           @Value("${batchdemo.fault-tolerance.enabled:false}") boolean faultToleranceEnabled,
+                           @Value("${batchdemo.fault-tolerance.skip-limit:1000}") int skipLimit,
+                           ProgressReporter progressReporter,
+                           DemoStepExecutionListener stepExecutionListener,
+                           JfrBatchListener jfrBatchListener,
+                           @Value("${batchdemo.monitoring.jfr-events:false}") boolean jfrEvents) {
+        ItemProcessor<Customer, Customer> processor = customerProcessor;
+        if (deduplicationEnabled) {
+            // Validate and clean first, then drop customers that were already loaded
+            processor = new CompositeItemProcessor<>(customerProcessor, duplicateCustomerFilter);
+        }
+
+        ItemWriter<Customer> databaseWriter = customerWriterOrShards(customerWriter, customerShards);
+        if (faultToleranceEnabled) {
+            // Bisect failed chunks and quarantine the customers that cannot be inserted
+            BisectingItemWriter<Customer> bisectingWriter =
+                    new BisectingItemWriter<>(databaseWriter, quarantineRepository, transactionManager);
+            // Skipped lines and quarantined customers share the skip limit
+            bisectingWriter.setQuarantineLimit(skipLimit);
+            if (deduplicationEnabled) {
+                // A quarantined customer was not loaded: a corrected copy must not count as a duplicate
+                bisectingWriter.setQuarantineListener(duplicateCustomerFilter::forget);
+            }
+            databaseWriter = bisectingWriter;
+        }
+
+        ItemWriter<Customer> writer = databaseWriter;
+        if (columnarSnapshotEnabled) {
+            // Database first: the snapshot only sees customers whose insert succeeded
+            writer = new CompositeItemWriter<>(databaseWriter, columnarCustomerWriter);
+        }
+
+        CustomerEnrichmentWriter enrichmentWriter = null;
+        if (enrichmentEnabled) {
+            // Region, currency and tax rate by country: one lookup query per chunk, at most
+            enrichmentWriter = new CustomerEnrichmentWriter(writer, countryReferenceRepository, enrichmentCacheSize);
+            writer = enrichmentWriter;
+        }
+
+        SimpleStepBuilder<Customer, Customer> step = new StepBuilder("processStep", jobRepository)
                 .<Customer, Customer>chunk(CHUNK_SIZE, transactionManager) // Process 25 items at a time
                 .reader(customerReader)      // Step 1: READ from CSV
-                .processor(customerProcessor) // Step 2: PROCESS (validate & clean)
-                .writer(customerWriter)       // Step 3: WRITE to database
-                .listener(chunkLoggingListener) // Log progress for each chunk
-                .listener(stepExecutionListener) // Log step start/end with visual formatting
-                .build();
+                .processor(processor)         // Step 2: PROCESS (validate & clean)
+                .writer(writer)               // Step 3: WRITE to database
+                .listener(stepExecutionListener); // Log step start/end with visual formatting
+        addProgressReporting(step, progressReporter); // Throughput and ETA, once per interval
+
+        // Prints per-rule rejection counts at the end of the step
+        // (registered explicitly because a composite processor would hide it)
+        step.listener((StepExecutionListener) customerProcessor);
+
+        if (jfrEvents) {
+            addJfrEvents(step, jfrBatchListener);
+        }
+
+        if (columnarSnapshotEnabled) {
+            // Writes the snapshot's last block and deletes its journal once the step completed
+            step.listener((StepExecutionListener) columnarCustomerWriter);
+        }
+
+        if (enrichmentWriter != null) {
+            // Prints the cache hit rate at the end of the step
+            step.listener((StepExecutionListener) enrichmentWriter);
+        }
+
+        if (deduplicationEnabled) {
+            // The composite hides the filter from the builder, so register it explicitly
+            step.listener((ChunkListener) duplicateCustomerFilter)
+                .stream(duplicateCustomerFilter);
+        }
+
+        if (faultToleranceEnabled) {
+            // Skip unparseable lines instead of failing the job (write errors never
+            // reach Spring Batch's skip logic: the bisecting writer handles and limits them)
+            step = step.faultTolerant()
+                    .skip(FlatFileParseException.class)
+                    .skipLimit(skipLimit)
+                    .listener(new QuarantineSkipListener<Customer, Customer>(quarantineRepository));
+        }
+        return step.build();
     }
 
     /**
@@ -117,13 +498,24 @@ public class BatchJobConfig {
      * - Skip the header row (line 1)
      * - Map each row to a Customer object
      * - Pass each Customer to the processor
+     * 
+     * When sorting is enabled, the sorted copy written by sortCustomersStep is read instead.
+     * 
+     * The input file comes from batchdemo.input.file. A .gz file is decompressed while
+     * it is read (members of multi-member files in parallel), never unpacked to disk.
      */
     @Bean
     public FlatFileItemReader<Customer> customerReader(
-            @Value("classpath:data/customers.csv") Resource csvFile) {
+            @Value("${batchdemo.input.file:classpath:data/customers.csv}") Resource csvFile,
+            @Value("${batchdemo.input.gzip-threads:4}") int gzipThreads,
+            @Value("${batchdemo.sort.enabled:false}") boolean sortEnabled,
+            @Value("${batchdemo.sort.output:customers-sorted.csv}") String sortedFile) {
+        Resource input = sortEnabled
+                ? new FileSystemResource(sortedFile)
+                : GzipResource.decompressIfNeeded(csvFile, gzipThreads);
         return new FlatFileItemReaderBuilder<Customer>()
                 .name("customerReader")
-                .resource(csvFile) // The CSV file to read
+                .resource(input) // The CSV file to read
                 .linesToSkip(1) // Skip header row
                 .delimited() // CSV format (comma-separated)
                 .delimiter(DelimitedLineTokenizer.DELIMITER_COMMA)
@@ -140,10 +532,26 @@ public class BatchJobConfig {
      * Spring Batch calls this for each Customer read from CSV.
      * - If returns null: record is skipped (not written)
      * - If returns Customer: record is written to database
+     * 
+     * The validation rules come from batchdemo.validation.rules and are compiled once here.
      */
     @Bean
-    public CustomerProcessor customerProcessor() {
-        return new CustomerProcessor();
+    public CustomerProcessor customerProcessor(ValidationProperties validationProperties) {
+        return new CustomerProcessor(ValidationRuleEngine.compile(
+                validationProperties.rulesOrDefaults(), validationProperties.reorderInterval()));
+    }
+
+    /**
+     * OPTIONAL PROCESSOR: Filters out customers that were already loaded.
+     * 
+     * Only used when batchdemo.deduplication.enabled=true.
+     * Checks customer id and email against a persistent index (Bloom filter in front
+     * of a memory-mapped hash table) that is kept across runs - no database lookups.
+     */
+    @Bean
+    public DuplicateCustomerFilter duplicateCustomerFilter(
+            @Value("${batchdemo.deduplication.index-file:customer-dedup.idx}") String indexFile) {
+        return new DuplicateCustomerFilter(Path.of(indexFile));
     }
 
     /**
@@ -153,13 +561,21 @@ public class BatchJobConfig {
      * - Collect processed customers in chunks (25 at a time)
      * - Write all 25 to database in one batch operation (efficient!)
      * - This is much faster than writing one at a time
+     * 
+     * With batchdemo.shadow-load.enabled=true the customers go to the shadow table
+     * customers_shadow until swapCustomersStep swaps it in.
      */
     @Bean
-    public JdbcBatchItemWriter<Customer> customerWriter(DataSource dataSource) {
+    public JdbcBatchItemWriter<Customer> customerWriter(
+            DataSource dataSource,
+            @Value("${batchdemo.shadow-load.enabled:false}") boolean shadowLoadEnabled) {
+        String table = shadowLoadEnabled ? ShadowTable.shadowNameOf("customers") : "customers";
         // SQL to insert customer into database
         // :id, :firstName, etc. are placeholders that Spring Batch fills in
-        String sql = "INSERT INTO customers(id, first_name, last_name, email, country, purchase_amount) " +
-                     "VALUES (:id, :firstName, :lastName, :email, :country, :purchaseAmount)";
+        String sql = "INSERT INTO " + table + "(id, first_name, last_name, email, country, purchase_amount, " +
+                     "region, currency, tax_rate) " +
+                     "VALUES (:id, :firstName, :lastName, :email, :country, :purchaseAmount, " +
+                     ":region, :currency, :taxRate)";
         
         return new JdbcBatchItemWriterBuilder<Customer>()
                 .dataSource(dataSource) // Database connection
@@ -168,6 +584,180 @@ public class BatchJobConfig {
                 .build();
     }
 
+    /**
+     * The customers table split over several databases (batchdemo.sharding.enabled=true).
+     * 
+     * Each customer goes to one shard by a hash of its id (or country), and the shards
+     * of a chunk are written concurrently. aggregateStep and rollupStep read all shards.
+     * The shard databases are created from a URL template; for the demo they are
+     * in-memory H2 databases next to the main one.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "batchdemo.sharding.enabled", havingValue = "true")
+    public CustomerShards customerShards(
+            @Value("${batchdemo.sharding.shards:4}") int shards,
+            @Value("${batchdemo.sharding.key:ID}") ShardKey shardKey,
+            @Value("${batchdemo.sharding.url-template:jdbc:h2:mem:batchdemo-shard-{shard};MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE}")
+            String urlTemplate,
+            @Value("${spring.datasource.username:sa}") String username,
+            @Value("${spring.datasource.password:}") String password,
+            @Value("classpath:schema.sql") Resource schema) {
+        return CustomerShards.create(urlTemplate, username, password, shards, shardKey, schema);
+    }
+
+    /**
+     * The sharded writer when sharding is enabled, the single-database writer otherwise.
+     */
+    private static ItemWriter<Customer> customerWriterOrShards(JdbcBatchItemWriter<Customer> customerWriter,
+                                                               ObjectProvider<CustomerShards> customerShards) {
+        CustomerShards shards = customerShards.getIfAvailable();
+        return shards != null ? shards.writer() : customerWriter;
+    }
+
+    /**
+     * Reads region, currency and tax rate by country from the country_reference table.
+     * Only used when batchdemo.enrichment.enabled=true.
+     */
+    @Bean
+    public CountryReferenceRepository countryReferenceRepository(DataSource dataSource) {
+        return new CountryReferenceRepository(dataSource);
+    }
+
+    /**
+     * Stores customers that could not be loaded in the quarantined_records table.
+     * Only used when batchdemo.fault-tolerance.enabled=true.
+     */
+    @Bean
+    public QuarantineRepository quarantineRepository(DataSource dataSource) {
+        return new QuarantineRepository(dataSource);
+    }
+
+    /**
+     * OPTIONAL WRITER: Writes processed customers to a columnar binary snapshot.
+     * 
+     * Only used when batchdemo.columnar-snapshot.enabled=true.
+     * Analytical steps can then rescan the snapshot (memory-mapped, primitive columns)
+     * instead of running another SQL scan over the customers table.
+     * Blocks of batchdemo.columnar-snapshot.block-rows rows span many chunks.
+     */
+    @Bean
+    public ColumnarCustomerWriter columnarCustomerWriter(
+            @Value("${batchdemo.columnar-snapshot.path:customers.col}") String snapshotPath,
+            @Value("${batchdemo.columnar-snapshot.block-rows:65536}") int blockRows) {
+        return new ColumnarCustomerWriter(Path.of(snapshotPath), blockRows);
+    }
+
+    // ============================================================================
+    // STEP 1 (MULTI-FILE MODE): PROCESS A DIRECTORY OF CUSTOMER FILES IN PARALLEL
+    // ============================================================================
+
+    /**
+     * STEP 1 (when batchdemo.input.directory is set): Process every customer file in a directory.
+     * 
+     * This is a PARTITIONED step:
+     * - The partitioner makes one partition per file (largest first)
+     * - Each partition runs processFileStep on its own worker thread
+     * - Every partition is a separate step execution in the job repository, so when the
+     *   job is restarted only the files that did not complete are processed again
+     *   (and a half-done file resumes from its last committed chunk)
+     * 
+     * The workers validate and write customers like processStep does; deduplication,
+     * the columnar snapshot and fault tolerance are single-file features, so customerJob
+     * refuses to start when one of them is enabled together with a directory.
+     */
+    @Bean
+    public Step processFilesStep(JobRepository jobRepository,
+                                 Step processFileStep,
+                                 TaskExecutor customerFileTaskExecutor,
+                                 @Value("${batchdemo.input.directory:}") String inputDirectory,
+                                 @Value("${batchdemo.input.pattern:*.csv}") String filePattern,
+                                 DemoStepExecutionListener stepExecutionListener) {
+        LargestFirstPartitionHandler partitionHandler = new LargestFirstPartitionHandler();
+        partitionHandler.setStep(processFileStep);
+        partitionHandler.setTaskExecutor(customerFileTaskExecutor);
+
+        return new StepBuilder("processFilesStep", jobRepository)
+                .partitioner("processFileStep", new CustomerFilePartitioner(Path.of(inputDirectory), filePattern))
+                .partitionHandler(partitionHandler)
+                .listener(stepExecutionListener)
+                .build();
+    }
+
+    /**
+     * WORKER STEP: Processes ONE customer file (the partition's file).
+     */
+    @Bean
+    public Step processFileStep(JobRepository jobRepository,
+                                PlatformTransactionManager transactionManager,
+                                FlatFileItemReader<Customer> partitionCustomerReader,
+                                CustomerProcessor partitionCustomerProcessor,
+                                JdbcBatchItemWriter<Customer> customerWriter,
+                                ObjectProvider<CustomerShards> customerShards,
+                                ProgressReporter progressReporter,
+                                DemoStepExecutionListener stepExecutionListener,
+                                JfrBatchListener jfrBatchListener,
+                                @Value("${batchdemo.monitoring.jfr-events:false}") boolean jfrEvents) {
+        SimpleStepBuilder<Customer, Customer> step = new StepBuilder("processFileStep", jobRepository)
+                .<Customer, Customer>chunk(CHUNK_SIZE, transactionManager)
+                .reader(partitionCustomerReader)       // READ the partition's file
+                .processor(partitionCustomerProcessor) // PROCESS (validate & clean)
+                .writer(customerWriterOrShards(customerWriter, customerShards)) // WRITE to database (thread-safe)
+                .listener(stepExecutionListener);
+        addProgressReporting(step, progressReporter); // One line per running partition
+        if (jfrEvents) {
+            addJfrEvents(step, jfrBatchListener); // One listener for all partitions: its state is per thread
+        }
+        return step.build();
+    }
+
+    /**
+     * READER (one per partition): Reads the file named in the partition's ExecutionContext.
+     * 
+     * @StepScope creates a new reader for every partition step execution, so each
+     * worker thread has its own reader and its own restart position.
+     */
+    @Bean
+    @StepScope
+    public FlatFileItemReader<Customer> partitionCustomerReader(
+            @Value("#{stepExecutionContext['" + CustomerFilePartitioner.FILE_NAME_KEY + "']}") String fileName,
+            @Value("${batchdemo.input.gzip-threads:4}") int gzipThreads) {
+        return new FlatFileItemReaderBuilder<Customer>()
+                .name("customerReader")
+                .resource(GzipResource.decompressIfNeeded(new FileSystemResource(fileName), gzipThreads))
+                .linesToSkip(1) // Every file has a header row
+                .delimited()
+                .delimiter(DelimitedLineTokenizer.DELIMITER_COMMA)
+                .names("id", "firstName", "lastName", "email", "country", "purchaseAmount")
+                .fieldSetMapper(new BeanWrapperFieldSetMapper<Customer>() {{
+                    setTargetType(Customer.class);
+                }})
+                .build();
+    }
+
+    /**
+     * PROCESSOR (one per partition): the rule engine counts and re-orders rules
+     * as it goes, so every worker thread gets its own copy.
+     */
+    @Bean
+    @StepScope
+    public CustomerProcessor partitionCustomerProcessor(ValidationProperties validationProperties) {
+        return new CustomerProcessor(ValidationRuleEngine.compile(
+                validationProperties.rulesOrDefaults(), validationProperties.reorderInterval()));
+    }
+
+    /**
+     * Worker threads for processFilesStep (how many files are processed at the same time).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor customerFileTaskExecutor(
+            @Value("${batchdemo.input.partition-threads:4}") int partitionThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(partitionThreads);
+        executor.setMaxPoolSize(partitionThreads);
+        executor.setThreadNamePrefix("customer-file-");
+        return executor;
+    }
+
     // ============================================================================
     // STEP 2: AGGREGATE CUSTOMERS BY COUNTRY
     // ============================================================================
@@ -186,23 +776,47 @@ public class BatchJobConfig {
      * 2. Groups them by country and calculates statistics
      * 3. Processes the statistics (filters, rounds values)
      * 4. Writes country statistics to database
+     * 
+     * With batchdemo.shadow-load.enabled=true the statistics are also inserted into
+     * country_statistics_shadow, which swapCountryStatisticsStep swaps in afterwards.
      */
     @Bean
     public Step aggregateStep(JobRepository jobRepository,
                              PlatformTransactionManager transactionManager,
-                             ItemStreamReader<CountryStatistics> countryStatisticsReader,
+                             CountryStatisticsReader countryStatisticsReader,
                              CountryStatisticsProcessor countryStatisticsProcessor,
-                             FlatFileItemWriter<CountryStatistics> countryStatisticsWriter,
-                             ChunkLoggingListener chunkLoggingListener,
-                             DemoStepExecutionListener stepExecutionListener) {
-        return new StepBuilder("aggregateStep", jobRepository)
-                .<CountryStatistics, CountryStatistics>chunk(10, transactionManager) // Process 10 countries at a time
+                             ItemStreamWriter<CountryStatistics> countryStatisticsWriter,
+                             DataSource dataSource,
+                             @Value("${batchdemo.shadow-load.enabled:false}") boolean shadowLoadEnabled,
+                             ProgressReporter progressReporter,
+                             DemoStepExecutionListener stepExecutionListener,
+                             SnapshotPublishingListener snapshotPublishingListener,
+                             @Value("${batchdemo.serving.enabled:false}") boolean servingEnabled,
+                             JfrBatchListener jfrBatchListener,
+                             @Value("${batchdemo.monitoring.jfr-events:false}") boolean jfrEvents) {
+        ItemWriter<CountryStatistics> writer = countryStatisticsWriter;
+        if (shadowLoadEnabled) {
+            // CSV file and shadow table (the composite opens and closes the CSV writer)
+            writer = new CompositeItemWriter<>(countryStatisticsWriter, shadowStatisticsWriter(dataSource));
+        }
+        SimpleStepBuilder<CountryStatistics, CountryStatistics> step = new StepBuilder("aggregateStep", jobRepository)
+                // Process 10 countries at a time (while aggregating, one slice of customers per chunk)
+                .<CountryStatistics, CountryStatistics>chunk(countryStatisticsReader.completionPolicy(10), transactionManager)
                 .reader(countryStatisticsReader)      // Read and aggregate customers by country
                 .processor(countryStatisticsProcessor) // Process statistics (filter, round)
-                .writer(countryStatisticsWriter)       // Write statistics to CSV file
-                .listener(chunkLoggingListener)        // Log progress for each chunk
-                .listener(stepExecutionListener)       // Log step start/end with visual formatting
-                .build();
+                .writer(writer)                        // Write statistics to CSV file
+                .listener(stepExecutionListener);      // Log step start/end with visual formatting
+        addProgressReporting(step, progressReporter);
+        if (servingEnabled) {
+            // Publish the committed statistics to CountryStatisticsQueryService when the step completes
+            step.listener((StepExecutionListener) snapshotPublishingListener);
+            step.listener((ChunkListener) snapshotPublishingListener);
+            step.listener((ItemWriteListener<CountryStatistics>) snapshotPublishingListener);
+        }
+        if (jfrEvents) {
+            addJfrEvents(step, jfrBatchListener);
+        }
+        return step.build();
     }
 
     /**
@@ -213,10 +827,54 @@ public class BatchJobConfig {
      * - Performs aggregation logic (groups by country)
      * - Calculates statistics (count, sum, average)
      * - Transforms data structure (Customer -> CountryStatistics)
+     * 
+     * When the columnar snapshot is enabled, customers are scanned from the snapshot
+     * file written by processStep instead of from the database.
+     * 
+     * The grouping key and the memory budget come from batchdemo.aggregation.
+     * Groups that do not fit in the budget are spilled to disk and merged afterwards.
+     * 
+     * Every batchdemo.aggregation.checkpoint-interval customers a chunk commits and the
+     * partial groups are saved in the step's ExecutionContext, so a restart does not
+     * begin from zero. The final groups are saved once, in a file in the spill directory.
+     * 
+     * Unique emails and email domains per group are HyperLogLog estimates; their
+     * precision is batchdemo.aggregation.distinct-count-precision.
+     * 
+     * With batchdemo.aggregation.parallel.threads > 1 (database source only), the
+     * customers table is aggregated in id ranges on that many threads and the partial
+     * groups are merged before the processor.
+     * 
+     * With batchdemo.sharding.enabled=true, every shard is aggregated on its own thread
+     * and the partial groups are merged the same way.
      */
     @Bean
-    public ItemStreamReader<CountryStatistics> countryStatisticsReader(DataSource dataSource) {
-        return new CountryStatisticsReader(dataSource);
+    public CountryStatisticsReader countryStatisticsReader(
+            DataSource dataSource,
+            @Value("${batchdemo.columnar-snapshot.enabled:false}") boolean columnarSnapshotEnabled,
+            @Value("${batchdemo.columnar-snapshot.path:customers.col}") String snapshotPath,
+            @Value("${batchdemo.aggregation.group-by:COUNTRY}") GroupingKey groupingKey,
+            @Value("${batchdemo.aggregation.memory-budget-mb:64}") long memoryBudgetMb,
+            @Value("${batchdemo.aggregation.spill-directory:${java.io.tmpdir}}") String spillDirectory,
+            @Value("${batchdemo.aggregation.checkpoint-interval:1000}") int checkpointInterval,
+            @Value("${batchdemo.aggregation.distinct-count-precision:12}") int distinctCountPrecision,
+            @Value("${batchdemo.aggregation.parallel.threads:1}") int parallelThreads,
+            @Value("${batchdemo.aggregation.parallel.ranges-per-thread:4}") int rangesPerThread,
+            @Value("${batchdemo.aggregation.parallel.boundaries:SAMPLED}") KeysetPartitionedAggregation.Boundaries boundaries,
+            ObjectProvider<CustomerShards> customerShards) {
+        CustomerShards shards = columnarSnapshotEnabled ? null : customerShards.getIfAvailable();
+        ItemStreamReader<Customer> customers = columnarSnapshotEnabled
+                ? new ColumnarCustomerReader(Path.of(snapshotPath))
+                : shards != null ? shards.reader() : CountryStatisticsReader.databaseCustomerReader(dataSource);
+        CountryStatisticsReader reader = new CountryStatisticsReader(customers, groupingKey, memoryBudgetMb * 1024 * 1024,
+                Path.of(spillDirectory), checkpointInterval, distinctCountPrecision);
+        if (shards != null) {
+            // Scatter-gather: every shard aggregates its customers on its own thread
+            reader.setPartitionedAggregation(shards.aggregation());
+        } else if (parallelThreads > 1 && !columnarSnapshotEnabled) {
+            reader.setPartitionedAggregation(new KeysetPartitionedAggregation(dataSource, parallelThreads, rangesPerThread, boundaries));
+        }
+        return reader;
     }
 
     /**
@@ -236,17 +894,284 @@ public class BatchJobConfig {
      * 
      * Writes aggregated statistics (not raw customer data) to a CSV file.
      * Output file: country-statistics.csv
+     * 
+     * With batchdemo.output.nio-writer=true the lines are encoded straight into a direct
+     * buffer and written through a FileChannel (and optionally gzip-compressed to
+     * country-statistics.csv.gz) instead of going through FlatFileItemWriter.
      */
     @Bean
-    public FlatFileItemWriter<CountryStatistics> countryStatisticsWriter(
-            @Value("file:country-statistics.csv") WritableResource outputFile) {
+    public ItemStreamWriter<CountryStatistics> countryStatisticsWriter(
+            @Value("file:country-statistics.csv") WritableResource outputFile,
+            @Value("${batchdemo.output.nio-writer:false}") boolean nioWriter,
+            @Value("${batchdemo.output.gzip:false}") boolean gzip,
+            @Value("${batchdemo.output.buffer-kb:1024}") int bufferKb) throws IOException {
+        String header = "country,customerCount,totalRevenue,averagePurchaseAmount,"
+                + "medianPurchaseAmount,p95PurchaseAmount,p99PurchaseAmount,uniqueEmails,uniqueEmailDomains";
+        if (nioWriter) {
+            Path path = outputFile.getFile().toPath();
+            if (gzip) {
+                path = path.resolveSibling(path.getFileName() + ".gz");
+            }
+            NioDelimitedItemWriter<CountryStatistics> writer = new NioDelimitedItemWriter<>(
+                    path, header, gzip, bufferKb * 1024,
+                    (statistics, line) -> line
+                            .text(statistics.getCountry())
+                            .number(statistics.getCustomerCount())
+                            .decimal(statistics.getTotalRevenue(), 2)
+                            .decimal(statistics.getAveragePurchaseAmount(), 2)
+                            .decimal(statistics.getMedianPurchaseAmount(), 2)
+                            .decimal(statistics.getP95PurchaseAmount(), 2)
+                            .decimal(statistics.getP99PurchaseAmount(), 2)
+                            .number(statistics.getUniqueEmails())
+                            .number(statistics.getUniqueEmailDomains()));
+            writer.setName("countryStatisticsWriter");
+            return writer;
+        }
         return new FlatFileItemWriterBuilder<CountryStatistics>()
                 .name("countryStatisticsWriter")
                 .resource(outputFile)
                 .delimited()
                 .delimiter(",")
-                .names(new String[]{"country", "customerCount", "totalRevenue", "averagePurchaseAmount"})
-                .headerCallback(writer -> writer.write("country,customerCount,totalRevenue,averagePurchaseAmount"))
+                .names(new String[]{"country", "customerCount", "totalRevenue", "averagePurchaseAmount",
+                        "medianPurchaseAmount", "p95PurchaseAmount", "p99PurchaseAmount",
+                        "uniqueEmails", "uniqueEmailDomains"})
+                .headerCallback(writer -> writer.write(header))
+                .build();
+    }
+
+    // ============================================================================
+    // OPTIONAL: LOAD INTO SHADOW TABLES, SWAP THEM IN WHEN COMPLETE
+    // ============================================================================
+
+    /**
+     * The customers table as a shadow table: loaded without its secondary indexes,
+     * which are built when it is swapped in (same indexes as in schema.sql).
+     */
+    @Bean
+    public ShadowTable customersShadowTable(DataSource dataSource) {
+        return new ShadowTable(dataSource, "customers", "id", List.of(
+                new ShadowTable.Index("idx_customers_country", "country"),
+                new ShadowTable.Index("idx_customers_email", "email")));
+    }
+
+    @Bean
+    public ShadowTable countryStatisticsShadowTable(DataSource dataSource) {
+        return new ShadowTable(dataSource, "country_statistics", "country", List.of(
+                new ShadowTable.Index("idx_country_statistics_revenue", "total_revenue")));
+    }
+
+    private static JdbcBatchItemWriter<CountryStatistics> shadowStatisticsWriter(DataSource dataSource) {
+        JdbcBatchItemWriter<CountryStatistics> writer = CountryStatisticsWriter.create(
+                dataSource, ShadowTable.shadowNameOf("country_statistics"));
+        writer.afterPropertiesSet(); // Detects the named parameters (done by Spring when the writer is a bean)
+        return writer;
+    }
+
+    /**
+     * OPTIONAL STEP: Creates the empty shadow tables the job loads into.
+     * 
+     * It runs once per job instance: a restarted job continues loading into the
+     * shadow tables of the failed run, while the live tables still hold the
+     * previous load.
+     */
+    @Bean
+    public Step prepareShadowTablesStep(JobRepository jobRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        ShadowTable customersShadowTable,
+                                        ShadowTable countryStatisticsShadowTable,
+                                        DemoStepExecutionListener stepExecutionListener) {
+        return new StepBuilder("prepareShadowTablesStep", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    customersShadowTable.create();
+                    countryStatisticsShadowTable.create();
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .listener(stepExecutionListener)
+                .build();
+    }
+
+    /**
+     * OPTIONAL STEP: Builds the indexes of customers_shadow and swaps it in.
+     * The tasklet's transaction makes the renames one atomic change (with transactional DDL).
+     */
+    @Bean
+    public Step swapCustomersStep(JobRepository jobRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  ShadowTable customersShadowTable,
+                                  DemoStepExecutionListener stepExecutionListener) {
+        return swapStep("swapCustomersStep", customersShadowTable, jobRepository, transactionManager,
+                stepExecutionListener);
+    }
+
+    /**
+     * OPTIONAL STEP: Builds the indexes of country_statistics_shadow and swaps it in.
+     */
+    @Bean
+    public Step swapCountryStatisticsStep(JobRepository jobRepository,
+                                          PlatformTransactionManager transactionManager,
+                                          ShadowTable countryStatisticsShadowTable,
+                                          DemoStepExecutionListener stepExecutionListener) {
+        return swapStep("swapCountryStatisticsStep", countryStatisticsShadowTable, jobRepository, transactionManager,
+                stepExecutionListener);
+    }
+
+    private static Step swapStep(String name, ShadowTable shadowTable, JobRepository jobRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 DemoStepExecutionListener stepExecutionListener) {
+        return new StepBuilder(name, jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    contribution.incrementWriteCount(shadowTable.publish());
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .listener(stepExecutionListener)
+                .build();
+    }
+
+    // ============================================================================
+    // OPTIONAL STEP 3: ROLL-UP OVER SEVERAL GROUPING SETS
+    // ============================================================================
+
+    /**
+     * OPTIONAL STEP: One scan of the customers for every report cut.
+     * 
+     * batchdemo.rollup.grouping-sets lists the cuts, e.g. by country, by purchase bucket,
+     * by country and bucket, and the grand total (ALL). RollupAggregator updates one
+     * group per grouping set for each customer, and every group is written to the
+     * generic grouping_set_statistics table, keyed by grouping set and group key.
+     */
+    @Bean
+    public Step rollupStep(JobRepository jobRepository,
+                           PlatformTransactionManager transactionManager,
+                           DataSource dataSource,
+                           CountryStatisticsProcessor countryStatisticsProcessor,
+                           DemoStepExecutionListener stepExecutionListener,
+                           ObjectProvider<CustomerShards> customerShards,
+                           @Value("${batchdemo.rollup.grouping-sets:COUNTRY,PURCHASE_BUCKET,COUNTRY+PURCHASE_BUCKET,ALL}")
+                           String groupingSets,
+                           @Value("${batchdemo.aggregation.distinct-count-precision:12}") int distinctCountPrecision) {
+        CustomerShards shards = customerShards.getIfAvailable();
+        List<GroupingSet> sets = GroupingSet.parseAll(groupingSets);
+        RollupStatisticsReader reader = new RollupStatisticsReader(
+                shards != null ? shards.reader() : CountryStatisticsReader.databaseCustomerReader(dataSource),
+                sets, distinctCountPrecision);
+        return new StepBuilder("rollupStep", jobRepository)
+                .<GroupedStatistics, GroupedStatistics>chunk(100, transactionManager)
+                .reader(reader)
+                .processor(grouped -> {
+                    // Same rounding as the per-country statistics
+                    countryStatisticsProcessor.process(grouped.getStatistics());
+                    return grouped;
+                })
+                .writer(GroupedStatisticsWriter.create(dataSource, sets)) // Replaces the rows of these grouping sets
+                .listener(stepExecutionListener)
+                .build();
+    }
+
+    // ============================================================================
+    // CONTINUOUS INGESTION - customerJob as micro-batches in a long-running JVM
+    // ============================================================================
+
+    /**
+     * Watches batchdemo.ingestion.inbox and runs customerJob on each micro-batch of new files.
+     * 
+     * Only created when batchdemo.ingestion.enabled=true (the application then runs this
+     * instead of the two demo jobs, see SpringBatchDemoApplication). Each batch is moved
+     * into batchdemo.input.directory and loaded with processFilesStep, so that directory
+     * must be set.
+     * 
+     * With batchdemo.repository-retention.enabled=true, repositoryMaintenanceJob also runs
+     * after every batchdemo.repository-retention.every-batches micro-batches.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "batchdemo.ingestion.enabled", havingValue = "true")
+    public InboxIngestionService inboxIngestionService(
+            JobLauncher jobLauncher,
+            Job customerJob,
+            Job repositoryMaintenanceJob,
+            @Value("${batchdemo.repository-retention.enabled:false}") boolean retentionEnabled,
+            @Value("${batchdemo.repository-retention.every-batches:100}") int retentionEveryBatches,
+            @Value("${batchdemo.input.directory:}") String inputDirectory,
+            @Value("${batchdemo.input.pattern:*.csv}") String filePattern,
+            @Value("${batchdemo.ingestion.inbox:inbox}") String inbox,
+            @Value("${batchdemo.ingestion.archive-directory:inbox-archive}") String archiveDirectory,
+            @Value("${batchdemo.ingestion.failed-directory:inbox-failed}") String failedDirectory,
+            @Value("${batchdemo.ingestion.max-batch-mb:64}") long maxBatchMb,
+            @Value("${batchdemo.ingestion.max-wait-ms:2000}") long maxWaitMillis) {
+        if (inputDirectory.isBlank()) {
+            throw new IllegalStateException(
+                    "batchdemo.ingestion needs batchdemo.input.directory as the staging directory for micro-batches");
+        }
+        InboxIngestionService service = new InboxIngestionService(Path.of(inbox), filePattern, Path.of(inputDirectory),
+                Path.of(archiveDirectory), Path.of(failedDirectory),
+                maxBatchMb * 1024 * 1024, maxWaitMillis, jobLauncher, customerJob);
+        if (retentionEnabled) {
+            // A long-running JVM adds a job instance per micro-batch: purge old ones as it goes
+            service.setMaintenanceJob(repositoryMaintenanceJob, retentionEveryBatches);
+        }
+        return service;
+    }
+
+    /**
+     * In-memory, read-only copy of the latest country statistics, for local readers.
+     * 
+     * Lookups by country and "top N by revenue" are answered from an immutable snapshot,
+     * without touching the database. The snapshot is replaced after every completed
+     * aggregateStep when batchdemo.serving.enabled=true (until then it is empty).
+     */
+    @Bean
+    public CountryStatisticsQueryService countryStatisticsQueryService() {
+        return new CountryStatisticsQueryService();
+    }
+
+    /**
+     * Collects the statistics aggregateStep commits and publishes them when the step completes.
+     */
+    @Bean
+    public SnapshotPublishingListener snapshotPublishingListener(CountryStatisticsQueryService queryService) {
+        return new SnapshotPublishingListener(queryService);
+    }
+
+    // ============================================================================
+    // REPOSITORY MAINTENANCE - Keeps the BATCH_* metadata tables small
+    // ============================================================================
+
+    /**
+     * Deletes (or archives) old job instances of every job from the job repository.
+     * 
+     * Run by SpringBatchDemoApplication when batchdemo.repository-retention.enabled=true:
+     * after the demo jobs, or before watching the inbox in continuous ingestion mode.
+     * The retention rules are in JobRepositoryRetention.
+     */
+    @Bean
+    public Job repositoryMaintenanceJob(JobRepository jobRepository,
+                                       Step purgeJobRepositoryStep,
+                                       DemoJobExecutionListener jobExecutionListener) {
+        return new JobBuilder("repositoryMaintenanceJob", jobRepository)
+                .incrementer(new RunIdIncrementer())
+                .listener(jobExecutionListener)
+                .start(purgeJobRepositoryStep)
+                .build();
+    }
+
+    /**
+     * MAINTENANCE STEP: Purges batchdemo.repository-retention.batch-size job instances per transaction.
+     */
+    @Bean
+    public Step purgeJobRepositoryStep(JobRepository jobRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       DataSource dataSource,
+                                       @Value("${batchdemo.repository-retention.max-age-days:30}") long maxAgeDays,
+                                       @Value("${batchdemo.repository-retention.keep-last:100}") int keepLast,
+                                       @Value("${batchdemo.repository-retention.keep-restartable:true}") boolean keepRestartable,
+                                       @Value("${batchdemo.repository-retention.batch-size:100}") int batchSize,
+                                       @Value("${batchdemo.repository-retention.archive:false}") boolean archive,
+                                       DemoStepExecutionListener stepExecutionListener) {
+        RepositoryPurgeTasklet tasklet = new RepositoryPurgeTasklet(
+                new JobRepositoryRetention(dataSource, maxAgeDays, keepLast, keepRestartable, archive), batchSize);
+        return new StepBuilder("purgeJobRepositoryStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .listener(stepExecutionListener)
+                .listener(tasklet) // Snapshot of the instances to keep before the first batch, totals at the end
                 .build();
     }
 
@@ -255,12 +1180,53 @@ public class BatchJobConfig {
     // ============================================================================
 
     /**
-     * Listener that logs progress for each chunk processed.
-     * This helps us see what's happening during the batch job.
+     * Listener that prints the progress of running steps (items/s, % done, ETA).
+     * 
+     * The chunks only update counters; a background thread prints at most one line
+     * per step every batchdemo.monitoring.progress-interval-ms. The expected number of
+     * items is estimated from the size of the input file (unknown for .gz files).
+     */
+    @Bean
+    public ProgressReporter progressReporter(
+            @Value("${batchdemo.monitoring.progress-interval-ms:1000}") long intervalMillis,
+            @Value("${batchdemo.input.file:classpath:data/customers.csv}") Resource csvFile,
+            @Value("${batchdemo.sort.enabled:false}") boolean sortEnabled,
+            @Value("${batchdemo.sort.output:customers-sorted.csv}") String sortedFile) {
+        ProgressReporter reporter = new ProgressReporter(Duration.ofMillis(intervalMillis));
+        Resource input = sortEnabled ? new FileSystemResource(sortedFile) : csvFile;
+        reporter.estimateItems("processStep", stepExecution -> ProgressReporter.estimateLines(input, 1));
+        reporter.estimateItems("processFileStep", stepExecution -> ProgressReporter.estimateLines(
+                new FileSystemResource(stepExecution.getExecutionContext().getString(CustomerFilePartitioner.FILE_NAME_KEY)), 1));
+        return reporter;
+    }
+
+    /**
+     * Registers the progress reporter for the step and chunk callbacks of a step.
+     */
+    private static void addProgressReporting(SimpleStepBuilder<?, ?> step, ProgressReporter reporter) {
+        step.listener((StepExecutionListener) reporter);
+        step.listener((ChunkListener) reporter);
+    }
+
+    /**
+     * Listener that turns job, step, chunk and item boundaries into Java Flight Recorder events.
+     * Only registered when batchdemo.monitoring.jfr-events=true.
      */
     @Bean
-    public ChunkLoggingListener chunkLoggingListener() {
-        return new ChunkLoggingListener();
+    public JfrBatchListener jfrBatchListener() {
+        return new JfrBatchListener();
+    }
+
+    /**
+     * Registers the JFR listener for every kind of callback of a chunk step.
+     * (The casts pick the listener(...) overload of each interface.)
+     */
+    private static void addJfrEvents(SimpleStepBuilder<?, ?> step, JfrBatchListener listener) {
+        step.listener((StepExecutionListener) listener);
+        step.listener((ChunkListener) listener);
+        step.listener((ItemReadListener<Object>) listener);
+        step.listener((ItemProcessListener<Object, Object>) listener);
+        step.listener((ItemWriteListener<Object>) listener);
     }
 
     /**
@@ -9,6 +9,8 @@ package com.dariel.batchdemo.advanced.domain;
  * - Total number of customers
  * - Total revenue (sum of all purchases)
  * - Average purchase amount
+ * - Median, 95th and 99th percentile purchase amount (approximate, within 1%)
+ * - Unique emails and unique email domains (approximate, HyperLogLog)
  */
 public class CountryStatistics {
 
@@ -16,6 +18,11 @@ public class CountryStatistics {
     private Long customerCount;
     private Double totalRevenue;
     private Double averagePurchaseAmount;
+    private Double medianPurchaseAmount;
+    private Double p95PurchaseAmount;
+    private Double p99PurchaseAmount;
+    private Long uniqueEmails;
+    private Long uniqueEmailDomains;
 
     // Default constructor required by Spring Batch
     public CountryStatistics() {
@@ -60,6 +67,46 @@ public class CountryStatistics {
         this.averagePurchaseAmount = averagePurchaseAmount;
     }
 
+    public Double getMedianPurchaseAmount() {
+        return medianPurchaseAmount;
+    }
+
+    public void setMedianPurchaseAmount(Double medianPurchaseAmount) {
+        this.medianPurchaseAmount = medianPurchaseAmount;
+    }
+
+    public Double getP95PurchaseAmount() {
+        return p95PurchaseAmount;
+    }
+
+    public void setP95PurchaseAmount(Double p95PurchaseAmount) {
+        this.p95PurchaseAmount = p95PurchaseAmount;
+    }
+
+    public Double getP99PurchaseAmount() {
+        return p99PurchaseAmount;
+    }
+
+    public void setP99PurchaseAmount(Double p99PurchaseAmount) {
+        this.p99PurchaseAmount = p99PurchaseAmount;
+    }
+
+    public Long getUniqueEmails() {
+        return uniqueEmails;
+    }
+
+    public void setUniqueEmails(Long uniqueEmails) {
+        this.uniqueEmails = uniqueEmails;
+    }
+
+    public Long getUniqueEmailDomains() {
+        return uniqueEmailDomains;
+    }
+
+    public void setUniqueEmailDomains(Long uniqueEmailDomains) {
+        this.uniqueEmailDomains = uniqueEmailDomains;
+    }
+
     @Override
     public String toString() {
         return "CountryStatistics{" +
@@ -67,6 +114,11 @@ public class CountryStatistics {
                 ", customerCount=" + customerCount +
                 ", totalRevenue=" + totalRevenue +
                 ", averagePurchaseAmount=" + averagePurchaseAmount +
+                ", medianPurchaseAmount=" + medianPurchaseAmount +
+                ", p95PurchaseAmount=" + p95PurchaseAmount +
+                ", p99PurchaseAmount=" + p99PurchaseAmount +
+                ", uniqueEmails=" + uniqueEmails +
+                ", uniqueEmailDomains=" + uniqueEmailDomains +
                 '}';
     }
 }
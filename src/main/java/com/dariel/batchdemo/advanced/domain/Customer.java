@@ -13,6 +13,11 @@ public class Customer {
     private String country;
     private Double purchaseAmount;
 
+    // Reference data by country, only set when enrichment is enabled
+    private String region;
+    private String currency;
+    private Double taxRate;
+
     // Default constructor required by Spring Batch for bean mapping
     public Customer() {
     }
@@ -75,6 +80,30 @@ public class Customer {
         this.purchaseAmount = purchaseAmount;
     }
 
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public Double getTaxRate() {
+        return taxRate;
+    }
+
+    public void setTaxRate(Double taxRate) {
+        this.taxRate = taxRate;
+    }
+
     @Override
     public String toString() {
         return "Customer{" +
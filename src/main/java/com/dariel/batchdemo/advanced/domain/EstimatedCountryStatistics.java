@@ -0,0 +1,84 @@
+package com.dariel.batchdemo.advanced.domain;
+
+/**
+ * EstimatedCountryStatistics - Country statistics estimated from a sample (preview mode).
+ *
+ * Contains:
+ * - The estimated statistics: customer count, total revenue and average purchase
+ *   amount, scaled up from the sample (percentiles and unique counts are not estimated)
+ * - The margin of error of each, at the configured confidence: the true value lies
+ *   within estimate ± margin with that probability
+ * - How many sampled customers the estimates are based on
+ */
+public class EstimatedCountryStatistics {
+
+    private CountryStatistics statistics;
+    private long sampledCustomers;
+    private double customerCountMargin;
+    private double totalRevenueMargin;
+    private double averagePurchaseAmountMargin;
+
+    // Default constructor required by Spring Batch
+    public EstimatedCountryStatistics() {
+    }
+
+    public EstimatedCountryStatistics(CountryStatistics statistics, long sampledCustomers, double customerCountMargin,
+                                      double totalRevenueMargin, double averagePurchaseAmountMargin) {
+        this.statistics = statistics;
+        this.sampledCustomers = sampledCustomers;
+        this.customerCountMargin = customerCountMargin;
+        this.totalRevenueMargin = totalRevenueMargin;
+        this.averagePurchaseAmountMargin = averagePurchaseAmountMargin;
+    }
+
+    public CountryStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(CountryStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public long getSampledCustomers() {
+        return sampledCustomers;
+    }
+
+    public void setSampledCustomers(long sampledCustomers) {
+        this.sampledCustomers = sampledCustomers;
+    }
+
+    public double getCustomerCountMargin() {
+        return customerCountMargin;
+    }
+
+    public void setCustomerCountMargin(double customerCountMargin) {
+        this.customerCountMargin = customerCountMargin;
+    }
+
+    public double getTotalRevenueMargin() {
+        return totalRevenueMargin;
+    }
+
+    public void setTotalRevenueMargin(double totalRevenueMargin) {
+        this.totalRevenueMargin = totalRevenueMargin;
+    }
+
+    public double getAveragePurchaseAmountMargin() {
+        return averagePurchaseAmountMargin;
+    }
+
+    public void setAveragePurchaseAmountMargin(double averagePurchaseAmountMargin) {
+        this.averagePurchaseAmountMargin = averagePurchaseAmountMargin;
+    }
+
+    @Override
+    public String toString() {
+        return "EstimatedCountryStatistics{" +
+                "statistics=" + statistics +
+                ", sampledCustomers=" + sampledCustomers +
+                ", customerCountMargin=" + customerCountMargin +
+                ", totalRevenueMargin=" + totalRevenueMargin +
+                ", averagePurchaseAmountMargin=" + averagePurchaseAmountMargin +
+                '}';
+    }
+}
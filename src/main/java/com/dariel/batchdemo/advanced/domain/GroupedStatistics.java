@@ -0,0 +1,59 @@
+package com.dariel.batchdemo.advanced.domain;
+
+/**
+ * GroupedStatistics - Statistics of one group of one grouping set (output of rollupStep).
+ *
+ * Contains:
+ * - Grouping set, e.g. "COUNTRY+PURCHASE_BUCKET" or "ALL"
+ * - Group key, e.g. "CHILE|200-300" ("ALL" for the grand total)
+ * - The same statistics aggregateStep computes per country
+ */
+public class GroupedStatistics {
+
+    private String groupingSet;
+    private String groupKey;
+    private CountryStatistics statistics;
+
+    // Default constructor required by Spring Batch
+    public GroupedStatistics() {
+    }
+
+    public GroupedStatistics(String groupingSet, String groupKey, CountryStatistics statistics) {
+        this.groupingSet = groupingSet;
+        this.groupKey = groupKey;
+        this.statistics = statistics;
+    }
+
+    public String getGroupingSet() {
+        return groupingSet;
+    }
+
+    public void setGroupingSet(String groupingSet) {
+        this.groupingSet = groupingSet;
+    }
+
+    public String getGroupKey() {
+        return groupKey;
+    }
+
+    public void setGroupKey(String groupKey) {
+        this.groupKey = groupKey;
+    }
+
+    public CountryStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(CountryStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public String toString() {
+        return "GroupedStatistics{" +
+                "groupingSet='" + groupingSet + '\'' +
+                ", groupKey='" + groupKey + '\'' +
+                ", statistics=" + statistics +
+                '}';
+    }
+}
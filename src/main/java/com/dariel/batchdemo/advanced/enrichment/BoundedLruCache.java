@@ -0,0 +1,79 @@
+package com.dariel.batchdemo.advanced.enrichment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BoundedLruCache - A map that holds at most {@code capacity} entries and evicts the
+ * least recently used one when full.
+ *
+ * A LinkedHashMap in access order does the bookkeeping: every hit moves the entry to
+ * the end, and removeEldestEntry drops the entry at the front. Hits, misses and
+ * evictions are counted so the step can report how well the cache works.
+ *
+ * Not thread-safe: one cache per step (the writer calling it runs on the step's thread).
+ */
+public class BoundedLruCache<K, V> {
+
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BoundedLruCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1, was " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > BoundedLruCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value (counted as a hit), or null (counted as a miss).
+     * A key cached with a null value is a miss as well - use a marker value to cache "not found".
+     */
+    public V get(K key) {
+        V value = entries.get(key);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,12 @@
+package com.dariel.batchdemo.advanced.enrichment;
+
+/**
+ * Reference data of one country (a row of the country_reference table).
+ *
+ * @param country  upper-case country name, as CustomerProcessor writes it
+ * @param region   e.g. EMEA, AMER, APAC
+ * @param currency ISO 4217 code
+ * @param taxRate  sales tax / VAT rate, 0.21 = 21%
+ */
+public record CountryReference(String country, String region, String currency, double taxRate) {
+}
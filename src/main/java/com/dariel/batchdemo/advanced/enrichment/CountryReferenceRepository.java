@@ -0,0 +1,53 @@
+package com.dariel.batchdemo.advanced.enrichment;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CountryReferenceRepository - Looks up reference data in the country_reference table.
+ *
+ * Always by a set of countries: one SELECT ... WHERE country IN (...) per call,
+ * whatever the number of keys.
+ */
+public class CountryReferenceRepository {
+
+    private static final String SELECT_SQL =
+            "SELECT country, region, currency, tax_rate FROM country_reference WHERE country IN (:countries)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private long queries;
+
+    public CountryReferenceRepository(DataSource dataSource) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    /**
+     * Returns the reference data of the given countries, keyed by country.
+     * Countries without a row are missing from the result.
+     */
+    public Map<String, CountryReference> findAll(Collection<String> countries) {
+        Map<String, CountryReference> result = new HashMap<>();
+        if (countries.isEmpty()) {
+            return result;
+        }
+        queries++;
+        jdbcTemplate.query(SELECT_SQL, new MapSqlParameterSource("countries", countries), row -> {
+            CountryReference reference = new CountryReference(row.getString("country"), row.getString("region"),
+                    row.getString("currency"), row.getDouble("tax_rate"));
+            result.put(reference.country(), reference);
+        });
+        return result;
+    }
+
+    /**
+     * Number of lookup queries run by this repository.
+     */
+    public long getQueryCount() {
+        return queries;
+    }
+}
@@ -0,0 +1,122 @@
+package com.dariel.batchdemo.advanced.enrichment;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.lang.NonNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CustomerEnrichmentWriter - Adds region, currency and tax rate to each customer, then
+ * passes the chunk on to the real writer.
+ *
+ * Looking the country up in CustomerProcessor would cost one query per customer.
+ * This runs once per chunk instead:
+ * 1. Collect the distinct countries of the chunk
+ * 2. Take the ones already known from a bounded LRU cache
+ * 3. Resolve all the others with ONE query (WHERE country IN (...))
+ * 4. Copy the reference data into the customers and write the chunk
+ *
+ * Countries without reference data are cached as "not found" too, so they are not
+ * queried again; their customers are written without region, currency and tax rate.
+ *
+ * When the step ends, cache hits and misses are printed and added to the
+ * batchdemo.enrichment.cache.requests counter (tag result=hit|miss) of the Micrometer
+ * global registry, next to Spring Batch's own metrics.
+ */
+public class CustomerEnrichmentWriter implements ItemWriter<Customer>, StepExecutionListener {
+
+    public static final String CACHE_REQUESTS_METRIC = "batchdemo.enrichment.cache.requests";
+
+    // Cached for countries that have no row in country_reference
+    private static final CountryReference NOT_FOUND = new CountryReference("", null, null, 0);
+
+    private final ItemWriter<Customer> delegate;
+    private final CountryReferenceRepository repository;
+    private final BoundedLruCache<String, CountryReference> cache;
+
+    private long hitsAtStart;
+    private long missesAtStart;
+    private long queriesAtStart;
+
+    public CustomerEnrichmentWriter(ItemWriter<Customer> delegate, CountryReferenceRepository repository, int cacheSize) {
+        this.delegate = delegate;
+        this.repository = repository;
+        this.cache = new BoundedLruCache<>(cacheSize);
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends Customer> chunk) throws Exception {
+        // Steps 1 + 2: distinct countries of the chunk, split into cached and missing
+        Map<String, CountryReference> references = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (Customer customer : chunk) {
+            String country = customer.getCountry();
+            if (country == null || references.containsKey(country) || missing.contains(country)) {
+                continue;
+            }
+            CountryReference cached = cache.get(country);
+            if (cached != null) {
+                references.put(country, cached);
+            } else {
+                missing.add(country);
+            }
+        }
+
+        // Step 3: one query for all misses of the chunk
+        if (!missing.isEmpty()) {
+            Map<String, CountryReference> found = repository.findAll(missing);
+            for (String country : missing) {
+                CountryReference reference = found.getOrDefault(country, NOT_FOUND);
+                cache.put(country, reference);
+                references.put(country, reference);
+            }
+        }
+
+        // Step 4: enrich and write
+        for (Customer customer : chunk) {
+            CountryReference reference = customer.getCountry() == null ? null : references.get(customer.getCountry());
+            if (reference != null && reference != NOT_FOUND) {
+                customer.setRegion(reference.region());
+                customer.setCurrency(reference.currency());
+                customer.setTaxRate(reference.taxRate());
+            }
+        }
+        delegate.write(chunk);
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        hitsAtStart = cache.getHits();
+        missesAtStart = cache.getMisses();
+        queriesAtStart = repository.getQueryCount();
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        long hits = cache.getHits() - hitsAtStart;
+        long misses = cache.getMisses() - missesAtStart;
+        long lookups = hits + misses;
+        System.out.printf("  🌍 Reference data cache: %,d hits, %,d misses (%.1f%% hit rate) | %,d lookup queries"
+                        + " | %d of %d entries, %,d evicted%n",
+                hits, misses, lookups == 0 ? 0.0 : hits * 100.0 / lookups, repository.getQueryCount() - queriesAtStart,
+                cache.size(), cache.capacity(), cache.getEvictions());
+
+        String stepName = stepExecution.getStepName();
+        Metrics.counter(CACHE_REQUESTS_METRIC, "step", stepName, "result", "hit").increment(hits);
+        Metrics.counter(CACHE_REQUESTS_METRIC, "step", stepName, "result", "miss").increment(misses);
+        return stepExecution.getExitStatus();
+    }
+
+    public BoundedLruCache<String, CountryReference> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,198 @@
+package com.dariel.batchdemo.advanced.faulttolerance;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.skip.SkipLimitExceededException;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.lang.NonNull;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * BisectingItemWriter - Finds the bad records of a failed chunk by splitting it in halves.
+ *
+ * Spring Batch's own skip logic re-writes a failed chunk one item at a time, which
+ * costs one database round trip per item. This writer instead:
+ * 1. Writes the whole chunk (one batch insert)
+ * 2. If that fails, writes each half, and keeps splitting only the halves that fail
+ * 3. A single item that still fails is quarantined with its error
+ *
+ * One bad record in a chunk of n is found in about 2 * log2(n) writes, and the good
+ * records still go to the database in batches.
+ *
+ * Every attempt runs in a nested transaction (a savepoint inside the chunk transaction),
+ * so a failed batch insert leaves nothing behind. Everything - the good records and the
+ * quarantine rows - commits or rolls back together with the chunk.
+ *
+ * Only errors caused by the item itself (DataIntegrityViolationException: duplicate keys,
+ * values too long, NOT NULL columns) are bisected. Anything else - a missing table, a lost
+ * connection - would fail for every item, so it is rethrown and fails the chunk at once.
+ * Even item errors are limited: once the read skips and write quarantines of the step go
+ * over setQuarantineLimit(), the writer throws SkipLimitExceededException instead of
+ * quarantining the whole input (a constraint every row breaks, for example).
+ *
+ * Quarantined items are removed from the chunk, so writers after this one (in a
+ * CompositeItemWriter) and the step's write count only see what was really written.
+ * Components that remembered those items earlier in the chunk (like the deduplication
+ * filter) can be told through setQuarantineListener().
+ */
+public class BisectingItemWriter<T> implements ItemWriter<T> {
+
+    private final ItemWriter<T> delegate;
+    private final QuarantineRepository quarantine;
+    private final TransactionTemplate savepoint;
+    private Consumer<? super T> quarantineListener = item -> { };
+    private int quarantineLimit = Integer.MAX_VALUE;
+
+    private long writeAttempts;
+    private long quarantined;
+
+    // Quarantines of the current step execution (also counts those of rolled back chunks)
+    private Long stepExecutionId;
+    private long stepQuarantined;
+
+    public BisectingItemWriter(ItemWriter<T> delegate, QuarantineRepository quarantine,
+                               PlatformTransactionManager transactionManager) {
+        this.delegate = delegate;
+        this.quarantine = quarantine;
+        this.savepoint = new TransactionTemplate(transactionManager);
+        this.savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    }
+
+    /**
+     * Called with every item that is quarantined instead of written.
+     */
+    public void setQuarantineListener(Consumer<? super T> quarantineListener) {
+        this.quarantineListener = quarantineListener;
+    }
+
+    /**
+     * Maximum number of skipped lines and quarantined items per step execution,
+     * usually the step's skip limit. Read skips are taken from the running step.
+     */
+    public void setQuarantineLimit(int quarantineLimit) {
+        this.quarantineLimit = quarantineLimit;
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends T> chunk) throws Exception {
+        Set<T> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+        writeOrBisect(chunk.getItems(), false, rejected);
+
+        if (!rejected.isEmpty()) {
+            for (Iterator<? extends T> items = chunk.iterator(); items.hasNext(); ) {
+                if (rejected.contains(items.next())) {
+                    items.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param knownToFail true when the caller already knows this write fails
+     *                    (the parent failed and its other half succeeded), so it is not retried as a whole
+     */
+    private void writeOrBisect(List<? extends T> items, boolean knownToFail, Set<T> rejected) throws Exception {
+        if (!knownToFail) {
+            try {
+                tryWrite(items);
+                return;
+            } catch (WriteFailedException e) {
+                if (!(e.getCause() instanceof DataIntegrityViolationException)) {
+                    // Not caused by one item: bisecting would only quarantine every item
+                    throw e.error();
+                }
+                if (items.size() == 1) {
+                    quarantine(items.get(0), e.error(), rejected);
+                    return;
+                }
+            }
+        }
+        if (items.size() == 1) {
+            // Only reached when knownToFail: write it once more to capture the error
+            writeOrBisect(items, false, rejected);
+            return;
+        }
+
+        int middle = items.size() / 2;
+        List<? extends T> left = items.subList(0, middle);
+        List<? extends T> right = items.subList(middle, items.size());
+
+        int rejectedBefore = rejected.size();
+        writeOrBisect(left, false, rejected);
+        // If the left half went in cleanly, the failure must be in the right half
+        writeOrBisect(right, rejected.size() == rejectedBefore, rejected);
+    }
+
+    private void tryWrite(List<? extends T> items) {
+        writeAttempts++;
+        savepoint.executeWithoutResult(status -> {
+            try {
+                delegate.write(new Chunk<>(items));
+            } catch (Exception e) {
+                // Rolls back to the savepoint
+                throw new WriteFailedException(e);
+            }
+        });
+    }
+
+    private void quarantine(T item, Exception error, Set<T> rejected) {
+        checkQuarantineLimit(error);
+        quarantine.quarantine("WRITE", null, String.valueOf(item), error);
+        rejected.add(item);
+        quarantined++;
+        stepQuarantined++;
+        quarantineListener.accept(item);
+    }
+
+    private void checkQuarantineLimit(Exception error) {
+        long readSkips = 0;
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context != null) {
+            StepExecution stepExecution = context.getStepExecution();
+            if (!Objects.equals(stepExecution.getId(), stepExecutionId)) {
+                stepExecutionId = stepExecution.getId();
+                stepQuarantined = 0;
+            }
+            readSkips = stepExecution.getReadSkipCount();
+        }
+        if (readSkips + stepQuarantined >= quarantineLimit) {
+            throw new SkipLimitExceededException(quarantineLimit, error);
+        }
+    }
+
+    /**
+     * Number of delegate writes so far (whole chunks and halves).
+     */
+    public long getWriteAttempts() {
+        return writeAttempts;
+    }
+
+    public long getQuarantinedCount() {
+        return quarantined;
+    }
+
+    private static final class WriteFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WriteFailedException(Exception cause) {
+            super(cause);
+        }
+
+        Exception error() {
+            return (Exception) getCause();
+        }
+    }
+}
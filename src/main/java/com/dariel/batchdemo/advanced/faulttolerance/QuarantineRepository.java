@@ -0,0 +1,60 @@
+package com.dariel.batchdemo.advanced.faulttolerance;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * QuarantineRepository - Stores records that could not be loaded, together with the reason.
+ *
+ * Rows go to the quarantined_records table. They are inserted with the chunk's
+ * connection, so a quarantined record is only kept if its chunk commits.
+ */
+public class QuarantineRepository {
+
+    // Must match the column sizes in schema.sql
+    private static final int MAX_TEXT_LENGTH = 1000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO quarantined_records(source, line_number, record, error) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private long quarantined;
+
+    public QuarantineRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @param source     where the record failed (READ, WRITE, ...)
+     * @param lineNumber line in the input file, or null when unknown
+     * @param record     the raw line or the item's toString()
+     * @param error      why the record was rejected
+     */
+    public void quarantine(String source, Integer lineNumber, String record, Throwable error) {
+        jdbcTemplate.update(INSERT_SQL, source, lineNumber, truncate(record), truncate(describe(error)));
+        quarantined++;
+    }
+
+    /**
+     * Number of records quarantined by this JVM (including rolled back ones).
+     */
+    public long getQuarantinedCount() {
+        return quarantined;
+    }
+
+    private static String describe(Throwable error) {
+        // The most specific cause usually carries the useful message (e.g. the constraint name)
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root == error
+                ? error.getClass().getSimpleName() + ": " + error.getMessage()
+                : error.getClass().getSimpleName() + ": " + root.getMessage();
+    }
+
+    private static String truncate(String text) {
+        return text == null || text.length() <= MAX_TEXT_LENGTH ? text : text.substring(0, MAX_TEXT_LENGTH);
+    }
+}
@@ -0,0 +1,42 @@
+package com.dariel.batchdemo.advanced.faulttolerance;
+
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.lang.NonNull;
+
+/**
+ * QuarantineSkipListener - Sends lines skipped by a fault-tolerant step to the quarantine table.
+ *
+ * Spring Batch calls it for every item it skipped, just before the chunk commits.
+ * For unparseable CSV lines the raw line and its line number are kept, so the
+ * line can be fixed and loaded again.
+ *
+ * Write failures never reach this listener: BisectingItemWriter handles them itself.
+ */
+public class QuarantineSkipListener<T, S> implements SkipListener<T, S> {
+
+    private final QuarantineRepository quarantine;
+
+    public QuarantineSkipListener(QuarantineRepository quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    @Override
+    public void onSkipInRead(@NonNull Throwable error) {
+        if (error instanceof FlatFileParseException parseError) {
+            quarantine.quarantine("READ", parseError.getLineNumber(), parseError.getInput(), error);
+        } else {
+            quarantine.quarantine("READ", null, null, error);
+        }
+    }
+
+    @Override
+    public void onSkipInProcess(@NonNull T item, @NonNull Throwable error) {
+        quarantine.quarantine("PROCESS", null, String.valueOf(item), error);
+    }
+
+    @Override
+    public void onSkipInWrite(@NonNull S item, @NonNull Throwable error) {
+        quarantine.quarantine("WRITE", null, String.valueOf(item), error);
+    }
+}
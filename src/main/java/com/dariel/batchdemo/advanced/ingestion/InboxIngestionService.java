@@ -0,0 +1,255 @@
+package com.dariel.batchdemo.advanced.ingestion;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InboxIngestionService - Runs customerJob continuously on files dropped into an inbox.
+ * 
+ * Instead of one big run at startup, the application stays up (warm JVM, open
+ * connection pool, compiled code) and loads new files as micro-batches:
+ * 1. A WatchService reports files created in the inbox directory
+ * 2. Files are collected in a MicroBatchBuffer until the batch is big enough
+ *    ({@code maxBatchBytes}) or the first file has waited {@code maxWaitMillis}
+ * 3. The batch is moved into the staging directory (batchdemo.input.directory)
+ *    and customerJob runs on it, loading every file as a partition
+ * 4. The files are moved to the archive directory, or to the failed directory when
+ *    the job did not complete (or could not be launched at all), and the inbox is
+ *    watched again
+ * 
+ * So the time from a file arriving to the statistics being refreshed is the wait
+ * window plus one job run - seconds instead of the next scheduled run.
+ * 
+ * Producers should write a file under another name (or directory) and rename it
+ * into the inbox when it is complete; a file still being written could otherwise
+ * be picked up half-way when the wait window ends.
+ * 
+ * Files found in the staging directory at startup were left there by a micro-batch
+ * that was interrupted (the application stopped or crashed during its job). Whether
+ * they were loaded is unknown, so they are moved to the failed directory to be
+ * checked and dropped into the inbox again, and never join a later micro-batch.
+ * 
+ * Every micro-batch adds a job instance to the job repository. With a maintenance
+ * job (see setMaintenanceJob), old instances are purged every few micro-batches, so
+ * the BATCH_* tables stop growing while the application stays up.
+ */
+public class InboxIngestionService {
+
+    private final Path inbox;
+    private final String pattern;
+    private final PathMatcher matcher;
+    private final Path stagingDirectory;
+    private final Path archiveDirectory;
+    private final Path failedDirectory;
+    private final MicroBatchBuffer buffer;
+    private final JobLauncher jobLauncher;
+    private final Job job;
+
+    private Job maintenanceJob;
+    private int maintenanceEveryBatches;
+
+    private long batchNumber;
+    private int batchesSinceMaintenance;
+
+    public InboxIngestionService(Path inbox, String pattern, Path stagingDirectory,
+                                 Path archiveDirectory, Path failedDirectory,
+                                 long maxBatchBytes, long maxWaitMillis,
+                                 JobLauncher jobLauncher, Job job) {
+        this.inbox = inbox;
+        this.pattern = pattern;
+        this.matcher = inbox.getFileSystem().getPathMatcher("glob:" + pattern);
+        this.stagingDirectory = stagingDirectory;
+        this.archiveDirectory = archiveDirectory;
+        this.failedDirectory = failedDirectory;
+        this.buffer = new MicroBatchBuffer(maxBatchBytes, maxWaitMillis);
+        this.jobLauncher = jobLauncher;
+        this.job = job;
+    }
+
+    /**
+     * Runs {@code maintenanceJob} after every {@code everyBatches} micro-batch jobs.
+     */
+    public void setMaintenanceJob(Job maintenanceJob, int everyBatches) {
+        if (everyBatches < 1) {
+            throw new IllegalArgumentException("everyBatches must be at least 1");
+        }
+        this.maintenanceJob = maintenanceJob;
+        this.maintenanceEveryBatches = everyBatches;
+    }
+
+    /**
+     * Watches the inbox and runs one job per micro-batch, until the thread is interrupted.
+     */
+    public void run() throws Exception {
+        Files.createDirectories(inbox);
+        Files.createDirectories(stagingDirectory);
+        Files.createDirectories(archiveDirectory);
+        Files.createDirectories(failedDirectory);
+        moveInterruptedBatch();
+
+        try (WatchService watchService = inbox.getFileSystem().newWatchService()) {
+            inbox.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            System.out.printf("👀 Watching %s for %s files...%n", inbox.toAbsolutePath(), pattern);
+
+            // Files that arrived while the application was down
+            scanInbox();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                long wait = buffer.millisUntilDue(System.currentTimeMillis());
+                WatchKey key = wait == Long.MAX_VALUE
+                        ? watchService.take()
+                        : watchService.poll(wait, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handleEvents(key);
+                }
+                if (buffer.isDue(System.currentTimeMillis())) {
+                    runBatch();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            System.out.println("🛑 Ingestion stopped");
+        }
+    }
+
+    /**
+     * Moves the files of an interrupted micro-batch out of the staging directory.
+     */
+    private void moveInterruptedBatch() throws IOException {
+        List<Path> leftovers = new ArrayList<>();
+        try (DirectoryStream<Path> stagedFiles = Files.newDirectoryStream(stagingDirectory)) {
+            for (Path file : stagedFiles) {
+                if (matcher.matches(file.getFileName())) {
+                    leftovers.add(file);
+                }
+            }
+        }
+        if (leftovers.isEmpty()) {
+            return;
+        }
+        Path target = moveAll(leftovers, failedDirectory.resolve("interrupted-" + System.currentTimeMillis()));
+        System.out.printf("⚠️  %d files of an interrupted micro-batch were left in %s, moved to %s%n",
+                leftovers.size(), stagingDirectory, target);
+    }
+
+    private void handleEvents(WatchKey key) throws IOException {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                scanInbox(); // Events were lost: look at the directory itself
+            } else {
+                offer(inbox.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+    }
+
+    private void scanInbox() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inbox)) {
+            for (Path file : files) {
+                offer(file);
+            }
+        }
+    }
+
+    private void offer(Path file) throws IOException {
+        if (!matcher.matches(file.getFileName()) || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            buffer.add(file, Files.size(file), System.currentTimeMillis());
+        } catch (NoSuchFileException e) {
+            // Renamed or deleted again before we got to it
+        }
+    }
+
+    private void runBatch() throws Exception {
+        long firstArrival = buffer.getOldestArrival();
+        long bytes = buffer.getTotalBytes();
+        List<Path> files = buffer.drain();
+        batchNumber++;
+
+        List<Path> staged = new ArrayList<>();
+        for (Path file : files) {
+            Path stagedFile = stagingDirectory.resolve(file.getFileName());
+            try {
+                Files.move(file, stagedFile, StandardCopyOption.REPLACE_EXISTING);
+                staged.add(stagedFile);
+            } catch (NoSuchFileException e) {
+                // Gone since it was reported
+            }
+        }
+        if (staged.isEmpty()) {
+            return;
+        }
+        System.out.printf("%n📥 Micro-batch %d: %d files, %,d bytes%n", batchNumber, staged.size(), bytes);
+
+        JobParameters parameters = new JobParametersBuilder()
+                .addLong("batch", batchNumber)
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters();
+        BatchStatus status;
+        try {
+            JobExecution execution = jobLauncher.run(job, parameters);
+            status = execution.getStatus();
+        } catch (Exception e) {
+            // Not launched (already running, repository or database down): keep watching the inbox
+            System.out.printf("❌ Micro-batch %d could not be run: %s%n", batchNumber, e);
+            status = BatchStatus.FAILED;
+        }
+
+        boolean completed = status == BatchStatus.COMPLETED;
+        Path target = moveAll(staged, (completed ? archiveDirectory : failedDirectory)
+                .resolve("batch-" + parameters.getLong("time")));
+
+        long latency = System.currentTimeMillis() - firstArrival;
+        if (completed) {
+            System.out.printf("⚡ Micro-batch %d refreshed the statistics %,d ms after its first file arrived%n",
+                    batchNumber, latency);
+        } else {
+            System.out.printf("❌ Micro-batch %d ended with %s, files moved to %s%n",
+                    batchNumber, status, target);
+        }
+
+        if (maintenanceJob != null && ++batchesSinceMaintenance >= maintenanceEveryBatches) {
+            batchesSinceMaintenance = 0;
+            System.out.printf("🧹 Repository maintenance after %d micro-batches%n", maintenanceEveryBatches);
+            try {
+                jobLauncher.run(maintenanceJob, new JobParametersBuilder()
+                        .addLong("time", System.currentTimeMillis())
+                        .toJobParameters());
+            } catch (Exception e) {
+                System.out.printf("❌ Repository maintenance could not be run: %s%n", e);
+            }
+        }
+    }
+
+    /**
+     * Moves the given files of the staging directory into {@code target}, which is created.
+     */
+    private static Path moveAll(List<Path> files, Path target) throws IOException {
+        Files.createDirectories(target);
+        for (Path file : files) {
+            Files.move(file, target.resolve(file.getFileName()));
+        }
+        return target;
+    }
+}
@@ -0,0 +1,79 @@
+package com.dariel.batchdemo.advanced.ingestion;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MicroBatchBuffer - Collects arriving files until they are worth a job run.
+ *
+ * A batch is due when EITHER
+ * - the files add up to {@code maxBatchBytes} (no point waiting: the batch is big enough), OR
+ * - the oldest file has waited {@code maxWaitMillis} (keeps latency bounded for a trickle of small files)
+ *
+ * Times are passed in by the caller, so the rules can be tested without sleeping.
+ */
+public class MicroBatchBuffer {
+
+    private final long maxBatchBytes;
+    private final long maxWaitMillis;
+
+    // Pending files in arrival order, with their last known size
+    private final Map<Path, Long> files = new LinkedHashMap<>();
+    private long totalBytes;
+    private long oldestArrival;
+
+    public MicroBatchBuffer(long maxBatchBytes, long maxWaitMillis) {
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Adds a new file, or updates the size of a file that is still being written.
+     */
+    public void add(Path file, long size, long nowMillis) {
+        if (files.isEmpty()) {
+            oldestArrival = nowMillis;
+        }
+        Long previous = files.put(file, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+    }
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    public boolean isDue(long nowMillis) {
+        return !files.isEmpty() && (totalBytes >= maxBatchBytes || nowMillis - oldestArrival >= maxWaitMillis);
+    }
+
+    /**
+     * How long the caller can wait for more files before the batch becomes due (0 = due now).
+     */
+    public long millisUntilDue(long nowMillis) {
+        if (files.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        return isDue(nowMillis) ? 0 : oldestArrival + maxWaitMillis - nowMillis;
+    }
+
+    public long getOldestArrival() {
+        return oldestArrival;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the pending files in arrival order and starts a new batch.
+     */
+    public List<Path> drain() {
+        List<Path> batch = new ArrayList<>(files.keySet());
+        files.clear();
+        totalBytes = 0;
+        return batch;
+    }
+}
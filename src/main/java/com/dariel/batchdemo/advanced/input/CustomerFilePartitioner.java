@@ -0,0 +1,77 @@
+package com.dariel.batchdemo.advanced.input;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CustomerFilePartitioner - One partition per customer file in a directory.
+ *
+ * Every file matching the glob pattern (e.g. *.csv or *.csv.gz) becomes a partition
+ * named after the file, with the file's path and size in its ExecutionContext.
+ * Partitions are returned largest file first, so that LargestFirstPartitionHandler
+ * can hand the big files to the workers before the small ones.
+ *
+ * Because partition names are the file names, each file has its own step execution
+ * in the job repository ("processFileStep:partition-<file>"). On a restart Spring Batch
+ * skips the partitions that COMPLETED and only runs the unfinished files again.
+ */
+public class CustomerFilePartitioner implements Partitioner {
+
+    public static final String FILE_NAME_KEY = "fileName";
+    public static final String FILE_SIZE_KEY = "fileSize";
+
+    private static final String PARTITION_PREFIX = "partition-";
+
+    private final Path directory;
+    private final String globPattern;
+
+    public CustomerFilePartitioner(Path directory, String globPattern) {
+        this.directory = directory;
+        this.globPattern = globPattern;
+    }
+
+    /**
+     * The grid size is ignored: the number of partitions is the number of files.
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<CustomerFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, globPattern)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(new CustomerFile(file, Files.size(file)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list customer files in " + directory, e);
+        }
+
+        // Largest first; ties by name so the order is repeatable
+        files.sort(Comparator.comparingLong(CustomerFile::size).reversed()
+                .thenComparing(file -> file.path().getFileName().toString()));
+
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        for (CustomerFile file : files) {
+            ExecutionContext context = new ExecutionContext();
+            context.putString(FILE_NAME_KEY, file.path().toAbsolutePath().toString());
+            context.putLong(FILE_SIZE_KEY, file.size());
+            partitions.put(PARTITION_PREFIX + file.path().getFileName(), context);
+        }
+        System.out.printf("  📂 Found %d customer files matching '%s' in %s%n", partitions.size(), globPattern, directory);
+        return partitions;
+    }
+
+    private record CustomerFile(Path path, long size) {
+    }
+}
@@ -0,0 +1,178 @@
+package com.dariel.batchdemo.advanced.input;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes ONE gzip member (RFC 1952) that starts at a given offset of a file.
+ *
+ * Reads go through positional FileChannel reads, so several decoders can work on
+ * different members of the same file at the same time. When the member is done,
+ * the CRC-32 and length in its trailer are checked and {@link #end()} tells where
+ * the next member starts.
+ */
+final class GzipMemberDecoder implements AutoCloseable {
+
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+    private static final int RESERVED_FLAGS = 0xE0;
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater(true); // raw deflate: we parse the header ourselves
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[INPUT_BUFFER_SIZE];
+
+    private long readPosition; // next file byte to hand to the inflater
+    private long outputBytes;
+    private long end = -1;
+
+    GzipMemberDecoder(FileChannel channel, long start) throws IOException {
+        this.channel = channel;
+        int headerLength = parseHeader(start);
+        this.readPosition = start + headerLength;
+    }
+
+    /**
+     * Same contract as InputStream.read: -1 once the member is fully decoded and verified.
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException {
+        if (end >= 0) {
+            return -1;
+        }
+        try {
+            while (true) {
+                int inflated = inflater.inflate(buffer, offset, length);
+                if (inflated > 0) {
+                    crc.update(buffer, offset, inflated);
+                    outputBytes += inflated;
+                    return inflated;
+                }
+                if (inflater.finished()) {
+                    verifyTrailer();
+                    return -1;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Unexpected preset dictionary in gzip member");
+                }
+                if (inflater.needsInput()) {
+                    fillInput();
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt gzip member: " + e.getMessage());
+        }
+    }
+
+    /**
+     * File offset just after this member's trailer (only valid once read returned -1).
+     */
+    long end() {
+        return end;
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+    }
+
+    private void fillInput() throws IOException {
+        int read = channel.read(ByteBuffer.wrap(input), readPosition);
+        if (read <= 0) {
+            throw new EOFException("Unexpected end of gzip file at offset " + readPosition);
+        }
+        readPosition += read;
+        inflater.setInput(input, 0, read);
+    }
+
+    private void verifyTrailer() throws IOException {
+        long deflateEnd = readPosition - inflater.getRemaining();
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (trailer.hasRemaining()) {
+            if (channel.read(trailer, deflateEnd + trailer.position()) <= 0) {
+                throw new EOFException("Truncated gzip trailer at offset " + deflateEnd);
+            }
+        }
+        trailer.flip();
+        long expectedCrc = trailer.getInt() & 0xFFFFFFFFL;
+        long expectedSize = trailer.getInt() & 0xFFFFFFFFL;
+        if (expectedCrc != crc.getValue()) {
+            throw new ZipException("CRC-32 mismatch in gzip member ending at offset " + deflateEnd);
+        }
+        if (expectedSize != (outputBytes & 0xFFFFFFFFL)) {
+            throw new ZipException("Length mismatch in gzip member ending at offset " + deflateEnd);
+        }
+        end = deflateEnd + 8;
+    }
+
+    /**
+     * Returns the header length. Headers must fit in the first input buffer,
+     * which holds for anything but absurdly long file names or comments.
+     */
+    private int parseHeader(long start) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(INPUT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, start);
+        header.flip();
+        if (!isHeaderStart(header, 0)) {
+            throw new ZipException("Not a gzip member at offset " + start);
+        }
+        int flags = header.get(3) & 0xFF;
+        int position = 10;
+        try {
+            if ((flags & FEXTRA) != 0) {
+                int extraLength = header.getShort(position) & 0xFFFF;
+                position += 2 + extraLength;
+            }
+            if ((flags & FNAME) != 0) {
+                position = skipZeroTerminated(header, position);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                position = skipZeroTerminated(header, position);
+            }
+            if ((flags & FHCRC) != 0) {
+                position += 2;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new ZipException("Gzip header too long at offset " + start);
+        }
+        if (position > header.limit()) {
+            throw new ZipException("Gzip header too long at offset " + start);
+        }
+        return position;
+    }
+
+    private static int skipZeroTerminated(ByteBuffer header, int position) {
+        while (header.get(position) != 0) {
+            position++;
+        }
+        return position + 1;
+    }
+
+    /**
+     * Cheap test for a plausible gzip header: magic, deflate method, no reserved
+     * flags, a known compression hint and operating system.
+     */
+    static boolean isHeaderStart(ByteBuffer buffer, int position) {
+        if (buffer.limit() - position < 10) {
+            return false;
+        }
+        int xfl = buffer.get(position + 8) & 0xFF;
+        int os = buffer.get(position + 9) & 0xFF;
+        return (buffer.get(position) & 0xFF) == 0x1F
+                && (buffer.get(position + 1) & 0xFF) == 0x8B
+                && buffer.get(position + 2) == 8
+                && (buffer.get(position + 3) & RESERVED_FLAGS) == 0
+                && (xfl == 0 || xfl == 2 || xfl == 4)
+                && (os <= 13 || os == 255);
+    }
+}
@@ -0,0 +1,70 @@
+package com.dariel.batchdemo.advanced.input;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * GzipResource - A .gz file that reads as its decompressed content.
+ *
+ * Anything that reads a Resource (FlatFileItemReader, the sort step, ...) can read
+ * customers.csv.gz directly: the data is inflated while it is parsed, without first
+ * writing a decompressed copy to disk.
+ *
+ * When the file is on the file system and more than one thread is configured, the
+ * members of a multi-member gzip file are decoded in parallel (ParallelGzipInputStream).
+ * Otherwise a plain GZIPInputStream is used.
+ */
+public class GzipResource extends AbstractResource {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    // Members decoding to more than this are streamed instead of buffered
+    private static final int MAX_BUFFERED_MEMBER_BYTES = 32 * 1024 * 1024;
+
+    private final Resource compressed;
+    private final int threads;
+
+    public GzipResource(Resource compressed, int threads) {
+        this.compressed = compressed;
+        this.threads = threads;
+    }
+
+    /**
+     * Wraps the resource if its name ends in .gz, otherwise returns it unchanged.
+     */
+    public static Resource decompressIfNeeded(Resource resource, int threads) {
+        String filename = resource.getFilename();
+        return filename != null && filename.endsWith(".gz") ? new GzipResource(resource, threads) : resource;
+    }
+
+    @Override
+    @NonNull
+    public InputStream getInputStream() throws IOException {
+        if (threads > 1 && compressed.isFile()) {
+            return new ParallelGzipInputStream(compressed.getFile().toPath(), threads, MAX_BUFFERED_MEMBER_BYTES);
+        }
+        return new GZIPInputStream(compressed.getInputStream(), STREAM_BUFFER_SIZE);
+    }
+
+    @Override
+    public boolean exists() {
+        return compressed.exists();
+    }
+
+    @Override
+    public String getFilename() {
+        String filename = compressed.getFilename();
+        return filename != null && filename.endsWith(".gz") ? filename.substring(0, filename.length() - 3) : filename;
+    }
+
+    @Override
+    @NonNull
+    public String getDescription() {
+        return "gzip-compressed " + compressed.getDescription();
+    }
+}
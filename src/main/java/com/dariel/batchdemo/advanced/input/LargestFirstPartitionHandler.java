@@ -0,0 +1,36 @@
+package com.dariel.batchdemo.advanced.input;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * LargestFirstPartitionHandler - Starts the partitions with the largest files first.
+ *
+ * Spring Batch hands the partition step executions over in no particular order.
+ * With a fixed pool of worker threads, starting a huge file last means one worker
+ * is still busy long after the others are done. Submitting the largest files first
+ * (longest-processing-time-first scheduling) keeps the workers evenly loaded.
+ *
+ * The size comes from the partition's ExecutionContext (see CustomerFilePartitioner).
+ */
+public class LargestFirstPartitionHandler extends TaskExecutorPartitionHandler {
+
+    @Override
+    protected Set<StepExecution> doHandle(StepExecution managerStepExecution,
+                                          Set<StepExecution> partitionStepExecutions) throws Exception {
+        List<StepExecution> largestFirst = new ArrayList<>(partitionStepExecutions);
+        largestFirst.sort(Comparator.comparingLong(LargestFirstPartitionHandler::fileSize).reversed()
+                .thenComparing(StepExecution::getStepName));
+        return super.doHandle(managerStepExecution, new LinkedHashSet<>(largestFirst));
+    }
+
+    private static long fileSize(StepExecution partition) {
+        return partition.getExecutionContext().getLong(CustomerFilePartitioner.FILE_SIZE_KEY, 0L);
+    }
+}
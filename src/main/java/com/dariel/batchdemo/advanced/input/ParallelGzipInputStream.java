@@ -0,0 +1,256 @@
+package com.dariel.batchdemo.advanced.input;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipException;
+
+/**
+ * ParallelGzipInputStream - Decompresses a multi-member gzip file on several threads.
+ *
+ * A gzip file may be a series of independent "members" (what pigz, bgzip or
+ * {@code cat a.gz b.gz} produce). Members can be inflated independently, but the
+ * file has no index saying where they start. So this stream:
+ * 1. Scans ahead for byte patterns that look like a gzip header (candidate starts)
+ * 2. Decodes the member at each candidate on a worker thread, into memory
+ * 3. Hands the members out strictly in file order: the member at offset 0, then the
+ *    member starting where that one ended, and so on
+ *
+ * A candidate inside compressed data is a false positive: its decode fails or simply
+ * is never asked for, because the real member before it ends past it. Output is
+ * therefore byte-for-byte what a sequential GZIPInputStream returns.
+ *
+ * At most {@code 2 * threads} members are in flight, and a member that inflates to
+ * more than {@code maxMemberBytes} is streamed on the caller's thread instead, so
+ * memory stays bounded even for a single huge member (which is then simply sequential).
+ */
+public class ParallelGzipInputStream extends InputStream {
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_LENGTH = 10;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int maxInFlight;
+    private final int maxMemberBytes;
+    private final ExecutorService workers;
+
+    // Decodes in progress, by candidate start offset
+    private final TreeMap<Long, Future<DecodedMember>> inFlight = new TreeMap<>();
+    private long scanPosition;
+
+    private volatile long memberStart; // Also read by workers, to give up on stale candidates
+    private int members;
+    private byte[] current = new byte[0];
+    private int currentPosition;
+    private int currentLength;
+    private GzipMemberDecoder streaming; // Fallback for members too large to buffer
+    private boolean finished;
+
+    /**
+     * @param threads        worker threads decoding members
+     * @param maxMemberBytes largest decompressed member that is decoded in the background
+     */
+    public ParallelGzipInputStream(Path file, int threads, int maxMemberBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.maxInFlight = 2 * threads;
+        this.maxMemberBytes = maxMemberBytes;
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gzip-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (!finished) {
+            if (streaming != null) {
+                int read = streaming.read(buffer, offset, length);
+                if (read >= 0) {
+                    return read;
+                }
+                memberDone(streaming.end());
+                streaming.close();
+                streaming = null;
+            } else if (currentPosition < currentLength) {
+                int read = Math.min(length, currentLength - currentPosition);
+                System.arraycopy(current, currentPosition, buffer, offset, read);
+                currentPosition += read;
+                return read;
+            } else {
+                nextMember();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of members decoded so far.
+     */
+    public int getMemberCount() {
+        return members;
+    }
+
+    @Override
+    public void close() throws IOException {
+        workers.shutdownNow();
+        if (streaming != null) {
+            streaming.close();
+        }
+        channel.close();
+    }
+
+    private void nextMember() throws IOException {
+        if (memberStart >= fileSize) {
+            finished = true;
+            return;
+        }
+        fillPipeline();
+
+        long start = memberStart;
+        Future<DecodedMember> decode = inFlight.remove(start);
+        if (decode == null) {
+            decode = workers.submit(() -> decode(start));
+        }
+        try {
+            DecodedMember member = decode.get();
+            current = member.data();
+            currentLength = member.length();
+            currentPosition = 0;
+            memberDone(member.end());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding gzip member");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MemberTooLargeException) {
+                streaming = new GzipMemberDecoder(channel, memberStart);
+            } else if (cause instanceof ZipException && members > 0 && !looksLikeHeader(memberStart)) {
+                // Trailing garbage after the last member is ignored, like GZIPInputStream does
+                finished = true;
+            } else if (cause instanceof IOException io) {
+                throw io;
+            } else {
+                throw new IOException("Could not decode gzip member at offset " + memberStart, cause);
+            }
+        }
+    }
+
+    private void memberDone(long end) {
+        members++;
+        memberStart = end;
+        // Candidates inside the member just decoded were false positives.
+        // Not interrupted: an interrupt during a read would close the shared FileChannel.
+        Iterator<Map.Entry<Long, Future<DecodedMember>>> stale = inFlight.headMap(end).entrySet().iterator();
+        while (stale.hasNext()) {
+            stale.next().getValue().cancel(false);
+            stale.remove();
+        }
+    }
+
+    /**
+     * Keeps up to maxInFlight candidate members decoding ahead of the reader.
+     */
+    private void fillPipeline() throws IOException {
+        scanPosition = Math.max(scanPosition, memberStart);
+        while (inFlight.size() < maxInFlight && scanPosition < fileSize) {
+            long candidate = findCandidate(scanPosition);
+            if (candidate < 0) {
+                scanPosition = fileSize;
+                break;
+            }
+            inFlight.put(candidate, workers.submit(() -> decode(candidate)));
+            scanPosition = candidate + 1;
+        }
+    }
+
+    private long findCandidate(long from) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = from;
+        while (position < fileSize) {
+            window.clear();
+            channel.read(window, position);
+            window.flip();
+            int lastStart = window.limit() - HEADER_LENGTH;
+            for (int i = 0; i <= lastStart; i++) {
+                if ((window.get(i) & 0xFF) == 0x1F && GzipMemberDecoder.isHeaderStart(window, i)) {
+                    return position + i;
+                }
+            }
+            if (position + window.limit() >= fileSize) {
+                return -1;
+            }
+            // Overlap so a header split across two windows is still found
+            position += Math.max(1, lastStart + 1);
+        }
+        return -1;
+    }
+
+    private boolean looksLikeHeader(long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        channel.read(header, position);
+        header.flip();
+        return GzipMemberDecoder.isHeaderStart(header, 0);
+    }
+
+    /**
+     * Runs on a worker thread: inflates the whole member into memory.
+     */
+    private DecodedMember decode(long start) throws IOException {
+        try (GzipMemberDecoder decoder = new GzipMemberDecoder(channel, start)) {
+            byte[] data = new byte[256 * 1024];
+            int length = 0;
+            while (true) {
+                if (length == data.length) {
+                    if (data.length >= maxMemberBytes) {
+                        throw new MemberTooLargeException();
+                    }
+                    data = Arrays.copyOf(data, (int) Math.min((long) data.length * 2, maxMemberBytes));
+                }
+                int read = decoder.read(data, length, data.length - length);
+                if (read < 0) {
+                    return new DecodedMember(data, length, decoder.end());
+                }
+                length += read;
+                if (memberStart > start) {
+                    throw new ZipException("Stale candidate at offset " + start); // The reader is already past it
+                }
+            }
+        }
+    }
+
+    private record DecodedMember(byte[] data, int length, long end) {
+    }
+
+    private static final class MemberTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MemberTooLargeException() {
+            super("Gzip member too large to decode in the background");
+        }
+    }
+}
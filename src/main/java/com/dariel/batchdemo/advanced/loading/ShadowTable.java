@@ -0,0 +1,130 @@
+package com.dariel.batchdemo.advanced.loading;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * ShadowTable - Loads a table next to the live one and swaps it in when it is complete.
+ *
+ * Loading straight into a live table shows readers a half-loaded table for as long as
+ * the load runs, and every insert also updates every secondary index. Instead:
+ * 1. create(): an empty copy of the table (customers_shadow), with its primary key
+ *    but WITHOUT secondary indexes, that the job writes into
+ * 2. publish(): builds the secondary indexes in one pass over the loaded rows (much
+ *    cheaper than maintaining them row by row), then renames the live table away,
+ *    renames the shadow table to the live name and drops the old table
+ *
+ * publish() must run in one transaction (the swap step's). On databases with
+ * transactional DDL, like PostgreSQL, readers then see either the old table or the
+ * new one, never a partial table. H2 commits every DDL statement on its own: there,
+ * a reader that comes exactly between the two renames finds no table.
+ *
+ * Index and primary key names get a "_shadow" suffix on the shadow table and are
+ * renamed to the live names once the old table is dropped, so the next load can use
+ * the shadow names again.
+ */
+public class ShadowTable {
+
+    /**
+     * A secondary index of the table, e.g. ("idx_customers_country", "country").
+     */
+    public record Index(String name, String columns) {
+    }
+
+    private static final String SHADOW_SUFFIX = "_shadow";
+    private static final String OLD_SUFFIX = "_old";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final String primaryKey;
+    private final List<Index> indexes;
+
+    /**
+     * @param primaryKey the primary key columns, comma separated
+     */
+    public ShadowTable(DataSource dataSource, String table, String primaryKey, List<Index> indexes) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.table = table;
+        this.primaryKey = primaryKey;
+        this.indexes = List.copyOf(indexes);
+    }
+
+    /**
+     * Name of the shadow table of {@code table}: the table writers load into.
+     */
+    public static String shadowNameOf(String table) {
+        return table + SHADOW_SUFFIX;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getShadowName() {
+        return shadowNameOf(table);
+    }
+
+    /**
+     * (Re)creates the empty shadow table: same columns and primary key as the live table, no secondary indexes.
+     */
+    public void create() {
+        String shadow = getShadowName();
+        if (!exists(table) && exists(table + OLD_SUFFIX)) {
+            // A swap was interrupted between the two renames (non-transactional DDL)
+            jdbcTemplate.execute("ALTER TABLE " + table + OLD_SUFFIX + " RENAME TO " + table);
+        }
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + shadow);
+        jdbcTemplate.execute("CREATE TABLE " + shadow + " AS SELECT * FROM " + table + " WITH NO DATA");
+        for (String column : primaryKey.split(",")) {
+            // CREATE TABLE AS copies the columns but not their constraints
+            jdbcTemplate.execute("ALTER TABLE " + shadow + " ALTER COLUMN " + column.trim() + " SET NOT NULL");
+        }
+        // The primary key stays during the load: duplicates must still fail their chunk
+        jdbcTemplate.execute("ALTER TABLE " + shadow + " ADD CONSTRAINT " + primaryKeyName() + SHADOW_SUFFIX
+                + " PRIMARY KEY (" + primaryKey + ")");
+        System.out.printf("  🪞 Loading into %s (no secondary indexes until the swap)%n", shadow);
+    }
+
+    /**
+     * Builds the secondary indexes on the loaded shadow table and swaps it in for the live table.
+     *
+     * @return the number of rows of the new live table
+     */
+    public long publish() {
+        String shadow = getShadowName();
+        long start = System.currentTimeMillis();
+        for (Index index : indexes) {
+            jdbcTemplate.execute("CREATE INDEX " + index.name() + SHADOW_SUFFIX
+                    + " ON " + shadow + "(" + index.columns() + ")");
+        }
+        long indexMillis = System.currentTimeMillis() - start;
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + shadow, Long.class);
+
+        jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + table + OLD_SUFFIX);
+        jdbcTemplate.execute("ALTER TABLE " + shadow + " RENAME TO " + table);
+        jdbcTemplate.execute("DROP TABLE " + table + OLD_SUFFIX);
+        // The old table's indexes are gone with it: their names are free again
+        for (Index index : indexes) {
+            jdbcTemplate.execute("ALTER INDEX " + index.name() + SHADOW_SUFFIX + " RENAME TO " + index.name());
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " RENAME CONSTRAINT " + primaryKeyName() + SHADOW_SUFFIX
+                + " TO " + primaryKeyName());
+
+        System.out.printf("  🔀 Swapped in %s: %d rows, %d indexes built in %d ms%n",
+                table, rows, indexes.size(), indexMillis);
+        return rows == null ? 0 : rows;
+    }
+
+    private String primaryKeyName() {
+        return "pk_" + table;
+    }
+
+    private boolean exists(String name) {
+        Integer tables = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE UPPER(TABLE_NAME) = UPPER(?)",
+                Integer.class, name);
+        return tables != null && tables > 0;
+    }
+}
@@ -0,0 +1,201 @@
+package com.dariel.batchdemo.advanced.maintenance;
+
+import org.springframework.batch.core.repository.dao.AbstractJdbcBatchMetadataDao;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JobRepositoryRetention - Deletes old job instances from the Spring Batch metadata tables.
+ *
+ * Every launch of customerJob or basicsJob creates a new job instance, so the BATCH_*
+ * tables only grow: one instance, one execution with its parameters and context, and
+ * a step execution with its context per step, on every run. This class removes whole
+ * job instances (never part of one) that are no longer needed:
+ * - every execution of the instance finished (COMPLETED, FAILED, STOPPED, ABANDONED)
+ *   more than maxAgeDays ago - a running instance is never touched
+ * - it is not one of the keepLast newest instances of its job
+ * - with keepRestartable, its last execution did not fail or stop (a restart of such
+ *   an instance needs its executions and contexts)
+ *
+ * Rows are deleted child tables first (step contexts, step executions, job contexts,
+ * parameters, job executions, instances), a batch of instances at a time: the caller
+ * commits each batch, so locks are held briefly and a launch never waits long.
+ * With archive, the rows are copied into BATCH_*_ARCHIVE tables (created when missing)
+ * before they are deleted: the history is kept, but outside the tables launches read.
+ */
+public class JobRepositoryRetention {
+
+    private static final String PREFIX = AbstractJdbcBatchMetadataDao.DEFAULT_TABLE_PREFIX;
+    private static final String FINISHED = "('COMPLETED', 'FAILED', 'STOPPED', 'ABANDONED')";
+
+    /**
+     * The metadata tables, children first: the order rows are archived and deleted in.
+     */
+    private static final List<String> TABLES = List.of("STEP_EXECUTION_CONTEXT", "STEP_EXECUTION",
+            "JOB_EXECUTION_CONTEXT", "JOB_EXECUTION_PARAMS", "JOB_EXECUTION", "JOB_INSTANCE");
+
+    /**
+     * The instances to purge among a page of scanned instances.
+     *
+     * @param lastScannedId the last instance scanned, -1 when there was none left
+     */
+    public record Batch(List<Long> jobInstanceIds, long lastScannedId) {
+    }
+
+    /**
+     * Rows deleted (and archived) for a batch of instances.
+     */
+    public record Purged(int jobInstances, int jobExecutions, int stepExecutions) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final long maxAgeDays;
+    private final int keepLast;
+    private final boolean keepRestartable;
+    private final boolean archive;
+
+    /**
+     * @param maxAgeDays      instances that finished more recently are kept
+     * @param keepLast        newest instances of every job that are always kept
+     * @param keepRestartable keep instances whose last execution FAILED or STOPPED
+     * @param archive         copy the rows into BATCH_*_ARCHIVE tables before deleting them
+     */
+    public JobRepositoryRetention(DataSource dataSource, long maxAgeDays, int keepLast,
+                                  boolean keepRestartable, boolean archive) {
+        if (maxAgeDays < 0 || keepLast < 0) {
+            throw new IllegalArgumentException("maxAgeDays and keepLast must not be negative");
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.maxAgeDays = maxAgeDays;
+        this.keepLast = keepLast;
+        this.keepRestartable = keepRestartable;
+        this.archive = archive;
+    }
+
+    public boolean isArchive() {
+        return archive;
+    }
+
+    /**
+     * For every job, the id of the oldest of its keepLast newest instances: only instances
+     * with a smaller id may be purged (no entry = none of its instances may).
+     */
+    public Map<String, Long> keptFrom() {
+        Map<String, Long> keptFrom = new HashMap<>();
+        for (String jobName : jdbcTemplate.queryForList(
+                "SELECT DISTINCT JOB_NAME FROM " + PREFIX + "JOB_INSTANCE", String.class)) {
+            if (keepLast == 0) {
+                keptFrom.put(jobName, Long.MAX_VALUE);
+                continue;
+            }
+            List<Long> ids = jdbcTemplate.queryForList("SELECT JOB_INSTANCE_ID FROM " + PREFIX + "JOB_INSTANCE "
+                            + "WHERE JOB_NAME = ? ORDER BY JOB_INSTANCE_ID DESC LIMIT 1 OFFSET ?",
+                    Long.class, jobName, keepLast - 1);
+            if (!ids.isEmpty()) {
+                keptFrom.put(jobName, ids.get(0));
+            }
+        }
+        return keptFrom;
+    }
+
+    /**
+     * The purgeable instances among the next {@code limit} instances after {@code afterId}.
+     *
+     * The instances are scanned by primary key (not by job name: that index is ordered by
+     * job key, so "the next ones by id" would mean sorting every instance of the job), and
+     * the age and status rules are only checked for the instances keptFrom allows.
+     *
+     * @param keptFrom what {@link #keptFrom()} returned at the start of the purge
+     * @return the purgeable instances, and the last instance scanned (the next afterId)
+     */
+    public Batch nextBatch(long afterId, Map<String, Long> keptFrom, LocalDateTime now, int limit) {
+        List<Long> candidates = new ArrayList<>();
+        long[] lastScanned = {-1};
+        jdbcTemplate.query("SELECT JOB_INSTANCE_ID, JOB_NAME FROM " + PREFIX + "JOB_INSTANCE "
+                + "WHERE JOB_INSTANCE_ID > ? ORDER BY JOB_INSTANCE_ID LIMIT ?", rs -> {
+            long id = rs.getLong(1);
+            lastScanned[0] = id;
+            if (id < keptFrom.getOrDefault(rs.getString(2), 0L)) {
+                candidates.add(id);
+            }
+        }, afterId, limit);
+        if (candidates.isEmpty()) {
+            return new Batch(List.of(), lastScanned[0]);
+        }
+
+        String sql = "SELECT I.JOB_INSTANCE_ID FROM " + PREFIX + "JOB_INSTANCE I WHERE I.JOB_INSTANCE_ID IN (:ids) "
+                // Every execution finished before the cutoff
+                + "AND NOT EXISTS (SELECT 1 FROM " + PREFIX + "JOB_EXECUTION E "
+                + "WHERE E.JOB_INSTANCE_ID = I.JOB_INSTANCE_ID "
+                + "AND (E.END_TIME IS NULL OR E.END_TIME >= :cutoff OR E.STATUS NOT IN " + FINISHED + ")) ";
+        if (keepRestartable) {
+            sql += "AND NOT EXISTS (SELECT 1 FROM " + PREFIX + "JOB_EXECUTION E "
+                    + "WHERE E.JOB_INSTANCE_ID = I.JOB_INSTANCE_ID AND E.STATUS IN ('FAILED', 'STOPPED') "
+                    + "AND E.JOB_EXECUTION_ID = (SELECT MAX(L.JOB_EXECUTION_ID) FROM " + PREFIX + "JOB_EXECUTION L "
+                    + "WHERE L.JOB_INSTANCE_ID = I.JOB_INSTANCE_ID)) ";
+        }
+        sql += "ORDER BY I.JOB_INSTANCE_ID";
+        List<Long> purgeable = namedJdbcTemplate.queryForList(sql, new MapSqlParameterSource()
+                .addValue("ids", candidates)
+                .addValue("cutoff", Timestamp.valueOf(now.minusDays(maxAgeDays))), Long.class);
+        return new Batch(purgeable, lastScanned[0]);
+    }
+
+    /**
+     * Deletes (and archives) the instances and everything that belongs to them.
+     * Run it in a transaction, so a batch is purged completely or not at all.
+     */
+    public Purged purge(List<Long> jobInstanceIds) {
+        if (jobInstanceIds.isEmpty()) {
+            return new Purged(0, 0, 0);
+        }
+        // Ids first, then plain "id IN (...)" deletes: IN (subquery) deletes scan the whole table on some databases
+        List<Long> jobExecutionIds = namedJdbcTemplate.queryForList("SELECT JOB_EXECUTION_ID FROM " + PREFIX
+                + "JOB_EXECUTION WHERE JOB_INSTANCE_ID IN (:ids)", Map.of("ids", jobInstanceIds), Long.class);
+        List<Long> stepExecutionIds = jobExecutionIds.isEmpty() ? List.of() : namedJdbcTemplate.queryForList(
+                "SELECT STEP_EXECUTION_ID FROM " + PREFIX + "STEP_EXECUTION WHERE JOB_EXECUTION_ID IN (:ids)",
+                Map.of("ids", jobExecutionIds), Long.class);
+
+        List<String> keys = List.of("STEP_EXECUTION_ID", "STEP_EXECUTION_ID",
+                "JOB_EXECUTION_ID", "JOB_EXECUTION_ID", "JOB_EXECUTION_ID", "JOB_INSTANCE_ID");
+        List<List<Long>> ids = List.of(stepExecutionIds, stepExecutionIds,
+                jobExecutionIds, jobExecutionIds, jobExecutionIds, jobInstanceIds);
+        if (archive) {
+            for (int i = 0; i < TABLES.size(); i++) {
+                if (!ids.get(i).isEmpty()) {
+                    String table = PREFIX + TABLES.get(i);
+                    namedJdbcTemplate.update("INSERT INTO " + table + "_ARCHIVE SELECT * FROM " + table
+                            + " WHERE " + keys.get(i) + " IN (:ids)", Map.of("ids", ids.get(i)));
+                }
+            }
+        }
+        for (int i = 0; i < TABLES.size(); i++) {
+            if (!ids.get(i).isEmpty()) {
+                namedJdbcTemplate.update("DELETE FROM " + PREFIX + TABLES.get(i)
+                        + " WHERE " + keys.get(i) + " IN (:ids)", Map.of("ids", ids.get(i)));
+            }
+        }
+        return new Purged(jobInstanceIds.size(), jobExecutionIds.size(), stepExecutionIds.size());
+    }
+
+    /**
+     * Creates the empty BATCH_*_ARCHIVE tables that do not exist yet (same columns, no constraints).
+     */
+    public void createArchiveTables() {
+        for (String table : TABLES) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + PREFIX + table + "_ARCHIVE AS SELECT * FROM "
+                    + PREFIX + table + " WITH NO DATA");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dariel.batchdemo.advanced.maintenance;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.lang.NonNull;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * RepositoryPurgeTasklet - Purges old job instances, one bounded batch per transaction.
+ *
+ * A tasklet step runs every call of execute() in its own transaction: each call purges
+ * at most batchSize instances (JobRepositoryRetention) and returns CONTINUABLE, so the
+ * purge commits after every batch instead of locking the metadata tables until the
+ * whole history is gone. The instances are walked once, by id.
+ *
+ * Register it as a step listener too: beforeStep() takes the snapshot of the newest
+ * instances to keep, afterStep() prints the totals.
+ */
+public class RepositoryPurgeTasklet implements Tasklet, StepExecutionListener {
+
+    private final JobRepositoryRetention retention;
+    private final int batchSize;
+
+    private Map<String, Long> keptFrom = Map.of();
+    private long lastInstanceId;
+    private LocalDateTime now;
+    private long purgedInstances;
+    private long purgedExecutions;
+    private long purgedStepExecutions;
+
+    public RepositoryPurgeTasklet(JobRepositoryRetention retention, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.retention = retention;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        if (retention.isArchive()) {
+            retention.createArchiveTables();
+        }
+        now = LocalDateTime.now();
+        keptFrom = retention.keptFrom();
+        lastInstanceId = 0;
+        purgedInstances = 0;
+        purgedExecutions = 0;
+        purgedStepExecutions = 0;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) {
+        while (true) {
+            JobRepositoryRetention.Batch batch = retention.nextBatch(lastInstanceId, keptFrom, now, batchSize);
+            if (batch.lastScannedId() < 0) {
+                return RepeatStatus.FINISHED;
+            }
+            lastInstanceId = batch.lastScannedId();
+            if (batch.jobInstanceIds().isEmpty()) {
+                continue; // Nothing to purge among these, scan on in the same transaction
+            }
+            JobRepositoryRetention.Purged purged = retention.purge(batch.jobInstanceIds());
+            contribution.incrementReadCount();
+            contribution.incrementWriteCount(purged.jobInstances());
+            purgedInstances += purged.jobInstances();
+            purgedExecutions += purged.jobExecutions();
+            purgedStepExecutions += purged.stepExecutions();
+            return RepeatStatus.CONTINUABLE; // Commit this batch, then come back for the next one
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        System.out.printf("🧹 Job repository: %s %,d job instances (%,d job executions, %,d step executions) in %,d batches%n",
+                retention.isArchive() ? "archived" : "purged", purgedInstances, purgedExecutions,
+                purgedStepExecutions, stepExecution.getReadCount());
+        return stepExecution.getExitStatus();
+    }
+}
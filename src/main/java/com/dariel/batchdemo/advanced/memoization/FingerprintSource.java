@@ -0,0 +1,100 @@
+package com.dariel.batchdemo.advanced.memoization;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * FingerprintSource - Something a step reads or writes, reduced to a string that
+ * changes whenever it changes.
+ *
+ * - resource(): a file, by size and last-modified time (instant) or by a SHA-256 of
+ *   its content (reads the whole file, but survives a touch or a copy)
+ * - directory(): every file of a directory matching a glob pattern
+ * - table(): the change version of a table (see TableVersions)
+ * - value(): a fixed value, e.g. the step's configuration
+ */
+@FunctionalInterface
+public interface FingerprintSource {
+
+    enum FileMode { SIZE_MTIME, CONTENT_HASH }
+
+    String fingerprint() throws IOException;
+
+    static FingerprintSource resource(Resource resource, FileMode mode) {
+        return () -> {
+            if (!resource.exists()) {
+                return resource.getDescription() + ":missing";
+            }
+            if (mode == FileMode.CONTENT_HASH) {
+                try (InputStream input = resource.getInputStream()) {
+                    MessageDigest digest = sha256();
+                    byte[] buffer = new byte[64 * 1024];
+                    int read;
+                    while ((read = input.read(buffer)) > 0) {
+                        digest.update(buffer, 0, read);
+                    }
+                    return resource.getDescription() + ":" + HexFormat.of().formatHex(digest.digest());
+                }
+            }
+            return resource.getDescription() + ":" + resource.contentLength() + ":" + resource.lastModified();
+        };
+    }
+
+    static FingerprintSource directory(Path directory, String globPattern, FileMode mode) {
+        return () -> {
+            if (!Files.isDirectory(directory)) {
+                return directory + ":missing";
+            }
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, globPattern)) {
+                stream.forEach(files::add);
+            }
+            files.sort(null);
+            StringBuilder fingerprint = new StringBuilder(directory.toString());
+            for (Path file : files) {
+                fingerprint.append('|').append(resource(new FileSystemResource(file), mode).fingerprint());
+            }
+            return fingerprint.toString();
+        };
+    }
+
+    static FingerprintSource table(TableVersions tableVersions, String table) {
+        return () -> table + ":v" + tableVersions.current(table);
+    }
+
+    static FingerprintSource value(String value) {
+        return () -> value;
+    }
+
+    /**
+     * SHA-256 of the fingerprints of {@code sources}, in order.
+     */
+    static String combine(List<FingerprintSource> sources) throws IOException {
+        MessageDigest digest = sha256();
+        for (FingerprintSource source : sources) {
+            digest.update(source.fingerprint().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0); // Separator: "ab" + "c" differs from "a" + "bc"
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.dariel.batchdemo.advanced.memoization;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * MemoizedStep - Skips a step whose inputs did not change since it last completed.
+ *
+ * Before the step runs, its inputs (files, table versions, configuration) are
+ * fingerprinted. If the last completed execution of the step (StepMemoRepository) read
+ * the same inputs, and what it wrote is still there unchanged (output files, output
+ * table versions), running it again would produce the same result: the step is
+ * marked COMPLETED at once, with the counts of that execution.
+ *
+ * Otherwise the step runs. Its output tables get a new version whether it completes
+ * or not (it may have written part of them), and a completed execution becomes the
+ * step's new memo.
+ */
+public class MemoizedStep implements Step {
+
+    private final Step delegate;
+    private final JobRepository jobRepository;
+    private final StepMemoRepository memos;
+    private final TableVersions tableVersions;
+    private final List<FingerprintSource> inputs;
+    private final List<FingerprintSource> outputs;
+    private final List<String> outputTables;
+
+    /**
+     * @param inputs       what the step reads, including its configuration
+     * @param outputFiles  files the step writes
+     * @param outputTables tables the step writes (their versions are bumped when it runs)
+     */
+    public MemoizedStep(Step delegate, JobRepository jobRepository, StepMemoRepository memos,
+                        TableVersions tableVersions, List<FingerprintSource> inputs,
+                        List<FingerprintSource> outputFiles, List<String> outputTables) {
+        this.delegate = delegate;
+        this.jobRepository = jobRepository;
+        this.memos = memos;
+        this.tableVersions = tableVersions;
+        this.inputs = List.copyOf(inputs);
+        this.outputTables = List.copyOf(outputTables);
+        List<FingerprintSource> allOutputs = new ArrayList<>(outputFiles);
+        for (String table : outputTables) {
+            allOutputs.add(FingerprintSource.table(tableVersions, table));
+        }
+        this.outputs = List.copyOf(allOutputs);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean isAllowStartIfComplete() {
+        return delegate.isAllowStartIfComplete();
+    }
+
+    @Override
+    public int getStartLimit() {
+        return delegate.getStartLimit();
+    }
+
+    @Override
+    public void execute(@NonNull StepExecution stepExecution) throws JobInterruptedException {
+        String inputFingerprint = fingerprint(inputs);
+        Optional<StepMemoRepository.StepMemo> memo = memos.find(getName())
+                .filter(m -> m.inputFingerprint().equals(inputFingerprint))
+                .filter(m -> m.outputFingerprint().equals(fingerprint(outputs)));
+        if (inputFingerprint != null && memo.isPresent()) {
+            replay(stepExecution, memo.get());
+            return;
+        }
+
+        try {
+            delegate.execute(stepExecution);
+        } finally {
+            for (String table : outputTables) {
+                tableVersions.bump(table);
+            }
+        }
+        String outputFingerprint = fingerprint(outputs);
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED && inputFingerprint != null && outputFingerprint != null) {
+            memos.save(new StepMemoRepository.StepMemo(getName(), inputFingerprint, outputFingerprint,
+                    stepExecution.getReadCount(), stepExecution.getWriteCount(), stepExecution.getFilterCount(),
+                    stepExecution.getReadSkipCount(), stepExecution.getProcessSkipCount(),
+                    stepExecution.getWriteSkipCount(), stepExecution.getJobExecutionId()));
+        }
+    }
+
+    /**
+     * Completes the step execution with the counts of the memoized execution, without running the step.
+     */
+    private void replay(StepExecution stepExecution, StepMemoRepository.StepMemo memo) {
+        stepExecution.setStartTime(LocalDateTime.now());
+        stepExecution.setReadCount(memo.readCount());
+        stepExecution.setWriteCount(memo.writeCount());
+        stepExecution.setFilterCount(memo.filterCount());
+        stepExecution.setReadSkipCount(memo.readSkipCount());
+        stepExecution.setProcessSkipCount(memo.processSkipCount());
+        stepExecution.setWriteSkipCount(memo.writeSkipCount());
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        stepExecution.setExitStatus(ExitStatus.COMPLETED.addExitDescription(
+                "Memoized: inputs unchanged since job execution " + memo.jobExecutionId()));
+        stepExecution.setEndTime(LocalDateTime.now());
+        jobRepository.update(stepExecution);
+        System.out.printf("⏭️  STEP: %s skipped - inputs unchanged since job execution #%d (%,d read, %,d written)%n",
+                getName(), memo.jobExecutionId(), memo.readCount(), memo.writeCount());
+    }
+
+    /**
+     * The combined fingerprint, or null when a source cannot be read (the step then simply runs).
+     */
+    private String fingerprint(List<FingerprintSource> sources) {
+        try {
+            return FingerprintSource.combine(sources);
+        } catch (IOException e) {
+            System.out.printf("  ⚠️ %s not memoized: %s%n", getName(), e.getMessage());
+            return null;
+        }
+    }
+}
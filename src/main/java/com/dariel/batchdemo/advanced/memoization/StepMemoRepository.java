@@ -0,0 +1,54 @@
+package com.dariel.batchdemo.advanced.memoization;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * StepMemoRepository - The last completed execution of every memoized step, in the step_memos table.
+ *
+ * A memo holds the fingerprint of what the step read (inputs and configuration), the
+ * fingerprint of what it wrote right after it completed, and its counts, which a
+ * skipped step reports as its own.
+ */
+public class StepMemoRepository {
+
+    public record StepMemo(String stepName, String inputFingerprint, String outputFingerprint,
+                           long readCount, long writeCount, long filterCount,
+                           long readSkipCount, long processSkipCount, long writeSkipCount,
+                           long jobExecutionId) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StepMemoRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public Optional<StepMemo> find(String stepName) {
+        List<StepMemo> memos = jdbcTemplate.query(
+                "SELECT step_name, input_fingerprint, output_fingerprint, read_count, write_count, filter_count, "
+                        + "read_skip_count, process_skip_count, write_skip_count, job_execution_id "
+                        + "FROM step_memos WHERE step_name = ?",
+                (rs, rowNum) -> new StepMemo(rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7), rs.getLong(8), rs.getLong(9),
+                        rs.getLong(10)),
+                stepName);
+        return memos.stream().findFirst();
+    }
+
+    /**
+     * Replaces the memo of the step (only its last completed execution is kept).
+     */
+    public void save(StepMemo memo) {
+        jdbcTemplate.update("DELETE FROM step_memos WHERE step_name = ?", memo.stepName());
+        jdbcTemplate.update("INSERT INTO step_memos(step_name, input_fingerprint, output_fingerprint, read_count, "
+                        + "write_count, filter_count, read_skip_count, process_skip_count, write_skip_count, "
+                        + "job_execution_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                memo.stepName(), memo.inputFingerprint(), memo.outputFingerprint(), memo.readCount(),
+                memo.writeCount(), memo.filterCount(), memo.readSkipCount(), memo.processSkipCount(),
+                memo.writeSkipCount(), memo.jobExecutionId());
+    }
+}
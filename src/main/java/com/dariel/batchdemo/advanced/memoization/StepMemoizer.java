@@ -0,0 +1,114 @@
+package com.dariel.batchdemo.advanced.memoization;
+
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * StepMemoizer - Wraps the steps of a job in MemoizedSteps.
+ *
+ * Every memoized step also depends on two things shared by all steps:
+ * - the configuration: every property under a prefix (batchdemo.), so changing any
+ *   option runs the steps again
+ * - the code: size and time of the application jar (when not running from a jar,
+ *   e.g. in an IDE, code changes are not noticed)
+ *
+ * When disabled, memoize() returns the step unchanged.
+ */
+public class StepMemoizer {
+
+    private final boolean enabled;
+    private final JobRepository jobRepository;
+    private final StepMemoRepository memos;
+    private final TableVersions tableVersions;
+    private final FingerprintSource.FileMode fileMode;
+    private final List<FingerprintSource> sharedInputs;
+
+    public StepMemoizer(boolean enabled, JobRepository jobRepository, StepMemoRepository memos,
+                        TableVersions tableVersions, FingerprintSource.FileMode fileMode,
+                        List<FingerprintSource> sharedInputs) {
+        this.enabled = enabled;
+        this.jobRepository = jobRepository;
+        this.memos = memos;
+        this.tableVersions = tableVersions;
+        this.fileMode = fileMode;
+        this.sharedInputs = List.copyOf(sharedInputs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param inputs       files and tables the step reads
+     * @param outputFiles  files the step writes
+     * @param outputTables tables the step writes
+     */
+    public Step memoize(Step step, List<FingerprintSource> inputs,
+                        List<FingerprintSource> outputFiles, List<String> outputTables) {
+        if (!enabled) {
+            return step;
+        }
+        List<FingerprintSource> allInputs = new ArrayList<>(sharedInputs);
+        allInputs.add(FingerprintSource.value(step.getName()));
+        allInputs.addAll(inputs);
+        return new MemoizedStep(step, jobRepository, memos, tableVersions, allInputs, outputFiles, outputTables);
+    }
+
+    public FingerprintSource file(Resource resource) {
+        return FingerprintSource.resource(resource, fileMode);
+    }
+
+    public FingerprintSource file(String path) {
+        return file(new FileSystemResource(path));
+    }
+
+    public FingerprintSource directory(Path directory, String globPattern) {
+        return FingerprintSource.directory(directory, globPattern, fileMode);
+    }
+
+    public FingerprintSource table(String table) {
+        return FingerprintSource.table(tableVersions, table);
+    }
+
+    /**
+     * Every property whose name starts with {@code prefix}, as "name=value" lines sorted by name.
+     */
+    public static FingerprintSource configuration(ConfigurableEnvironment environment, String prefix) {
+        Map<String, String> properties = new TreeMap<>();
+        for (PropertySource<?> source : environment.getPropertySources()) {
+            if (source instanceof EnumerablePropertySource<?> enumerable) {
+                for (String name : enumerable.getPropertyNames()) {
+                    if (name.startsWith(prefix)) {
+                        properties.put(name, environment.getProperty(name)); // Resolved: overrides win
+                    }
+                }
+            }
+        }
+        StringBuilder configuration = new StringBuilder();
+        properties.forEach((name, value) -> configuration.append(name).append('=').append(value).append('\n'));
+        return FingerprintSource.value(configuration.toString());
+    }
+
+    /**
+     * The jar {@code applicationClass} was loaded from, by size and time (nothing outside a jar).
+     */
+    public static FingerprintSource code(Class<?> applicationClass) {
+        File source = new ApplicationHome(applicationClass).getSource();
+        return source != null && source.isFile()
+                ? FingerprintSource.resource(new FileSystemResource(source), FingerprintSource.FileMode.SIZE_MTIME)
+                : FingerprintSource.value("classes");
+    }
+}
@@ -0,0 +1,47 @@
+package com.dariel.batchdemo.advanced.memoization;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * TableVersions - A change counter per table, in the table_versions table.
+ *
+ * Counting or hashing a big table to notice a change would cost as much as the work
+ * memoization saves. Instead, every step that writes a table bumps its version
+ * (MemoizedStep does it for the output tables of a step), and readers compare
+ * versions. Writes from outside customerJob must bump the version too, or steps
+ * reading the table would be skipped although it changed.
+ */
+public class TableVersions {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TableVersions(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * The current version of {@code table}, 0 if it was never bumped.
+     */
+    public long current(String table) {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM table_versions WHERE table_name = ?", Long.class, table);
+        return versions.isEmpty() ? 0 : versions.get(0);
+    }
+
+    /**
+     * Records a change of {@code table}.
+     *
+     * @return the new version
+     */
+    public long bump(String table) {
+        int updated = jdbcTemplate.update(
+                "UPDATE table_versions SET version = version + 1 WHERE table_name = ?", table);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO table_versions(table_name, version) VALUES (?, 1)", table);
+        }
+        return current(table);
+    }
+}
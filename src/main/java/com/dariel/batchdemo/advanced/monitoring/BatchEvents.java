@@ -0,0 +1,165 @@
+package com.dariel.batchdemo.advanced.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * BatchEvents - Java Flight Recorder events for the batch boundaries.
+ *
+ * Committed by JfrBatchListener. In JDK Mission Control (or {@code jfr print}) they show
+ * up under "Spring Batch", on the same timeline as GC pauses, lock contention and
+ * allocation samples - so a slow chunk can be matched with what the JVM was doing.
+ *
+ * All events are cheap when no recording is running. The per-item read and process
+ * events are disabled in batchdemo.jfc by default because of their volume.
+ */
+public final class BatchEvents {
+
+    private static final String CATEGORY = "Spring Batch";
+
+    private BatchEvents() {
+    }
+
+    @Name("batchdemo.Job")
+    @Label("Job")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class JobEvent extends Event {
+        @Label("Job Name")
+        public String jobName;
+
+        @Label("Job Execution Id")
+        public long jobExecutionId;
+
+        @Label("Status")
+        public String status;
+
+        @Label("Steps")
+        public int stepCount;
+    }
+
+    @Name("batchdemo.Step")
+    @Label("Step")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class StepEvent extends Event {
+        @Label("Job Name")
+        public String jobName;
+
+        @Label("Step Name")
+        public String stepName;
+
+        @Label("Status")
+        public String status;
+
+        @Label("Read Count")
+        public long readCount;
+
+        @Label("Write Count")
+        public long writeCount;
+
+        @Label("Filter Count")
+        public long filterCount;
+
+        @Label("Skip Count")
+        public long skipCount;
+
+        @Label("Commit Count")
+        public long commitCount;
+
+        @Label("Rollback Count")
+        public long rollbackCount;
+    }
+
+    @Name("batchdemo.Chunk")
+    @Label("Chunk")
+    @Category(CATEGORY)
+    @Description("One chunk transaction, with the allocation and CPU time of the thread that ran it")
+    @StackTrace(false)
+    public static class ChunkEvent extends Event {
+        @Label("Job Name")
+        public String jobName;
+
+        @Label("Step Name")
+        public String stepName;
+
+        @Label("Read Count")
+        public long readCount;
+
+        @Label("Write Count")
+        public long writeCount;
+
+        @Label("Filter Count")
+        public long filterCount;
+
+        @Label("Skip Count")
+        public long skipCount;
+
+        @Label("Failed")
+        @Description("The chunk failed and its transaction was rolled back")
+        public boolean failed;
+
+        @Label("Allocated")
+        @DataAmount
+        public long allocatedBytes;
+
+        @Label("CPU Time")
+        @Timespan
+        public long cpuTime;
+    }
+
+    @Name("batchdemo.Read")
+    @Label("Read")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ReadEvent extends Event {
+        @Label("Step Name")
+        public String stepName;
+
+        @Label("Item Type")
+        public String itemType;
+
+        @Label("Failed")
+        public boolean failed;
+    }
+
+    @Name("batchdemo.Process")
+    @Label("Process")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ProcessEvent extends Event {
+        @Label("Step Name")
+        public String stepName;
+
+        @Label("Item Type")
+        public String itemType;
+
+        @Label("Filtered")
+        @Description("The processor returned null")
+        public boolean filtered;
+
+        @Label("Failed")
+        public boolean failed;
+    }
+
+    @Name("batchdemo.Write")
+    @Label("Write")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class WriteEvent extends Event {
+        @Label("Step Name")
+        public String stepName;
+
+        @Label("Item Count")
+        public int itemCount;
+
+        @Label("Failed")
+        public boolean failed;
+    }
+}
@@ -0,0 +1,283 @@
+package com.dariel.batchdemo.advanced.monitoring;
+
+import com.dariel.batchdemo.advanced.monitoring.BatchEvents.ChunkEvent;
+import com.dariel.batchdemo.advanced.monitoring.BatchEvents.JobEvent;
+import com.dariel.batchdemo.advanced.monitoring.BatchEvents.ProcessEvent;
+import com.dariel.batchdemo.advanced.monitoring.BatchEvents.ReadEvent;
+import com.dariel.batchdemo.advanced.monitoring.BatchEvents.StepEvent;
+import com.dariel.batchdemo.advanced.monitoring.BatchEvents.WriteEvent;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.lang.NonNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JfrBatchListener - Turns job, step, chunk, read, process and write boundaries into JFR events.
+ *
+ * ProgressReporter shows how fast the items go through, but not whether the time went into
+ * GC, parsing or JDBC. With this listener registered, a flight recording contains one
+ * event per job, step and chunk (and optionally per item), carrying the job and step names
+ * and the item counts. Chunk events also record, for the thread that ran the chunk:
+ * - the bytes it allocated (ThreadMXBean.getCurrentThreadAllocatedBytes)
+ * - the CPU time it used (ThreadMXBean.getCurrentThreadCpuTime)
+ * so a chunk that took long but used little CPU was waiting (JDBC, locks, GC pauses).
+ *
+ * Record with the bundled settings, which also enable GC, lock and allocation events:
+ *   java -XX:StartFlightRecording:filename=batch.jfr,settings=src/main/resources/jfr/batchdemo.jfc -jar ...
+ *
+ * One listener can serve several steps and threads (partitions): per-chunk state is
+ * kept per thread, job and step events by execution id. Nothing is stored in the
+ * ExecutionContext. When no recording is running, every callback is a cheap no-op.
+ */
+public class JfrBatchListener implements JobExecutionListener, StepExecutionListener, ChunkListener,
+        ItemReadListener<Object>, ItemProcessListener<Object, Object>, ItemWriteListener<Object> {
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean allocations =
+            threads instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemorySupported()
+                    ? hotspot : null;
+
+    private final Map<Long, JobEvent> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, StepEvent> steps = new ConcurrentHashMap<>();
+    private final ThreadLocal<ThreadState> state = ThreadLocal.withInitial(ThreadState::new);
+
+    // ------------------------------------------------------------------ job and step
+
+    @Override
+    public void beforeJob(@NonNull JobExecution jobExecution) {
+        JobEvent event = new JobEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            jobs.put(jobExecution.getId(), event);
+        }
+    }
+
+    @Override
+    public void afterJob(@NonNull JobExecution jobExecution) {
+        JobEvent event = jobs.remove(jobExecution.getId());
+        if (event != null) {
+            event.end();
+            event.jobName = jobExecution.getJobInstance().getJobName();
+            event.jobExecutionId = jobExecution.getId();
+            event.status = jobExecution.getStatus().name();
+            event.stepCount = jobExecution.getStepExecutions().size();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        StepEvent event = new StepEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            steps.put(stepExecution.getId(), event);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        StepEvent event = steps.remove(stepExecution.getId());
+        if (event != null) {
+            event.end();
+            event.jobName = stepExecution.getJobExecution().getJobInstance().getJobName();
+            event.stepName = stepExecution.getStepName();
+            event.status = stepExecution.getStatus().name();
+            event.readCount = stepExecution.getReadCount();
+            event.writeCount = stepExecution.getWriteCount();
+            event.filterCount = stepExecution.getFilterCount();
+            event.skipCount = stepExecution.getSkipCount();
+            event.commitCount = stepExecution.getCommitCount();
+            event.rollbackCount = stepExecution.getRollbackCount();
+            event.commit();
+        }
+        return stepExecution.getExitStatus();
+    }
+
+    // ------------------------------------------------------------------ chunk
+
+    @Override
+    public void beforeChunk(@NonNull ChunkContext context) {
+        ThreadState current = state.get();
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        current.stepName = stepExecution.getStepName();
+
+        ChunkEvent event = new ChunkEvent();
+        if (!event.isEnabled()) {
+            current.chunk = null;
+            return;
+        }
+        current.chunk = event;
+        current.readCount = stepExecution.getReadCount();
+        current.writeCount = stepExecution.getWriteCount();
+        current.filterCount = stepExecution.getFilterCount();
+        current.skipCount = stepExecution.getSkipCount();
+        current.allocatedBytes = allocations != null ? allocations.getCurrentThreadAllocatedBytes() : 0;
+        current.cpuTime = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+        event.begin();
+    }
+
+    @Override
+    public void afterChunk(@NonNull ChunkContext context) {
+        commitChunk(context, false);
+    }
+
+    @Override
+    public void afterChunkError(@NonNull ChunkContext context) {
+        commitChunk(context, true);
+    }
+
+    private void commitChunk(ChunkContext context, boolean failed) {
+        ThreadState current = state.get();
+        ChunkEvent event = current.chunk;
+        if (event == null) {
+            return;
+        }
+        current.chunk = null;
+        event.end();
+
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        event.jobName = stepExecution.getJobExecution().getJobInstance().getJobName();
+        event.stepName = stepExecution.getStepName();
+        event.readCount = stepExecution.getReadCount() - current.readCount;
+        event.writeCount = stepExecution.getWriteCount() - current.writeCount;
+        event.filterCount = stepExecution.getFilterCount() - current.filterCount;
+        event.skipCount = stepExecution.getSkipCount() - current.skipCount;
+        event.failed = failed;
+        if (allocations != null) {
+            event.allocatedBytes = allocations.getCurrentThreadAllocatedBytes() - current.allocatedBytes;
+        }
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            event.cpuTime = threads.getCurrentThreadCpuTime() - current.cpuTime;
+        }
+        event.commit();
+    }
+
+    // ------------------------------------------------------------------ items
+
+    @Override
+    public void beforeRead() {
+        ReadEvent event = new ReadEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            state.get().read = event;
+        }
+    }
+
+    @Override
+    public void afterRead(@NonNull Object item) {
+        commitRead(item.getClass().getSimpleName(), false);
+    }
+
+    @Override
+    public void onReadError(@NonNull Exception ex) {
+        commitRead(null, true);
+    }
+
+    private void commitRead(String itemType, boolean failed) {
+        ThreadState current = state.get();
+        ReadEvent event = current.read;
+        if (event != null) {
+            current.read = null;
+            event.end();
+            event.stepName = current.stepName;
+            event.itemType = itemType;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void beforeProcess(@NonNull Object item) {
+        ProcessEvent event = new ProcessEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            state.get().process = event;
+        }
+    }
+
+    @Override
+    public void afterProcess(@NonNull Object item, Object result) {
+        commitProcess(item, result == null, false);
+    }
+
+    @Override
+    public void onProcessError(@NonNull Object item, @NonNull Exception e) {
+        commitProcess(item, false, true);
+    }
+
+    private void commitProcess(Object item, boolean filtered, boolean failed) {
+        ThreadState current = state.get();
+        ProcessEvent event = current.process;
+        if (event != null) {
+            current.process = null;
+            event.end();
+            event.stepName = current.stepName;
+            event.itemType = item.getClass().getSimpleName();
+            event.filtered = filtered;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void beforeWrite(@NonNull Chunk<?> items) {
+        WriteEvent event = new WriteEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            state.get().write = event;
+        }
+    }
+
+    @Override
+    public void afterWrite(@NonNull Chunk<?> items) {
+        commitWrite(items, false);
+    }
+
+    @Override
+    public void onWriteError(@NonNull Exception exception, @NonNull Chunk<?> items) {
+        commitWrite(items, true);
+    }
+
+    private void commitWrite(Chunk<?> items, boolean failed) {
+        ThreadState current = state.get();
+        WriteEvent event = current.write;
+        if (event != null) {
+            current.write = null;
+            event.end();
+            event.stepName = current.stepName;
+            event.itemCount = items.size();
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * What one thread is in the middle of: its chunk (with the counters at its start) and item.
+     */
+    private static final class ThreadState {
+        String stepName;
+        ChunkEvent chunk;
+        long readCount;
+        long writeCount;
+        long filterCount;
+        long skipCount;
+        long allocatedBytes;
+        long cpuTime;
+        ReadEvent read;
+        ProcessEvent process;
+        WriteEvent write;
+    }
+}
@@ -0,0 +1,247 @@
+package com.dariel.batchdemo.advanced.monitoring;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * ProgressReporter - Step progress on the console, at most once per interval.
+ *
+ * Printing a line per chunk (25 items) means thousands of synchronous console writes
+ * for a large file. Instead:
+ * - After each chunk, the step thread only publishes its counters (read, written,
+ *   skipped, rolled back) into atomic fields - no locks, no I/O, no ExecutionContext
+ * - A background thread prints one line per running step every {@code interval},
+ *   with the current throughput and, when the total is known, the percentage and ETA
+ * - When a step ends, one summary line is printed
+ *
+ * For the ETA, register an estimate of a step's items with {@link #estimateItems}
+ * (for example {@link #estimateLines} of its input file). Steps are matched by name;
+ * partition steps ("processFileStep:partition-a.csv") also match their worker step name.
+ */
+public class ProgressReporter implements StepExecutionListener, ChunkListener, AutoCloseable {
+
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private final long intervalNanos;
+    private final PrintStream out;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<Long, StepProgress> running = new ConcurrentHashMap<>();
+    private final Map<String, ToLongFunction<StepExecution>> estimators = new ConcurrentHashMap<>();
+
+    public ProgressReporter(Duration interval) {
+        this(interval, System.out);
+    }
+
+    public ProgressReporter(Duration interval, PrintStream out) {
+        this.intervalNanos = interval.toNanos();
+        this.out = out;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::reportNow, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers how many items a step is expected to read (computed when the step starts; < 0 = unknown).
+     */
+    public void estimateItems(String stepName, ToLongFunction<StepExecution> estimator) {
+        estimators.put(stepName, estimator);
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        String stepName = stepExecution.getStepName();
+        ToLongFunction<StepExecution> estimator = estimators.get(stepName);
+        if (estimator == null && stepName.indexOf(':') > 0) {
+            estimator = estimators.get(stepName.substring(0, stepName.indexOf(':')));
+        }
+        long expected = estimator != null ? estimator.applyAsLong(stepExecution) : -1;
+        running.put(stepExecution.getId(), new StepProgress(stepName, expected, System.nanoTime()));
+    }
+
+    @Override
+    public void afterChunk(@NonNull ChunkContext context) {
+        publish(context, false);
+    }
+
+    @Override
+    public void afterChunkError(@NonNull ChunkContext context) {
+        publish(context, true);
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        StepProgress progress = running.remove(stepExecution.getId());
+        if (progress != null) {
+            double seconds = (System.nanoTime() - progress.startNanos) / 1e9;
+            out.printf("  ✓ %s: %,d read, %,d written, %,d skipped in %.1f s (%,.0f items/s)%n",
+                    progress.stepName, stepExecution.getReadCount(), stepExecution.getWriteCount(),
+                    stepExecution.getSkipCount(), seconds, stepExecution.getReadCount() / Math.max(seconds, 1e-3));
+        }
+        return stepExecution.getExitStatus();
+    }
+
+    /**
+     * Prints one line per running step that made progress since the last report.
+     * Runs on the background thread every interval.
+     */
+    public void reportNow() {
+        long now = System.nanoTime();
+        for (StepProgress progress : running.values()) {
+            long read = progress.read.get();
+            if (read == progress.reportedRead) {
+                continue; // Nothing new (or no chunk committed yet)
+            }
+            double sinceLastReport = (now - progress.reportedNanos) / 1e9;
+            double throughput = (read - progress.reportedRead) / sinceLastReport;
+            progress.reportedRead = read;
+            progress.reportedNanos = now;
+
+            StringBuilder line = new StringBuilder(128);
+            line.append(String.format("  ⏳ %s: %,d read, %,d written", progress.stepName, read, progress.written.get()));
+            long skipped = progress.skipped.get();
+            if (skipped > 0) {
+                line.append(String.format(", %,d skipped", skipped));
+            }
+            long rolledBack = progress.rolledBack.get();
+            if (rolledBack > 0) {
+                line.append(String.format(", %,d chunks rolled back", rolledBack));
+            }
+            line.append(String.format(" | %,.0f items/s", throughput));
+            if (progress.expected > 0) {
+                double averageRate = read / ((now - progress.startNanos) / 1e9);
+                long remaining = Math.max(progress.expected - read, 0);
+                line.append(String.format(" | ~%d%% | ETA %s", Math.min(100, read * 100 / progress.expected),
+                        formatDuration((long) (remaining / averageRate))));
+            }
+            out.println(line);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Estimates the number of data lines of a file from its size and the line breaks in
+     * three 64 KB samples (start, middle, end; exact for smaller files). Returns -1 if the
+     * resource is not a plain file on disk (e.g. inside the jar, or gzip-compressed).
+     */
+    public static long estimateLines(Resource resource, int headerLines) {
+        try {
+            String filename = resource.getFilename();
+            if (!resource.isFile() || filename == null || filename.endsWith(".gz")) {
+                return -1;
+            }
+            try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                ByteBuffer sample = ByteBuffer.allocate(SAMPLE_BYTES);
+                if (size <= 3L * SAMPLE_BYTES) {
+                    long lines = 0;
+                    byte last = '\n';
+                    for (long position = 0; position < size; position += sample.limit()) {
+                        sample.clear();
+                        channel.read(sample, position);
+                        sample.flip();
+                        lines += countLineBreaks(sample);
+                        last = sample.get(sample.limit() - 1);
+                    }
+                    if (last != '\n') {
+                        lines++; // Last line without a line break
+                    }
+                    return Math.max(lines - headerLines, 0);
+                }
+                // Line lengths drift through a file (ids get longer), so average over three places
+                long lines = 0;
+                for (long position : new long[] {0, (size - SAMPLE_BYTES) / 2, size - SAMPLE_BYTES}) {
+                    sample.clear();
+                    while (sample.hasRemaining() && channel.read(sample, position + sample.position()) > 0) {
+                        // Fill the whole sample
+                    }
+                    sample.flip();
+                    lines += countLineBreaks(sample);
+                }
+                return lines == 0 ? -1 : Math.max(size * lines / (3L * SAMPLE_BYTES) - headerLines, 0);
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long countLineBreaks(ByteBuffer buffer) {
+        long lines = 0;
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private void publish(ChunkContext context, boolean failed) {
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        StepProgress progress = running.get(stepExecution.getId());
+        if (progress == null) {
+            return;
+        }
+        // Single writer per step: plain ordered stores, read by the reporter thread
+        progress.read.setRelease(stepExecution.getReadCount());
+        progress.written.setRelease(stepExecution.getWriteCount());
+        progress.skipped.setRelease(stepExecution.getSkipCount());
+        if (failed) {
+            progress.rolledBack.incrementAndGet();
+        }
+    }
+
+    private static String formatDuration(long seconds) {
+        return seconds >= 3600
+                ? String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                : String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    /**
+     * Counters of one running step. The atomics are written by the step thread,
+     * the reported* fields only by the reporter thread.
+     */
+    private static final class StepProgress {
+        final String stepName;
+        final long expected;
+        final long startNanos;
+        final AtomicLong read = new AtomicLong();
+        final AtomicLong written = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong rolledBack = new AtomicLong();
+        long reportedRead;
+        long reportedNanos;
+
+        StepProgress(String stepName, long expected, long startNanos) {
+            this.stepName = stepName;
+            this.expected = expected;
+            this.startNanos = startNanos;
+            this.reportedNanos = startNanos;
+        }
+    }
+}
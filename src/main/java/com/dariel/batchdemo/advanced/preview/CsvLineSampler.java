@@ -0,0 +1,199 @@
+package com.dariel.batchdemo.advanced.preview;
+
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * CsvLineSampler - Draws a random sample of the lines of one or more CSV files.
+ *
+ * Plain files are sampled by SEEKING: a random byte offset is drawn and the line that
+ * contains it is read, so only the sampled lines are read, whatever the file size.
+ * A line is drawn with probability (its length / total bytes): long lines are more
+ * likely. Every draw carries the inverse of that probability as its weight, and the
+ * weighted estimates (SampleEstimator) correct for it exactly (Hansen-Hurwitz).
+ * - RANDOM: every offset uniform over all bytes
+ * - STRATIFIED: the bytes are cut into one stratum per draw, with one offset in each,
+ *   so every region of the input is represented (e.g. a file sorted by country)
+ *
+ * Inputs that cannot be seeked (gzip files, resources inside the jar) are read from
+ * start to end with RESERVOIR sampling instead: the whole input is read, so this is
+ * only as fast as one pass over the lines.
+ *
+ * The first line of every input is the header. A draw can land on it: it is returned
+ * as a draw without a line, which counts as "no customer" in the estimates.
+ */
+public class CsvLineSampler {
+
+    public enum Mode { RANDOM, STRATIFIED }
+
+    /**
+     * One draw: a data line (null for a header) and how many lines it stands for (1 / probability of drawing it).
+     */
+    public record Draw(String line, double weight) {
+    }
+
+    /**
+     * The draws, and the finite population correction for their variance (1 when drawn with replacement).
+     */
+    public record Sample(List<Draw> draws, boolean seekBased, double finitePopulationCorrection) {
+    }
+
+    private static final int INITIAL_WINDOW = 4096;
+
+    private final int sampleSize;
+    private final Mode mode;
+    private final Random random;
+
+    public CsvLineSampler(int sampleSize, Mode mode, long seed) {
+        if (sampleSize < 2) {
+            throw new IllegalArgumentException("At least 2 draws are needed to estimate an error, got " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        this.mode = mode;
+        this.random = new Random(seed);
+    }
+
+    public Sample sample(List<Resource> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Resource input : inputs) {
+            if (!input.isFile() || input.getFilename() == null || input.getFilename().endsWith(".gz")) {
+                return reservoirSample(inputs);
+            }
+            files.add(input.getFile().toPath());
+        }
+        return seekSample(files);
+    }
+
+    private Sample seekSample(List<Path> files) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            long[] starts = new long[files.size() + 1]; // Global offset of each file; the last is the total
+            for (int i = 0; i < files.size(); i++) {
+                FileChannel channel = FileChannel.open(files.get(i), StandardOpenOption.READ);
+                channels.add(channel);
+                starts[i + 1] = starts[i] + channel.size();
+            }
+            long totalBytes = starts[files.size()];
+            if (totalBytes == 0) {
+                return new Sample(List.of(), true, 1.0);
+            }
+
+            List<Draw> draws = new ArrayList<>(sampleSize);
+            for (int i = 0; i < sampleSize; i++) {
+                double position = mode == Mode.STRATIFIED ? i + random.nextDouble() : random.nextDouble() * sampleSize;
+                long offset = Math.min(totalBytes - 1, (long) (position * totalBytes / sampleSize));
+                int file = fileOf(starts, offset);
+                FileChannel channel = channels.get(file);
+                LineAt line = lineAt(channel, offset - starts[file]);
+                double weight = (double) totalBytes / line.length();
+                draws.add(new Draw(line.start() == 0 ? null : line.text(), weight));
+            }
+            return new Sample(draws, true, 1.0);
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    private Sample reservoirSample(List<Resource> inputs) throws IOException {
+        List<String> reservoir = new ArrayList<>(sampleSize);
+        long lines = 0;
+        for (Resource input : inputs) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(input.getInputStream(), StandardCharsets.UTF_8))) {
+                reader.readLine(); // Header
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines++;
+                    if (reservoir.size() < sampleSize) {
+                        reservoir.add(line);
+                    } else {
+                        // Algorithm R: the line replaces a random slot with probability sampleSize / lines
+                        long slot = (long) (random.nextDouble() * lines);
+                        if (slot < sampleSize) {
+                            reservoir.set((int) slot, line);
+                        }
+                    }
+                }
+            }
+        }
+        List<Draw> draws = new ArrayList<>(reservoir.size());
+        for (String line : reservoir) {
+            draws.add(new Draw(line, lines));
+        }
+        // Drawn without replacement: the variance shrinks as the sample approaches the population
+        double correction = lines > 1 ? Math.max(0.0, (double) (lines - reservoir.size()) / (lines - 1)) : 0.0;
+        return new Sample(draws, false, correction);
+    }
+
+    private static int fileOf(long[] starts, long offset) {
+        int file = 0;
+        while (offset >= starts[file + 1]) {
+            file++;
+        }
+        return file;
+    }
+
+    /**
+     * The line containing byte {@code offset}: its start, its length including the line break, and its text.
+     */
+    private static LineAt lineAt(FileChannel channel, long offset) throws IOException {
+        long size = channel.size();
+        int window = INITIAL_WINDOW;
+        while (true) {
+            long from = Math.max(0, offset - window);
+            long to = Math.min(size, offset + window);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0) {
+                // Positional reads until the window is full
+            }
+            byte[] bytes = buffer.array();
+
+            int relative = (int) (offset - from);
+            int start = -1;
+            for (int i = relative - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    start = i + 1;
+                    break;
+                }
+            }
+            if (start < 0 && from == 0) {
+                start = 0;
+            }
+            int end = -1;
+            for (int i = relative; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    end = i + 1;
+                    break;
+                }
+            }
+            if (end < 0 && to == size) {
+                end = bytes.length;
+            }
+            if (start >= 0 && end >= 0) {
+                int textEnd = end;
+                while (textEnd > start && (bytes[textEnd - 1] == '\n' || bytes[textEnd - 1] == '\r')) {
+                    textEnd--;
+                }
+                String text = new String(bytes, start, textEnd - start, StandardCharsets.UTF_8);
+                return new LineAt(from + start, end - start, text);
+            }
+            window *= 2; // A line longer than the window
+        }
+    }
+
+    private record LineAt(long start, int length, String text) {
+    }
+}
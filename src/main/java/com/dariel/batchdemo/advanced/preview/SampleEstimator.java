@@ -0,0 +1,117 @@
+package com.dariel.batchdemo.advanced.preview;
+
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import com.dariel.batchdemo.advanced.domain.EstimatedCountryStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SampleEstimator - Scales the customers of a weighted sample up to per-country estimates.
+ *
+ * Every draw i has a weight w_i (1 / probability of drawing it, see CsvLineSampler).
+ * For a country, let x_i = w_i if draw i is a valid customer of that country (else 0)
+ * and y_i = x_i * purchase amount. Over the n draws:
+ * - customer count = mean(x), total revenue = mean(y), each with a standard error of
+ *   sd / sqrt(n)
+ * - average purchase amount = total / count, a ratio estimate whose standard error is
+ *   sd(y - average * x) / sqrt(n) / count
+ * A margin is the standard error times the z-score of the confidence level
+ * (1.96 for 95%).
+ *
+ * Draws that are not a valid customer (header, unparseable or rejected lines) count
+ * as draws of every country with x = y = 0: they are part of the input too.
+ *
+ * Only sums are kept per country, so memory does not depend on the sample size.
+ */
+public class SampleEstimator {
+
+    private final Map<String, Sums> byCountry = new TreeMap<>();
+    private final Sums all = new Sums();
+    private long draws;
+
+    /**
+     * A draw that is a valid customer.
+     */
+    public void add(String country, double purchaseAmount, double weight) {
+        draws++;
+        byCountry.computeIfAbsent(country, c -> new Sums()).add(purchaseAmount, weight);
+        all.add(purchaseAmount, weight);
+    }
+
+    /**
+     * A draw that is not a customer.
+     */
+    public void addNonCustomer() {
+        draws++;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * The estimates of every country in the sample, by country.
+     *
+     * @param zScore                     z-score of the confidence level, e.g. 1.96 for 95%
+     * @param finitePopulationCorrection multiplies the variances (1 for draws with replacement)
+     */
+    public List<EstimatedCountryStatistics> estimates(double zScore, double finitePopulationCorrection) {
+        List<EstimatedCountryStatistics> estimates = new ArrayList<>(byCountry.size());
+        byCountry.forEach((country, sums) -> estimates.add(estimate(country, sums, zScore, finitePopulationCorrection)));
+        return estimates;
+    }
+
+    /**
+     * The estimates over all countries (country "ALL").
+     */
+    public EstimatedCountryStatistics total(double zScore, double finitePopulationCorrection) {
+        return estimate("ALL", all, zScore, finitePopulationCorrection);
+    }
+
+    private EstimatedCountryStatistics estimate(String country, Sums sums, double zScore,
+                                                double finitePopulationCorrection) {
+        double n = draws;
+        double count = sums.x / n;
+        double total = sums.y / n;
+        double average = count > 0 ? total / count : 0.0;
+
+        double countError = standardError(sums.xx, sums.x, n, finitePopulationCorrection);
+        double totalError = standardError(sums.yy, sums.y, n, finitePopulationCorrection);
+        // Residuals d = y - average * x sum to zero by construction of the average
+        double residualSquares = Math.max(0.0, sums.yy - 2 * average * sums.xy + average * average * sums.xx);
+        double averageError = count > 0
+                ? Math.sqrt(residualSquares / (n - 1) / n * finitePopulationCorrection) / count
+                : 0.0;
+
+        CountryStatistics statistics = new CountryStatistics(country, Math.round(count), total, average);
+        return new EstimatedCountryStatistics(statistics, sums.customers,
+                zScore * countError, zScore * totalError, zScore * averageError);
+    }
+
+    private static double standardError(double sumOfSquares, double sum, double n, double finitePopulationCorrection) {
+        double variance = Math.max(0.0, (sumOfSquares - sum * sum / n) / (n - 1));
+        return Math.sqrt(variance / n * finitePopulationCorrection);
+    }
+
+    private static final class Sums {
+        long customers;
+        double x;
+        double xx;
+        double y;
+        double yy;
+        double xy;
+
+        void add(double purchaseAmount, double weight) {
+            double amount = weight * purchaseAmount;
+            customers++;
+            x += weight;
+            xx += weight * weight;
+            y += amount;
+            yy += amount * amount;
+            xy += weight * amount;
+        }
+    }
+}
@@ -37,6 +37,12 @@ public class CountryStatisticsProcessor implements ItemProcessor<CountryStatisti
             statistics.setAveragePurchaseAmount(round(statistics.getAveragePurchaseAmount()));
         }
 
+        if (statistics.getMedianPurchaseAmount() != null) {
+            statistics.setMedianPurchaseAmount(round(statistics.getMedianPurchaseAmount()));
+            statistics.setP95PurchaseAmount(round(statistics.getP95PurchaseAmount()));
+            statistics.setP99PurchaseAmount(round(statistics.getP99PurchaseAmount()));
+        }
+
         // Ensure country name is not null
         if (statistics.getCountry() == null || statistics.getCountry().isBlank()) {
             statistics.setCountry("UNKNOWN");
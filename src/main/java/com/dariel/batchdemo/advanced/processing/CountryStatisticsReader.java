@@ -1,22 +1,46 @@
 package com.dariel.batchdemo.advanced.processing;
 
+import com.dariel.batchdemo.advanced.aggregation.CountryAggregation;
+import com.dariel.batchdemo.advanced.aggregation.ExternalHashAggregator;
+import com.dariel.batchdemo.advanced.aggregation.GroupingKey;
+import com.dariel.batchdemo.advanced.aggregation.HyperLogLog;
 import com.dariel.batchdemo.advanced.domain.CountryStatistics;
 import com.dariel.batchdemo.advanced.domain.Customer;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.lang.NonNull;
 
 import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Function;
 
 /**
  * CountryStatisticsReader - Advanced reader that aggregates customer data by country.
@@ -24,33 +48,190 @@ import java.util.Map;
  * This demonstrates a more complex reader pattern:
  * 1. Reads all customers from the database
  * 2. Groups them by country
- * 3. Calculates statistics (count, total revenue, average purchase)
+ * 3. Calculates statistics (count, total revenue, average purchase, percentiles,
+ *    approximate unique emails and email domains)
  * 4. Returns CountryStatistics objects for each country
  * 
  * This is more advanced than a simple CSV reader because it:
  * - Reads from a database (not a file)
  * - Performs aggregation logic
  * - Transforms data structure (Customer -> CountryStatistics)
+ * 
+ * The grouping key is pluggable (country by default), and grouping runs through an
+ * ExternalHashAggregator: when the groups outgrow the memory budget they are spilled
+ * to partition files on disk and merged afterwards, so high-cardinality keys such as
+ * email domains cannot run the step out of memory.
+ * 
+ * RESTARTS: the aggregation is checkpointed. Customers are consumed in slices of
+ * {@code checkpointInterval}, one slice per chunk: beforeChunk() aggregates the slice
+ * and the step's {@link #completionPolicy completion policy} ends that chunk before
+ * its first read, so the chunk commits without items and update() saves the partial
+ * groups and the position of the customer cursor in the step's ExecutionContext,
+ * like any other reader state. The slices never reach the processor, the writer or
+ * the step's counts. A restarted aggregateStep reloads the partial groups, moves the
+ * cursor to the last committed slice and carries on from there.
+ * Once the aggregation is complete, the final groups are written once to a checkpoint
+ * file in the spill directory; the ExecutionContext only keeps its path and the number
+ * of statistics already handed out, so a restart does not read the customers at all
+ * and does not write any statistics twice. The file is deleted when the step completes
+ * (a failed run that is never restarted leaves it behind).
+ * 
+ * PARALLEL: with a PartitionedAggregation, the customers are split into partitions
+ * (id ranges, or shards) that are aggregated on worker threads, and their partial
+ * groups are merged before the statistics are handed to the processor. That happens
+ * in the first chunk, without slices.
+ * 
+ * Checkpoints stop once the groups spill to disk (spill files are temporary and the
+ * ExecutionContext is not the place for that much data); a restart after that point
+ * resumes from the last checkpoint taken before the spill.
  */
-public class CountryStatisticsReader implements ItemStreamReader<CountryStatistics> {
+public class CountryStatisticsReader implements ItemStreamReader<CountryStatistics>, ChunkListener,
+        StepExecutionListener {
+
+    private static final String PHASE_KEY = "countryStatisticsReader.phase";
+    private static final String GROUPS_KEY = "countryStatisticsReader.groups";
+    private static final String GROUPS_FILE_KEY = "countryStatisticsReader.groups.file";
+    private static final String CUSTOMERS_KEY = "countryStatisticsReader.customers";
+    private static final String EMITTED_KEY = "countryStatisticsReader.emitted";
+
+    private static final String AGGREGATING = "AGGREGATING";
+    private static final String COMPLETE = "COMPLETE";
+
+    private final ItemStreamReader<Customer> customerReader;
+    private final Function<Customer, String> groupingKey;
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    private final int checkpointInterval;
+    private final int distinctCountPrecision;
+    private PartitionedAggregation partitionedAggregation;
 
-    private final DataSource dataSource;
-    private JdbcCursorItemReader<Customer> customerReader;
-    private Iterator<CountryStatistics> statisticsIterator;
-    private List<CountryStatistics> statisticsList;
+    private boolean customerReaderOpen;
+
+    // Restored from the ExecutionContext on restart
+    private List<CountryAggregation> restoredGroups;
+    private boolean restoredComplete;
+    private long customerCount;
+    private int emitted;
+
+    private ExternalHashAggregator aggregator;
+    private Iterator<CountryAggregation> aggregationIterator;
+    private boolean slicePending; // A slice was aggregated in this chunk and customers are left
+    private Path groupsFile;      // Final groups, written once (null if they were spilled)
 
     public CountryStatisticsReader(DataSource dataSource) {
-        this.dataSource = dataSource;
+        this(databaseCustomerReader(dataSource));
+    }
+
+    /**
+     * Aggregates customers from any source, e.g. a ColumnarCustomerReader over the
+     * snapshot written by processStep instead of a SQL scan of the customers table.
+     */
+    public CountryStatisticsReader(ItemStreamReader<Customer> customerReader) {
+        this(customerReader, GroupingKey.COUNTRY, Long.MAX_VALUE, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param groupingKey       which group each customer belongs to
+     * @param memoryBudgetBytes estimated heap the groups may use before spilling to disk
+     * @param spillDirectory    where spill files are written
+     */
+    public CountryStatisticsReader(ItemStreamReader<Customer> customerReader,
+                                   Function<Customer, String> groupingKey,
+                                   long memoryBudgetBytes,
+                                   Path spillDirectory) {
+        this(customerReader, groupingKey, memoryBudgetBytes, spillDirectory, 0);
+    }
+
+    /**
+     * @param checkpointInterval number of customers per slice (0 = no slices, no checkpoints)
+     */
+    public CountryStatisticsReader(ItemStreamReader<Customer> customerReader,
+                                   Function<Customer, String> groupingKey,
+                                   long memoryBudgetBytes,
+                                   Path spillDirectory,
+                                   int checkpointInterval) {
+        this(customerReader, groupingKey, memoryBudgetBytes, spillDirectory, checkpointInterval,
+                HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param distinctCountPrecision HyperLogLog precision of the unique email / domain counts
+     *                               (standard error about 1.04 / sqrt(2^precision))
+     */
+    public CountryStatisticsReader(ItemStreamReader<Customer> customerReader,
+                                   Function<Customer, String> groupingKey,
+                                   long memoryBudgetBytes,
+                                   Path spillDirectory,
+                                   int checkpointInterval,
+                                   int distinctCountPrecision) {
+        this.customerReader = customerReader;
+        this.groupingKey = groupingKey;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+        this.checkpointInterval = checkpointInterval;
+        this.distinctCountPrecision = distinctCountPrecision;
+    }
+
+    /**
+     * Aggregates the customers in parallel partitions (key ranges, shards) instead of
+     * reading the customer reader (which is then only used to resume a checkpoint of a
+     * serial run). Partial groups of a parallel aggregation are not checkpointed.
+     */
+    public void setPartitionedAggregation(PartitionedAggregation partitionedAggregation) {
+        this.partitionedAggregation = partitionedAggregation;
+    }
+
+    /**
+     * Chunk completion policy for the step reading from this reader: chunks of
+     * {@code chunkSize} statistics, except that while customers are being aggregated
+     * every chunk ends before its first read, so it only commits the slice.
+     */
+    public CompletionPolicy completionPolicy(int chunkSize) {
+        return new SimpleCompletionPolicy(chunkSize) {
+            @Override
+            public RepeatContext start(RepeatContext parent) {
+                RepeatContext context = super.start(parent);
+                if (slicePending) {
+                    context.setCompleteOnly();
+                }
+                return context;
+            }
+        };
+    }
+
+    /**
+     * Aggregates the next slice of customers at the start of every chunk, until none are left.
+     * The step registers the reader as a chunk listener by itself.
+     */
+    @Override
+    public void beforeChunk(@NonNull ChunkContext context) {
+        slicePending = false;
+        if (checkpointInterval <= 0 || aggregationIterator != null) {
+            return;
+        }
+        try {
+            if (aggregator == null) {
+                startAggregation();
+            }
+            slicePending = !aggregateSlice(customerCount + checkpointInterval);
+        } catch (Exception e) {
+            throw new ItemStreamException("Could not aggregate the customers", e);
+        }
     }
 
     @Override
     public CountryStatistics read() throws Exception {
-        if (statisticsIterator == null) {
-            aggregateData();
+        if (aggregationIterator == null) {
+            if (aggregator == null) {
+                startAggregation();
+            }
+            aggregateSlice(Long.MAX_VALUE); // Whatever beforeChunk() left, if anything
+            finishAggregation();
         }
 
-        if (statisticsIterator != null && statisticsIterator.hasNext()) {
-            return statisticsIterator.next();
+        if (aggregationIterator.hasNext()) {
+            emitted++;
+            return aggregationIterator.next().toStatistics();
         }
 
         return null; // No more items
@@ -58,101 +239,272 @@ public class CountryStatisticsReader implements ItemStreamReader<CountryStatisti
 
     @Override
     public void open(ExecutionContext executionContext) throws ItemStreamException {
-        // Initialize the customer reader
-        customerReader = new JdbcCursorItemReaderBuilder<Customer>()
-                .name("customerReader")
-                .dataSource(dataSource)
-                .sql("SELECT id, first_name, last_name, email, country, purchase_amount FROM customers ORDER BY country")
-                .rowMapper(new BeanPropertyRowMapper<Customer>() {
-                    @Override
-                    public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
-                        Customer customer = new Customer();
-                        customer.setId(rs.getLong("id"));
-                        customer.setFirstName(rs.getString("first_name"));
-                        customer.setLastName(rs.getString("last_name"));
-                        customer.setEmail(rs.getString("email"));
-                        customer.setCountry(rs.getString("country"));
-                        customer.setPurchaseAmount(rs.getDouble("purchase_amount"));
-                        return customer;
-                    }
-                })
-                .build();
-        
-        customerReader.open(executionContext);
+        String phase = executionContext.getString(PHASE_KEY, null);
+        emitted = executionContext.getInt(EMITTED_KEY, 0);
+        customerCount = executionContext.getLong(CUSTOMERS_KEY, 0L);
+        slicePending = false;
+
+        if (COMPLETE.equals(phase)) {
+            String file = executionContext.getString(GROUPS_FILE_KEY, null);
+            if (file != null && Files.exists(Path.of(file))) {
+                groupsFile = Path.of(file);
+                restoredGroups = loadGroups(groupsFile);
+                restoredComplete = true;
+                return; // All customers were aggregated before the restart
+            }
+            // Spilled (or lost) groups: aggregate again and skip what was emitted
+        } else if (executionContext.containsKey(GROUPS_KEY)) {
+            restoredGroups = readGroups((byte[]) executionContext.get(GROUPS_KEY));
+        }
+
+        if (restoredGroups != null) {
+            // Resume the cursor where the saved partial groups end
+            customerReader.open(executionContext);
+        } else if (partitionedAggregation != null) {
+            customerCount = 0;
+            return; // The partitions are queried by the worker threads
+        } else {
+            // No usable checkpoint: start from the first customer
+            customerCount = 0;
+            customerReader.open(new ExecutionContext());
+        }
+        customerReaderOpen = true;
     }
 
     @Override
     public void update(ExecutionContext executionContext) throws ItemStreamException {
-        if (customerReader != null) {
-            customerReader.update(executionContext);
+        if (aggregationIterator == null) {
+            saveSlice(executionContext);
+            return;
+        }
+        executionContext.putString(PHASE_KEY, COMPLETE);
+        executionContext.putLong(CUSTOMERS_KEY, customerCount);
+        executionContext.putInt(EMITTED_KEY, emitted);
+        executionContext.remove(GROUPS_KEY); // The partial groups are not needed anymore
+        if (groupsFile != null) {
+            executionContext.putString(GROUPS_FILE_KEY, groupsFile.toString());
+        } else {
+            // Spilled groups are not saved: a restart aggregates again and skips what was emitted
+            executionContext.remove(GROUPS_FILE_KEY);
         }
     }
 
     @Override
     public void close() throws ItemStreamException {
-        if (customerReader != null) {
+        if (customerReaderOpen) {
             customerReader.close();
+            customerReaderOpen = false;
         }
+        // Aggregate again on the next run of the step
+        aggregationIterator = null;
+        groupsFile = null; // Kept on disk for a restart, deleted by afterStep() on success
+        restoredGroups = null;
+        restoredComplete = false;
+        if (aggregator != null) {
+            try {
+                aggregator.close(); // Deletes any spill files
+            } catch (IOException e) {
+                throw new ItemStreamException("Could not clean up aggregation spill files", e);
+            } finally {
+                aggregator = null;
+            }
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED && groupsFile != null) {
+            try {
+                Files.deleteIfExists(groupsFile);
+            } catch (IOException e) {
+                throw new ItemStreamException("Could not delete " + groupsFile, e);
+            }
+        }
+        return stepExecution.getExitStatus();
+    }
+
+    /**
+     * Default source: all customers from the database, ordered by country.
+     * The id breaks ties, so a restart that skips the customers already read skips
+     * exactly the same rows.
+     */
+    public static JdbcCursorItemReader<Customer> databaseCustomerReader(DataSource dataSource) {
+        return databaseCustomerReader(dataSource, "customerReader");
+    }
+
+    /**
+     * @param name prefix of the cursor position in the ExecutionContext (unique per step)
+     */
+    public static JdbcCursorItemReader<Customer> databaseCustomerReader(DataSource dataSource, String name) {
+        return new JdbcCursorItemReaderBuilder<Customer>()
+                .name(name)
+                .dataSource(dataSource)
+                .sql("SELECT id, first_name, last_name, email, country, purchase_amount FROM customers ORDER BY country, id")
+                .rowMapper(new BeanPropertyRowMapper<Customer>() {
+                    @Override
+                    public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
+                        return mapCustomer(rs);
+                    }
+                })
+                .build();
+    }
+
+    static Customer mapCustomer(ResultSet rs) throws SQLException {
+        Customer customer = new Customer();
+        customer.setId(rs.getLong("id"));
+        customer.setFirstName(rs.getString("first_name"));
+        customer.setLastName(rs.getString("last_name"));
+        customer.setEmail(rs.getString("email"));
+        customer.setCountry(rs.getString("country"));
+        customer.setPurchaseAmount(rs.getDouble("purchase_amount"));
+        return customer;
     }
 
     /**
-     * Read all customers and aggregate them by country
+     * Start aggregating customers by country (or the configured grouping key)
      * 
-     * IMPORTANT: This reads ALL customers from the database first, then aggregates them.
-     * Spring Batch only sees the final CountryStatistics objects (one per country),
+     * IMPORTANT: All customers are aggregated before the first statistic is returned.
+     * Spring Batch only sees the final CountryStatistics objects (one per group),
      * not the individual customers being read.
      */
-    private void aggregateData() throws Exception {
-        System.out.println("  📊 Reading all customers from database and aggregating by country...");
-        
-        // Map to store aggregated data by country
-        Map<String, CountryAggregation> aggregations = new HashMap<>();
+    private void startAggregation() throws Exception {
+        aggregator = new ExternalHashAggregator(memoryBudgetBytes, spillDirectory, distinctCountPrecision);
 
-        int customerCount = 0;
+        if (restoredComplete) {
+            System.out.printf("  ♻️  Restarting with the %d groups saved before the failure (%d already written)%n",
+                    restoredGroups.size(), emitted);
+            aggregationIterator = restoredGroups.iterator();
+            skipEmitted();
+            return;
+        }
+
+        if (restoredGroups != null) {
+            System.out.printf("  ♻️  Resuming aggregation after %d customers from the last checkpoint...%n", customerCount);
+            for (CountryAggregation group : restoredGroups) {
+                aggregator.merge(group);
+            }
+        } else if (partitionedAggregation != null) {
+            System.out.println("  📊 Aggregating customers by country in parallel partitions...");
+            customerCount = partitionedAggregation.aggregateInto(aggregator, groupingKey, memoryBudgetBytes,
+                    spillDirectory, distinctCountPrecision);
+        } else {
+            System.out.println("  📊 Reading all customers and aggregating by country...");
+        }
+    }
+
+    /**
+     * Aggregates customers until {@code sliceEnd} of them were read.
+     *
+     * @return true when there are no customers left
+     */
+    private boolean aggregateSlice(long sliceEnd) throws Exception {
+        if (aggregationIterator != null) {
+            return true; // Restored complete: nothing to aggregate
+        }
         Customer customer;
-        while ((customer = customerReader.read()) != null) {
+        while (customerReaderOpen && customerCount < sliceEnd && (customer = customerReader.read()) != null) {
             customerCount++;
-            String country = customer.getCountry() != null ? customer.getCountry() : "UNKNOWN";
-            
-            aggregations.computeIfAbsent(country, k -> new CountryAggregation(country))
-                    .addCustomer(customer.getPurchaseAmount());
+            aggregator.add(groupingKey.apply(customer), customer.getPurchaseAmount(), customer.getEmail());
         }
+        return !customerReaderOpen || customerCount < sliceEnd;
+    }
 
-        System.out.printf("  ✓ Read %d customers, aggregated into %d countries%n", 
-                customerCount, aggregations.size());
+    private void finishAggregation() throws IOException {
+        if (aggregationIterator != null) {
+            return;
+        }
+        if (aggregator.getSpillCount() > 0) {
+            System.out.printf("  ✓ Read %d customers, groups spilled to disk %d times%n",
+                    customerCount, aggregator.getSpillCount());
+        } else {
+            System.out.printf("  ✓ Read %d customers, aggregated into %d groups%n",
+                    customerCount, aggregator.getInMemoryGroupCount());
+        }
 
-        // Convert aggregations to CountryStatistics objects
-        statisticsList = new ArrayList<>();
-        for (CountryAggregation aggregation : aggregations.values()) {
-            statisticsList.add(aggregation.toStatistics());
+        if (aggregator.getSpillCount() == 0) {
+            // Fix the order of the final groups, so a restart emits them in the same order
+            List<CountryAggregation> groups = new ArrayList<>(aggregator.getInMemoryGroups());
+            if (checkpointInterval > 0) {
+                groupsFile = saveGroups(groups);
+            }
+            aggregationIterator = groups.iterator();
+        } else {
+            aggregationIterator = aggregator.results();
         }
-        
-        statisticsIterator = statisticsList.iterator();
+        skipEmitted();
     }
 
     /**
-     * Helper class to aggregate customer data for a country
+     * Saves the partial groups and the cursor position after a slice, if they still fit
+     * in memory. Otherwise the last saved slice stays as it is.
      */
-    private static class CountryAggregation {
-        private final String country;
-        private long count = 0;
-        private double totalRevenue = 0.0;
+    private void saveSlice(ExecutionContext executionContext) {
+        if (aggregator == null || checkpointInterval <= 0 || aggregator.getSpillCount() > 0) {
+            return;
+        }
+        try {
+            executionContext.put(GROUPS_KEY, writeGroups(aggregator.getInMemoryGroups()));
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not save the aggregation checkpoint", e);
+        }
+        executionContext.putString(PHASE_KEY, AGGREGATING);
+        executionContext.putLong(CUSTOMERS_KEY, customerCount);
+        customerReader.update(executionContext);
+    }
 
-        public CountryAggregation(String country) {
-            this.country = country;
+    /**
+     * After a restart, drops the statistics that were already written before the failure.
+     */
+    private void skipEmitted() {
+        for (int i = 0; i < emitted && aggregationIterator.hasNext(); i++) {
+            aggregationIterator.next();
         }
+    }
 
-        public void addCustomer(Double purchaseAmount) {
-            count++;
-            if (purchaseAmount != null) {
-                totalRevenue += purchaseAmount;
+    private static byte[] writeGroups(Collection<CountryAggregation> groups) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(groups.size());
+            for (CountryAggregation group : groups) {
+                group.writeTo(out);
             }
         }
+        return bytes.toByteArray();
+    }
 
-        public CountryStatistics toStatistics() {
-            double average = count > 0 ? totalRevenue / count : 0.0;
-            return new CountryStatistics(country, count, totalRevenue, average);
+    private Path saveGroups(Collection<CountryAggregation> groups) throws IOException {
+        Path file = Files.createTempFile(spillDirectory, "country-statistics-", ".groups");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(groups.size());
+            for (CountryAggregation group : groups) {
+                group.writeTo(out);
+            }
+        }
+        return file;
+    }
+
+    private static List<CountryAggregation> loadGroups(Path file) {
+        try {
+            return readGroups(new BufferedInputStream(Files.newInputStream(file)));
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not restore the aggregation checkpoint", e);
         }
     }
-}
 
+    private static List<CountryAggregation> readGroups(byte[] serialized) {
+        return readGroups(new ByteArrayInputStream(serialized));
+    }
+
+    private static List<CountryAggregation> readGroups(InputStream serialized) {
+        try (DataInputStream in = new DataInputStream(serialized)) {
+            int size = in.readInt();
+            List<CountryAggregation> groups = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                groups.add(CountryAggregation.readFrom(in));
+            }
+            return groups;
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not restore the aggregation checkpoint", e);
+        }
+    }
+}
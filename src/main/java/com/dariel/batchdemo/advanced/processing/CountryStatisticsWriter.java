@@ -21,10 +21,20 @@ public class CountryStatisticsWriter {
      * Uses INSERT with ON CONFLICT handling (if supported) or simple INSERT.
      */
     public static JdbcBatchItemWriter<CountryStatistics> create(DataSource dataSource) {
+        return create(dataSource, "country_statistics");
+    }
+
+    /**
+     * Creates a writer that inserts country statistics into {@code table}
+     * (e.g. the shadow table of country_statistics, see ShadowTable).
+     */
+    public static JdbcBatchItemWriter<CountryStatistics> create(DataSource dataSource, String table) {
         // SQL to insert country statistics
         // Note: Using simple INSERT - in production you might want UPSERT logic
-        String sql = "INSERT INTO country_statistics(country, customer_count, total_revenue, average_purchase_amount) " +
-                     "VALUES (:country, :customerCount, :totalRevenue, :averagePurchaseAmount)";
+        String sql = "INSERT INTO " + table + "(country, customer_count, total_revenue, average_purchase_amount, " +
+                     "median_purchase_amount, p95_purchase_amount, p99_purchase_amount, unique_emails, unique_email_domains) " +
+                     "VALUES (:country, :customerCount, :totalRevenue, :averagePurchaseAmount, " +
+                     ":medianPurchaseAmount, :p95PurchaseAmount, :p99PurchaseAmount, :uniqueEmails, :uniqueEmailDomains)";
 
         return new JdbcBatchItemWriterBuilder<CountryStatistics>()
                 .dataSource(dataSource)
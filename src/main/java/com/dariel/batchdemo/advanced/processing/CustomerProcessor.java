@@ -1,7 +1,12 @@
 package com.dariel.batchdemo.advanced.processing;
 
 import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.validation.ValidationRuleEngine;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.lang.NonNull;
 
 /**
  * CustomerProcessor - This is the TRANSFORM step in our ETL pipeline.
@@ -14,21 +19,30 @@ import org.springframework.batch.item.ItemProcessor;
  * 
  * If this returns null, the item is skipped (not written to database).
  * If this returns a Customer, it will be written to the database.
+ * 
+ * Validation rules are declared in application.yml (batchdemo.validation.rules) and
+ * run by a ValidationRuleEngine. By default: email must contain "@" and the purchase
+ * amount must be positive. Per-rule rejection counts are printed when the step ends.
  */
-public class CustomerProcessor implements ItemProcessor<Customer, Customer> {
+public class CustomerProcessor implements ItemProcessor<Customer, Customer>, StepExecutionListener {
+
+    private final ValidationRuleEngine validationRules;
+
+    public CustomerProcessor() {
+        this(ValidationRuleEngine.compile(ValidationRuleEngine.DEFAULT_RULES));
+    }
+
+    public CustomerProcessor(ValidationRuleEngine validationRules) {
+        this.validationRules = validationRules;
+    }
 
     @Override
     public Customer process(Customer customer) {
         // Step 1: Validate - filter out invalid records
-        // If email is missing or invalid, skip this record
-        if (customer.getEmail() == null || !customer.getEmail().contains("@")) {
+        // If any rule fails (e.g. missing email, negative amount), skip this record
+        if (!validationRules.test(customer)) {
             return null; // Returning null means "skip this record"
         }
-        
-        // If purchase amount is missing or negative, skip this record
-        if (customer.getPurchaseAmount() == null || customer.getPurchaseAmount() <= 0) {
-            return null; // Skip invalid records
-        }
 
         // Step 2: Clean and normalize the data
         // Capitalize first letter of names
@@ -46,6 +60,24 @@ public class CustomerProcessor implements ItemProcessor<Customer, Customer> {
         return customer;
     }
 
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        validationRules.resetCounters();
+    }
+
+    /**
+     * Prints how many records each validation rule rejected (in the order the rules ran).
+     */
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        System.out.println("   🔎 Validation rules (in evaluation order):");
+        for (ValidationRuleEngine.RuleStatistics rule : validationRules.statistics()) {
+            System.out.printf("      • %-28s evaluated: %,10d | rejected: %,8d%n",
+                    rule.rule(), rule.evaluated(), rule.rejected());
+        }
+        return stepExecution.getExitStatus();
+    }
+
     /**
      * Helper method to capitalize the first letter of a string.
      * Example: "john" -> "John"
@@ -0,0 +1,119 @@
+package com.dariel.batchdemo.advanced.processing;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.storage.CustomerDeduplicationIndex;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * DuplicateCustomerFilter - Drops customers that were already loaded.
+ *
+ * A customer is a duplicate if its id OR its (normalized) email was seen before,
+ * either in a previous run or earlier in the current file. Lookups go to the
+ * CustomerDeduplicationIndex (Bloom filter + memory-mapped table), never to the database.
+ *
+ * Keys of the current chunk are only added to the persistent index after the chunk
+ * has committed. If the chunk rolls back, its keys are forgotten, so the records are
+ * not mistaken for duplicates when they are processed again. The same goes for a
+ * customer the writer quarantined instead of loading (see forget()), so a corrected
+ * copy of it can still be loaded later.
+ *
+ * Returns null for duplicates, so they show up in the step's filter count.
+ */
+public class DuplicateCustomerFilter implements ItemProcessor<Customer, Customer>, ItemStream, ChunkListener {
+
+    private final Path indexFile;
+    private CustomerDeduplicationIndex index;
+
+    // Keys accepted in the current chunk (not yet committed)
+    private final Set<Long> pendingKeys = new HashSet<>();
+    private long duplicates;
+
+    public DuplicateCustomerFilter(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    @Override
+    public Customer process(@NonNull Customer customer) {
+        long idKey = CustomerDeduplicationIndex.idKey(customer.getId());
+        long emailKey = CustomerDeduplicationIndex.emailKey(customer.getEmail());
+
+        if (isKnown(idKey) || isKnown(emailKey)) {
+            duplicates++;
+            return null; // Already loaded - skip
+        }
+
+        pendingKeys.add(idKey);
+        pendingKeys.add(emailKey);
+        return customer;
+    }
+
+    /**
+     * Forgets a customer accepted in the current chunk that was not loaded after all,
+     * e.g. because BisectingItemWriter quarantined it.
+     */
+    public void forget(Customer customer) {
+        pendingKeys.remove(CustomerDeduplicationIndex.idKey(customer.getId()));
+        pendingKeys.remove(CustomerDeduplicationIndex.emailKey(customer.getEmail()));
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            index = new CustomerDeduplicationIndex(indexFile);
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open deduplication index " + indexFile, e);
+        }
+        pendingKeys.clear();
+        duplicates = 0;
+    }
+
+    @Override
+    public void afterChunk(@NonNull ChunkContext context) {
+        // Called after the chunk transaction committed
+        try {
+            for (long key : pendingKeys) {
+                index.add(key);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not update deduplication index " + indexFile, e);
+        }
+        pendingKeys.clear();
+    }
+
+    @Override
+    public void afterChunkError(@NonNull ChunkContext context) {
+        pendingKeys.clear();
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (index == null) {
+            return;
+        }
+        System.out.printf("  🔁 Duplicates filtered: %,d | index size: %,d keys | Bloom filter answered %,d of %,d lookups%n",
+                duplicates, index.size(), index.getBloomRejections(),
+                index.getBloomRejections() + index.getTableLookups());
+        try {
+            index.close();
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not close deduplication index " + indexFile, e);
+        } finally {
+            index = null;
+        }
+    }
+
+    private boolean isKnown(long key) {
+        return pendingKeys.contains(key) || index.contains(key);
+    }
+}
@@ -0,0 +1,280 @@
+package com.dariel.batchdemo.advanced.processing;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * ExternalSortTasklet - Sorts a CSV file by one column using bounded memory.
+ *
+ * This is a reusable step for file-to-file flows: put it in front of a step whose
+ * reader should see the records in key order (e.g. customers.csv sorted by country).
+ *
+ * How it works (classic external merge sort):
+ * 1. Read lines until the memory budget is used, sort them, write them to a "run" file
+ * 2. Repeat until the input is exhausted - each run file is sorted on its own
+ * 3. Merge the runs with a priority queue (k-way merge), at most 64 runs at a time
+ *
+ * Only the current line of each run is in memory during the merge, so the input can
+ * be much larger than the heap. The sort is stable: lines with equal keys keep their
+ * input order. The header line is copied to the output unchanged, so the result can
+ * be read by a normal FlatFileItemReader with linesToSkip(1).
+ *
+ * The output is written to a temporary file and moved into place at the end, so a
+ * failed run never leaves a half-sorted file behind.
+ */
+public class ExternalSortTasklet implements Tasklet {
+
+    private static final int MAX_MERGE_FAN_IN = 64;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final char DELIMITER = ',';
+
+    // Orders by key; ties keep the order of the runs (and so the input order)
+    private static final Comparator<RunCursor> CURSOR_ORDER =
+            Comparator.comparing((RunCursor cursor) -> cursor.key).thenComparingInt(cursor -> cursor.order);
+
+    private final Resource input;
+    private final Path output;
+    private final String keyColumn;
+    private final long memoryBudgetBytes;
+    private final Path tempDirectory;
+
+    /**
+     * @param input             CSV file with a header line
+     * @param output            where the sorted CSV is written
+     * @param keyColumn         header name of the column to sort by
+     * @param memoryBudgetBytes estimated heap used for buffering lines before a run is written
+     * @param tempDirectory     where run files are created (deleted when the step ends)
+     */
+    public ExternalSortTasklet(Resource input, Path output, String keyColumn,
+                               long memoryBudgetBytes, Path tempDirectory) {
+        this.input = input;
+        this.output = output;
+        this.keyColumn = keyColumn;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) throws Exception {
+        Files.createDirectories(tempDirectory);
+        List<Path> runs = new ArrayList<>();
+        Path partialOutput = output.resolveSibling(output.getFileName() + ".tmp");
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(input.getInputStream(), StandardCharsets.UTF_8), IO_BUFFER_SIZE)) {
+            String header = reader.readLine();
+            int keyIndex = header != null ? columnIndex(header) : 0;
+
+            // Phase 1: sorted runs
+            List<SortRecord> buffer = new ArrayList<>();
+            long bufferedBytes = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                contribution.incrementReadCount();
+                SortRecord record = new SortRecord(field(line, keyIndex), line);
+                buffer.add(record);
+                bufferedBytes += record.estimatedBytes();
+                if (bufferedBytes > memoryBudgetBytes) {
+                    runs.add(writeRun(buffer));
+                    buffer.clear();
+                    bufferedBytes = 0;
+                }
+            }
+
+            long written;
+            try (BufferedWriter writer = Files.newBufferedWriter(partialOutput, StandardCharsets.UTF_8)) {
+                if (header != null) {
+                    writer.write(header);
+                    writer.write('\n');
+                }
+                if (runs.isEmpty()) {
+                    // Everything fitted in memory: no run files needed
+                    written = writeSorted(buffer, writer);
+                } else {
+                    if (!buffer.isEmpty()) {
+                        runs.add(writeRun(buffer));
+                        buffer.clear();
+                    }
+                    // Phase 2: k-way merge (extra passes only if there are very many runs)
+                    while (runs.size() > MAX_MERGE_FAN_IN) {
+                        mergePass(runs, keyIndex);
+                    }
+                    written = merge(runs, keyIndex, writer);
+                }
+            }
+            contribution.incrementWriteCount(written);
+        } finally {
+            deleteAll(runs);
+        }
+
+        Files.move(partialOutput, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.printf("  ✓ Sorted %s by %s into %s%n", input.getFilename(), keyColumn, output);
+        return RepeatStatus.FINISHED;
+    }
+
+    private Path writeRun(List<SortRecord> buffer) throws IOException {
+        Path run = Files.createTempFile(tempDirectory, "sort-run-", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            writeSorted(buffer, writer);
+        }
+        return run;
+    }
+
+    private static long writeSorted(List<SortRecord> buffer, Writer writer) throws IOException {
+        buffer.sort(Comparator.comparing(SortRecord::key)); // List.sort is stable
+        for (SortRecord record : buffer) {
+            writer.write(record.line());
+            writer.write('\n');
+        }
+        return buffer.size();
+    }
+
+    /**
+     * Merges each group of consecutive runs into one longer run, keeping the runs in
+     * input order so that the final merge stays stable.
+     */
+    private void mergePass(List<Path> runs, int keyIndex) throws IOException {
+        List<Path> nextPass = new ArrayList<>();
+        for (int from = 0; from < runs.size(); from += MAX_MERGE_FAN_IN) {
+            List<Path> group = runs.subList(from, Math.min(from + MAX_MERGE_FAN_IN, runs.size()));
+            if (group.size() == 1) {
+                nextPass.add(group.get(0));
+                continue;
+            }
+            Path merged = Files.createTempFile(tempDirectory, "sort-run-", ".csv");
+            nextPass.add(merged);
+            try (BufferedWriter writer = Files.newBufferedWriter(merged, StandardCharsets.UTF_8)) {
+                merge(group, keyIndex, writer);
+            }
+            deleteAll(group);
+        }
+        runs.clear();
+        runs.addAll(nextPass);
+    }
+
+    /**
+     * Merges sorted runs into one sorted stream. Returns the number of lines written.
+     */
+    private static long merge(List<Path> runs, int keyIndex, Writer writer) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(runs.size(), CURSOR_ORDER);
+        List<RunCursor> cursors = new ArrayList<>(runs.size());
+        long written = 0;
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                RunCursor cursor = new RunCursor(runs.get(i), i, keyIndex);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                RunCursor smallest = queue.poll();
+                writer.write(smallest.line);
+                writer.write('\n');
+                written++;
+                if (smallest.advance()) {
+                    queue.add(smallest);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.reader.close();
+            }
+        }
+        return written;
+    }
+
+    private int columnIndex(String header) {
+        String[] columns = header.split(String.valueOf(DELIMITER), -1);
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].trim().equals(keyColumn)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Sort column '" + keyColumn + "' not found in header: " + header);
+    }
+
+    /**
+     * Extracts one field of a CSV line (double quotes may wrap fields containing commas).
+     */
+    static String field(String line, int index) {
+        int field = 0;
+        int start = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == DELIMITER && !quoted) {
+                if (field == index) {
+                    return unquote(line.substring(start, i));
+                }
+                field++;
+                start = i + 1;
+            }
+        }
+        return field == index ? unquote(line.substring(start)) : "";
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static void deleteAll(List<Path> files) throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private record SortRecord(String key, String line) {
+        long estimatedBytes() {
+            // Two Strings (headers + UTF-16 chars), the record and its list slot
+            return 96 + 2L * (key.length() + line.length());
+        }
+    }
+
+    /**
+     * Current line of one run during the merge.
+     */
+    private static final class RunCursor {
+        private final BufferedReader reader;
+        private final int order;
+        private final int keyIndex;
+        private String line;
+        private String key;
+
+        RunCursor(Path run, int order, int keyIndex) throws IOException {
+            this.reader = new BufferedReader(Files.newBufferedReader(run, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+            this.order = order;
+            this.keyIndex = keyIndex;
+        }
+
+        boolean advance() throws IOException {
+            line = reader.readLine();
+            key = line != null ? field(line, keyIndex) : null;
+            return line != null;
+        }
+    }
+}
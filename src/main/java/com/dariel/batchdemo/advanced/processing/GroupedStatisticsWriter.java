@@ -0,0 +1,102 @@
+package com.dariel.batchdemo.advanced.processing;
+
+import com.dariel.batchdemo.advanced.aggregation.GroupingSet;
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import com.dariel.batchdemo.advanced.domain.GroupedStatistics;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.NonNull;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GroupedStatisticsWriter - Writes roll-up statistics to the generic grouping_set_statistics table.
+ *
+ * One table for every grouping set: the primary key is (grouping_set, group_key), so
+ * a new report cut only needs a new grouping set, not a new table.
+ *
+ * Every run of rollupStep computes its grouping sets from scratch, so the first chunk
+ * deletes the rows of those grouping sets before inserting its own, in the same
+ * transaction: groups that no longer exist do not linger, and other grouping sets in
+ * the table are left alone. That the rows were deleted is saved in the ExecutionContext
+ * with that chunk, so a restarted step (which resumes after the groups it already
+ * wrote, see RollupStatisticsReader) does not delete them again.
+ */
+public class GroupedStatisticsWriter implements ItemStreamWriter<GroupedStatistics> {
+
+    private static final String CLEARED_KEY = "groupedStatisticsWriter.cleared";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final List<String> groupingSetNames;
+    private final JdbcBatchItemWriter<GroupedStatistics> insertWriter;
+    private boolean cleared;
+
+    private GroupedStatisticsWriter(DataSource dataSource, List<String> groupingSetNames,
+                                    JdbcBatchItemWriter<GroupedStatistics> insertWriter) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.groupingSetNames = List.copyOf(groupingSetNames);
+        this.insertWriter = insertWriter;
+    }
+
+    /**
+     * @param groupingSets the grouping sets the step writes (their old rows are replaced)
+     */
+    public static GroupedStatisticsWriter create(DataSource dataSource, List<GroupingSet> groupingSets) {
+        String sql = "INSERT INTO grouping_set_statistics(grouping_set, group_key, customer_count, total_revenue, " +
+                     "average_purchase_amount, median_purchase_amount, p95_purchase_amount, p99_purchase_amount, " +
+                     "unique_emails, unique_email_domains) " +
+                     "VALUES (:groupingSet, :groupKey, :customerCount, :totalRevenue, :averagePurchaseAmount, " +
+                     ":medianPurchaseAmount, :p95PurchaseAmount, :p99PurchaseAmount, :uniqueEmails, :uniqueEmailDomains)";
+
+        JdbcBatchItemWriter<GroupedStatistics> writer = new JdbcBatchItemWriterBuilder<GroupedStatistics>()
+                .dataSource(dataSource)
+                .sql(sql)
+                .itemSqlParameterSourceProvider(item -> {
+                    CountryStatistics statistics = item.getStatistics();
+                    return new MapSqlParameterSource()
+                            .addValue("groupingSet", item.getGroupingSet())
+                            .addValue("groupKey", item.getGroupKey())
+                            .addValue("customerCount", statistics.getCustomerCount())
+                            .addValue("totalRevenue", statistics.getTotalRevenue())
+                            .addValue("averagePurchaseAmount", statistics.getAveragePurchaseAmount())
+                            .addValue("medianPurchaseAmount", statistics.getMedianPurchaseAmount())
+                            .addValue("p95PurchaseAmount", statistics.getP95PurchaseAmount())
+                            .addValue("p99PurchaseAmount", statistics.getP99PurchaseAmount())
+                            .addValue("uniqueEmails", statistics.getUniqueEmails())
+                            .addValue("uniqueEmailDomains", statistics.getUniqueEmailDomains());
+                })
+                .build();
+        writer.afterPropertiesSet(); // Detects the named parameters (done by Spring when the writer is a bean)
+        return new GroupedStatisticsWriter(dataSource,
+                groupingSets.stream().map(GroupingSet::name).toList(), writer);
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) {
+        cleared = executionContext.containsKey(CLEARED_KEY); // Only when restarted
+    }
+
+    @Override
+    public void update(@NonNull ExecutionContext executionContext) {
+        if (cleared) {
+            executionContext.putString(CLEARED_KEY, "true");
+        }
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends GroupedStatistics> chunk) throws Exception {
+        if (!cleared && !groupingSetNames.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM grouping_set_statistics WHERE grouping_set IN (:groupingSets)",
+                    Map.of("groupingSets", groupingSetNames));
+            cleared = true;
+        }
+        insertWriter.write(chunk);
+    }
+}
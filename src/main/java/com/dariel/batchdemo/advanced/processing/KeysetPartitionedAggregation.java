@@ -0,0 +1,107 @@
+package com.dariel.batchdemo.advanced.processing;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KeysetPartitionedAggregation - Aggregates the customers table on several threads.
+ *
+ * One cursor over the whole table keeps one core busy. Instead, the id column is
+ * split into key ranges and every range is aggregated on a worker thread with its
+ * own query (WHERE id BETWEEN ? AND ?, served by the primary key index), see
+ * PartitionedAggregation.
+ *
+ * Range boundaries:
+ * - MIN_MAX: equal-width ranges between MIN(id) and MAX(id). Cheap, but gaps or
+ *   clusters in the ids give some ranges far more customers than others.
+ * - SAMPLED: boundaries at the quantiles of a random sample of ids, so every range
+ *   holds about the same number of customers whatever the id distribution.
+ *
+ * There are more ranges than threads (rangesPerThread), so a slow range does not
+ * leave the other threads idle.
+ */
+public class KeysetPartitionedAggregation extends PartitionedAggregation {
+
+    public enum Boundaries { MIN_MAX, SAMPLED }
+
+    /**
+     * Ids from fromId to toId, both included.
+     */
+    public record KeyRange(long fromId, long toId) {
+    }
+
+    // Sampled ids per range: enough to place the boundaries within ~1% of the ideal
+    private static final int SAMPLES_PER_RANGE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int rangeCount;
+    private final Boundaries boundaries;
+
+    public KeysetPartitionedAggregation(DataSource dataSource, int threads, int rangesPerThread, Boundaries boundaries) {
+        super(threads);
+        this.jdbcTemplate = streamingTemplate(dataSource);
+        this.rangeCount = threads * rangesPerThread;
+        this.boundaries = boundaries;
+    }
+
+    /**
+     * Splits the ids of the customers table into at most {@code count} contiguous ranges.
+     */
+    public List<KeyRange> ranges(int count) {
+        long[] stats = jdbcTemplate.queryForObject("SELECT COUNT(*), MIN(id), MAX(id) FROM customers",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)});
+        long rows = stats[0];
+        if (rows == 0) {
+            return List.of();
+        }
+        long min = stats[1];
+        long max = stats[2];
+
+        List<Long> starts = new ArrayList<>();
+        starts.add(min);
+        if (boundaries == Boundaries.SAMPLED && rows > count) {
+            double fraction = Math.min(1.0, (double) count * SAMPLES_PER_RANGE / rows);
+            List<Long> sample = jdbcTemplate.queryForList(
+                    "SELECT id FROM customers WHERE RANDOM() < ? ORDER BY id", Long.class, fraction);
+            for (int i = 1; i < count && !sample.isEmpty(); i++) {
+                addStart(starts, sample.get((int) ((long) i * sample.size() / count)));
+            }
+        } else {
+            double width = ((double) max - min + 1) / count;
+            for (int i = 1; i < count; i++) {
+                addStart(starts, min + (long) Math.floor(i * width));
+            }
+        }
+
+        List<KeyRange> ranges = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            long to = i + 1 < starts.size() ? starts.get(i + 1) - 1 : max;
+            ranges.add(new KeyRange(starts.get(i), to));
+        }
+        return ranges;
+    }
+
+    @Override
+    protected List<PartitionQuery> partitions() {
+        List<PartitionQuery> partitions = new ArrayList<>();
+        for (KeyRange range : ranges(rangeCount)) {
+            partitions.add(new PartitionQuery(jdbcTemplate, SELECT_CUSTOMERS + " WHERE id BETWEEN ? AND ?",
+                    range.fromId(), range.toId()));
+        }
+        return partitions;
+    }
+
+    @Override
+    protected String partitionName() {
+        return "key ranges";
+    }
+
+    private static void addStart(List<Long> starts, long start) {
+        if (start > starts.get(starts.size() - 1)) {
+            starts.add(start);
+        }
+    }
+}
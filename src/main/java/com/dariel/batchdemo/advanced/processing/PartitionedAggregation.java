@@ -0,0 +1,155 @@
+package com.dariel.batchdemo.advanced.processing;
+
+import com.dariel.batchdemo.advanced.aggregation.CountryAggregation;
+import com.dariel.batchdemo.advanced.aggregation.ExternalHashAggregator;
+import com.dariel.batchdemo.advanced.domain.Customer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * PartitionedAggregation - Aggregates customers on several threads, one query per partition.
+ *
+ * The customers are split into partitions that together cover every customer exactly
+ * once (id ranges of one table, or the tables of several shards). Every partition is
+ * aggregated on a worker thread with its own query into its own partial groups, and
+ * the partial groups are then merged, partition by partition, into the aggregator
+ * CountryStatisticsReader hands out to the processor and writer.
+ *
+ * Partials are merged in partition order, which makes the results independent of
+ * thread timing.
+ */
+public abstract class PartitionedAggregation {
+
+    protected static final String SELECT_CUSTOMERS =
+            "SELECT id, first_name, last_name, email, country, purchase_amount FROM customers";
+
+    /**
+     * One partition: a query returning the customer columns of SELECT_CUSTOMERS.
+     */
+    public record PartitionQuery(JdbcTemplate jdbcTemplate, String sql, Object... arguments) {
+    }
+
+    private final int threads;
+
+    protected PartitionedAggregation(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * The partitions, in merge order.
+     */
+    protected abstract List<PartitionQuery> partitions();
+
+    /**
+     * What a partition is, for the log ("key ranges", "shards").
+     */
+    protected abstract String partitionName();
+
+    protected static JdbcTemplate streamingTemplate(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(1000);
+        return jdbcTemplate;
+    }
+
+    /**
+     * Aggregates every partition on the worker threads and merges the partial groups into {@code target}.
+     *
+     * @param memoryBudgetBytes heap budget of the whole aggregation, shared by the workers
+     * @return the number of customers aggregated
+     */
+    public long aggregateInto(ExternalHashAggregator target,
+                              Function<Customer, String> groupingKey,
+                              long memoryBudgetBytes,
+                              Path spillDirectory,
+                              int distinctCountPrecision) throws Exception {
+        List<PartitionQuery> partitions = partitions();
+        long workerBudget = Math.max(1, memoryBudgetBytes / threads);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "aggregate-partition");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<PartialResult>> futures = new ArrayList<>();
+        try {
+            for (PartitionQuery partition : partitions) {
+                futures.add(workers.submit(() -> aggregatePartition(partition, groupingKey, workerBudget,
+                        spillDirectory, distinctCountPrecision)));
+            }
+
+            long customers = 0;
+            for (Future<PartialResult> future : futures) {
+                PartialResult result = await(future);
+                try (ExternalHashAggregator partial = result.partial()) {
+                    Iterator<CountryAggregation> groups = partial.results();
+                    while (groups.hasNext()) {
+                        target.merge(groups.next());
+                    }
+                }
+                customers += result.customers();
+            }
+            System.out.printf("  ✓ Aggregated %d %s on %d threads%n", partitions.size(), partitionName(), threads);
+            return customers;
+        } finally {
+            for (Future<PartialResult> future : futures) {
+                future.cancel(true);
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        future.get().partial().close(); // Spill files of partitions not merged after a failure
+                    } catch (ExecutionException | IOException e) {
+                        // Already reported by the partition that failed
+                    }
+                }
+            }
+            workers.shutdownNow();
+        }
+    }
+
+    private PartialResult aggregatePartition(PartitionQuery partition, Function<Customer, String> groupingKey,
+                                             long budget, Path spillDirectory, int distinctCountPrecision) {
+        ExternalHashAggregator partial = new ExternalHashAggregator(budget, spillDirectory, distinctCountPrecision);
+        long[] customers = {0};
+        try {
+            partition.jdbcTemplate().query(partition.sql(), rs -> {
+                Customer customer = CountryStatisticsReader.mapCustomer(rs);
+                try {
+                    partial.add(groupingKey.apply(customer), customer.getPurchaseAmount(), customer.getEmail());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                customers[0]++;
+            }, partition.arguments());
+            return new PartialResult(partial, customers[0]);
+        } catch (RuntimeException e) {
+            try {
+                partial.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private static PartialResult await(Future<PartialResult> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private record PartialResult(ExternalHashAggregator partial, long customers) {
+    }
+}
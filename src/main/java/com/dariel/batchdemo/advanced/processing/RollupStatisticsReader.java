@@ -0,0 +1,89 @@
+package com.dariel.batchdemo.advanced.processing;
+
+import com.dariel.batchdemo.advanced.aggregation.GroupingSet;
+import com.dariel.batchdemo.advanced.aggregation.RollupAggregator;
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.domain.GroupedStatistics;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * RollupStatisticsReader - Reads all customers once and returns the statistics of every
+ * group of every configured grouping set (see RollupAggregator).
+ *
+ * Like CountryStatisticsReader, Spring Batch only sees the aggregated groups. The groups
+ * come out in a stable order (grouping set, then key), so a restart aggregates again
+ * and skips the groups that were already written before the failure.
+ */
+public class RollupStatisticsReader implements ItemStreamReader<GroupedStatistics> {
+
+    private static final String EMITTED_KEY = "rollupStatisticsReader.emitted";
+
+    private final ItemStreamReader<Customer> customerReader;
+    private final List<GroupingSet> groupingSets;
+    private final int distinctCountPrecision;
+
+    private Iterator<GroupedStatistics> results;
+    private int emitted;
+
+    public RollupStatisticsReader(ItemStreamReader<Customer> customerReader,
+                                  List<GroupingSet> groupingSets,
+                                  int distinctCountPrecision) {
+        this.customerReader = customerReader;
+        this.groupingSets = groupingSets;
+        this.distinctCountPrecision = distinctCountPrecision;
+    }
+
+    @Override
+    public GroupedStatistics read() throws Exception {
+        if (results == null) {
+            aggregateData();
+        }
+        if (results.hasNext()) {
+            emitted++;
+            return results.next();
+        }
+        return null;
+    }
+
+    private void aggregateData() throws Exception {
+        System.out.printf("  📊 Reading all customers once for %d grouping sets: %s%n",
+                groupingSets.size(), groupingSets.stream().map(GroupingSet::name).toList());
+        RollupAggregator aggregator = new RollupAggregator(groupingSets, distinctCountPrecision);
+        Customer customer;
+        while ((customer = customerReader.read()) != null) {
+            aggregator.add(customer);
+        }
+        System.out.printf("  ✓ Read %d customers, aggregated into %d groups%n",
+                aggregator.getCustomerCount(), aggregator.getGroupCount());
+
+        results = aggregator.results().iterator();
+        if (emitted > 0) {
+            System.out.printf("  ♻️  Skipping the %d groups written before the restart%n", emitted);
+            for (int i = 0; i < emitted && results.hasNext(); i++) {
+                results.next();
+            }
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        emitted = executionContext.getInt(EMITTED_KEY, 0);
+        customerReader.open(new ExecutionContext()); // Always scan from the first customer
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putInt(EMITTED_KEY, emitted);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        customerReader.close();
+        results = null;
+    }
+}
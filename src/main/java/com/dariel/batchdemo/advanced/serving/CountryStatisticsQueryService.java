@@ -0,0 +1,60 @@
+package com.dariel.batchdemo.advanced.serving;
+
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CountryStatisticsQueryService - Serves the latest published country statistics from memory.
+ *
+ * Downstream code used to poll the country_statistics table or parse
+ * country-statistics.csv, reading from the same database the batch writes to.
+ * This service instead keeps the last statistics as an immutable snapshot:
+ * - A reader just gets the current snapshot (one volatile read) and queries it:
+ *   no database, no locks, no contention with running steps
+ * - A new run builds its snapshot on the side and swaps it in atomically, so a
+ *   reader sees either the old or the new statistics, never a mix
+ *
+ * Readers that run several queries should call {@link #current()} once and query
+ * that snapshot, so all answers come from the same version.
+ */
+public class CountryStatisticsQueryService {
+
+    private final AtomicReference<CountryStatisticsSnapshot> current =
+            new AtomicReference<>(CountryStatisticsSnapshot.EMPTY);
+
+    /**
+     * The latest published snapshot (empty, version 0, before the first publication).
+     */
+    public CountryStatisticsSnapshot current() {
+        return current.get();
+    }
+
+    public Optional<CountryStatisticsView> find(String country) {
+        return current.get().find(country);
+    }
+
+    public List<CountryStatisticsView> topByRevenue(int limit) {
+        return current.get().topByRevenue(limit);
+    }
+
+    /**
+     * Builds a snapshot of the given statistics (copied) and makes it the current one.
+     */
+    public CountryStatisticsSnapshot publish(Collection<CountryStatistics> statistics, long jobExecutionId) {
+        List<CountryStatisticsView> rows = statistics.stream().map(CountryStatisticsView::of).toList();
+        // Only the publisher thread writes; the loop just keeps versions strictly increasing
+        while (true) {
+            CountryStatisticsSnapshot previous = current.get();
+            CountryStatisticsSnapshot next = new CountryStatisticsSnapshot(
+                    previous.getVersion() + 1, jobExecutionId, Instant.now(), rows);
+            if (current.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+}
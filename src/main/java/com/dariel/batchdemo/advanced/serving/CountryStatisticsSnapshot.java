@@ -0,0 +1,84 @@
+package com.dariel.batchdemo.advanced.serving;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * CountryStatisticsSnapshot - The statistics of one aggregateStep run, frozen.
+ *
+ * Built once, never changed: readers can use it from any thread without locks.
+ * Two indexes are prepared when it is built:
+ * - by country (hash lookup)
+ * - by total revenue, highest first (for "top N" queries)
+ */
+public final class CountryStatisticsSnapshot {
+
+    static final CountryStatisticsSnapshot EMPTY = new CountryStatisticsSnapshot(0, -1, Instant.EPOCH, List.of());
+
+    private final long version;
+    private final long jobExecutionId;
+    private final Instant publishedAt;
+    private final Map<String, CountryStatisticsView> byCountry;
+    private final List<CountryStatisticsView> byRevenue;
+
+    CountryStatisticsSnapshot(long version, long jobExecutionId, Instant publishedAt,
+                              List<CountryStatisticsView> rows) {
+        this.version = version;
+        this.jobExecutionId = jobExecutionId;
+        this.publishedAt = publishedAt;
+        this.byCountry = Map.copyOf(rows.stream()
+                .collect(Collectors.toMap(CountryStatisticsView::country, Function.identity(), (first, second) -> second)));
+        this.byRevenue = rows.stream()
+                .sorted(Comparator.comparingDouble(CountryStatisticsView::totalRevenue).reversed()
+                        .thenComparing(CountryStatisticsView::country))
+                .toList();
+    }
+
+    /**
+     * 1 for the first published snapshot, +1 for every later one (0 = nothing published yet).
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The job execution whose aggregateStep produced these statistics (-1 for the empty snapshot).
+     */
+    public long getJobExecutionId() {
+        return jobExecutionId;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * Statistics of one group (the country, or the configured grouping key), exact match.
+     */
+    public Optional<CountryStatisticsView> find(String country) {
+        return Optional.ofNullable(byCountry.get(country));
+    }
+
+    /**
+     * The {@code limit} groups with the highest total revenue, highest first.
+     */
+    public List<CountryStatisticsView> topByRevenue(int limit) {
+        return byRevenue.subList(0, Math.min(Math.max(limit, 0), byRevenue.size()));
+    }
+
+    /**
+     * All rows, sorted by total revenue (highest first).
+     */
+    public List<CountryStatisticsView> all() {
+        return byRevenue;
+    }
+
+    public int size() {
+        return byRevenue.size();
+    }
+}
@@ -0,0 +1,30 @@
+package com.dariel.batchdemo.advanced.serving;
+
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+
+/**
+ * Read-only copy of one CountryStatistics row, as served from a snapshot.
+ * (CountryStatistics itself is a mutable bean, so it is never handed to readers.)
+ */
+public record CountryStatisticsView(String country, long customerCount, double totalRevenue,
+                                    double averagePurchaseAmount, double medianPurchaseAmount,
+                                    double p95PurchaseAmount, double p99PurchaseAmount,
+                                    long uniqueEmails, long uniqueEmailDomains) {
+
+    static CountryStatisticsView of(CountryStatistics statistics) {
+        return new CountryStatisticsView(
+                statistics.getCountry(),
+                statistics.getCustomerCount() == null ? 0 : statistics.getCustomerCount(),
+                valueOrZero(statistics.getTotalRevenue()),
+                valueOrZero(statistics.getAveragePurchaseAmount()),
+                valueOrZero(statistics.getMedianPurchaseAmount()),
+                valueOrZero(statistics.getP95PurchaseAmount()),
+                valueOrZero(statistics.getP99PurchaseAmount()),
+                statistics.getUniqueEmails() == null ? 0 : statistics.getUniqueEmails(),
+                statistics.getUniqueEmailDomains() == null ? 0 : statistics.getUniqueEmailDomains());
+    }
+
+    private static double valueOrZero(Double value) {
+        return value == null ? 0 : value;
+    }
+}
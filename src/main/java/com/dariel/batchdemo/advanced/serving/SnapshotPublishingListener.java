@@ -0,0 +1,80 @@
+package com.dariel.batchdemo.advanced.serving;
+
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.item.Chunk;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SnapshotPublishingListener - Publishes what aggregateStep wrote to the CountryStatisticsQueryService.
+ *
+ * - afterWrite: keeps the items of the current chunk
+ * - afterChunk (committed): moves them to the step's list
+ * - afterChunkError (rolled back): forgets them
+ * - afterStep: if the step COMPLETED, publishes the list as the new snapshot
+ *
+ * A restarted step only writes the groups it had not written before, so its
+ * statistics are incomplete: the previous snapshot is then kept.
+ */
+public class SnapshotPublishingListener
+        implements StepExecutionListener, ChunkListener, ItemWriteListener<CountryStatistics> {
+
+    private final CountryStatisticsQueryService queryService;
+
+    private final List<CountryStatistics> written = new ArrayList<>();
+    private final List<CountryStatistics> chunkItems = new ArrayList<>();
+    private boolean restarted;
+
+    public SnapshotPublishingListener(CountryStatisticsQueryService queryService) {
+        this.queryService = queryService;
+    }
+
+    @Override
+    public void beforeStep(@NonNull StepExecution stepExecution) {
+        written.clear();
+        chunkItems.clear();
+        // A restart starts with the execution context of the failed execution,
+        // which TaskletStep marked when that execution began
+        restarted = stepExecution.getExecutionContext().containsKey(TaskletStep.TASKLET_TYPE_KEY);
+    }
+
+    @Override
+    public void afterWrite(@NonNull Chunk<? extends CountryStatistics> items) {
+        chunkItems.addAll(items.getItems());
+    }
+
+    @Override
+    public void afterChunk(@NonNull ChunkContext context) {
+        written.addAll(chunkItems);
+        chunkItems.clear();
+    }
+
+    @Override
+    public void afterChunkError(@NonNull ChunkContext context) {
+        chunkItems.clear();
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        if (stepExecution.getStatus() != BatchStatus.COMPLETED) {
+            System.out.println("  📡 Statistics snapshot not published (step did not complete)");
+        } else if (restarted) {
+            System.out.println("  📡 Statistics snapshot not published (restarted step has partial results)");
+        } else {
+            CountryStatisticsSnapshot snapshot = queryService.publish(written, stepExecution.getJobExecutionId());
+            System.out.printf("  📡 Published statistics snapshot v%d: %d groups%n", snapshot.getVersion(), snapshot.size());
+        }
+        written.clear();
+        return stepExecution.getExitStatus();
+    }
+}
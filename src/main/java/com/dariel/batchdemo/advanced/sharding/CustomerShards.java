@@ -0,0 +1,126 @@
+package com.dariel.batchdemo.advanced.sharding;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CustomerShards - The customers table split over N databases.
+ *
+ * Every customer lives in exactly one shard, chosen by a hash of its ShardKey (id or
+ * country). One database caps write throughput at what that database can insert;
+ * with N shards, N databases insert at the same time:
+ * - writer(): a ShardedItemWriter that writes the shards of a chunk concurrently
+ * - aggregation(): scatter-gather aggregation for CountryStatisticsReader
+ * - reader(): all customers, shard after shard
+ *
+ * Shards are separate databases, so their writes cannot be part of the chunk's
+ * transaction: each shard commits its part of a chunk on its own. The shard writers
+ * therefore MERGE by id instead of INSERT, which makes writing a chunk again after a
+ * rollback or a restart harmless.
+ *
+ * The flip side: a customer id that appears twice is not an error here, the later
+ * customer replaces the earlier one. The single-table path fails on it instead (and
+ * with fault tolerance, quarantines it), so sharding cannot be combined with
+ * batchdemo.fault-tolerance.
+ */
+public class CustomerShards implements AutoCloseable {
+
+    // Upsert by primary key (H2 syntax): re-writing a customer replaces it
+    private static final String MERGE_SQL = "MERGE INTO customers(id, first_name, last_name, email, country, "
+            + "purchase_amount, region, currency, tax_rate) KEY(id) "
+            + "VALUES (:id, :firstName, :lastName, :email, :country, :purchaseAmount, :region, :currency, :taxRate)";
+
+    private final List<DataSource> dataSources;
+    private final ShardKey shardKey;
+    private final List<ShardedItemWriter<Customer>> writers = new ArrayList<>();
+
+    public CustomerShards(List<DataSource> dataSources, ShardKey shardKey) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.dataSources = List.copyOf(dataSources);
+        this.shardKey = shardKey;
+    }
+
+    /**
+     * Creates {@code count} shard data sources from a JDBC URL template ("{shard}" is
+     * replaced by the shard number) and creates the tables of {@code schema} in each.
+     */
+    public static CustomerShards create(String urlTemplate, String username, String password,
+                                        int count, ShardKey shardKey, Resource schema) {
+        List<DataSource> dataSources = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            DataSource dataSource = DataSourceBuilder.create()
+                    .url(urlTemplate.replace("{shard}", String.valueOf(shard)))
+                    .username(username)
+                    .password(password)
+                    .build();
+            new ResourceDatabasePopulator(schema).execute(dataSource);
+            dataSources.add(dataSource);
+        }
+        System.out.printf("🧩 Customers sharded by %s over %d databases%n", shardKey, count);
+        return new CustomerShards(dataSources, shardKey);
+    }
+
+    public int shardOf(Customer customer) {
+        return (int) Math.floorMod(shardKey.hash(customer), (long) dataSources.size());
+    }
+
+    public int size() {
+        return dataSources.size();
+    }
+
+    public List<DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    public ShardKey getShardKey() {
+        return shardKey;
+    }
+
+    public ShardedItemWriter<Customer> writer() {
+        List<JdbcBatchItemWriter<Customer>> shardWriters = new ArrayList<>(dataSources.size());
+        for (DataSource dataSource : dataSources) {
+            JdbcBatchItemWriter<Customer> writer = new JdbcBatchItemWriterBuilder<Customer>()
+                    .dataSource(dataSource)
+                    .sql(MERGE_SQL)
+                    .beanMapped()
+                    .build();
+            writer.afterPropertiesSet(); // Detects the named parameters (done by Spring when the writer is a bean)
+            shardWriters.add(writer);
+        }
+        ShardedItemWriter<Customer> shardedWriter = new ShardedItemWriter<>(shardWriters, this::shardOf);
+        writers.add(shardedWriter); // Its threads stop when the shards are closed
+        return shardedWriter;
+    }
+
+    public ShardedAggregation aggregation() {
+        return new ShardedAggregation(dataSources);
+    }
+
+    public ShardedCustomerReader reader() {
+        return new ShardedCustomerReader(dataSources);
+    }
+
+    @Override
+    public void close() {
+        writers.forEach(ShardedItemWriter::close);
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Could not close shard " + dataSource, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.dariel.batchdemo.advanced.sharding;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+
+/**
+ * ShardKey - Which customer field decides the shard a customer is stored in.
+ *
+ * - ID: customers spread evenly over the shards (best write throughput)
+ * - COUNTRY: all customers of a country on the same shard (per-country queries hit
+ *   one shard, but large countries make their shard busier)
+ */
+public enum ShardKey {
+
+    ID {
+        @Override
+        long hash(Customer customer) {
+            return mix(customer.getId() != null ? customer.getId() : 0L);
+        }
+    },
+
+    COUNTRY {
+        @Override
+        long hash(Customer customer) {
+            return mix(customer.getCountry() != null ? customer.getCountry().hashCode() : 0L);
+        }
+    };
+
+    abstract long hash(Customer customer);
+
+    /**
+     * SplitMix64 finalizer: consecutive ids land on different shards in no fixed pattern.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 30;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 27;
+        h *= 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return h;
+    }
+}
@@ -0,0 +1,37 @@
+package com.dariel.batchdemo.advanced.sharding;
+
+import com.dariel.batchdemo.advanced.processing.PartitionedAggregation;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShardedAggregation - Scatter-gather aggregation over the customer shards.
+ *
+ * Scatter: every shard aggregates its own customers table on its own thread.
+ * Gather: the partial groups are merged shard by shard (see PartitionedAggregation),
+ * so CountryStatisticsReader hands out the same statistics as with a single database.
+ */
+public class ShardedAggregation extends PartitionedAggregation {
+
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+
+    public ShardedAggregation(List<DataSource> shards) {
+        super(shards.size());
+        for (DataSource shard : shards) {
+            this.shards.add(streamingTemplate(shard));
+        }
+    }
+
+    @Override
+    protected List<PartitionQuery> partitions() {
+        return shards.stream().map(shard -> new PartitionQuery(shard, SELECT_CUSTOMERS)).toList();
+    }
+
+    @Override
+    protected String partitionName() {
+        return "shards";
+    }
+}
@@ -0,0 +1,68 @@
+package com.dariel.batchdemo.advanced.sharding;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.processing.CountryStatisticsReader;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShardedCustomerReader - Reads the customers of every shard, one shard after the other.
+ *
+ * For readers that need the customers one by one (rollupStep, or resuming a serial
+ * aggregation checkpoint). The shard being read and its cursor position are saved
+ * in the ExecutionContext, so a restart continues in the same shard.
+ */
+public class ShardedCustomerReader implements ItemStreamReader<Customer> {
+
+    private static final String SHARD_KEY = "shardedCustomerReader.shard";
+
+    private final List<JdbcCursorItemReader<Customer>> readers = new ArrayList<>();
+    private int current;
+    private boolean open;
+
+    public ShardedCustomerReader(List<DataSource> shards) {
+        for (int i = 0; i < shards.size(); i++) {
+            readers.add(CountryStatisticsReader.databaseCustomerReader(shards.get(i), "customerReader-shard-" + i));
+        }
+    }
+
+    @Override
+    public Customer read() throws Exception {
+        while (true) {
+            Customer customer = readers.get(current).read();
+            if (customer != null || current == readers.size() - 1) {
+                return customer;
+            }
+            readers.get(current).close();
+            current++;
+            readers.get(current).open(new ExecutionContext());
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        current = executionContext.getInt(SHARD_KEY, 0);
+        readers.get(current).open(executionContext);
+        open = true;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putInt(SHARD_KEY, current);
+        readers.get(current).update(executionContext);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (open) {
+            readers.get(current).close();
+            open = false;
+        }
+    }
+}
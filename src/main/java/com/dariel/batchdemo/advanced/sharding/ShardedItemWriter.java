@@ -0,0 +1,106 @@
+package com.dariel.batchdemo.advanced.sharding;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToIntFunction;
+
+/**
+ * ShardedItemWriter - Splits each chunk by shard and writes all shards at the same time.
+ *
+ * The items of a chunk are routed to their shard (one delegate writer per shard), and
+ * the per-shard sub-chunks are written concurrently: one batch insert per shard, each
+ * on its own database. Writing a chunk takes as long as the slowest shard instead of
+ * the sum of all shards, so adding shards adds write throughput.
+ *
+ * If any shard fails, the chunk fails (after every shard has finished), with the other
+ * failures attached as suppressed exceptions.
+ */
+public class ShardedItemWriter<T> implements ItemWriter<T>, AutoCloseable {
+
+    private final List<? extends ItemWriter<T>> shardWriters;
+    private final ToIntFunction<T> router;
+    private final ExecutorService workers;
+    private final AtomicLongArray written;
+
+    /**
+     * @param shardWriters one writer per shard
+     * @param router       shard index (0 to shardWriters.size() - 1) of an item
+     */
+    public ShardedItemWriter(List<? extends ItemWriter<T>> shardWriters, ToIntFunction<T> router) {
+        this.shardWriters = List.copyOf(shardWriters);
+        this.router = router;
+        this.written = new AtomicLongArray(shardWriters.size());
+        this.workers = Executors.newFixedThreadPool(shardWriters.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends T> chunk) throws Exception {
+        List<List<T>> byShard = new ArrayList<>(shardWriters.size());
+        for (int i = 0; i < shardWriters.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (T item : chunk) {
+            byShard.get(router.applyAsInt(item)).add(item);
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shardWriters.size(); shard++) {
+            List<T> items = byShard.get(shard);
+            if (!items.isEmpty()) {
+                ItemWriter<T> writer = shardWriters.get(shard);
+                int index = shard;
+                futures.add(workers.submit(() -> {
+                    writer.write(new Chunk<>(items));
+                    written.addAndGet(index, items.size());
+                    return null;
+                }));
+            }
+        }
+
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception exception ? exception : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Items written to each shard so far.
+     */
+    public long[] getWrittenPerShard() {
+        long[] counts = new long[written.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = written.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,48 @@
+package com.dariel.batchdemo.advanced.storage;
+
+/**
+ * Plain in-memory Bloom filter over 64-bit key hashes.
+ *
+ * "No" answers are always right, "maybe" answers are wrong about 1% of the time
+ * (at the expected number of items). Used to skip most lookups in the on-disk
+ * index for keys that were never seen before.
+ */
+final class BloomFilter {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long expectedItems) {
+        long n = Math.max(expectedItems, 1);
+        // Standard sizing: m = -n ln(p) / (ln 2)^2 bits, k = (m / n) ln 2 hash functions
+        long bits = (long) Math.ceil(-n * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        this.words = new long[wordCount];
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,176 @@
+package com.dariel.batchdemo.advanced.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks the blocks of a columnar snapshot through memory-mapped windows.
+ *
+ * The file is mapped in windows of up to 1 GiB; when a block does not fit in the
+ * current window a new one is mapped starting at that block. Files far larger than
+ * the heap (or than a single 2 GiB mapping) can therefore be scanned without copying
+ * column data onto the heap.
+ */
+final class ColumnarBlockCursor implements AutoCloseable {
+
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long limit;
+    private final List<String> dictionary = new ArrayList<>();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long nextBlockOffset = ColumnarFormat.FILE_HEADER_BYTES;
+
+    private int rowCount;
+    private int idsAt;
+    private int countriesAt;
+    private int amountsAt;
+    private int emailEndsAt;
+    private int emailsAt;
+
+    ColumnarBlockCursor(Path path) throws IOException {
+        this(path, -1);
+    }
+
+    /**
+     * @param limit only blocks ending at or before this file offset are visited (-1 = whole file)
+     */
+    ColumnarBlockCursor(Path path, long limit) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.limit = limit < 0 ? channel.size() : Math.min(limit, channel.size());
+        if (this.limit < ColumnarFormat.FILE_HEADER_BYTES) {
+            channel.close();
+            throw new IOException("Not a columnar snapshot (file too short): " + path);
+        }
+        map(0, ColumnarFormat.FILE_HEADER_BYTES);
+        if (window.getInt(0) != ColumnarFormat.FILE_MAGIC || window.getInt(4) != ColumnarFormat.VERSION) {
+            channel.close();
+            throw new IOException("Not a columnar snapshot (bad header): " + path);
+        }
+    }
+
+    /**
+     * Moves to the next block. Returns false once the end of the file (or limit) is reached.
+     */
+    boolean nextBlock() throws IOException {
+        if (nextBlockOffset >= limit) {
+            return false;
+        }
+
+        long offset = nextBlockOffset;
+        map(offset, ColumnarFormat.BLOCK_HEADER_BYTES);
+        int header = (int) (offset - windowStart);
+        if (window.getInt(header) != ColumnarFormat.BLOCK_MAGIC) {
+            throw new IOException("Corrupt columnar snapshot: no block at offset " + offset);
+        }
+        int rows = window.getInt(header + 4);
+        int newEntries = window.getInt(header + 8);
+        int emailBytes = window.getInt(header + 12);
+        offset += ColumnarFormat.BLOCK_HEADER_BYTES;
+
+        // Dictionary entries introduced by this block
+        for (int i = 0; i < newEntries; i++) {
+            map(offset, Integer.BYTES);
+            int length = window.getInt((int) (offset - windowStart));
+            offset += Integer.BYTES;
+            map(offset, length);
+            byte[] bytes = new byte[length];
+            window.get((int) (offset - windowStart), bytes);
+            dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            offset += length;
+        }
+
+        long columnBytes = (long) rows * ColumnarFormat.BYTES_PER_ROW + emailBytes;
+        if (offset + columnBytes > limit) {
+            throw new IOException("Corrupt columnar snapshot: truncated block at offset " + nextBlockOffset);
+        }
+        map(offset, columnBytes);
+
+        rowCount = rows;
+        idsAt = (int) (offset - windowStart);
+        countriesAt = idsAt + rows * Long.BYTES;
+        amountsAt = countriesAt + rows * Integer.BYTES;
+        emailEndsAt = amountsAt + rows * Double.BYTES;
+        emailsAt = emailEndsAt + rows * Integer.BYTES;
+        nextBlockOffset = offset + columnBytes;
+        return true;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    long id(int row) {
+        return window.getLong(idsAt + row * Long.BYTES);
+    }
+
+    int countryCode(int row) {
+        return window.getInt(countriesAt + row * Integer.BYTES);
+    }
+
+    String country(int row) {
+        return dictionary.get(countryCode(row));
+    }
+
+    double purchaseAmount(int row) {
+        return window.getDouble(amountsAt + row * Double.BYTES);
+    }
+
+    /**
+     * The email of a row, null if it had none.
+     */
+    String email(int row) {
+        int start = row == 0 ? 0 : window.getInt(emailEndsAt + (row - 1) * Integer.BYTES);
+        int end = window.getInt(emailEndsAt + row * Integer.BYTES);
+        if (end == start) {
+            return null;
+        }
+        byte[] bytes = new byte[end - start];
+        window.get(emailsAt + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Country dictionary as seen so far (grows as blocks are visited).
+     */
+    List<String> dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * File offset just after the current block.
+     */
+    long position() {
+        return nextBlockOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Makes sure [offset, offset + length) is inside the current window, remapping if needed.
+     */
+    private void map(long offset, long length) throws IOException {
+        if (offset + length > limit) {
+            throw new IOException("Corrupt columnar snapshot: read past end at offset " + offset);
+        }
+        if (window != null && offset >= windowStart && offset + length <= windowStart + window.capacity()) {
+            return;
+        }
+        long size = Math.min(Math.max(MAX_WINDOW_BYTES, length), limit - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        window.order(ColumnarFormat.BYTE_ORDER);
+        windowStart = offset;
+    }
+}
@@ -0,0 +1,396 @@
+package com.dariel.batchdemo.advanced.storage;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ColumnarCustomerWriter - Writes validated customers to a compact columnar snapshot.
+ *
+ * Used as an optional second writer in processStep (next to the JDBC writer) so later
+ * analytical steps can rescan the customers without going back through SQL.
+ *
+ * How it works:
+ * - Rows are buffered into column arrays (id, country code, purchase amount, email)
+ * - Countries are dictionary-encoded: each distinct country is stored once as text
+ * - A block is appended at the first commit after the buffer holds blockRows rows
+ *   (and when the step completes), so blocks span many chunks
+ *
+ * Restart: the file position after the last committed block is saved in the
+ * ExecutionContext. On restart the file is truncated back to that position, so rows
+ * from a chunk that was rolled back are never duplicated. Rows of committed chunks
+ * that are still waiting for their block are appended to a small journal next to the
+ * snapshot (path + ".tail") at every commit, and read back into the buffer on restart.
+ * Register the writer as a step listener too: once the step completes, the last
+ * rows are written as a block and the journal is deleted. close() never writes rows,
+ * so after a failed chunk the rows it rolled back stay out of the file, and the
+ * committed ones wait in the journal for the restart.
+ */
+public class ColumnarCustomerWriter implements ItemStreamWriter<Customer>, StepExecutionListener {
+
+    private static final String POSITION_KEY = "columnarCustomerWriter.position";
+    private static final String ROW_COUNT_KEY = "columnarCustomerWriter.row.count";
+    private static final String TAIL_START_KEY = "columnarCustomerWriter.tail.start";
+    private static final String TAIL_END_KEY = "columnarCustomerWriter.tail.end";
+
+    private static final int DEFAULT_BLOCK_ROWS = 64 * 1024;
+
+    private final Path path;
+    private final Path tailPath;
+    private final int blockRows;
+
+    private FileChannel channel;
+    private FileChannel tail;
+    private ByteBuffer buffer;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> countries = new ArrayList<>(); // The dictionary by code
+    private final List<String> newDictionaryEntries = new ArrayList<>();
+
+    private long[] ids;
+    private int[] countryCodes;
+    private double[] amounts;
+    private String[] emails;
+    private int pendingRows;
+    private int journaledRows; // Pending rows already in the journal
+    private long rowCount;
+
+    // Journal region holding the committed pending rows
+    private long tailStart;
+    private long tailEnd;
+    private boolean tailReusable; // The region is empty in the last commit: start over at 0
+
+    public ColumnarCustomerWriter(Path path) {
+        this(path, DEFAULT_BLOCK_ROWS);
+    }
+
+    /**
+     * @param blockRows rows a block collects before it is written (it may end up a chunk larger)
+     */
+    public ColumnarCustomerWriter(Path path, int blockRows) {
+        this.path = path;
+        this.tailPath = Path.of(path + ".tail");
+        this.blockRows = blockRows;
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        int capacity = Math.min(blockRows, 1024);
+        ids = new long[capacity];
+        countryCodes = new int[capacity];
+        amounts = new double[capacity];
+        emails = new String[capacity];
+        pendingRows = 0;
+        journaledRows = 0;
+        tailReusable = false;
+        dictionary.clear();
+        countries.clear();
+        newDictionaryEntries.clear();
+
+        try {
+            if (executionContext.containsKey(POSITION_KEY)) {
+                // Restart: drop anything written after the last commit and rebuild the dictionary
+                long position = executionContext.getLong(POSITION_KEY);
+                rowCount = executionContext.getLong(ROW_COUNT_KEY);
+                channel = FileChannel.open(path, StandardOpenOption.WRITE);
+                channel.truncate(position);
+                channel.position(position);
+                try (ColumnarBlockCursor cursor = new ColumnarBlockCursor(path, position)) {
+                    while (cursor.nextBlock()) {
+                        // visiting the blocks is enough to collect their dictionary entries
+                    }
+                    List<String> existing = cursor.dictionary();
+                    for (int code = 0; code < existing.size(); code++) {
+                        dictionary.put(existing.get(code), code);
+                    }
+                    countries.addAll(existing);
+                }
+                tailStart = executionContext.getLong(TAIL_START_KEY, 0L);
+                tailEnd = executionContext.getLong(TAIL_END_KEY, 0L);
+                tail = FileChannel.open(tailPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                tail.truncate(tailEnd);
+                restorePendingRows();
+            } else {
+                rowCount = 0;
+                tailStart = 0;
+                tailEnd = 0;
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                tail = FileChannel.open(tailPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                ByteBuffer header = ByteBuffer.allocate(ColumnarFormat.FILE_HEADER_BYTES).order(ColumnarFormat.BYTE_ORDER);
+                header.putInt(ColumnarFormat.FILE_MAGIC).putInt(ColumnarFormat.VERSION).flip();
+                writeFully(channel, header);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open columnar snapshot " + path, e);
+        }
+    }
+
+    @Override
+    public void write(@NonNull Chunk<? extends Customer> chunk) throws Exception {
+        for (Customer customer : chunk) {
+            add(customer.getId() != null ? customer.getId() : 0L,
+                    customer.getCountry() != null ? customer.getCountry() : "UNKNOWN",
+                    customer.getPurchaseAmount() != null ? customer.getPurchaseAmount() : 0.0,
+                    customer.getEmail());
+        }
+    }
+
+    @Override
+    public void update(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            // Called once per chunk, just before the transaction commits
+            if (tailReusable) {
+                // The previous commit left the journal empty, so nothing in it is needed any more
+                tail.truncate(0);
+                tailStart = 0;
+                tailEnd = 0;
+                tailReusable = false;
+            }
+            if (pendingRows >= blockRows) {
+                flushBlock();
+                tailStart = tailEnd;
+                tailReusable = true;
+            } else {
+                journalPendingRows();
+            }
+            executionContext.putLong(POSITION_KEY, channel.position());
+            executionContext.putLong(ROW_COUNT_KEY, rowCount);
+            executionContext.putLong(TAIL_START_KEY, tailStart);
+            executionContext.putLong(TAIL_END_KEY, tailEnd);
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not flush columnar snapshot " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(true);
+            channel.close();
+            tail.close();
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not close columnar snapshot " + path, e);
+        } finally {
+            channel = null;
+            tail = null;
+            ids = null;
+            countryCodes = null;
+            amounts = null;
+            emails = null;
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(@NonNull StepExecution stepExecution) {
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED && channel != null) {
+            try {
+                // Every row is committed: write the last block; a failed step keeps the journal for its restart
+                flushBlock();
+                channel.force(true);
+                Files.deleteIfExists(tailPath);
+            } catch (IOException e) {
+                throw new ItemStreamException("Could not finish columnar snapshot " + path, e);
+            }
+        }
+        return stepExecution.getExitStatus();
+    }
+
+    private void add(long id, String country, double amount, String email) {
+        if (pendingRows == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            countryCodes = Arrays.copyOf(countryCodes, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+        }
+        ids[pendingRows] = id;
+        countryCodes[pendingRows] = encode(country);
+        amounts[pendingRows] = amount;
+        emails[pendingRows] = email;
+        pendingRows++;
+    }
+
+    private int encode(String country) {
+        Integer code = dictionary.get(country);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.put(country, code);
+            countries.add(country);
+            newDictionaryEntries.add(country);
+        }
+        return code;
+    }
+
+    /**
+     * Appends the buffered rows as one block: header, new dictionary entries, then each column.
+     */
+    private void flushBlock() throws IOException {
+        if (pendingRows == 0) {
+            return;
+        }
+
+        List<byte[]> entries = new ArrayList<>(newDictionaryEntries.size());
+        int dictionaryBytes = 0;
+        for (String country : newDictionaryEntries) {
+            byte[] bytes = country.getBytes(StandardCharsets.UTF_8);
+            entries.add(bytes);
+            dictionaryBytes += Integer.BYTES + bytes.length;
+        }
+        byte[][] emailBytes = new byte[pendingRows][];
+        int[] emailEnds = new int[pendingRows];
+        int emailTotal = 0;
+        for (int row = 0; row < pendingRows; row++) {
+            emailBytes[row] = emails[row] != null ? emails[row].getBytes(StandardCharsets.UTF_8) : new byte[0];
+            emailTotal += emailBytes[row].length;
+            emailEnds[row] = emailTotal;
+        }
+
+        int blockBytes = ColumnarFormat.BLOCK_HEADER_BYTES + dictionaryBytes
+                + pendingRows * ColumnarFormat.BYTES_PER_ROW + emailTotal;
+        ensureBuffer(blockBytes);
+
+        buffer.putInt(ColumnarFormat.BLOCK_MAGIC).putInt(pendingRows).putInt(entries.size()).putInt(emailTotal);
+        for (byte[] bytes : entries) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        // Bulk-copy each column through typed views of the same buffer
+        int at = buffer.position();
+        buffer.asLongBuffer().put(ids, 0, pendingRows);
+        at += pendingRows * Long.BYTES;
+        buffer.position(at);
+        buffer.asIntBuffer().put(countryCodes, 0, pendingRows);
+        at += pendingRows * Integer.BYTES;
+        buffer.position(at);
+        buffer.asDoubleBuffer().put(amounts, 0, pendingRows);
+        at += pendingRows * Double.BYTES;
+        buffer.position(at);
+        buffer.asIntBuffer().put(emailEnds, 0, pendingRows);
+        at += pendingRows * Integer.BYTES;
+        buffer.position(at);
+        for (byte[] bytes : emailBytes) {
+            buffer.put(bytes);
+        }
+
+        buffer.flip();
+        writeFully(channel, buffer);
+
+        rowCount += pendingRows;
+        pendingRows = 0;
+        journaledRows = 0;
+        Arrays.fill(emails, null);
+        newDictionaryEntries.clear();
+    }
+
+    /**
+     * Appends the rows buffered since the last commit to the journal, one row after the other:
+     * long id, double amount, country, email (each string as int length + UTF-8 bytes, -1 = null).
+     */
+    private void journalPendingRows() throws IOException {
+        if (journaledRows == pendingRows) {
+            return;
+        }
+        List<byte[]> strings = new ArrayList<>();
+        int bytes = 0;
+        for (int row = journaledRows; row < pendingRows; row++) {
+            byte[] country = countries.get(countryCodes[row]).getBytes(StandardCharsets.UTF_8);
+            byte[] email = emails[row] != null ? emails[row].getBytes(StandardCharsets.UTF_8) : null;
+            strings.add(country);
+            strings.add(email);
+            bytes += Long.BYTES + Double.BYTES + 2 * Integer.BYTES + country.length + (email != null ? email.length : 0);
+        }
+        ensureBuffer(bytes);
+        for (int row = journaledRows, i = 0; row < pendingRows; row++) {
+            buffer.putLong(ids[row]).putDouble(amounts[row]);
+            for (int field = 0; field < 2; field++) {
+                byte[] string = strings.get(i++);
+                if (string == null) {
+                    buffer.putInt(-1);
+                } else {
+                    buffer.putInt(string.length).put(string);
+                }
+            }
+        }
+        buffer.flip();
+        tail.position(tailEnd);
+        writeFully(tail, buffer);
+        tailEnd += bytes;
+        journaledRows = pendingRows;
+    }
+
+    /**
+     * Restart: reads the committed rows that had not reached a block back into the buffer.
+     */
+    private void restorePendingRows() throws IOException {
+        int bytes = (int) (tailEnd - tailStart);
+        if (bytes == 0) {
+            return;
+        }
+        ByteBuffer journal = ByteBuffer.allocate(bytes).order(ColumnarFormat.BYTE_ORDER);
+        while (journal.hasRemaining()) {
+            if (tail.read(journal, tailStart + journal.position()) < 0) {
+                throw new IOException("Columnar snapshot journal " + tailPath + " is shorter than its checkpoint");
+            }
+        }
+        journal.flip();
+        while (journal.hasRemaining()) {
+            long id = journal.getLong();
+            double amount = journal.getDouble();
+            String country = readString(journal);
+            String email = readString(journal);
+            add(id, country, amount, email);
+        }
+        journaledRows = pendingRows;
+    }
+
+    private static String readString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureBuffer(int bytes) {
+        if (buffer == null || buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes).order(ColumnarFormat.BYTE_ORDER);
+        }
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            target.write(source);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.dariel.batchdemo.advanced.storage;
+
+import java.nio.ByteOrder;
+
+/**
+ * ColumnarFormat - Layout of the binary customer snapshot written by processStep.
+ *
+ * The file is a small header followed by a sequence of blocks:
+ *
+ * <pre>
+ * FILE HEADER   int magic, int version
+ * BLOCK         int magic, int rowCount, int newDictionaryEntries, int emailBytes
+ *               newDictionaryEntries x (int length, UTF-8 bytes)   - country names first seen in this block
+ *               long[rowCount]   id column
+ *               int[rowCount]    country column (dictionary codes)
+ *               double[rowCount] purchaseAmount column
+ *               int[rowCount]    email column: end offset of each row's email in the bytes below
+ *               byte[emailBytes] email column: the UTF-8 emails, back to back
+ * </pre>
+ *
+ * Each column of a block is stored contiguously, so an analytical scan only touches
+ * primitive arrays. The country dictionary is spread over the blocks (each block
+ * carries the entries it introduced), which keeps the file append-only and lets a
+ * restarted writer simply truncate back to the last committed block.
+ * A missing email is stored as an empty one.
+ */
+final class ColumnarFormat {
+
+    // Little endian matches the CPUs we run on, so mapped reads need no byte swapping
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int FILE_MAGIC = 0x43434F4C;  // "CCOL"
+    static final int VERSION = 2;
+    static final int FILE_HEADER_BYTES = 8;
+
+    static final int BLOCK_MAGIC = 0x424C4B31; // "BLK1"
+    static final int BLOCK_HEADER_BYTES = 16;
+
+    // id (long) + country code (int) + purchase amount (double) + email end offset (int), without the email bytes
+    static final int BYTES_PER_ROW = Long.BYTES + Integer.BYTES + Double.BYTES + Integer.BYTES;
+
+    private ColumnarFormat() {
+    }
+}
@@ -0,0 +1,131 @@
+package com.dariel.batchdemo.advanced.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * CustomerDeduplicationIndex - Remembers every customer id and email already loaded.
+ *
+ * Two layers:
+ * - An in-memory Bloom filter answers "definitely new" for most new keys without
+ *   touching the index file at all
+ * - A memory-mapped hash table on disk holds the exact set of keys and survives
+ *   restarts, growing (by doubling) as new customer files arrive
+ *
+ * Keys are 64-bit hashes of "id:&lt;id&gt;" and "email:&lt;normalized email&gt;". With 64-bit
+ * hashes an accidental collision is astronomically unlikely even at billions of keys.
+ */
+public class CustomerDeduplicationIndex implements AutoCloseable {
+
+    private static final long INITIAL_CAPACITY = 1 << 16;
+
+    private final MappedLongHashSet table;
+    private BloomFilter bloomFilter;
+    private long bloomCapacity;
+
+    private long bloomRejections;
+    private long tableLookups;
+
+    public CustomerDeduplicationIndex(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.table = new MappedLongHashSet(file, INITIAL_CAPACITY);
+        rebuildBloomFilter();
+    }
+
+    /**
+     * Key for a customer id.
+     */
+    public static long idKey(Long id) {
+        return hash("id:" + id);
+    }
+
+    /**
+     * Key for an email address; case and surrounding spaces are ignored.
+     */
+    public static long emailKey(String email) {
+        return hash("email:" + (email == null ? "" : email.trim().toLowerCase(Locale.ROOT)));
+    }
+
+    public boolean contains(long key) {
+        if (!bloomFilter.mightContain(key)) {
+            bloomRejections++;
+            return false; // Bloom filters never give false negatives
+        }
+        tableLookups++;
+        return table.contains(key);
+    }
+
+    public void add(long key) throws IOException {
+        if (table.add(key)) {
+            if (table.capacity() != bloomCapacity) {
+                rebuildBloomFilter(); // The table grew: size the filter for the new capacity
+            } else {
+                bloomFilter.add(key);
+            }
+        }
+    }
+
+    public long size() {
+        return table.size();
+    }
+
+    /**
+     * Lookups answered by the Bloom filter alone (no disk access).
+     */
+    public long getBloomRejections() {
+        return bloomRejections;
+    }
+
+    /**
+     * Lookups that had to probe the on-disk table.
+     */
+    public long getTableLookups() {
+        return tableLookups;
+    }
+
+    /**
+     * Flushes the mapped table to disk.
+     */
+    public void flush() {
+        table.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        table.close();
+    }
+
+    /**
+     * The filter is not persisted; it is rebuilt from the table on open and whenever
+     * the table doubles, sized for the most keys the table holds before growing again.
+     */
+    private void rebuildBloomFilter() {
+        bloomCapacity = table.capacity();
+        BloomFilter filter = new BloomFilter(bloomCapacity / 2);
+        table.forEach(filter::add);
+        bloomFilter = filter;
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters, followed by the splitmix64 finaliser so that
+     * the low bits (used for table slots) are well mixed.
+     */
+    static long hash(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 30;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 27;
+        h *= 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return MappedLongHashSet.nonZero(h);
+    }
+}
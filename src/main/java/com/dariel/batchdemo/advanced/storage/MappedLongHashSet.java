@@ -0,0 +1,201 @@
+package com.dariel.batchdemo.advanced.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of 64-bit hashes stored in a memory-mapped file (open addressing, linear probing).
+ *
+ * The table lives in the page cache rather than on the heap, and survives restarts:
+ * reopening the file gives back every hash added before. When the table gets half
+ * full it is rebuilt into a file twice the size, which then replaces the old one.
+ *
+ * Layout: header (magic, capacity, size) followed by capacity long slots; 0 = empty.
+ */
+final class MappedLongHashSet implements AutoCloseable {
+
+    private static final long MAGIC = 0x4444555049445831L; // "DDUPIDX1"
+    private static final int HEADER_BYTES = 64;
+    private static final int SIZE_OFFSET = 16;
+
+    // Each mapping covers 2^27 slots (1 GiB) so tables can grow past the 2 GiB mapping limit
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private long capacity;
+    private long size;
+
+    MappedLongHashSet(Path path, long initialCapacity) throws IOException {
+        this.path = path;
+        if (Files.exists(path) && Files.size(path) > 0) {
+            map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            if (header.getLong(0) != MAGIC) {
+                close();
+                throw new IOException("Not a deduplication index: " + path);
+            }
+        } else {
+            create(path, Long.highestOneBit(Math.max(initialCapacity, 1024) - 1) << 1);
+            map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+    }
+
+    boolean contains(long hash) {
+        long key = nonZero(hash);
+        long mask = capacity - 1;
+        for (long slot = key & mask; ; slot = (slot + 1) & mask) {
+            long value = get(slot);
+            if (value == 0) {
+                return false;
+            }
+            if (value == key) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds the hash. Returns false if it was already present.
+     */
+    boolean add(long hash) throws IOException {
+        if ((size + 1) * 2 > capacity) {
+            grow();
+        }
+        if (insert(nonZero(hash))) {
+            size++;
+            header.putLong(SIZE_OFFSET, size);
+            return true;
+        }
+        return false;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    void forEach(LongConsumer action) {
+        for (long slot = 0; slot < capacity; slot++) {
+            long value = get(slot);
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+            channel = null;
+            header = null;
+            segments = null;
+        }
+    }
+
+    /**
+     * Keys are stored as-is, so 0 (the empty marker) is folded onto 1.
+     */
+    static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    private boolean insert(long key) {
+        long mask = capacity - 1;
+        for (long slot = key & mask; ; slot = (slot + 1) & mask) {
+            long value = get(slot);
+            if (value == 0) {
+                put(slot, key);
+                return true;
+            }
+            if (value == key) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Rehashes into a table twice the size, written next to the current file and then
+     * moved over it, so a crash during growth leaves the old table intact.
+     */
+    private void grow() throws IOException {
+        Path grown = path.resolveSibling(path.getFileName() + ".grow");
+        MappedLongHashSet bigger = new MappedLongHashSet(create(grown, capacity * 2));
+        forEach(bigger::insert);
+        bigger.size = size;
+        bigger.header.putLong(SIZE_OFFSET, size);
+        bigger.close();
+
+        close();
+        Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private MappedLongHashSet(Path freshFile) throws IOException {
+        this.path = freshFile;
+        map(FileChannel.open(freshFile, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private static Path create(Path file, long capacity) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ)) {
+            MappedByteBuffer newHeader = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            newHeader.order(ByteOrder.LITTLE_ENDIAN);
+            newHeader.putLong(0, MAGIC);
+            newHeader.putLong(8, capacity);
+            newHeader.putLong(SIZE_OFFSET, 0);
+            newHeader.force();
+            // Writing the last byte extends the file; the slots in between read as zero (empty)
+            out.write(ByteBuffer.wrap(new byte[1]), HEADER_BYTES + capacity * Long.BYTES - 1);
+        }
+        return file;
+    }
+
+    private void map(FileChannel fileChannel) throws IOException {
+        channel = fileChannel;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = header.getLong(8);
+        size = header.getLong(SIZE_OFFSET);
+
+        long segmentSlots = 1L << SEGMENT_SHIFT;
+        int segmentCount = (int) ((capacity + segmentSlots - 1) / segmentSlots);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long firstSlot = (long) i * segmentSlots;
+            long slots = Math.min(segmentSlots, capacity - firstSlot);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + firstSlot * Long.BYTES, slots * Long.BYTES);
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private long get(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & SEGMENT_MASK) << 3);
+    }
+
+    private void put(long slot, long value) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) (slot & SEGMENT_MASK) << 3, value);
+    }
+}
@@ -0,0 +1,51 @@
+package com.dariel.batchdemo.advanced.validation;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+
+import java.util.function.Function;
+
+/**
+ * The Customer properties a rule can refer to, resolved to plain getters at compile time.
+ */
+enum CustomerField {
+
+    ID("id", null, Customer::getId),
+    FIRST_NAME("firstName", Customer::getFirstName, null),
+    LAST_NAME("lastName", Customer::getLastName, null),
+    EMAIL("email", Customer::getEmail, null),
+    COUNTRY("country", Customer::getCountry, null),
+    PURCHASE_AMOUNT("purchaseAmount", null, Customer::getPurchaseAmount);
+
+    private final String property;
+    private final Function<Customer, String> text;
+    private final Function<Customer, Number> number;
+
+    CustomerField(String property, Function<Customer, String> text, Function<Customer, Number> number) {
+        this.property = property;
+        this.text = text;
+        this.number = number;
+    }
+
+    static CustomerField of(String property) {
+        for (CustomerField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown customer field '" + property + "' in validation rule");
+    }
+
+    Function<Customer, String> text() {
+        if (text == null) {
+            throw new IllegalArgumentException("Field '" + property + "' is numeric; use GREATER_THAN or LESS_THAN");
+        }
+        return text;
+    }
+
+    Function<Customer, Number> number() {
+        if (number == null) {
+            throw new IllegalArgumentException("Field '" + property + "' is text; use a text operator");
+        }
+        return number;
+    }
+}
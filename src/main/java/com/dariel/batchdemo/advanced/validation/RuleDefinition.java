@@ -0,0 +1,12 @@
+package com.dariel.batchdemo.advanced.validation;
+
+/**
+ * RuleDefinition - One declarative validation rule, as written in application.yml.
+ *
+ * Example: { name: positive-purchase-amount, field: purchaseAmount, operator: GREATER_THAN, value: 0 }
+ *
+ * A customer passes the rule when "field operator value" holds. A missing (null)
+ * field value never passes.
+ */
+public record RuleDefinition(String name, String field, RuleOperator operator, String value) {
+}
@@ -0,0 +1,21 @@
+package com.dariel.batchdemo.advanced.validation;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * ValidationProperties - The batchdemo.validation section of application.yml.
+ *
+ * @param rules           validation rules for processStep (the built-in defaults when empty)
+ * @param reorderInterval how many items between two re-orderings of the rule chain
+ */
+@ConfigurationProperties(prefix = "batchdemo.validation")
+public record ValidationProperties(List<RuleDefinition> rules,
+                                   @DefaultValue("1024") int reorderInterval) {
+
+    public List<RuleDefinition> rulesOrDefaults() {
+        return rules == null || rules.isEmpty() ? ValidationRuleEngine.DEFAULT_RULES : rules;
+    }
+}
@@ -2,14 +2,17 @@ package com.dariel.batchdemo.basics.config;
 
 import com.dariel.batchdemo.basics.domain.Person;
 import com.dariel.batchdemo.basics.processing.PersonProcessor;
+import com.dariel.batchdemo.common.output.NioDelimitedItemWriter;
+import com.dariel.batchdemo.common.processing.FieldTransform;
+import com.dariel.batchdemo.common.processing.StreamingLineTransformTasklet;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
@@ -21,6 +24,10 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.WritableResource;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+
 /**
  * BasicsJobConfig - The SIMPLEST possible Spring Batch example.
  * 
@@ -50,10 +57,13 @@ public class BasicsJobConfig {
      * - Writes to CSV
      */
     @Bean
-    public Job basicsJob(JobRepository jobRepository, Step basicsStep) {
+    public Job basicsJob(JobRepository jobRepository,
+                         Step basicsStep,
+                         Step basicsStreamingStep,
+                         @Value("${batchdemo.basics.streaming.enabled:false}") boolean streamingEnabled) {
         return new JobBuilder("basicsJob", jobRepository)
                 .incrementer(new RunIdIncrementer()) // Allows running multiple times
-                .start(basicsStep)
+                .start(streamingEnabled ? basicsStreamingStep : basicsStep)
                 .build();
     }
 
@@ -76,7 +86,7 @@ public class BasicsJobConfig {
                           PlatformTransactionManager transactionManager,
                           FlatFileItemReader<Person> personReader,
                           PersonProcessor personProcessor,
-                          FlatFileItemWriter<Person> personWriter) {
+                          ItemStreamWriter<Person> personWriter) {
         return new StepBuilder("basicsStep", jobRepository)
                 .<Person, Person>chunk(10, transactionManager) // Process 10 items at a time
                 .reader(personReader)      // READ: Read from input.csv
@@ -85,6 +95,33 @@ public class BasicsJobConfig {
                 .build();
     }
 
+    /**
+     * OPTIONAL FAST PATH: the same transformation without Person objects.
+     * 
+     * Used instead of basicsStep when batchdemo.basics.streaming.enabled=true.
+     * The tasklet scans the CSV bytes, uppercases both columns in place and copies
+     * the bytes to the output - same result, no reader/processor/writer objects per line.
+     * It still commits every commit-interval lines and can be restarted.
+     */
+    @Bean
+    public Step basicsStreamingStep(JobRepository jobRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("classpath:basics/input.csv") Resource inputFile,
+                                    @Value("file:basics-output.csv") WritableResource outputFile,
+                                    @Value("${batchdemo.basics.streaming.commit-interval:1000}") int commitInterval)
+            throws IOException {
+        LinkedHashMap<String, FieldTransform> columns = new LinkedHashMap<>();
+        columns.put("firstName", FieldTransform.UPPER_CASE); // Same as PersonProcessor
+        columns.put("lastName", FieldTransform.UPPER_CASE);
+        StreamingLineTransformTasklet tasklet = new StreamingLineTransformTasklet(
+                inputFile, 1, outputFile.getFile().toPath(), "firstName,lastName", columns, commitInterval);
+
+        return new StepBuilder("basicsStreamingStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .stream(tasklet) // Saves the input and output offsets after every commit
+                .build();
+    }
+
     // ============================================================================
     // READER: Reads data from source
     // ============================================================================
@@ -150,8 +187,23 @@ public class BasicsJobConfig {
      * - This is much faster than writing one at a time
      */
     @Bean
-    public FlatFileItemWriter<Person> personWriter(
-            @Value("file:basics-output.csv") WritableResource outputFile) {
+    public ItemStreamWriter<Person> personWriter(
+            @Value("file:basics-output.csv") WritableResource outputFile,
+            @Value("${batchdemo.output.nio-writer:false}") boolean nioWriter,
+            @Value("${batchdemo.output.gzip:false}") boolean gzip,
+            @Value("${batchdemo.output.buffer-kb:1024}") int bufferKb) throws IOException {
+        if (nioWriter) {
+            // Optional fast writer for big outputs (see batchdemo.output in application.yml)
+            Path path = outputFile.getFile().toPath();
+            if (gzip) {
+                path = path.resolveSibling(path.getFileName() + ".gz");
+            }
+            NioDelimitedItemWriter<Person> writer = new NioDelimitedItemWriter<>(
+                    path, "firstName,lastName", gzip, bufferKb * 1024,
+                    (person, line) -> line.text(person.getFirstName()).text(person.getLastName()));
+            writer.setName("personWriter");
+            return writer;
+        }
         return new FlatFileItemWriterBuilder<Person>()
                 .name("personWriter")
                 .resource(outputFile)
@@ -162,4 +214,3 @@ public class BasicsJobConfig {
                 .build();
     }
 }
-
@@ -0,0 +1,62 @@
+package com.dariel.batchdemo.common.processing;
+
+/**
+ * FieldTransform - A per-field string function that can also run on raw bytes.
+ *
+ * Used by StreamingLineTransformTasklet: {@link #transformInPlace} is tried first on the
+ * UTF-8 bytes of the field inside the read buffer. When it cannot handle a field (for
+ * example a non-ASCII character whose upper case has another length) it returns false,
+ * WITHOUT having changed anything, and the line goes through {@link #transform} instead.
+ */
+public interface FieldTransform {
+
+    /**
+     * Transforms bytes {@code [from, to)} in place, keeping their length.
+     *
+     * @return false if the field must be transformed as a String instead
+     */
+    boolean transformInPlace(byte[] bytes, int from, int to);
+
+    String transform(String value);
+
+    /**
+     * Leaves the field as it is.
+     */
+    FieldTransform IDENTITY = new FieldTransform() {
+        @Override
+        public boolean transformInPlace(byte[] bytes, int from, int to) {
+            return true;
+        }
+
+        @Override
+        public String transform(String value) {
+            return value;
+        }
+    };
+
+    /**
+     * Upper case, like String.toUpperCase: ASCII letters in place, anything else as a String.
+     */
+    FieldTransform UPPER_CASE = new FieldTransform() {
+        @Override
+        public boolean transformInPlace(byte[] bytes, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] < 0) {
+                    return false; // Multi-byte UTF-8 character
+                }
+            }
+            for (int i = from; i < to; i++) {
+                byte b = bytes[i];
+                if (b >= 'a' && b <= 'z') {
+                    bytes[i] = (byte) (b - ('a' - 'A'));
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String transform(String value) {
+            return value.toUpperCase();
+        }
+    };
+}
@@ -0,0 +1,382 @@
+package com.dariel.batchdemo.common.processing;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * StreamingLineTransformTasklet - CSV to CSV without creating an object per line.
+ *
+ * For jobs like basicsJob, where "processing" is just a string function per field,
+ * the usual reader → processor → writer pipeline spends most of its time building
+ * objects: a String per line, a FieldSet, a bean filled through reflection, a second
+ * bean in the processor, and a String again in the writer. This tasklet works on bytes:
+ * 1. Reads the input in large blocks and finds lines and fields by scanning for ',' and '\n'
+ * 2. Applies each column's FieldTransform in place, on the bytes in the read buffer
+ * 3. Copies the transformed byte ranges straight into the output buffer
+ *
+ * The output is the same as with a FlatFileItemReader (delimited, fields trimmed,
+ * '#' comment lines skipped) and a delimited FlatFileItemWriter. Lines the fast path
+ * does not handle (quoted fields, wrong number of fields) are parsed with a
+ * DelimitedLineTokenizer, so they behave exactly like in the normal reader - including
+ * the FlatFileParseException for a bad line.
+ *
+ * CHUNKS AND RESTARTS: every call of execute() handles {@code linesPerChunk} lines and
+ * is its own transaction, like a chunk. After each one, the byte offset in the input,
+ * the line number and the output file position are saved in the ExecutionContext.
+ * A restart truncates the output to the saved position and continues reading at the
+ * saved offset. Register the tasklet as a stream of its step for this to work.
+ */
+public class StreamingLineTransformTasklet implements Tasklet, ItemStream {
+
+    private static final String INPUT_OFFSET_KEY = "streamingLineTransform.inputOffset";
+    private static final String LINE_NUMBER_KEY = "streamingLineTransform.lineNumber";
+    private static final String OUTPUT_POSITION_KEY = "streamingLineTransform.outputPosition";
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final byte DELIMITER = ',';
+    private static final byte QUOTE = '"';
+    private static final byte COMMENT = '#';
+
+    private final Resource input;
+    private final int linesToSkip;
+    private final Path output;
+    private final String header;
+    private final FieldTransform[] transforms;
+    private final int linesPerChunk;
+    private final DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+
+    private ReadableByteChannel in;
+    private byte[] block = new byte[BUFFER_SIZE];
+    private int blockStart; // First byte not handled yet
+    private int blockEnd;   // End of the bytes read into the block
+    private boolean endOfInput;
+    private long inputOffset;
+    private long lineNumber;
+
+    private FileChannel out;
+    private ByteBuffer outputBuffer;
+
+    // Field boundaries of the current line, reused for every line
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+
+    /**
+     * @param input         CSV file to read
+     * @param linesToSkip   header lines of the input
+     * @param output        CSV file to write
+     * @param header        first line of the output (null = none)
+     * @param columns       the input columns in order, each with its transform
+     * @param linesPerChunk lines per transaction (the commit interval)
+     */
+    public StreamingLineTransformTasklet(Resource input, int linesToSkip, Path output, String header,
+                                         LinkedHashMap<String, FieldTransform> columns, int linesPerChunk) {
+        this.input = input;
+        this.linesToSkip = linesToSkip;
+        this.output = output;
+        this.header = header;
+        this.transforms = columns.values().toArray(new FieldTransform[0]);
+        this.linesPerChunk = linesPerChunk;
+        this.tokenizer.setNames(columns.keySet().toArray(new String[0]));
+        this.fieldStarts = new int[transforms.length];
+        this.fieldEnds = new int[transforms.length];
+    }
+
+    @Override
+    public void open(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        blockStart = 0;
+        blockEnd = 0;
+        endOfInput = false;
+        outputBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try {
+            if (executionContext.containsKey(INPUT_OFFSET_KEY)) {
+                // Restart: continue after the last committed chunk
+                inputOffset = executionContext.getLong(INPUT_OFFSET_KEY);
+                lineNumber = executionContext.getLong(LINE_NUMBER_KEY);
+                long outputPosition = executionContext.getLong(OUTPUT_POSITION_KEY);
+                openInputAt(inputOffset);
+                out = FileChannel.open(output, StandardOpenOption.WRITE);
+                out.truncate(outputPosition);
+                out.position(outputPosition);
+            } else {
+                inputOffset = 0;
+                lineNumber = 0;
+                openInputAt(0);
+                out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                if (header != null) {
+                    byte[] headerBytes = (header + "\n").getBytes(StandardCharsets.UTF_8);
+                    ensureOutput(headerBytes.length);
+                    outputBuffer.put(headerBytes);
+                }
+                for (int i = 0; i < linesToSkip; i++) {
+                    int end = nextLine();
+                    if (end < 0) {
+                        break;
+                    }
+                    lineNumber++;
+                    consumeLine(end);
+                }
+                flushOutput();
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open " + input.getDescription() + " or " + output, e);
+        }
+    }
+
+    @Override
+    public RepeatStatus execute(@NonNull StepContribution contribution, @NonNull ChunkContext chunkContext) throws Exception {
+        int lines = 0;
+        boolean finished = false;
+        while (lines < linesPerChunk) {
+            int end = nextLine();
+            if (end < 0) {
+                finished = true;
+                break;
+            }
+            if (transformLine(blockStart, end)) {
+                contribution.incrementReadCount();
+                lines++;
+            }
+            consumeLine(end);
+        }
+        flushOutput();
+        contribution.incrementWriteCount(lines);
+        return finished ? RepeatStatus.FINISHED : RepeatStatus.CONTINUABLE;
+    }
+
+    @Override
+    public void update(@NonNull ExecutionContext executionContext) throws ItemStreamException {
+        if (out == null) {
+            return;
+        }
+        try {
+            // execute() flushed its lines: the position is that of the chunk about to commit
+            executionContext.putLong(INPUT_OFFSET_KEY, inputOffset);
+            executionContext.putLong(LINE_NUMBER_KEY, lineNumber);
+            executionContext.putLong(OUTPUT_POSITION_KEY, out.position());
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not read the position of " + output, e);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                flushOutput();
+                out.force(true);
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not close " + output, e);
+        } finally {
+            in = null;
+            out = null;
+            outputBuffer = null;
+        }
+    }
+
+    /**
+     * Transforms the line in {@code block[start, end)} and appends it to the output.
+     *
+     * @return false for a comment line (nothing written)
+     */
+    private boolean transformLine(int start, int end) throws IOException {
+        lineNumber++;
+        if (end > start && block[end - 1] == '\r') {
+            end--; // Windows line ending
+        }
+        if (end > start && block[start] == COMMENT) {
+            return false;
+        }
+
+        // Fast path: find the fields, give up on quotes or a wrong field count
+        int field = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || block[i] == DELIMITER) {
+                if (field == transforms.length) {
+                    transformLineAsString(start, end); // Too many fields
+                    return true;
+                }
+                fieldStarts[field] = fieldStart;
+                fieldEnds[field] = i;
+                field++;
+                fieldStart = i + 1;
+            } else if (block[i] == QUOTE) {
+                transformLineAsString(start, end);
+                return true;
+            }
+        }
+        if (field != transforms.length) {
+            transformLineAsString(start, end); // Too few fields
+            return true;
+        }
+
+        for (int f = 0; f < transforms.length; f++) {
+            // Trim like FieldSet.readString does
+            int from = fieldStarts[f];
+            int to = fieldEnds[f];
+            while (from < to && (block[from] & 0xFF) <= ' ') {
+                from++;
+            }
+            while (to > from && (block[to - 1] & 0xFF) <= ' ') {
+                to--;
+            }
+
+            if (f > 0) {
+                ensureOutput(1);
+                outputBuffer.put(DELIMITER);
+            }
+            if (transforms[f].transformInPlace(block, from, to)) {
+                ensureOutput(to - from);
+                outputBuffer.put(block, from, to - from);
+            } else {
+                putText(transforms[f].transform(new String(block, from, to - from, StandardCharsets.UTF_8)));
+            }
+        }
+        ensureOutput(1);
+        outputBuffer.put((byte) '\n');
+        return true;
+    }
+
+    /**
+     * Slow path, for lines the byte scanner does not handle: parse with the same
+     * tokenizer a FlatFileItemReader would use.
+     */
+    private void transformLineAsString(int start, int end) throws IOException {
+        String line = new String(block, start, end - start, StandardCharsets.UTF_8);
+        FieldSet fields;
+        try {
+            fields = tokenizer.tokenize(line);
+        } catch (RuntimeException e) {
+            throw new FlatFileParseException("Parsing error at line: " + lineNumber + " in resource=["
+                    + input.getDescription() + "], input=[" + line + "]", e, line, (int) lineNumber);
+        }
+        for (int f = 0; f < transforms.length; f++) {
+            if (f > 0) {
+                ensureOutput(1);
+                outputBuffer.put(DELIMITER);
+            }
+            putText(transforms[f].transform(fields.readString(f)));
+        }
+        ensureOutput(1);
+        outputBuffer.put((byte) '\n');
+    }
+
+    private void putText(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureOutput(bytes.length);
+        outputBuffer.put(bytes);
+    }
+
+    /**
+     * Returns the end (exclusive, before '\n') of the next line starting at blockStart,
+     * reading more input when needed, or -1 at the end of the input.
+     */
+    private int nextLine() throws IOException {
+        int scanFrom = blockStart;
+        while (true) {
+            for (int i = scanFrom; i < blockEnd; i++) {
+                if (block[i] == '\n') {
+                    return i;
+                }
+            }
+            if (endOfInput) {
+                return blockStart < blockEnd ? blockEnd : -1; // Last line without a line break
+            }
+            scanFrom = blockEnd - blockStart;
+            fillBlock();
+        }
+    }
+
+    /**
+     * Moves past the line nextLine() found (and its line break).
+     */
+    private void consumeLine(int end) {
+        int next = Math.min(end + 1, blockEnd);
+        inputOffset += next - blockStart;
+        blockStart = next;
+    }
+
+    /**
+     * Keeps the unhandled bytes, moved to the front of the block (grown for very long lines),
+     * and reads more input after them.
+     */
+    private void fillBlock() throws IOException {
+        int pending = blockEnd - blockStart;
+        if (pending == block.length) {
+            block = Arrays.copyOf(block, block.length * 2);
+        }
+        System.arraycopy(block, blockStart, block, 0, pending);
+        blockStart = 0;
+        blockEnd = pending;
+        int read = in.read(ByteBuffer.wrap(block, blockEnd, block.length - blockEnd));
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            blockEnd += read;
+        }
+    }
+
+    private void openInputAt(long offset) throws IOException {
+        if (input.isFile()) {
+            FileChannel channel = FileChannel.open(input.getFile().toPath(), StandardOpenOption.READ);
+            channel.position(offset);
+            in = channel;
+            return;
+        }
+        // Not a file (e.g. inside the jar): skip the bytes handled before the restart
+        in = input.readableChannel();
+        ByteBuffer skip = ByteBuffer.wrap(block);
+        long remaining = offset;
+        while (remaining > 0) {
+            skip.clear().limit((int) Math.min(block.length, remaining));
+            int read = in.read(skip);
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+        }
+    }
+
+    private void ensureOutput(int bytes) throws IOException {
+        if (outputBuffer.remaining() < bytes) {
+            flushOutput();
+            if (outputBuffer.capacity() < bytes) {
+                outputBuffer = ByteBuffer.allocateDirect(bytes);
+            }
+        }
+    }
+
+    private void flushOutput() throws IOException {
+        outputBuffer.flip();
+        while (outputBuffer.hasRemaining()) {
+            out.write(outputBuffer);
+        }
+        outputBuffer.clear();
+    }
+}
@@ -1,8 +1,16 @@
 -- Simple database schema for our Spring Batch demo
 -- This table stores the processed customer data
 
+-- Shadow tables are left behind by a load that did not finish (batchdemo.shadow-load)
+DROP TABLE IF EXISTS customers_shadow;
+DROP TABLE IF EXISTS country_statistics_shadow;
+DROP TABLE IF EXISTS step_memos;
+DROP TABLE IF EXISTS table_versions;
+DROP TABLE IF EXISTS quarantined_records;
+DROP TABLE IF EXISTS grouping_set_statistics;
 DROP TABLE IF EXISTS country_statistics;
 DROP TABLE IF EXISTS customers;
+DROP TABLE IF EXISTS country_reference;
 
 CREATE TABLE customers (
     id              BIGINT PRIMARY KEY,
@@ -10,14 +18,134 @@ CREATE TABLE customers (
     last_name       VARCHAR(100),
     email           VARCHAR(150),
     country         VARCHAR(50),
-    purchase_amount DOUBLE
+    purchase_amount DOUBLE,
+    -- Filled from country_reference when batchdemo.enrichment.enabled=true
+    region          VARCHAR(10),
+    currency        VARCHAR(3),
+    tax_rate        DOUBLE
 );
 
+-- Secondary indexes: aggregateStep reads the customers ordered by country.
+-- With batchdemo.shadow-load.enabled=true they are built after the load instead
+-- (keep them in sync with the customersShadowTable bean)
+CREATE INDEX idx_customers_country ON customers(country);
+CREATE INDEX idx_customers_email ON customers(email);
+
 -- Table to store aggregated statistics by country
 -- This is populated by the second step in our batch job
 CREATE TABLE country_statistics (
     country                 VARCHAR(50) PRIMARY KEY,
     customer_count          BIGINT,
     total_revenue           DOUBLE,
-    average_purchase_amount DOUBLE
+    average_purchase_amount DOUBLE,
+    -- Approximate percentiles of the purchase amounts (QuantileSketch, within 1%)
+    median_purchase_amount  DOUBLE,
+    p95_purchase_amount     DOUBLE,
+    p99_purchase_amount     DOUBLE,
+    -- Approximate distinct counts (HyperLogLog, batchdemo.aggregation.distinct-count-precision)
+    unique_emails           BIGINT,
+    unique_email_domains    BIGINT
+);
+
+CREATE INDEX idx_country_statistics_revenue ON country_statistics(total_revenue);
+
+-- Statistics of every group of every grouping set computed by rollupStep
+-- (batchdemo.rollup.grouping-sets), e.g. ('COUNTRY+PURCHASE_BUCKET', 'CHILE|200-300')
+CREATE TABLE grouping_set_statistics (
+    grouping_set            VARCHAR(100),
+    group_key               VARCHAR(200),
+    customer_count          BIGINT,
+    total_revenue           DOUBLE,
+    average_purchase_amount DOUBLE,
+    median_purchase_amount  DOUBLE,
+    p95_purchase_amount     DOUBLE,
+    p99_purchase_amount     DOUBLE,
+    unique_emails           BIGINT,
+    unique_email_domains    BIGINT,
+    PRIMARY KEY (grouping_set, group_key)
+);
+
+-- Records processStep could not load, with the reason
+-- Only written when batchdemo.fault-tolerance.enabled=true
+CREATE TABLE quarantined_records (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    source         VARCHAR(20),
+    line_number    INT,
+    record         VARCHAR(1000),
+    error          VARCHAR(1000),
+    quarantined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
+
+-- Change counter per table, bumped by every memoized step that writes the table
+-- (batchdemo.memoization.enabled=true)
+CREATE TABLE table_versions (
+    table_name VARCHAR(100) PRIMARY KEY,
+    version    BIGINT NOT NULL
+);
+
+-- Last completed execution of every memoized step: fingerprints of what it read and
+-- wrote, and its counts (a step whose fingerprints still match is skipped)
+CREATE TABLE step_memos (
+    step_name          VARCHAR(100) PRIMARY KEY,
+    input_fingerprint  VARCHAR(64),
+    output_fingerprint VARCHAR(64),
+    read_count         BIGINT,
+    write_count        BIGINT,
+    filter_count       BIGINT,
+    read_skip_count    BIGINT,
+    process_skip_count BIGINT,
+    write_skip_count   BIGINT,
+    job_execution_id   BIGINT
+);
+
+-- Reference data by country (upper case, as CustomerProcessor writes it)
+-- Read by the enrichment stage of processStep (batchdemo.enrichment.enabled=true)
+CREATE TABLE country_reference (
+    country  VARCHAR(50) PRIMARY KEY,
+    region   VARCHAR(10),
+    currency VARCHAR(3),
+    tax_rate DOUBLE
+);
+
+INSERT INTO country_reference(country, region, currency, tax_rate) VALUES
+    ('ARGENTINA', 'AMER', 'ARS', 0.21),
+    ('AUSTRALIA', 'APAC', 'AUD', 0.10),
+    ('AUSTRIA', 'EMEA', 'EUR', 0.20),
+    ('BELGIUM', 'EMEA', 'EUR', 0.21),
+    ('BRAZIL', 'AMER', 'BRL', 0.17),
+    ('CANADA', 'AMER', 'CAD', 0.05),
+    ('CHILE', 'AMER', 'CLP', 0.19),
+    ('CHINA', 'APAC', 'CNY', 0.13),
+    ('DENMARK', 'EMEA', 'DKK', 0.25),
+    ('EGYPT', 'EMEA', 'EGP', 0.14),
+    ('FINLAND', 'EMEA', 'EUR', 0.255),
+    ('FRANCE', 'EMEA', 'EUR', 0.20),
+    ('GERMANY', 'EMEA', 'EUR', 0.19),
+    ('GREECE', 'EMEA', 'EUR', 0.24),
+    ('ICELAND', 'EMEA', 'ISK', 0.24),
+    ('INDIA', 'APAC', 'INR', 0.18),
+    ('INDONESIA', 'APAC', 'IDR', 0.11),
+    ('IRELAND', 'EMEA', 'EUR', 0.23),
+    ('ITALY', 'EMEA', 'EUR', 0.22),
+    ('JAPAN', 'APAC', 'JPY', 0.10),
+    ('KENYA', 'EMEA', 'KES', 0.16),
+    ('MEXICO', 'AMER', 'MXN', 0.16),
+    ('NETHERLANDS', 'EMEA', 'EUR', 0.21),
+    ('NEW ZEALAND', 'APAC', 'NZD', 0.15),
+    ('NIGERIA', 'EMEA', 'NGN', 0.075),
+    ('NORWAY', 'EMEA', 'NOK', 0.25),
+    ('PHILIPPINES', 'APAC', 'PHP', 0.12),
+    ('POLAND', 'EMEA', 'PLN', 0.23),
+    ('PORTUGAL', 'EMEA', 'EUR', 0.23),
+    ('RUSSIA', 'EMEA', 'RUB', 0.20),
+    ('SINGAPORE', 'APAC', 'SGD', 0.09),
+    ('SOUTH AFRICA', 'EMEA', 'ZAR', 0.15),
+    ('SOUTH KOREA', 'APAC', 'KRW', 0.10),
+    ('SPAIN', 'EMEA', 'EUR', 0.21),
+    ('SWEDEN', 'EMEA', 'SEK', 0.25),
+    ('SWITZERLAND', 'EMEA', 'CHF', 0.081),
+    ('THAILAND', 'APAC', 'THB', 0.07),
+    ('TURKEY', 'EMEA', 'TRY', 0.20),
+    ('UNITED KINGDOM', 'EMEA', 'GBP', 0.20),
+    ('USA', 'AMER', 'USD', 0.00),
+    ('VIETNAM', 'APAC', 'VND', 0.10);
@@ -0,0 +1,104 @@
+package com.dariel.batchdemo.aggregation;
+
+import com.dariel.batchdemo.advanced.aggregation.CountryAggregation;
+import com.dariel.batchdemo.advanced.aggregation.ExternalHashAggregator;
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import com.dariel.batchdemo.advanced.processing.CountryStatisticsProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for ExternalHashAggregator: the spilling path must give the same
+ * results as the in-memory path.
+ */
+class ExternalHashAggregatorTest {
+
+    private static final int CUSTOMERS = 50_000;
+    private static final int DISTINCT_KEYS = 5_000;
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void tinyBudget_spillsAndMatchesInMemoryResults() throws Exception {
+        // Given - a budget of ~100 groups for 5000 distinct keys
+        ExternalHashAggregator inMemory = new ExternalHashAggregator(Long.MAX_VALUE, spillDirectory);
+        ExternalHashAggregator spilling = new ExternalHashAggregator(16 * 1024, spillDirectory);
+
+        // When
+        Map<String, CountryAggregation> expected = aggregate(inMemory);
+        Map<String, CountryAggregation> actual = aggregate(spilling);
+
+        // Then
+        assertThat(inMemory.getSpillCount()).isZero();
+        assertThat(spilling.getSpillCount()).isGreaterThan(0);
+        assertSameResults(actual, expected);
+
+        spilling.close();
+        try (var files = Files.list(spillDirectory)) {
+            assertThat(files).isEmpty(); // Spill files are cleaned up
+        }
+    }
+
+    @Test
+    void budgetSmallerThanOnePartition_repartitionsAndMatchesInMemoryResults() throws Exception {
+        // Given - even a single partition (~300 keys) does not fit, forcing a second level
+        ExternalHashAggregator inMemory = new ExternalHashAggregator(Long.MAX_VALUE, spillDirectory);
+        ExternalHashAggregator spilling = new ExternalHashAggregator(5 * 1024, spillDirectory);
+
+        // When
+        Map<String, CountryAggregation> expected = aggregate(inMemory);
+        Map<String, CountryAggregation> actual = aggregate(spilling);
+
+        // Then
+        assertSameResults(actual, expected);
+        spilling.close();
+    }
+
+    private static Map<String, CountryAggregation> aggregate(ExternalHashAggregator aggregator) throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            String key = "domain-" + random.nextInt(DISTINCT_KEYS) + ".example.com";
+            double amount = random.nextInt(100_000) / 100.0;
+            aggregator.add(key, amount);
+        }
+
+        Map<String, CountryAggregation> results = new TreeMap<>();
+        Iterator<CountryAggregation> iterator = aggregator.results();
+        while (iterator.hasNext()) {
+            CountryAggregation aggregation = iterator.next();
+            assertThat(results.put(aggregation.getCountry(), aggregation)).isNull(); // Each key exactly once
+        }
+        return results;
+    }
+
+    private static void assertSameResults(Map<String, CountryAggregation> actual, Map<String, CountryAggregation> expected) {
+        CountryStatisticsProcessor processor = new CountryStatisticsProcessor();
+        assertThat(actual.keySet()).isEqualTo(expected.keySet());
+        for (String key : expected.keySet()) {
+            CountryAggregation a = actual.get(key);
+            CountryAggregation e = expected.get(key);
+            assertThat(a.getCount()).isEqualTo(e.getCount());
+            // Partial sums are added in a different order, so compare within floating point noise...
+            assertThat(a.getTotalRevenue()).isCloseTo(e.getTotalRevenue(), within(1e-6));
+            // ...and exactly once rounded for reporting
+            CountryStatistics reportedActual = processor.process(a.toStatistics());
+            CountryStatistics reportedExpected = processor.process(e.toStatistics());
+            assertThat(reportedActual.getTotalRevenue()).isEqualTo(reportedExpected.getTotalRevenue());
+            assertThat(reportedActual.getAveragePurchaseAmount()).isEqualTo(reportedExpected.getAveragePurchaseAmount());
+            // Sketches merge exactly: the same percentiles, spilled or not
+            assertThat(reportedActual.getMedianPurchaseAmount()).isEqualTo(reportedExpected.getMedianPurchaseAmount());
+            assertThat(reportedActual.getP99PurchaseAmount()).isEqualTo(reportedExpected.getP99PurchaseAmount());
+        }
+    }
+}
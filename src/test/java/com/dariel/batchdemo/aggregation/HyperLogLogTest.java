@@ -0,0 +1,99 @@
+package com.dariel.batchdemo.aggregation;
+
+import com.dariel.batchdemo.advanced.aggregation.CountryAggregation;
+import com.dariel.batchdemo.advanced.aggregation.HyperLogLog;
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for HyperLogLog and the distinct counts in CountryAggregation.
+ */
+class HyperLogLogTest {
+
+    @Test
+    void estimate_isWithinThreeStandardErrors() {
+        for (int distinct : new int[]{10, 1_000, 100_000}) {
+            // Given - every value added twice
+            HyperLogLog sketch = new HyperLogLog(12);
+            for (int i = 0; i < distinct; i++) {
+                sketch.add("customer" + i + "@example.com");
+                sketch.add("customer" + i + "@example.com");
+            }
+
+            // Then - standard error 1.04 / sqrt(4096) = 1.6%
+            assertThat((double) sketch.estimate()).isCloseTo(distinct, within(Math.max(1, distinct * 3 * 0.0163)));
+        }
+    }
+
+    @Test
+    void merge_equalsSketchOfTheUnion() throws IOException {
+        // Given - two overlapping halves, one small (sparse) and one large (dense)
+        HyperLogLog all = new HyperLogLog(10);
+        HyperLogLog first = new HyperLogLog(10);
+        HyperLogLog second = new HyperLogLog(10);
+        for (int i = 0; i < 50_000; i++) {
+            String email = "c" + i + "@example.com";
+            all.add(email);
+            (i < 40 ? first : second).add(email);
+            if (i % 7 == 0) {
+                first.add(email);
+            }
+        }
+
+        // When - merged after a round trip through the checkpoint format
+        HyperLogLog merged = roundTrip(first);
+        merged.merge(roundTrip(second));
+
+        // Then - registers are max-merged, so the estimate is exactly the union's
+        assertThat(merged.estimate()).isEqualTo(all.estimate());
+        assertThatThrownBy(() -> merged.merge(new HyperLogLog(11)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void smallSets_stayFarBelowTheRegisterArray() {
+        // Given
+        HyperLogLog sketch = new HyperLogLog(16);
+        for (int i = 0; i < 20; i++) {
+            sketch.add("c" + i + "@example.com");
+        }
+
+        // Then - 20 entries instead of 64 KB of registers
+        assertThat(sketch.estimatedBytes()).isLessThan(512);
+        assertThat(sketch.estimate()).isEqualTo(20);
+    }
+
+    @Test
+    void countryAggregation_countsUniqueEmailsAndDomains() {
+        // Given - case and whitespace variants of the same email, and a missing one
+        CountryAggregation chile = new CountryAggregation("CHILE", 12);
+        chile.addCustomer(10.0, "ana@mail.cl");
+        chile.addCustomer(20.0, " ANA@Mail.cl ");
+        chile.addCustomer(30.0, "luis@gmail.com");
+        chile.addCustomer(40.0, null);
+
+        // When
+        CountryStatistics statistics = chile.toStatistics();
+
+        // Then
+        assertThat(statistics.getCustomerCount()).isEqualTo(4);
+        assertThat(statistics.getUniqueEmails()).isEqualTo(2);
+        assertThat(statistics.getUniqueEmailDomains()).isEqualTo(2);
+    }
+
+    private static HyperLogLog roundTrip(HyperLogLog sketch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        return HyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -0,0 +1,136 @@
+package com.dariel.batchdemo.aggregation;
+
+import com.dariel.batchdemo.advanced.aggregation.QuantileSketch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Accuracy, merge and memory tests for QuantileSketch.
+ */
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0.01, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999};
+
+    @Test
+    void quantile_skewedAmounts_withinRelativeAccuracyOfExactValue() {
+        // Given - 200,000 log-normal purchase amounts (long right tail, like real purchases)
+        double[] amounts = logNormalAmounts(200_000, 1);
+        QuantileSketch sketch = new QuantileSketch();
+        for (double amount : amounts) {
+            sketch.add(amount);
+        }
+
+        // When / Then - every percentile is within 1% of the exact value at that rank
+        double[] sorted = amounts.clone();
+        Arrays.sort(sorted);
+        for (double quantile : QUANTILES) {
+            double exact = sorted[(int) Math.floor(quantile * (sorted.length - 1))];
+            assertThat(sketch.quantile(quantile))
+                    .as("p%s", quantile * 100)
+                    .isCloseTo(exact, within(exact * QuantileSketch.DEFAULT_RELATIVE_ACCURACY));
+        }
+        assertThat(sketch.quantile(0)).isEqualTo(sorted[0]);
+        assertThat(sketch.quantile(1)).isEqualTo(sorted[sorted.length - 1]);
+    }
+
+    @Test
+    void merge_partialSketches_equalOneSketchOverAllValues() throws IOException {
+        // Given - the same values in one sketch, and split over 4 partial sketches
+        double[] amounts = logNormalAmounts(50_000, 2);
+        QuantileSketch whole = new QuantileSketch();
+        QuantileSketch[] partials = new QuantileSketch[4];
+        for (int i = 0; i < partials.length; i++) {
+            partials[i] = new QuantileSketch();
+        }
+        for (int i = 0; i < amounts.length; i++) {
+            whole.add(amounts[i]);
+            partials[i % partials.length].add(amounts[i]);
+        }
+
+        // When - merged, one of them after a serialization round trip (spill / checkpoint)
+        QuantileSketch merged = new QuantileSketch();
+        merged.merge(roundTrip(partials[0]));
+        for (int i = 1; i < partials.length; i++) {
+            merged.merge(partials[i]);
+        }
+
+        // Then - exactly the same percentiles
+        assertThat(merged.getCount()).isEqualTo(whole.getCount());
+        for (double quantile : QUANTILES) {
+            assertThat(merged.quantile(quantile)).isEqualTo(whole.quantile(quantile));
+        }
+    }
+
+    @Test
+    void memory_staysBounded_whateverTheNumberOfValues() throws IOException {
+        // Given
+        QuantileSketch sketch = new QuantileSketch();
+        Random random = new Random(3);
+
+        // When - 1 million amounts between 0.01 and 100,000
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.add(Math.exp(random.nextDouble() * Math.log(10_000_000)) / 100);
+        }
+
+        // Then - a few KB in memory and serialized, instead of 8 MB for the raw amounts
+        assertThat(sketch.estimatedBytes()).isLessThan(16 * 1024);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        assertThat(bytes.size()).isLessThan(16 * 1024);
+
+        // When - a sketch limited to 64 buckets sees the same range
+        QuantileSketch small = new QuantileSketch(0.01, 64);
+        for (int i = 0; i < 100_000; i++) {
+            small.add(Math.exp(random.nextDouble() * Math.log(10_000_000)) / 100);
+        }
+
+        // Then - the low buckets were folded, but the high percentiles are still accurate
+        assertThat(small.estimatedBytes()).isLessThan(2 * 64 * 8 + 256);
+        double expectedP99 = Math.exp(0.99 * Math.log(10_000_000)) / 100;
+        assertThat(small.quantile(0.99)).isCloseTo(expectedP99, within(expectedP99 * 0.05));
+    }
+
+    @Test
+    void quantile_negativeZeroAndEmpty() {
+        // Given
+        QuantileSketch sketch = new QuantileSketch();
+        assertThat(sketch.quantile(0.5)).isNaN();
+
+        // When - refunds, zero amounts and purchases
+        for (double amount : new double[] {-50, -10, 0, 0, 10, 20, 30, 40, 50}) {
+            sketch.add(amount);
+        }
+
+        // Then
+        assertThat(sketch.quantile(0.0)).isEqualTo(-50);
+        assertThat(sketch.quantile(0.125)).isCloseTo(-10, within(0.1));
+        assertThat(sketch.quantile(0.25)).isEqualTo(0);
+        assertThat(sketch.quantile(0.5)).isCloseTo(10, within(0.1));
+        assertThat(sketch.quantile(1.0)).isEqualTo(50);
+    }
+
+    private static double[] logNormalAmounts(int count, long seed) {
+        Random random = new Random(seed);
+        double[] amounts = new double[count];
+        for (int i = 0; i < count; i++) {
+            amounts[i] = Math.round(Math.exp(4 + random.nextGaussian()) * 100) / 100.0 + 0.01;
+        }
+        return amounts;
+    }
+
+    private static QuantileSketch roundTrip(QuantileSketch sketch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        return QuantileSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
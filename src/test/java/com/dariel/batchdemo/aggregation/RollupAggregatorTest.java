@@ -0,0 +1,116 @@
+package com.dariel.batchdemo.aggregation;
+
+import com.dariel.batchdemo.advanced.aggregation.CountryAggregation;
+import com.dariel.batchdemo.advanced.aggregation.GroupingKey;
+import com.dariel.batchdemo.advanced.aggregation.GroupingSet;
+import com.dariel.batchdemo.advanced.aggregation.RollupAggregator;
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.domain.GroupedStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for RollupAggregator: one pass, the same results as one aggregation per grouping set.
+ */
+class RollupAggregatorTest {
+
+    private static final List<GroupingSet> GROUPING_SETS =
+            GroupingSet.parseAll("COUNTRY, PURCHASE_BUCKET, COUNTRY+PURCHASE_BUCKET, ALL");
+
+    @Test
+    void singlePass_matchesSeparateAggregations() {
+        // Given
+        List<Customer> customers = customers(5_000);
+
+        // When - one scan for all grouping sets
+        RollupAggregator rollup = new RollupAggregator(GROUPING_SETS, 12);
+        customers.forEach(rollup::add);
+        Map<String, List<GroupedStatistics>> bySet = rollup.results().stream()
+                .collect(Collectors.groupingBy(GroupedStatistics::getGroupingSet));
+
+        // Then - each grouping set equals its own scan with the equivalent key
+        assertSame(bySet.get("COUNTRY"), separately(customers, GroupingKey.COUNTRY));
+        assertSame(bySet.get("PURCHASE_BUCKET"), separately(customers, GroupingKey.PURCHASE_BUCKET));
+        assertSame(bySet.get("COUNTRY+PURCHASE_BUCKET"), separately(customers,
+                c -> GroupingKey.COUNTRY.apply(c) + "|" + GroupingKey.PURCHASE_BUCKET.apply(c)));
+
+        GroupedStatistics total = bySet.get("ALL").get(0);
+        assertThat(total.getGroupKey()).isEqualTo("ALL");
+        assertThat(total.getStatistics().getCustomerCount()).isEqualTo(5_000);
+        assertThat(rollup.getGroupCount()).isEqualTo(rollup.results().size());
+    }
+
+    @Test
+    void merge_ofPartialRollups_equalsOneRollup() {
+        // Given
+        List<Customer> customers = customers(2_000);
+        RollupAggregator all = new RollupAggregator(GROUPING_SETS, 12);
+        RollupAggregator first = new RollupAggregator(GROUPING_SETS, 12);
+        RollupAggregator second = new RollupAggregator(GROUPING_SETS, 12);
+        for (int i = 0; i < customers.size(); i++) {
+            all.add(customers.get(i));
+            (i % 3 == 0 ? first : second).add(customers.get(i));
+        }
+
+        // When
+        first.merge(second);
+
+        // Then
+        assertThat(first.getCustomerCount()).isEqualTo(2_000);
+        List<GroupedStatistics> expected = all.results();
+        List<GroupedStatistics> actual = first.results();
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getGroupKey()).isEqualTo(expected.get(i).getGroupKey());
+            assertThat(actual.get(i).getStatistics().getCustomerCount())
+                    .isEqualTo(expected.get(i).getStatistics().getCustomerCount());
+            assertThat(actual.get(i).getStatistics().getMedianPurchaseAmount())
+                    .isEqualTo(expected.get(i).getStatistics().getMedianPurchaseAmount());
+            assertThat(actual.get(i).getStatistics().getUniqueEmails())
+                    .isEqualTo(expected.get(i).getStatistics().getUniqueEmails());
+        }
+    }
+
+    private static void assertSame(List<GroupedStatistics> actual, Map<String, CountryStatistics> expected) {
+        assertThat(actual).extracting(GroupedStatistics::getGroupKey).containsExactlyElementsOf(expected.keySet());
+        for (GroupedStatistics grouped : actual) {
+            CountryStatistics expectedStatistics = expected.get(grouped.getGroupKey());
+            assertThat(grouped.getStatistics().getCustomerCount()).isEqualTo(expectedStatistics.getCustomerCount());
+            assertThat(grouped.getStatistics().getTotalRevenue()).isEqualTo(expectedStatistics.getTotalRevenue());
+            assertThat(grouped.getStatistics().getP95PurchaseAmount()).isEqualTo(expectedStatistics.getP95PurchaseAmount());
+            assertThat(grouped.getStatistics().getUniqueEmails()).isEqualTo(expectedStatistics.getUniqueEmails());
+        }
+    }
+
+    private static Map<String, CountryStatistics> separately(List<Customer> customers, Function<Customer, String> key) {
+        Map<String, CountryAggregation> groups = new TreeMap<>();
+        for (Customer customer : customers) {
+            groups.computeIfAbsent(key.apply(customer), k -> new CountryAggregation(k, 12))
+                    .addCustomer(customer.getPurchaseAmount(), customer.getEmail());
+        }
+        Map<String, CountryStatistics> statistics = new TreeMap<>();
+        groups.forEach((k, group) -> statistics.put(k, group.toStatistics()));
+        return statistics;
+    }
+
+    private static List<Customer> customers(int count) {
+        Random random = new Random(7);
+        String[] countries = {"CHILE", "PERU", "SPAIN", "JAPAN"};
+        List<Customer> customers = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            customers.add(new Customer(id, "First", "Last", "c" + random.nextInt(count) + "@mail.com",
+                    countries[random.nextInt(countries.length)], random.nextInt(100_000) / 100.0));
+        }
+        return customers;
+    }
+}
@@ -0,0 +1,112 @@
+package com.dariel.batchdemo.enrichment;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.enrichment.BoundedLruCache;
+import com.dariel.batchdemo.advanced.enrichment.CountryReferenceRepository;
+import com.dariel.batchdemo.advanced.enrichment.CustomerEnrichmentWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.Chunk;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the reference-data enrichment stage against the country_reference table in H2.
+ */
+class CustomerEnrichmentWriterTest {
+
+    private EmbeddedDatabase database;
+    private CountryReferenceRepository repository;
+    private final List<Customer> written = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        repository = new CountryReferenceRepository(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void write_resolvesMissesWithOneQueryPerChunk_andCachesThem() throws Exception {
+        // Given
+        CustomerEnrichmentWriter writer = new CustomerEnrichmentWriter(chunk -> written.addAll(chunk.getItems()), repository, 100);
+
+        // When - two chunks with overlapping countries
+        writer.write(chunk("SPAIN", "JAPAN", "SPAIN", "USA", "JAPAN"));
+        writer.write(chunk("JAPAN", "USA", "CHILE"));
+
+        // Then - one query per chunk; only the first sighting of a country is a miss
+        assertThat(repository.getQueryCount()).isEqualTo(2);
+        assertThat(writer.getCache().getMisses()).isEqualTo(4);  // SPAIN, JAPAN, USA, CHILE
+        assertThat(writer.getCache().getHits()).isEqualTo(2);    // JAPAN, USA in chunk 2
+
+        assertThat(written).hasSize(8);
+        Customer spain = written.get(0);
+        assertThat(spain.getRegion()).isEqualTo("EMEA");
+        assertThat(spain.getCurrency()).isEqualTo("EUR");
+        assertThat(spain.getTaxRate()).isEqualTo(0.21);
+        assertThat(written.get(7).getCurrency()).isEqualTo("CLP");
+    }
+
+    @Test
+    void write_unknownCountry_isCachedAsNotFound() throws Exception {
+        // Given
+        CustomerEnrichmentWriter writer = new CustomerEnrichmentWriter(chunk -> written.addAll(chunk.getItems()), repository, 100);
+
+        // When
+        writer.write(chunk("ATLANTIS", "SPAIN"));
+        writer.write(chunk("ATLANTIS"));
+
+        // Then - not queried again, and written without reference data
+        assertThat(repository.getQueryCount()).isEqualTo(1);
+        assertThat(written.get(0).getRegion()).isNull();
+        assertThat(written.get(0).getTaxRate()).isNull();
+        assertThat(written.get(2).getCurrency()).isNull();
+    }
+
+    @Test
+    void cache_full_evictsLeastRecentlyUsed() {
+        // Given
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+
+        // When - "a" is used, so "b" is the least recently used entry
+        cache.get("a");
+        cache.put("c", "C");
+
+        // Then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("A");
+        assertThat(cache.get("c")).isEqualTo("C");
+        assertThat(cache.getHits()).isEqualTo(3);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    private static Chunk<Customer> chunk(String... countries) {
+        Chunk<Customer> chunk = new Chunk<>();
+        long id = 1;
+        for (String country : countries) {
+            chunk.add(new Customer(id, "First", "Last", "c" + id + "@example.com", country, 10.0));
+            id++;
+        }
+        return chunk;
+    }
+}
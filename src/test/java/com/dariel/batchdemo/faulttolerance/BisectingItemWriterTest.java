@@ -0,0 +1,188 @@
+package com.dariel.batchdemo.faulttolerance;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.faulttolerance.BisectingItemWriter;
+import com.dariel.batchdemo.advanced.faulttolerance.QuarantineRepository;
+import com.dariel.batchdemo.advanced.processing.DuplicateCustomerFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.step.skip.SkipLimitExceededException;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for BisectingItemWriter against an in-memory H2 database.
+ */
+class BisectingItemWriterTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private BisectingItemWriter<Customer> writer;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        transactionManager = new DataSourceTransactionManager(database);
+
+        JdbcBatchItemWriter<Customer> customerWriter = new JdbcBatchItemWriterBuilder<Customer>()
+                .dataSource(database)
+                .sql("INSERT INTO customers(id, first_name, last_name, email, country, purchase_amount) " +
+                     "VALUES (:id, :firstName, :lastName, :email, :country, :purchaseAmount)")
+                .beanMapped()
+                .build();
+        customerWriter.afterPropertiesSet();
+        writer = new BisectingItemWriter<>(customerWriter, new QuarantineRepository(database), transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void write_oneDuplicateKey_isQuarantinedInLogarithmicWrites() {
+        // Given - customer 40 already exists
+        jdbcTemplate.update("INSERT INTO customers(id) VALUES (40)");
+        Chunk<Customer> chunk = chunk(1, 64);
+
+        // When
+        writeInTransaction(chunk);
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers", Long.class)).isEqualTo(64);
+        assertThat(jdbcTemplate.queryForList("SELECT record FROM quarantined_records", String.class))
+                .singleElement().asString().contains("id=40");
+        assertThat(chunk.size()).isEqualTo(63); // the quarantined customer is removed from the chunk
+        // 1 full write + at most 2 per level (log2(64) = 6), instead of 64 single-item writes
+        assertThat(writer.getWriteAttempts()).isLessThanOrEqualTo(13);
+    }
+
+    @Test
+    void write_severalBadRecords_allGoodRecordsAreWritten() {
+        // Given
+        jdbcTemplate.update("INSERT INTO customers(id) VALUES (3)");
+        jdbcTemplate.update("INSERT INTO customers(id) VALUES (17)");
+        List<Customer> items = new ArrayList<>(chunk(1, 25).getItems());
+        items.add(customer(5)); // same id twice in one chunk
+
+        // When
+        writeInTransaction(new Chunk<>(items));
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers", Long.class)).isEqualTo(25);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM quarantined_records", Long.class)).isEqualTo(3);
+        assertThat(writer.getQuarantinedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void write_quarantinedCustomer_isForgottenByTheDuplicateFilter(@TempDir Path tempDir) {
+        // Given - customers 1 to 4 pass the duplicate filter, customer 2 already exists
+        jdbcTemplate.update("INSERT INTO customers(id) VALUES (2)");
+        DuplicateCustomerFilter filter = new DuplicateCustomerFilter(tempDir.resolve("dedup.idx"));
+        filter.open(new ExecutionContext());
+        writer.setQuarantineListener(filter::forget);
+        Chunk<Customer> chunk = chunk(1, 4);
+        chunk.forEach(filter::process);
+
+        // When - the chunk is written and commits
+        writeInTransaction(chunk);
+        filter.afterChunk(null);
+
+        // Then - the quarantined customer can be sent again, the loaded ones cannot
+        assertThat(filter.process(customer(2))).isNotNull();
+        assertThat(filter.process(customer(3))).isNull();
+        filter.close();
+    }
+
+    @Test
+    void write_everyWriteFails_isRethrownWithoutBisecting() {
+        // Given - a failure that has nothing to do with the customers
+        jdbcTemplate.execute("DROP TABLE customers");
+
+        // When / Then
+        assertThatThrownBy(() -> writer.write(chunk(1, 64)))
+                .isInstanceOf(BadSqlGrammarException.class);
+        assertThat(writer.getWriteAttempts()).isEqualTo(1);
+        assertThat(writer.getQuarantinedCount()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM quarantined_records", Long.class)).isZero();
+    }
+
+    @Test
+    void write_moreBadRecordsThanTheLimit_failsTheChunk() {
+        // Given - every customer of the chunk already exists
+        writer.setQuarantineLimit(5);
+        for (long id = 1; id <= 20; id++) {
+            jdbcTemplate.update("INSERT INTO customers(id) VALUES (?)", id);
+        }
+
+        // When / Then - the sixth quarantine is refused and the chunk rolls back
+        assertThatThrownBy(() -> writeInTransaction(chunk(1, 20)))
+                .hasCauseInstanceOf(SkipLimitExceededException.class);
+        assertThat(writer.getQuarantinedCount()).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM quarantined_records", Long.class)).isZero();
+    }
+
+    @Test
+    void write_chunkRollsBack_quarantineRowsRollBackToo() {
+        // Given
+        jdbcTemplate.update("INSERT INTO customers(id) VALUES (2)");
+
+        // When - the outer chunk transaction is rolled back
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            writeUnchecked(chunk(1, 4));
+            status.setRollbackOnly();
+        });
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers", Long.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM quarantined_records", Long.class)).isZero();
+    }
+
+    private void writeInTransaction(Chunk<Customer> chunk) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> writeUnchecked(chunk));
+    }
+
+    private void writeUnchecked(Chunk<Customer> chunk) {
+        try {
+            writer.write(chunk);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Chunk<Customer> chunk(long firstId, long lastId) {
+        Chunk<Customer> chunk = new Chunk<>();
+        for (long id = firstId; id <= lastId; id++) {
+            chunk.add(customer(id));
+        }
+        return chunk;
+    }
+
+    private static Customer customer(long id) {
+        return new Customer(id, "First", "Last", "c" + id + "@example.com", "Chile", 10.0);
+    }
+}
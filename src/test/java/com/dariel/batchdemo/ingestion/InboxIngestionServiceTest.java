@@ -0,0 +1,85 @@
+package com.dariel.batchdemo.ingestion;
+
+import com.dariel.batchdemo.advanced.ingestion.InboxIngestionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.job.SimpleJob;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for InboxIngestionService against temporary inbox and staging directories.
+ */
+class InboxIngestionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void run_jobCannotBeLaunched_movesOnlyThisBatchToFailedAndKeepsWatching() throws Exception {
+        // Given - a file left in staging by an interrupted batch, and a launcher that refuses to run
+        Path inbox = Files.createDirectories(tempDir.resolve("inbox"));
+        Path staging = Files.createDirectories(tempDir.resolve("staging"));
+        Path failed = tempDir.resolve("failed");
+        Files.writeString(staging.resolve("leftover.csv"), "id\n");
+        Files.writeString(inbox.resolve("new.csv"), "id\n");
+
+        List<List<String>> stagedAtLaunch = new CopyOnWriteArrayList<>();
+        JobLauncher jobLauncher = (job, parameters) -> {
+            stagedAtLaunch.add(fileNames(staging));
+            throw new JobExecutionAlreadyRunningException("customerJob is already running");
+        };
+        InboxIngestionService service = new InboxIngestionService(inbox, "*.csv", staging,
+                tempDir.resolve("archive"), failed, 1, 0, jobLauncher, new SimpleJob("customerJob"));
+
+        // When
+        Thread ingestion = new Thread(() -> {
+            try {
+                service.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        ingestion.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (stagedAtLaunch.isEmpty() || !fileNames(staging).isEmpty()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+        boolean stillWatching = ingestion.isAlive();
+        ingestion.interrupt();
+        ingestion.join(5_000);
+
+        // Then - the leftover never joined the batch, and both ended up in the failed directory
+        assertThat(stillWatching).isTrue();
+        assertThat(stagedAtLaunch).containsExactly(List.of("new.csv"));
+        assertThat(failedFiles(failed)).containsExactlyInAnyOrder("interrupted-*/leftover.csv", "batch-*/new.csv");
+    }
+
+    private static List<String> fileNames(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> failedFiles(Path failed) throws Exception {
+        try (Stream<Path> files = Files.walk(failed)) {
+            return files.filter(Files::isRegularFile)
+                    .map(failed::relativize)
+                    .map(file -> file.getParent().toString().replaceAll("-\\d+$", "-*") + "/" + file.getFileName())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.dariel.batchdemo.ingestion;
+
+import com.dariel.batchdemo.advanced.ingestion.MicroBatchBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for MicroBatchBuffer (when a micro-batch of inbox files is due).
+ */
+class MicroBatchBufferTest {
+
+    @Test
+    void isDue_smallFiles_whenFirstFileHasWaitedMaxWait() {
+        // Given
+        MicroBatchBuffer buffer = new MicroBatchBuffer(1_000, 2_000);
+        buffer.add(Path.of("a.csv"), 100, 10_000);
+        buffer.add(Path.of("b.csv"), 100, 11_500);
+
+        // Then - the window starts at the first file, not the last one
+        assertThat(buffer.isDue(11_999)).isFalse();
+        assertThat(buffer.millisUntilDue(11_500)).isEqualTo(500);
+        assertThat(buffer.isDue(12_000)).isTrue();
+        assertThat(buffer.millisUntilDue(12_000)).isZero();
+    }
+
+    @Test
+    void isDue_immediately_whenFilesReachMaxBytes() {
+        // Given
+        MicroBatchBuffer buffer = new MicroBatchBuffer(1_000, 60_000);
+        buffer.add(Path.of("a.csv"), 600, 0);
+        assertThat(buffer.isDue(1)).isFalse();
+
+        // When - the same file grows while it is written, then a second file arrives
+        buffer.add(Path.of("a.csv"), 700, 5);
+        buffer.add(Path.of("b.csv"), 300, 6);
+
+        // Then - sizes are not counted twice
+        assertThat(buffer.getTotalBytes()).isEqualTo(1_000);
+        assertThat(buffer.isDue(6)).isTrue();
+    }
+
+    @Test
+    void drain_returnsFilesInArrivalOrder_andStartsNewWindow() {
+        // Given
+        MicroBatchBuffer buffer = new MicroBatchBuffer(1_000, 2_000);
+        buffer.add(Path.of("b.csv"), 10, 0);
+        buffer.add(Path.of("a.csv"), 10, 1);
+        buffer.add(Path.of("b.csv"), 20, 2);
+
+        // When
+        assertThat(buffer.drain()).containsExactly(Path.of("b.csv"), Path.of("a.csv"));
+
+        // Then
+        assertThat(buffer.isEmpty()).isTrue();
+        assertThat(buffer.millisUntilDue(5_000)).isEqualTo(Long.MAX_VALUE);
+        buffer.add(Path.of("c.csv"), 10, 5_000);
+        assertThat(buffer.isDue(6_000)).isFalse();
+    }
+}
@@ -0,0 +1,150 @@
+package com.dariel.batchdemo.input;
+
+import com.dariel.batchdemo.advanced.input.CustomerFilePartitioner;
+import com.dariel.batchdemo.advanced.input.LargestFirstPartitionHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the multi-file input mode: CustomerFilePartitioner + LargestFirstPartitionHandler.
+ */
+class CustomerFilePartitionerTest {
+
+    @TempDir
+    Path inputDirectory;
+
+    private EmbeddedDatabase database;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository jobRepository;
+    private TaskExecutorJobLauncher jobLauncher;
+
+    private final List<String> processedFiles = new ArrayList<>();
+    private String failingFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        writeFile("small.csv", 10);
+        writeFile("large.csv", 1_000);
+        writeFile("medium.csv", 100);
+        writeFile("notes.txt", 5_000); // Does not match the pattern
+
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(database);
+
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+
+        jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void partition_oneMatchingFilePerPartition_largestFirst() {
+        // When
+        Map<String, ExecutionContext> partitions = new CustomerFilePartitioner(inputDirectory, "*.csv").partition(1);
+
+        // Then
+        assertThat(partitions.keySet())
+                .containsExactly("partition-large.csv", "partition-medium.csv", "partition-small.csv");
+        ExecutionContext large = partitions.get("partition-large.csv");
+        assertThat(large.getString(CustomerFilePartitioner.FILE_NAME_KEY))
+                .isEqualTo(inputDirectory.resolve("large.csv").toAbsolutePath().toString());
+        assertThat(large.getLong(CustomerFilePartitioner.FILE_SIZE_KEY)).isGreaterThan(10_000);
+    }
+
+    @Test
+    void restart_afterOneFileFailed_onlyProcessesUnfinishedFile() throws Exception {
+        // Given - the medium file fails on the first run
+        Job job = filesJob();
+        JobParameters parameters = new JobParametersBuilder().addLong("run", 1L).toJobParameters();
+        failingFile = "medium.csv";
+        assertThat(jobLauncher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.FAILED);
+
+        // Then - partitions were started largest first
+        assertThat(processedFiles).containsExactly("large.csv", "small.csv");
+
+        // When - restarted after the file was fixed
+        failingFile = null;
+        processedFiles.clear();
+        assertThat(jobLauncher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        // Then - the completed files were not processed again
+        assertThat(processedFiles).containsExactly("medium.csv");
+    }
+
+    private Job filesJob() {
+        Step fileStep = new StepBuilder("processFileStep", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    String fileName = Path.of(chunkContext.getStepContext().getStepExecution().getExecutionContext()
+                            .getString(CustomerFilePartitioner.FILE_NAME_KEY)).getFileName().toString();
+                    if (fileName.equals(failingFile)) {
+                        throw new IllegalStateException("Simulated failure in " + fileName);
+                    }
+                    processedFiles.add(fileName);
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+
+        // One worker thread, so the processing order is the submission order
+        LargestFirstPartitionHandler handler = new LargestFirstPartitionHandler();
+        handler.setStep(fileStep);
+        handler.setTaskExecutor(new SyncTaskExecutor());
+
+        return new JobBuilder("filesJob", jobRepository)
+                .start(new StepBuilder("processFilesStep", jobRepository)
+                        .partitioner("processFileStep", new CustomerFilePartitioner(inputDirectory, "*.csv"))
+                        .partitionHandler(handler)
+                        .build())
+                .build();
+    }
+
+    private void writeFile(String name, int lines) throws IOException {
+        List<String> content = new ArrayList<>();
+        content.add("id,firstName,lastName,email,country,purchaseAmount");
+        for (int i = 1; i <= lines; i++) {
+            content.add(i + ",First,Last,c" + i + "@example.com,Chile,10.0");
+        }
+        Files.write(inputDirectory.resolve(name), content);
+    }
+}
@@ -0,0 +1,111 @@
+package com.dariel.batchdemo.input;
+
+import com.dariel.batchdemo.advanced.input.GzipResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GzipInputBenchmark - Compares three ways of reading customers.csv.gz line by line:
+ * 1. decompress to a temporary file, then read that file (what we used to do)
+ * 2. stream through a GZIPInputStream (GzipResource with 1 thread)
+ * 3. decode the members in parallel (GzipResource with N threads)
+ *
+ * Not a unit test (surefire ignores it): run its main method on the test classpath.
+ * The parallel decoder only pays off with several cores and multi-member files.
+ * Arguments: uncompressed size in MB (default 256), threads (default: available processors).
+ */
+public class GzipInputBenchmark {
+
+    private static final int MEMBER_BYTES = 4 * 1024 * 1024;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        long sizeMb = args.length > 0 ? Long.parseLong(args[0]) : 256;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Path directory = Files.createTempDirectory("gzip-benchmark");
+        Path compressed = directory.resolve("customers.csv.gz");
+        System.out.printf("Generating %d MB of CSV in %d MB gzip members...%n", sizeMb, MEMBER_BYTES / (1024 * 1024));
+        generate(compressed, sizeMb * 1024 * 1024);
+        System.out.printf("Compressed size: %,d bytes, %d threads%n%n", Files.size(compressed), threads);
+
+        try {
+            for (int round = 1; round <= ROUNDS; round++) {
+                System.out.printf("Round %d%n", round);
+                time("decompress to disk, then read", () -> decompressThenRead(compressed, directory));
+                time("stream (GZIPInputStream)", () -> countLines(new GzipResource(new FileSystemResource(compressed), 1).getInputStream()));
+                time("stream, parallel members", () -> countLines(new GzipResource(new FileSystemResource(compressed), threads).getInputStream()));
+            }
+        } finally {
+            Files.deleteIfExists(compressed);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static long decompressThenRead(Path compressed, Path directory) throws IOException {
+        Path plain = directory.resolve("customers.csv");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed), 64 * 1024)) {
+            Files.copy(in, plain);
+        }
+        try {
+            return countLines(Files.newInputStream(plain));
+        } finally {
+            Files.delete(plain);
+        }
+    }
+
+    private static long countLines(InputStream in) throws IOException {
+        long lines = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            while (reader.readLine() != null) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static void generate(Path file, long bytes) throws IOException {
+        Random random = new Random(1);
+        long written = 0;
+        long id = 1;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            while (written < bytes) {
+                StringBuilder member = new StringBuilder(MEMBER_BYTES + 128);
+                while (member.length() < MEMBER_BYTES) {
+                    member.append(id).append(",First").append(id % 97).append(",Last").append(id % 89)
+                            .append(",customer").append(id).append("@example.com,Country-").append(random.nextInt(40))
+                            .append(',').append(random.nextInt(50_000) / 100.0).append('\n');
+                    id++;
+                }
+                byte[] data = member.toString().getBytes(StandardCharsets.UTF_8);
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+                gzip.write(data);
+                gzip.finish(); // One complete member; the file stays open for the next one
+                written += data.length;
+            }
+        }
+    }
+
+    private static void time(String name, LineCount task) throws IOException {
+        long start = System.nanoTime();
+        long lines = task.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("  %-32s %,12d lines %,8d ms%n", name, lines, millis);
+    }
+
+    @FunctionalInterface
+    private interface LineCount {
+        long run() throws IOException;
+    }
+}
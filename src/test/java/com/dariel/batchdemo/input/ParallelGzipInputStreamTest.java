@@ -0,0 +1,120 @@
+package com.dariel.batchdemo.input;
+
+import com.dariel.batchdemo.advanced.input.ParallelGzipInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for ParallelGzipInputStream.
+ */
+class ParallelGzipInputStreamTest {
+
+    // Bytes that look like a gzip header, planted in the data of stored (uncompressed) members
+    private static final byte[] FAKE_HEADER = {0x1F, (byte) 0x8B, 0x08, 0x00, 0, 0, 0, 0, 0x00, 0x03};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void read_multiMemberFile_returnsMembersInFileOrder() throws IOException {
+        // Given - 40 members, every 4th one stored with fake headers inside its data
+        Path file = tempDir.resolve("customers.csv.gz");
+        byte[] expected = writeMultiMemberFile(file, 40);
+
+        // When
+        byte[] actual;
+        int members;
+        try (ParallelGzipInputStream in = new ParallelGzipInputStream(file, 4, 32 * 1024 * 1024)) {
+            actual = in.readAllBytes();
+            members = in.getMemberCount();
+        }
+
+        // Then - same bytes as the data written and as a sequential GZIPInputStream
+        assertThat(actual).isEqualTo(expected);
+        assertThat(members).isEqualTo(40);
+        try (InputStream sequential = new GZIPInputStream(Files.newInputStream(file))) {
+            assertThat(sequential.readAllBytes()).isEqualTo(actual);
+        }
+    }
+
+    @Test
+    void read_membersLargerThanBufferLimit_areStreamedInstead() throws IOException {
+        // Given
+        Path file = tempDir.resolve("big-members.csv.gz");
+        byte[] expected = writeMultiMemberFile(file, 6);
+
+        // When - a limit far below the member size forces the streaming fallback
+        byte[] actual;
+        try (ParallelGzipInputStream in = new ParallelGzipInputStream(file, 3, 1024)) {
+            actual = in.readAllBytes();
+        }
+
+        // Then
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void read_trailingGarbageAfterLastMember_isIgnored() throws IOException {
+        // Given
+        Path file = tempDir.resolve("padded.csv.gz");
+        byte[] expected = writeMultiMemberFile(file, 3);
+        Files.write(file, new byte[512], StandardOpenOption.APPEND);
+
+        // When / Then
+        try (ParallelGzipInputStream in = new ParallelGzipInputStream(file, 2, 32 * 1024 * 1024)) {
+            assertThat(in.readAllBytes()).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * Writes one gzip member per block of CSV lines and returns the uncompressed content.
+     */
+    private static byte[] writeMultiMemberFile(Path file, int members) throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int member = 0; member < members; member++) {
+                ByteArrayOutputStream block = new ByteArrayOutputStream();
+                for (int line = 0; line < 2_000; line++) {
+                    block.write(("%d,First,Last,c%d@example.com,Country-%d,%.2f%n"
+                            .formatted(member * 2_000L + line, line, random.nextInt(40), random.nextDouble() * 500))
+                            .getBytes());
+                }
+                boolean stored = member % 4 == 3;
+                if (stored) {
+                    block.write(FAKE_HEADER);
+                }
+                byte[] data = block.toByteArray();
+                content.write(data);
+
+                // Each GZIPOutputStream writes one complete member
+                GZIPOutputStream gzip = stored ? storedGzip(out) : new GZIPOutputStream(out);
+                gzip.write(data);
+                gzip.finish();
+            }
+        }
+        return content.toByteArray();
+    }
+
+    private static GZIPOutputStream storedGzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.NO_COMPRESSION);
+            }
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.dariel.batchdemo.loading;
+
+import com.dariel.batchdemo.advanced.loading.ShadowTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for ShadowTable, on an H2 in-memory database with schema.sql.
+ */
+class ShadowTableTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transaction;
+    private ShadowTable customers;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        transaction = new TransactionTemplate(new DataSourceTransactionManager(database));
+        customers = new ShadowTable(database, "customers", "id", List.of(
+                new ShadowTable.Index("idx_customers_country", "country"),
+                new ShadowTable.Index("idx_customers_email", "email")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void liveTableIsUntouchedUntilTheSwap() {
+        // Given - a previous load in the live table
+        insert("customers", 1, "CHILE");
+        insert("customers", 2, "PERU");
+
+        // When - the next load is half done
+        customers.create();
+        insert("customers_shadow", 10, "SPAIN");
+
+        // Then - readers still see the previous load only
+        assertThat(ids("customers")).containsExactly(1L, 2L);
+        assertThat(indexes("customers_shadow")).doesNotContain("IDX_CUSTOMERS_COUNTRY_SHADOW");
+
+        // When - the load completes and is swapped in
+        insert("customers_shadow", 11, "JAPAN");
+        Long rows = transaction.execute(status -> customers.publish());
+
+        // Then - the live table is the new load, with its indexes under their usual names
+        assertThat(rows).isEqualTo(2);
+        assertThat(ids("customers")).containsExactly(10L, 11L);
+        assertThat(indexes("customers")).contains("IDX_CUSTOMERS_COUNTRY", "IDX_CUSTOMERS_EMAIL");
+        assertThat(tableExists("customers_shadow")).isFalse();
+        assertThat(tableExists("customers_old")).isFalse();
+    }
+
+    @Test
+    void shadowTableKeepsThePrimaryKey() {
+        // Given
+        customers.create();
+        insert("customers_shadow", 1, "CHILE");
+
+        // Then - a duplicate id still fails its chunk during the load
+        assertThatThrownBy(() -> insert("customers_shadow", 1, "PERU"))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void swapCanBeRepeatedLoadAfterLoad() {
+        for (int load = 1; load <= 3; load++) {
+            // When
+            customers.create();
+            insert("customers_shadow", load, "CHILE");
+            transaction.execute(status -> customers.publish());
+
+            // Then - index and key names are free again for the next load
+            assertThat(ids("customers")).containsExactly((long) load);
+        }
+    }
+
+    @Test
+    void create_restoresATableLeftRenamedByAnInterruptedSwap() {
+        // Given - the live table was renamed away but the shadow table never renamed in
+        insert("customers", 1, "CHILE");
+        jdbcTemplate.execute("ALTER TABLE customers RENAME TO customers_old");
+
+        // When
+        customers.create();
+
+        // Then
+        assertThat(ids("customers")).containsExactly(1L);
+        assertThat(tableExists("customers_shadow")).isTrue();
+    }
+
+    private void insert(String table, long id, String country) {
+        jdbcTemplate.update("INSERT INTO " + table + "(id, first_name, last_name, email, country, purchase_amount) "
+                + "VALUES (?, 'First', 'Last', ?, ?, 10.0)", id, "c" + id + "@mail.com", country);
+    }
+
+    private List<Long> ids(String table) {
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " ORDER BY id", Long.class);
+    }
+
+    private List<String> indexes(String table) {
+        return jdbcTemplate.queryForList("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE TABLE_NAME = UPPER(?)", String.class, table);
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+                + "WHERE TABLE_NAME = UPPER(?)", Integer.class, table);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,251 @@
+package com.dariel.batchdemo.maintenance;
+
+import com.dariel.batchdemo.advanced.maintenance.JobRepositoryRetention;
+import com.dariel.batchdemo.advanced.maintenance.RepositoryPurgeTasklet;
+import org.springframework.batch.core.DefaultJobKeyGenerator;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.dao.DefaultExecutionContextSerializer;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JobRepositoryLaunchBenchmark - Launch latency of a job against the size of the job repository.
+ *
+ * The job repository is filled with the history of a job launched with a RunIdIncrementer
+ * (one instance per run, each with an execution, its parameters and context, and two
+ * step executions with their contexts), then the job is launched again and again:
+ * the next parameters are looked up like the incrementer does, and the job runs two
+ * steps that do nothing, so only the job repository work is timed. At the end the
+ * history is purged with the retention rules of repositoryMaintenanceJob and the launches
+ * are timed once more.
+ *
+ * Not a unit test (surefire ignores it): run its main method on the test classpath.
+ * H2 indexes foreign keys by itself; on databases that do not (PostgreSQL), the
+ * lookups of executions by instance grow with the repository unless it is purged.
+ * Arguments: repository sizes in job instances (default 1000,10000,100000), launches per size (default 50).
+ */
+public class JobRepositoryLaunchBenchmark {
+
+    private static final String JOB_NAME = "customerJob";
+    private static final List<String> STEP_NAMES = List.of("processStep", "aggregateStep");
+
+    private final EmbeddedDatabase database;
+    private final DataSourceTransactionManager transactionManager;
+    private final JobRepository jobRepository;
+    private final JobExplorer jobExplorer;
+    private final TaskExecutorJobLauncher jobLauncher;
+    private final JdbcTemplate jdbcTemplate;
+    private final Job job;
+    private final String jobContext;
+    private final String stepContext;
+
+    public static void main(String[] args) throws Exception {
+        long[] sizes = Arrays.stream((args.length > 0 ? args[0] : "1000,10000,100000").split(","))
+                .mapToLong(Long::parseLong).sorted().toArray();
+        int launches = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        JobRepositoryLaunchBenchmark benchmark = new JobRepositoryLaunchBenchmark();
+        try {
+            benchmark.launch(launches); // Warm-up: class loading, JIT
+            for (long size : sizes) {
+                benchmark.fill(size);
+                benchmark.time(String.format("%,d job instances", benchmark.countInstances()), launches);
+            }
+            long start = System.nanoTime();
+            benchmark.purge();
+            System.out.printf("Purge took %,d ms%n", (System.nanoTime() - start) / 1_000_000);
+            benchmark.time(String.format("%,d job instances (purged)", benchmark.countInstances()), launches);
+        } finally {
+            benchmark.database.shutdown();
+        }
+    }
+
+    private JobRepositoryLaunchBenchmark() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean repositoryFactory = new JobRepositoryFactoryBean();
+        repositoryFactory.setDataSource(database);
+        repositoryFactory.setTransactionManager(transactionManager);
+        repositoryFactory.afterPropertiesSet();
+        jobRepository = repositoryFactory.getObject();
+        JobExplorerFactoryBean explorerFactory = new JobExplorerFactoryBean();
+        explorerFactory.setDataSource(database);
+        explorerFactory.setTransactionManager(transactionManager);
+        explorerFactory.afterPropertiesSet();
+        jobExplorer = explorerFactory.getObject();
+        jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(database);
+
+        List<Step> steps = new ArrayList<>();
+        for (String stepName : STEP_NAMES) {
+            steps.add(new StepBuilder(stepName, jobRepository)
+                    .tasklet((contribution, chunkContext) -> RepeatStatus.FINISHED, transactionManager)
+                    .build());
+        }
+        job = new JobBuilder(JOB_NAME, jobRepository)
+                .incrementer(new RunIdIncrementer())
+                .start(steps.get(0))
+                .next(steps.get(1))
+                .build();
+
+        // What the repository stores as contexts of a job and of a tasklet step
+        jobContext = serialize(Map.of());
+        stepContext = serialize(Map.of(
+                "batch.taskletType", "org.springframework.batch.core.step.tasklet.TaskletStep",
+                "batch.stepType", "org.springframework.batch.core.step.tasklet.TaskletStep"));
+    }
+
+    private static String serialize(Map<String, Object> context) throws IOException {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        new DefaultExecutionContextSerializer().serialize(context, serialized);
+        return serialized.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Launches the job {@code launches} times, like the application does (new parameters every time).
+     */
+    private long[] launch(int launches) throws Exception {
+        long[] nanos = new long[launches];
+        for (int i = 0; i < launches; i++) {
+            long start = System.nanoTime();
+            JobParameters parameters = new JobParametersBuilder(jobExplorer).getNextJobParameters(job).toJobParameters();
+            jobLauncher.run(job, parameters);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    private void time(String label, int launches) throws Exception {
+        long[] nanos = launch(launches);
+        Arrays.sort(nanos);
+        System.out.printf("%-34s launch median %6.2f ms, p95 %6.2f ms%n", label,
+                nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.95)] / 1e6);
+    }
+
+    /**
+     * Inserts old history (finished 60 days ago) until the repository holds {@code size} instances.
+     * Run ids continue from the last launch, so the incrementer goes on from there.
+     */
+    private void fill(long size) {
+        LocalDateTime endTime = LocalDateTime.now().minusDays(60);
+        Timestamp end = Timestamp.valueOf(endTime);
+        Timestamp start = Timestamp.valueOf(endTime.minusMinutes(1));
+        long instanceId = maxId("JOB_INSTANCE_ID", "BATCH_JOB_INSTANCE");
+        long executionId = maxId("JOB_EXECUTION_ID", "BATCH_JOB_EXECUTION");
+        long stepExecutionId = maxId("STEP_EXECUTION_ID", "BATCH_STEP_EXECUTION");
+        long runId = lastRunId();
+        DefaultJobKeyGenerator keyGenerator = new DefaultJobKeyGenerator();
+
+        List<Object[]> jobInstances = new ArrayList<>();
+        List<Object[]> jobExecutions = new ArrayList<>();
+        List<Object[]> parameters = new ArrayList<>();
+        List<Object[]> jobContexts = new ArrayList<>();
+        List<Object[]> stepExecutions = new ArrayList<>();
+        List<Object[]> stepContexts = new ArrayList<>();
+        for (long count = countInstances(); count < size; count++) {
+            runId++;
+            String key = keyGenerator.generateKey(new JobParametersBuilder().addLong("run.id", runId).toJobParameters());
+            jobInstances.add(new Object[]{++instanceId, 0, JOB_NAME, key});
+            jobExecutions.add(new Object[]{++executionId, 2, instanceId, start, start, end, "COMPLETED", "COMPLETED", "", end});
+            parameters.add(new Object[]{executionId, "run.id", Long.class.getName(), String.valueOf(runId), "Y"});
+            jobContexts.add(new Object[]{executionId, jobContext});
+            for (String stepName : STEP_NAMES) {
+                stepExecutions.add(new Object[]{++stepExecutionId, 3, stepName, executionId, start, start, end,
+                        "COMPLETED", 1, 0, 0, 0, 0, 0, 0, 0, "COMPLETED", "", end});
+                stepContexts.add(new Object[]{stepExecutionId, stepContext});
+            }
+            if (jobInstances.size() == 10_000) {
+                insert(jobInstances, jobExecutions, parameters, jobContexts, stepExecutions, stepContexts);
+            }
+        }
+        insert(jobInstances, jobExecutions, parameters, jobContexts, stepExecutions, stepContexts);
+
+        // The repository takes its ids from sequences
+        jdbcTemplate.execute("ALTER SEQUENCE BATCH_JOB_SEQ RESTART WITH " + (instanceId + 1));
+        jdbcTemplate.execute("ALTER SEQUENCE BATCH_JOB_EXECUTION_SEQ RESTART WITH " + (executionId + 1));
+        jdbcTemplate.execute("ALTER SEQUENCE BATCH_STEP_EXECUTION_SEQ RESTART WITH " + (stepExecutionId + 1));
+    }
+
+    private void insert(List<Object[]> jobInstances, List<Object[]> jobExecutions, List<Object[]> parameters,
+                        List<Object[]> jobContexts, List<Object[]> stepExecutions, List<Object[]> stepContexts) {
+        jdbcTemplate.batchUpdate("INSERT INTO BATCH_JOB_INSTANCE(JOB_INSTANCE_ID, VERSION, JOB_NAME, JOB_KEY) "
+                + "VALUES (?, ?, ?, ?)", jobInstances);
+        jdbcTemplate.batchUpdate("INSERT INTO BATCH_JOB_EXECUTION(JOB_EXECUTION_ID, VERSION, JOB_INSTANCE_ID, "
+                + "CREATE_TIME, START_TIME, END_TIME, STATUS, EXIT_CODE, EXIT_MESSAGE, LAST_UPDATED) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", jobExecutions);
+        jdbcTemplate.batchUpdate("INSERT INTO BATCH_JOB_EXECUTION_PARAMS(JOB_EXECUTION_ID, PARAMETER_NAME, "
+                + "PARAMETER_TYPE, PARAMETER_VALUE, IDENTIFYING) VALUES (?, ?, ?, ?, ?)", parameters);
+        jdbcTemplate.batchUpdate("INSERT INTO BATCH_JOB_EXECUTION_CONTEXT(JOB_EXECUTION_ID, SHORT_CONTEXT) "
+                + "VALUES (?, ?)", jobContexts);
+        jdbcTemplate.batchUpdate("INSERT INTO BATCH_STEP_EXECUTION(STEP_EXECUTION_ID, VERSION, STEP_NAME, "
+                + "JOB_EXECUTION_ID, CREATE_TIME, START_TIME, END_TIME, STATUS, COMMIT_COUNT, READ_COUNT, "
+                + "FILTER_COUNT, WRITE_COUNT, READ_SKIP_COUNT, WRITE_SKIP_COUNT, PROCESS_SKIP_COUNT, "
+                + "ROLLBACK_COUNT, EXIT_CODE, EXIT_MESSAGE, LAST_UPDATED) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", stepExecutions);
+        jdbcTemplate.batchUpdate("INSERT INTO BATCH_STEP_EXECUTION_CONTEXT(STEP_EXECUTION_ID, SHORT_CONTEXT) "
+                + "VALUES (?, ?)", stepContexts);
+        for (List<Object[]> rows : List.of(jobInstances, jobExecutions, parameters, jobContexts, stepExecutions, stepContexts)) {
+            rows.clear();
+        }
+    }
+
+    /**
+     * Purges like repositoryMaintenanceJob with its default rules (30 days, keep the last 100).
+     */
+    private void purge() throws Exception {
+        RepositoryPurgeTasklet tasklet = new RepositoryPurgeTasklet(
+                new JobRepositoryRetention(database, 30, 100, true, false), 100);
+        Step step = new StepBuilder("purgeJobRepositoryStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .listener(tasklet)
+                .build();
+        Job maintenance = new JobBuilder("repositoryMaintenanceJob", jobRepository).start(step).build();
+        jobLauncher.run(maintenance, new JobParametersBuilder().addLong("time", System.currentTimeMillis())
+                .toJobParameters());
+    }
+
+    private long countInstances() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM BATCH_JOB_INSTANCE WHERE JOB_NAME = ?",
+                Long.class, JOB_NAME);
+    }
+
+    private long maxId(String column, String table) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table, Long.class);
+    }
+
+    private long lastRunId() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(CAST(PARAMETER_VALUE AS BIGINT)), 0) "
+                + "FROM BATCH_JOB_EXECUTION_PARAMS WHERE PARAMETER_NAME = 'run.id'", Long.class);
+    }
+}
@@ -0,0 +1,173 @@
+package com.dariel.batchdemo.maintenance;
+
+import com.dariel.batchdemo.advanced.maintenance.JobRepositoryRetention;
+import com.dariel.batchdemo.advanced.maintenance.RepositoryPurgeTasklet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for JobRepositoryRetention and RepositoryPurgeTasklet, on a real job repository.
+ */
+class JobRepositoryRetentionTest {
+
+    private EmbeddedDatabase database;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository jobRepository;
+    private TaskExecutorJobLauncher jobLauncher;
+    private JdbcTemplate jdbcTemplate;
+    private long run;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+
+        jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void oldInstances_arePurgedExceptTheNewestAndTheRestartable() throws Exception {
+        // Given - six runs of demoJob, the second one failed
+        for (int i = 1; i <= 6; i++) {
+            runDemoJob(i == 2);
+        }
+
+        // When - keep the 2 newest instances, whatever their age
+        JobExecution maintenance = runMaintenance(new JobRepositoryRetention(database, 0, 2, true, false), 100);
+
+        // Then - runs 1, 3 and 4 are gone with all their rows
+        assertThat(maintenance.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(runIdsOf("demoJob")).containsExactly(2L, 5L, 6L);
+        assertThat(count("BATCH_JOB_EXECUTION_PARAMS")).isEqualTo(4); // 3 demo runs + the maintenance run
+        assertThat(count("BATCH_STEP_EXECUTION_CONTEXT")).isEqualTo(count("BATCH_STEP_EXECUTION"));
+        assertThat(count("BATCH_JOB_EXECUTION_CONTEXT")).isEqualTo(count("BATCH_JOB_EXECUTION"));
+    }
+
+    @Test
+    void recentInstances_areKept() throws Exception {
+        // Given - three runs, the first one finished 31 days ago
+        for (int i = 1; i <= 3; i++) {
+            runDemoJob(false);
+        }
+        jdbcTemplate.update("UPDATE BATCH_JOB_EXECUTION SET END_TIME = DATEADD('DAY', -31, END_TIME) "
+                + "WHERE JOB_INSTANCE_ID = (SELECT MIN(JOB_INSTANCE_ID) FROM BATCH_JOB_INSTANCE)");
+
+        // When - keep 30 days, no minimum number of instances
+        runMaintenance(new JobRepositoryRetention(database, 30, 0, true, false), 100);
+
+        // Then
+        assertThat(runIdsOf("demoJob")).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void runningInstance_isNeverPurged() throws Exception {
+        // Given - two runs, the first one still looks like it is running
+        runDemoJob(false);
+        runDemoJob(false);
+        jdbcTemplate.update("UPDATE BATCH_JOB_EXECUTION SET STATUS = 'STARTED', END_TIME = NULL "
+                + "WHERE JOB_INSTANCE_ID = (SELECT MIN(JOB_INSTANCE_ID) FROM BATCH_JOB_INSTANCE)");
+
+        // When
+        runMaintenance(new JobRepositoryRetention(database, 0, 0, false, false), 100);
+
+        // Then
+        assertThat(runIdsOf("demoJob")).containsExactly(1L);
+    }
+
+    @Test
+    void archive_copiesThePurgedRowsOneBatchPerTransaction() throws Exception {
+        // Given
+        for (int i = 1; i <= 4; i++) {
+            runDemoJob(false);
+        }
+
+        // When - one instance per batch, keep the newest
+        JobExecution maintenance = runMaintenance(new JobRepositoryRetention(database, 0, 1, true, true), 1);
+
+        // Then - 3 batches, each committed on its own
+        StepExecution purge = maintenance.getStepExecutions().iterator().next();
+        assertThat(purge.getWriteCount()).isEqualTo(3);
+        assertThat(purge.getCommitCount()).isEqualTo(4); // 3 batches + the call that found nothing left
+        assertThat(runIdsOf("demoJob")).containsExactly(4L);
+        assertThat(count("BATCH_JOB_INSTANCE_ARCHIVE")).isEqualTo(3);
+        assertThat(count("BATCH_JOB_EXECUTION_ARCHIVE")).isEqualTo(3);
+        assertThat(count("BATCH_STEP_EXECUTION_ARCHIVE")).isEqualTo(3);
+        assertThat(count("BATCH_STEP_EXECUTION_CONTEXT_ARCHIVE")).isEqualTo(3);
+    }
+
+    private void runDemoJob(boolean fail) throws Exception {
+        Step step = new StepBuilder("demoStep", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    if (fail) {
+                        throw new IllegalStateException("Input file missing");
+                    }
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+        Job job = new JobBuilder("demoJob", jobRepository).start(step).build();
+        jobLauncher.run(job, new JobParametersBuilder().addLong("run.id", ++run).toJobParameters());
+    }
+
+    private JobExecution runMaintenance(JobRepositoryRetention retention, int batchSize) throws Exception {
+        RepositoryPurgeTasklet tasklet = new RepositoryPurgeTasklet(retention, batchSize);
+        Step step = new StepBuilder("purgeJobRepositoryStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .listener(tasklet)
+                .build();
+        Job job = new JobBuilder("repositoryMaintenanceJob", jobRepository).start(step).build();
+        return jobLauncher.run(job, new JobParametersBuilder().addLong("run.id", ++run).toJobParameters());
+    }
+
+    /**
+     * The run.id of every remaining instance of {@code jobName}.
+     */
+    private List<Long> runIdsOf(String jobName) {
+        return jdbcTemplate.queryForList("SELECT CAST(P.PARAMETER_VALUE AS BIGINT) FROM BATCH_JOB_EXECUTION_PARAMS P "
+                + "JOIN BATCH_JOB_EXECUTION E ON P.JOB_EXECUTION_ID = E.JOB_EXECUTION_ID "
+                + "JOIN BATCH_JOB_INSTANCE I ON E.JOB_INSTANCE_ID = I.JOB_INSTANCE_ID "
+                + "WHERE I.JOB_NAME = ? AND P.PARAMETER_NAME = 'run.id' ORDER BY 1", Long.class, jobName);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
@@ -0,0 +1,160 @@
+package com.dariel.batchdemo.memoization;
+
+import com.dariel.batchdemo.advanced.memoization.FingerprintSource;
+import com.dariel.batchdemo.advanced.memoization.StepMemoRepository;
+import com.dariel.batchdemo.advanced.memoization.StepMemoizer;
+import com.dariel.batchdemo.advanced.memoization.TableVersions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for MemoizedStep: a job with one step that "loads" an input file into a table.
+ */
+class MemoizedStepTest {
+
+    @TempDir
+    Path tempDir;
+
+    private EmbeddedDatabase database;
+    private JobRepository jobRepository;
+    private TaskExecutorJobLauncher jobLauncher;
+    private TableVersions tableVersions;
+    private Path input;
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private boolean failNextExecution;
+    private long run;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .addScript("schema.sql")
+                .build();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+
+        jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+
+        tableVersions = new TableVersions(database);
+        input = tempDir.resolve("customers.csv");
+        Files.writeString(input, "id,country\n1,CHILE\n2,PERU\n");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void unchangedInputs_skipTheStepAndReuseItsCounts() throws Exception {
+        // Given - a completed run
+        assertThat(runJob().getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        // When - the job runs again on the same file
+        JobExecution rerun = runJob();
+
+        // Then - the step did not execute, but reports the counts of the first run
+        assertThat(executions.get()).isEqualTo(1);
+        StepExecution step = rerun.getStepExecutions().iterator().next();
+        assertThat(step.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(step.getWriteCount()).isEqualTo(2);
+        assertThat(step.getExitStatus().getExitDescription()).contains("Memoized");
+    }
+
+    @Test
+    void changedInputFile_runsTheStepAgain() throws Exception {
+        // Given
+        runJob();
+
+        // When - one more customer
+        Files.writeString(input, "id,country\n1,CHILE\n2,PERU\n3,SPAIN\n");
+        runJob();
+
+        // Then
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    void outputTableChangedByAnotherWriter_runsTheStepAgain() throws Exception {
+        // Given
+        runJob();
+
+        // When - something else wrote the step's output table
+        tableVersions.bump("customers");
+        runJob();
+
+        // Then - what the step wrote is gone, so it cannot be skipped
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    void failedExecution_isNotMemoized() throws Exception {
+        // Given - a first run that fails
+        failNextExecution = true;
+        assertThat(runJob().getStatus()).isEqualTo(BatchStatus.FAILED);
+
+        // When
+        assertThat(runJob().getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        runJob();
+
+        // Then - failed run, then a real run, then a skipped run
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    private JobExecution runJob() throws Exception {
+        StepMemoizer memoizer = new StepMemoizer(true, jobRepository, new StepMemoRepository(database), tableVersions,
+                FingerprintSource.FileMode.CONTENT_HASH, List.of(FingerprintSource.value("chunk-size=25")));
+        Step load = new StepBuilder("loadStep", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    executions.incrementAndGet();
+                    if (failNextExecution) {
+                        failNextExecution = false;
+                        throw new IllegalStateException("Database unavailable");
+                    }
+                    long lines = Files.readAllLines(input).size() - 1;
+                    contribution.incrementWriteCount(lines);
+                    return RepeatStatus.FINISHED;
+                }, new DataSourceTransactionManager(database))
+                .build();
+        Job job = new JobBuilder("memoizedJob", jobRepository)
+                .start(memoizer.memoize(load, List.of(memoizer.file(new FileSystemResource(input))),
+                        List.of(), List.of("customers")))
+                .build();
+        return jobLauncher.run(job, new JobParametersBuilder().addLong("run", ++run).toJobParameters());
+    }
+}
@@ -0,0 +1,129 @@
+package com.dariel.batchdemo.monitoring;
+
+import com.dariel.batchdemo.advanced.monitoring.JfrBatchListener;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that JfrBatchListener emits the batch events into a flight recording.
+ */
+class JfrBatchListenerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private EmbeddedDatabase database;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository jobRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void recording_containsJobStepChunkAndItemEvents() throws Exception {
+        // Given - 25 items in chunks of 10; every third item is filtered
+        JfrBatchListener listener = new JfrBatchListener();
+        Job job = new JobBuilder("jfrJob", jobRepository)
+                .listener(listener)
+                .start(new StepBuilder("jfrStep", jobRepository)
+                        .<Integer, String>chunk(10, transactionManager)
+                        .reader(new ListItemReader<>(IntStream.range(0, 25).boxed().toList()))
+                        .processor(item -> item % 3 == 0 ? null : "item-" + item)
+                        .writer(chunk -> {
+                        })
+                        .listener((StepExecutionListener) listener)
+                        .listener((ChunkListener) listener)
+                        .listener((ItemReadListener<Object>) listener)
+                        .listener((ItemProcessListener<Object, Object>) listener)
+                        .listener((ItemWriteListener<Object>) listener)
+                        .build())
+                .build();
+        TaskExecutorJobLauncher launcher = new TaskExecutorJobLauncher();
+        launcher.setJobRepository(jobRepository);
+        launcher.afterPropertiesSet();
+
+        // When
+        Path file = tempDir.resolve("batch.jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : List.of("Job", "Step", "Chunk", "Read", "Process", "Write")) {
+                recording.enable("batchdemo." + event);
+            }
+            recording.start();
+            launcher.run(job, new JobParameters());
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+        // Then
+        assertThat(named(events, "batchdemo.Job")).singleElement()
+                .satisfies(event -> assertThat(event.getString("status")).isEqualTo("COMPLETED"));
+        assertThat(named(events, "batchdemo.Step")).singleElement()
+                .satisfies(event -> {
+                    assertThat(event.getString("stepName")).isEqualTo("jfrStep");
+                    assertThat(event.getLong("readCount")).isEqualTo(25);
+                    assertThat(event.getLong("filterCount")).isEqualTo(9);
+                });
+
+        List<RecordedEvent> chunks = named(events, "batchdemo.Chunk");
+        assertThat(chunks).extracting(event -> event.getLong("readCount")).containsExactly(10L, 10L, 5L);
+        assertThat(chunks).allSatisfy(event -> {
+            assertThat(event.getString("jobName")).isEqualTo("jfrJob");
+            assertThat(event.getLong("allocatedBytes")).isPositive();
+        });
+
+        assertThat(named(events, "batchdemo.Read")).hasSize(25);
+        assertThat(named(events, "batchdemo.Process")).filteredOn(event -> event.getBoolean("filtered")).hasSize(9);
+        assertThat(named(events, "batchdemo.Write")).extracting(event -> event.getInt("itemCount"))
+                .containsExactly(6, 7, 3);
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+}
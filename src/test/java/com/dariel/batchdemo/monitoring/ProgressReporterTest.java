@@ -0,0 +1,131 @@
+package com.dariel.batchdemo.monitoring;
+
+import com.dariel.batchdemo.advanced.monitoring.ProgressReporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for ProgressReporter.
+ */
+class ProgressReporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    void estimateLines_largeFile_extrapolatesFromSample() throws IOException {
+        // Given - 50,000 data lines (far more than the 64 KB sample)
+        Path file = writeCustomers("large.csv", 50_000);
+
+        // When
+        long estimate = ProgressReporter.estimateLines(new FileSystemResource(file), 1);
+
+        // Then - within 5% of the real count; exact for a small file
+        assertThat((double) estimate).isCloseTo(50_000, within(2_500.0));
+        assertThat(ProgressReporter.estimateLines(new FileSystemResource(writeCustomers("small.csv", 30)), 1))
+                .isEqualTo(30);
+        assertThat(ProgressReporter.estimateLines(new FileSystemResource(tempDir.resolve("customers.csv.gz")), 1))
+                .isEqualTo(-1);
+    }
+
+    @Test
+    void reportNow_printsThroughputAndEta_onlyWhenProgressWasMade() {
+        // Given - a step expected to read 100 items
+        ProgressReporter reporter = reporter();
+        reporter.estimateItems("processStep", stepExecution -> 100);
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution("processStep", 1L);
+        reporter.beforeStep(stepExecution);
+
+        // When - two chunks, then two reports
+        completeChunk(reporter, stepExecution, 25);
+        completeChunk(reporter, stepExecution, 25);
+        reporter.reportNow();
+        reporter.reportNow(); // Nothing new: no second line
+
+        // Then
+        List<String> lines = lines();
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0))
+                .contains("processStep: 50 read, 50 written")
+                .contains("items/s")
+                .contains("~50%")
+                .contains("ETA ");
+        reporter.close();
+    }
+
+    @Test
+    void afterStep_printsSummary_andLeavesExecutionContextEmpty() {
+        // Given - a partition step; the estimate is registered for the worker step name
+        ProgressReporter reporter = reporter();
+        List<String> estimated = new ArrayList<>();
+        reporter.estimateItems("processFileStep", stepExecution -> {
+            estimated.add(stepExecution.getStepName());
+            return -1;
+        });
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution("processFileStep:partition-a.csv", 2L);
+        reporter.beforeStep(stepExecution);
+
+        // When
+        for (int chunk = 0; chunk < 4; chunk++) {
+            completeChunk(reporter, stepExecution, 10);
+        }
+        reporter.reportNow();
+        reporter.afterStep(stepExecution);
+        reporter.reportNow(); // The step is no longer running
+
+        // Then - no percentage without an estimate, and nothing stored in the step
+        assertThat(estimated).containsExactly("processFileStep:partition-a.csv");
+        List<String> lines = lines();
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains("40 read").doesNotContain("ETA");
+        assertThat(lines.get(1)).contains("processFileStep:partition-a.csv: 40 read, 40 written, 0 skipped in");
+        assertThat(stepExecution.getExecutionContext().isEmpty()).isTrue();
+        reporter.close();
+    }
+
+    private ProgressReporter reporter() {
+        // Long interval: the test triggers the reports itself
+        return new ProgressReporter(Duration.ofHours(1), new PrintStream(output, true, StandardCharsets.UTF_8));
+    }
+
+    private static void completeChunk(ProgressReporter reporter, StepExecution stepExecution, int items) {
+        ChunkContext context = new ChunkContext(new StepContext(stepExecution));
+        reporter.beforeChunk(context);
+        stepExecution.setReadCount(stepExecution.getReadCount() + items);
+        stepExecution.setWriteCount(stepExecution.getWriteCount() + items);
+        reporter.afterChunk(context);
+    }
+
+    private List<String> lines() {
+        return output.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private Path writeCustomers(String name, int lines) throws IOException {
+        List<String> content = new ArrayList<>();
+        content.add("id,firstName,lastName,email,country,purchaseAmount");
+        for (int i = 1; i <= lines; i++) {
+            content.add(i + ",First" + (i % 97) + ",Last,customer" + i + "@example.com,Chile," + (i % 50_000) / 100.0);
+        }
+        return Files.write(tempDir.resolve(name), content);
+    }
+}
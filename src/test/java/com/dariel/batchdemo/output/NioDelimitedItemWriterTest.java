@@ -0,0 +1,140 @@
+package com.dariel.batchdemo.output;
+
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import com.dariel.batchdemo.common.output.NioDelimitedItemWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for NioDelimitedItemWriter.
+ */
+class NioDelimitedItemWriterTest {
+
+    private static final String HEADER = "country,customerCount,totalRevenue,averagePurchaseAmount";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void write_producesSameBytesAsFlatFileItemWriter() throws Exception {
+        // Given - amounts rounded to 2 decimals, like CountryStatisticsProcessor does
+        List<CountryStatistics> statistics = randomStatistics(2_000);
+        Path expectedFile = tempDir.resolve("expected.csv");
+        Path actualFile = tempDir.resolve("actual.csv");
+
+        // When
+        FlatFileItemWriter<CountryStatistics> flatFileWriter = new FlatFileItemWriterBuilder<CountryStatistics>()
+                .name("expected")
+                .resource(new FileSystemResource(expectedFile))
+                .delimited()
+                .delimiter(",")
+                .names("country", "customerCount", "totalRevenue", "averagePurchaseAmount")
+                .headerCallback(writer -> writer.write(HEADER))
+                .build();
+        writeAll(flatFileWriter, statistics);
+        writeAll(nioWriter(actualFile, false, 256), statistics); // Tiny buffer: lines span several flushes
+
+        // Then
+        assertThat(Files.readString(actualFile)).isEqualTo(Files.readString(expectedFile));
+    }
+
+    @Test
+    void restart_gzipOutput_dropsUncommittedChunkAndStaysReadable() throws Exception {
+        // Given - two committed chunks, then a third written but never committed
+        Path file = tempDir.resolve("statistics.csv.gz");
+        List<CountryStatistics> statistics = randomStatistics(300);
+        ExecutionContext context = new ExecutionContext();
+        NioDelimitedItemWriter<CountryStatistics> writer = nioWriter(file, true, 4 * 1024);
+        writer.open(context);
+        writer.write(new Chunk<>(statistics.subList(0, 100)));
+        writer.update(context);
+        writer.write(new Chunk<>(statistics.subList(100, 200)));
+        writer.update(context);
+        writer.write(new Chunk<>(statistics.subList(200, 250))); // "Crash" before update
+        writer.close();
+
+        // When - restarted from the saved context
+        NioDelimitedItemWriter<CountryStatistics> restarted = nioWriter(file, true, 4 * 1024);
+        restarted.open(context);
+        restarted.write(new Chunk<>(statistics.subList(200, 300)));
+        restarted.update(context);
+        restarted.close();
+
+        // Then - every line exactly once, in order, after the header
+        List<String> lines;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            lines = List.of(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n"));
+        }
+        assertThat(lines).hasSize(301);
+        assertThat(lines.get(0)).isEqualTo(HEADER);
+        assertThat(lines.get(201)).startsWith(statistics.get(200).getCountry() + ",");
+        assertThat(lines.get(300)).startsWith(statistics.get(299).getCountry() + ",");
+    }
+
+    @Test
+    void write_nonAsciiText_isEncodedAsUtf8() throws Exception {
+        // Given
+        Path file = tempDir.resolve("names.csv");
+        NioDelimitedItemWriter<String[]> writer = new NioDelimitedItemWriter<>(file, null, false, 64,
+                (names, line) -> line.text(names[0]).text(names[1]));
+
+        // When
+        writer.open(new ExecutionContext());
+        writer.write(new Chunk<>(List.<String[]>of(new String[]{"José", "Müller"}, new String[]{"李", "😀"})));
+        writer.update(new ExecutionContext());
+        writer.close();
+
+        // Then
+        assertThat(Files.readString(file, StandardCharsets.UTF_8)).isEqualTo("José,Müller\n李,😀\n");
+    }
+
+    private static NioDelimitedItemWriter<CountryStatistics> nioWriter(Path file, boolean gzip, int bufferBytes) {
+        return new NioDelimitedItemWriter<>(file, HEADER, gzip, bufferBytes,
+                (statistics, line) -> line
+                        .text(statistics.getCountry())
+                        .number(statistics.getCustomerCount())
+                        .decimal(statistics.getTotalRevenue(), 2)
+                        .decimal(statistics.getAveragePurchaseAmount(), 2));
+    }
+
+    private static void writeAll(org.springframework.batch.item.ItemStreamWriter<CountryStatistics> writer,
+                                 List<CountryStatistics> statistics) throws Exception {
+        ExecutionContext context = new ExecutionContext();
+        writer.open(context);
+        for (int from = 0; from < statistics.size(); from += 10) {
+            writer.write(new Chunk<>(statistics.subList(from, Math.min(from + 10, statistics.size()))));
+            writer.update(context);
+        }
+        writer.close();
+    }
+
+    private static List<CountryStatistics> randomStatistics(int count) throws IOException {
+        Random random = new Random(7);
+        List<CountryStatistics> statistics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long customers = 1 + random.nextInt(10_000);
+            double total = Math.round(random.nextDouble() * 9_000_000) / 100.0;
+            statistics.add(new CountryStatistics("Country-" + i, customers, total,
+                    Math.round(total / customers * 100) / 100.0));
+        }
+        statistics.add(new CountryStatistics("Zero", 1L, 0.0, 0.5));
+        return statistics;
+    }
+}
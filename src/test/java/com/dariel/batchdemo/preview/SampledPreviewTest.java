@@ -0,0 +1,130 @@
+package com.dariel.batchdemo.preview;
+
+import com.dariel.batchdemo.advanced.domain.EstimatedCountryStatistics;
+import com.dariel.batchdemo.advanced.preview.CsvLineSampler;
+import com.dariel.batchdemo.advanced.preview.SampleEstimator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for the preview mode: CsvLineSampler draws and SampleEstimator estimates.
+ */
+class SampledPreviewTest {
+
+    private static final String[] COUNTRIES = {"CHILE", "PERU", "SPAIN"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void seekSampling_estimatesCoverTheExactStatistics() throws Exception {
+        // Given - 20,000 customers with names of very different lengths, so long lines are drawn more often
+        Map<String, double[]> exact = new TreeMap<>(); // country -> {count, total}
+        String csv = customersCsv(20_000, exact);
+        Path file = directory.resolve("customers.csv");
+        Files.writeString(file, csv);
+
+        for (CsvLineSampler.Mode mode : CsvLineSampler.Mode.values()) {
+            // When - 4,000 draws
+            CsvLineSampler.Sample sample = new CsvLineSampler(4_000, mode, 42)
+                    .sample(List.of(new FileSystemResource(file)));
+            List<EstimatedCountryStatistics> estimates = estimate(sample);
+
+            // Then - every estimate is within its 99% margin of the exact value
+            assertThat(sample.seekBased()).isTrue();
+            assertThat(estimates).hasSize(COUNTRIES.length);
+            for (EstimatedCountryStatistics estimate : estimates) {
+                double[] actual = exact.get(estimate.getStatistics().getCountry());
+                assertThat((double) estimate.getStatistics().getCustomerCount())
+                        .isCloseTo(actual[0], within(estimate.getCustomerCountMargin()));
+                assertThat(estimate.getStatistics().getTotalRevenue())
+                        .isCloseTo(actual[1], within(estimate.getTotalRevenueMargin()));
+                assertThat(estimate.getStatistics().getAveragePurchaseAmount())
+                        .isCloseTo(actual[1] / actual[0], within(estimate.getAveragePurchaseAmountMargin()));
+                // A few percent from 4,000 draws
+                assertThat(estimate.getCustomerCountMargin()).isLessThan(actual[0] * 0.1);
+            }
+        }
+    }
+
+    @Test
+    void reservoirSampling_ofTheWholeInputIsExact() throws Exception {
+        // Given - an input that cannot be seeked, smaller than the sample
+        Map<String, double[]> exact = new TreeMap<>();
+        Resource resource = new ByteArrayResource(customersCsv(500, exact).getBytes(StandardCharsets.UTF_8));
+
+        // When
+        CsvLineSampler.Sample sample = new CsvLineSampler(1_000, CsvLineSampler.Mode.RANDOM, 7)
+                .sample(List.of(resource));
+        List<EstimatedCountryStatistics> estimates = estimate(sample);
+
+        // Then - every line was kept: exact values, no margin
+        assertThat(sample.seekBased()).isFalse();
+        assertThat(sample.draws()).hasSize(500);
+        for (EstimatedCountryStatistics estimate : estimates) {
+            double[] actual = exact.get(estimate.getStatistics().getCountry());
+            assertThat(estimate.getStatistics().getCustomerCount()).isEqualTo((long) actual[0]);
+            assertThat(estimate.getStatistics().getTotalRevenue()).isCloseTo(actual[1], within(0.001));
+            assertThat(estimate.getCustomerCountMargin()).isZero();
+        }
+    }
+
+    @Test
+    void invalidLines_countAsDrawsWithoutCustomer() {
+        // Given - two draws of 100 lines each, one of them not a customer
+        SampleEstimator estimator = new SampleEstimator();
+        estimator.add("CHILE", 10.0, 100);
+        estimator.addNonCustomer();
+
+        // When
+        EstimatedCountryStatistics chile = estimator.estimates(1.96, 1.0).get(0);
+
+        // Then - half of the 100 lines are Chilean customers
+        assertThat(chile.getStatistics().getCustomerCount()).isEqualTo(50);
+        assertThat(chile.getStatistics().getTotalRevenue()).isCloseTo(500.0, within(0.001));
+        assertThat(chile.getStatistics().getAveragePurchaseAmount()).isCloseTo(10.0, within(0.001));
+    }
+
+    private static List<EstimatedCountryStatistics> estimate(CsvLineSampler.Sample sample) {
+        SampleEstimator estimator = new SampleEstimator();
+        for (CsvLineSampler.Draw draw : sample.draws()) {
+            if (draw.line() == null) {
+                estimator.addNonCustomer();
+            } else {
+                String[] fields = draw.line().split(",");
+                estimator.add(fields[4], Double.parseDouble(fields[5]), draw.weight());
+            }
+        }
+        return estimator.estimates(2.576, sample.finitePopulationCorrection());
+    }
+
+    private static String customersCsv(int count, Map<String, double[]> exact) {
+        Random random = new Random(3);
+        StringBuilder csv = new StringBuilder("id,firstName,lastName,email,country,purchaseAmount\n");
+        for (int id = 1; id <= count; id++) {
+            String country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            double amount = random.nextInt(100_000) / 100.0;
+            String name = "N".repeat(1 + random.nextInt(60));
+            csv.append(id).append(',').append(name).append(",Last,c").append(id).append("@mail.com,")
+                    .append(country).append(',').append(amount).append('\n');
+            double[] sums = exact.computeIfAbsent(country, c -> new double[2]);
+            sums[0]++;
+            sums[1] += amount;
+        }
+        return csv.toString();
+    }
+}
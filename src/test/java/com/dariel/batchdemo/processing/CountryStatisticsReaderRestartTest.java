@@ -0,0 +1,244 @@
+package com.dariel.batchdemo.processing;
+
+import com.dariel.batchdemo.advanced.aggregation.GroupingKey;
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.processing.CountryStatisticsReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Restart tests for CountryStatisticsReader: a step killed midway must end with the
+ * same statistics as a step that ran straight through.
+ */
+class CountryStatisticsReaderRestartTest {
+
+    private static final int CUSTOMERS = 1_000;
+    private static final int CHECKPOINT_INTERVAL = 100;
+
+    @TempDir
+    Path tempDir;
+
+    private EmbeddedDatabase database;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository jobRepository;
+    private TaskExecutorJobLauncher jobLauncher;
+
+    private final FailingCustomerSource source = new FailingCustomerSource(customers());
+    private final List<CountryStatistics> written = new ArrayList<>();
+    private int failWriteAtChunk = -1;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(database);
+
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+
+        jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void restart_afterCrashWhileAggregating_resumesFromCheckpointWithIdenticalStatistics() throws Exception {
+        // Given - the customer source dies after 650 of 1,000 customers
+        Job job = aggregationJob();
+        JobParameters parameters = new JobParametersBuilder().addLong("run", 1L).toJobParameters();
+        source.failAt = 650;
+        assertThat(jobLauncher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.FAILED);
+
+        // When - the same job instance is restarted
+        source.failAt = -1;
+        source.reads = 0;
+        assertThat(jobLauncher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        // Then - only the customers after the last committed slice (600) were read again
+        assertThat(source.reads).isEqualTo(CUSTOMERS - 600);
+        assertThat(byCountry(written)).isEqualTo(byCountry(expectedStatistics()));
+        assertThat(written).hasSize(20);
+    }
+
+    @Test
+    void aggregation_commitsAfterEverySlice() throws Exception {
+        // When
+        JobExecution execution = jobLauncher.run(aggregationJob(),
+                new JobParametersBuilder().addLong("run", 3L).toJobParameters());
+
+        // Then - one empty chunk per slice of customers; only statistics are counted as items
+        StepExecution step = execution.getStepExecutions().iterator().next();
+        assertThat(step.getReadCount()).isEqualTo(20);
+        assertThat(step.getFilterCount()).isZero();
+        assertThat(step.getCommitCount()).isGreaterThanOrEqualTo(CUSTOMERS / CHECKPOINT_INTERVAL + 20 / 5);
+        assertThat(written).hasSize(20);
+    }
+
+    @Test
+    void restart_afterCrashWhileWriting_doesNotReadCustomersOrWriteStatisticsTwice() throws Exception {
+        // Given - all customers aggregated, then the third chunk of statistics fails
+        Job job = aggregationJob();
+        JobParameters parameters = new JobParametersBuilder().addLong("run", 2L).toJobParameters();
+        failWriteAtChunk = 3;
+        assertThat(jobLauncher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.FAILED);
+
+        // When
+        failWriteAtChunk = -1;
+        source.reads = 0;
+        assertThat(jobLauncher.run(job, parameters).getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        // Then - the saved groups were reused and every country was written exactly once
+        assertThat(source.reads).isZero();
+        assertThat(written).hasSize(20);
+        assertThat(byCountry(written)).isEqualTo(byCountry(expectedStatistics()));
+    }
+
+    @Test
+    void completedStep_keepsNoCheckpointFile() throws Exception {
+        // When
+        JobExecution execution = jobLauncher.run(aggregationJob(),
+                new JobParametersBuilder().addLong("run", 4L).toJobParameters());
+
+        // Then - the final groups were saved to a file, not to the ExecutionContext, and removed
+        ExecutionContext context = execution.getStepExecutions().iterator().next().getExecutionContext();
+        assertThat(context.containsKey("countryStatisticsReader.groups")).isFalse();
+        assertThat(context.getString("countryStatisticsReader.groups.file")).startsWith(tempDir.toString());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private Job aggregationJob() {
+        CountryStatisticsReader reader = new CountryStatisticsReader(source, GroupingKey.COUNTRY, Long.MAX_VALUE, tempDir,
+                CHECKPOINT_INTERVAL);
+
+        int[] chunks = {0};
+        ItemWriter<CountryStatistics> writer = (Chunk<? extends CountryStatistics> chunk) -> {
+            if (++chunks[0] == failWriteAtChunk) {
+                throw new IllegalStateException("Simulated crash while writing");
+            }
+            written.addAll(chunk.getItems());
+        };
+
+        return new JobBuilder("aggregationJob", jobRepository)
+                .start(new StepBuilder("aggregateStep", jobRepository)
+                        .<CountryStatistics, CountryStatistics>chunk(reader.completionPolicy(5), transactionManager)
+                        .reader(reader)
+                        .writer(writer)
+                        .build())
+                .build();
+    }
+
+    private List<CountryStatistics> expectedStatistics() throws Exception {
+        CountryStatisticsReader reader = new CountryStatisticsReader(new FailingCustomerSource(customers()));
+        reader.open(new ExecutionContext());
+        List<CountryStatistics> statistics = new ArrayList<>();
+        CountryStatistics next;
+        while ((next = reader.read()) != null) {
+            statistics.add(next);
+        }
+        reader.close();
+        return statistics;
+    }
+
+    private static Map<String, String> byCountry(List<CountryStatistics> statistics) {
+        Map<String, String> byCountry = new TreeMap<>();
+        for (CountryStatistics statistic : statistics) {
+            byCountry.put(statistic.getCountry(), statistic.getCustomerCount() + "/" + statistic.getTotalRevenue());
+        }
+        return byCountry;
+    }
+
+    private static List<Customer> customers() {
+        List<Customer> customers = new ArrayList<>();
+        for (long id = 1; id <= CUSTOMERS; id++) {
+            customers.add(new Customer(id, "First", "Last", "c" + id + "@example.com",
+                    "Country-" + (id % 20), 10.0 + (id % 37) * 1.25));
+        }
+        return customers;
+    }
+
+    /**
+     * Restartable in-memory customer source that can be told to fail at a given item.
+     */
+    private static final class FailingCustomerSource extends AbstractItemCountingItemStreamItemReader<Customer> {
+        private final List<Customer> customers;
+        private int next;
+        private int failAt = -1;
+        private int reads;
+
+        FailingCustomerSource(List<Customer> customers) {
+            this.customers = customers;
+            setName("customers");
+        }
+
+        @Override
+        protected Customer doRead() {
+            if (next == failAt) {
+                throw new IllegalStateException("Simulated crash while reading");
+            }
+            if (next >= customers.size()) {
+                return null;
+            }
+            reads++;
+            return customers.get(next++);
+        }
+
+        @Override
+        protected void jumpToItem(int itemIndex) {
+            next = itemIndex;
+        }
+
+        @Override
+        protected void doOpen() {
+            next = 0;
+        }
+
+        @Override
+        protected void doClose() {
+        }
+    }
+}
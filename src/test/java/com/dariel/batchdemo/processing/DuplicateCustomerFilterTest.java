@@ -0,0 +1,74 @@
+package com.dariel.batchdemo.processing;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.processing.DuplicateCustomerFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for DuplicateCustomerFilter.
+ */
+class DuplicateCustomerFilterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void process_sameIdOrEmailInSameRun_isFiltered() {
+        // Given
+        DuplicateCustomerFilter filter = new DuplicateCustomerFilter(tempDir.resolve("dedup.idx"));
+        filter.open(new ExecutionContext());
+
+        // When / Then
+        assertThat(filter.process(customer(1L, "a@example.com"))).isNotNull();
+        assertThat(filter.process(customer(1L, "other@example.com"))).isNull(); // same id
+        assertThat(filter.process(customer(2L, "A@Example.com"))).isNull();     // same email, different case
+        assertThat(filter.process(customer(3L, "c@example.com"))).isNotNull();
+        filter.close();
+    }
+
+    @Test
+    void process_customerFromCommittedChunkOfPreviousRun_isFiltered() {
+        // Given - a first run that commits one chunk
+        Path index = tempDir.resolve("dedup.idx");
+        DuplicateCustomerFilter firstRun = new DuplicateCustomerFilter(index);
+        firstRun.open(new ExecutionContext());
+        firstRun.process(customer(1L, "a@example.com"));
+        firstRun.afterChunk(null);
+        firstRun.close();
+
+        // When
+        DuplicateCustomerFilter secondRun = new DuplicateCustomerFilter(index);
+        secondRun.open(new ExecutionContext());
+
+        // Then
+        assertThat(secondRun.process(customer(1L, "a@example.com"))).isNull();
+        assertThat(secondRun.process(customer(2L, "b@example.com"))).isNotNull();
+        secondRun.close();
+    }
+
+    @Test
+    void process_customerFromRolledBackChunk_isAcceptedAgain() {
+        // Given - a chunk that fails and rolls back
+        DuplicateCustomerFilter filter = new DuplicateCustomerFilter(tempDir.resolve("dedup.idx"));
+        filter.open(new ExecutionContext());
+        filter.process(customer(1L, "a@example.com"));
+        filter.afterChunkError(null);
+
+        // When - the same customer is processed again in the retried chunk
+        Customer result = filter.process(customer(1L, "a@example.com"));
+
+        // Then
+        assertThat(result).isNotNull();
+        filter.close();
+    }
+
+    private static Customer customer(Long id, String email) {
+        return new Customer(id, "First", "Last", email, "CHILE", 10.0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dariel.batchdemo.processing;
+
+import com.dariel.batchdemo.advanced.processing.ExternalSortTasklet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for ExternalSortTasklet.
+ */
+class ExternalSortTaskletTest {
+
+    private static final String HEADER = "id,name,country";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void execute_tinyBudget_mergesManyRunsIntoStableSortedOutput() throws Exception {
+        // Given - 2000 lines and a budget of about one line, so ~2000 runs and two merge passes
+        List<String> lines = randomLines(2000);
+        Path input = writeInput(lines);
+        Path output = tempDir.resolve("sorted.csv");
+        Path runs = tempDir.resolve("runs");
+        ExternalSortTasklet tasklet = new ExternalSortTasklet(new FileSystemResource(input), output, "country", 1, runs);
+        StepContribution contribution = newContribution();
+
+        // When
+        tasklet.execute(contribution, null);
+
+        // Then - same lines, header first, sorted by country, ties in input order
+        List<String> expected = new ArrayList<>(lines);
+        expected.sort(Comparator.comparing(line -> line.split(",")[2]));
+        List<String> actual = Files.readAllLines(output);
+        assertThat(actual.get(0)).isEqualTo(HEADER);
+        assertThat(actual.subList(1, actual.size())).containsExactlyElementsOf(expected);
+        assertThat(contribution.getReadCount()).isEqualTo(2000);
+        assertThat(contribution.getWriteCount()).isEqualTo(2000);
+        try (var leftovers = Files.list(runs)) {
+            assertThat(leftovers).isEmpty(); // Run files are cleaned up
+        }
+    }
+
+    @Test
+    void execute_everythingFitsInMemory_sortsWithoutRuns() throws Exception {
+        // Given
+        Path input = writeInput(List.of("1,a,Chile", "2,b,\"Korea, Republic of\"", "3,c,Brazil"));
+        Path output = tempDir.resolve("sorted.csv");
+        ExternalSortTasklet tasklet = new ExternalSortTasklet(new FileSystemResource(input), output,
+                "country", Long.MAX_VALUE, tempDir.resolve("runs"));
+
+        // When
+        tasklet.execute(newContribution(), null);
+
+        // Then - a quoted field containing the delimiter is sorted by its full value
+        assertThat(Files.readAllLines(output))
+                .containsExactly(HEADER, "3,c,Brazil", "1,a,Chile", "2,b,\"Korea, Republic of\"");
+    }
+
+    private Path writeInput(List<String> lines) throws Exception {
+        List<String> content = new ArrayList<>();
+        content.add(HEADER);
+        content.addAll(lines);
+        return Files.write(tempDir.resolve("input.csv"), content);
+    }
+
+    private static List<String> randomLines(int count) {
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add(i + ",name" + i + ",Country" + random.nextInt(40));
+        }
+        return lines;
+    }
+
+    private static StepContribution newContribution() {
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        return new StepContribution(stepExecution);
+    }
+}
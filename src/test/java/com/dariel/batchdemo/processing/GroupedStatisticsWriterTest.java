@@ -0,0 +1,116 @@
+package com.dariel.batchdemo.processing;
+
+import com.dariel.batchdemo.advanced.aggregation.GroupingSet;
+import com.dariel.batchdemo.advanced.domain.GroupedStatistics;
+import com.dariel.batchdemo.advanced.processing.CountryStatisticsReader;
+import com.dariel.batchdemo.advanced.processing.GroupedStatisticsWriter;
+import com.dariel.batchdemo.advanced.processing.RollupStatisticsReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for GroupedStatisticsWriter: rollupStep run several times against the same table.
+ */
+class GroupedStatisticsWriterTest {
+
+    private EmbeddedDatabase database;
+    private JobRepository jobRepository;
+    private TaskExecutorJobLauncher jobLauncher;
+    private JdbcTemplate jdbcTemplate;
+    private long run;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("org/springframework/batch/core/schema-h2.sql")
+                .addScript("schema.sql")
+                .build();
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(new DataSourceTransactionManager(database));
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+
+        jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void secondRun_replacesTheGroupsOfTheFirstRun() throws Exception {
+        // Given - a first run over two countries
+        insertCustomer(1, "CHILE", 100.0);
+        insertCustomer(2, "PERU", 50.0);
+        assertThat(runRollup("COUNTRY, ALL").getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+        // When - the customers changed and the job runs again
+        jdbcTemplate.update("DELETE FROM customers WHERE country = 'PERU'");
+        insertCustomer(3, "CHILE", 20.0);
+        JobExecution second = runRollup("COUNTRY, ALL");
+
+        // Then - no duplicate key, and only the groups of the second run are left
+        assertThat(second.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(jdbcTemplate.queryForList("SELECT group_key || '=' || customer_count FROM grouping_set_statistics "
+                + "ORDER BY grouping_set, group_key", String.class))
+                .containsExactly("ALL=2", "CHILE=2");
+    }
+
+    @Test
+    void otherGroupingSets_areLeftAlone() throws Exception {
+        // Given
+        insertCustomer(1, "CHILE", 100.0);
+        runRollup("PURCHASE_BUCKET");
+
+        // When - a run with another grouping set
+        runRollup("COUNTRY");
+
+        // Then
+        assertThat(jdbcTemplate.queryForList("SELECT DISTINCT grouping_set FROM grouping_set_statistics "
+                + "ORDER BY grouping_set", String.class))
+                .containsExactly("COUNTRY", "PURCHASE_BUCKET");
+    }
+
+    private JobExecution runRollup(String groupingSets) throws Exception {
+        List<GroupingSet> sets = GroupingSet.parseAll(groupingSets);
+        Step rollup = new StepBuilder("rollupStep", jobRepository)
+                .<GroupedStatistics, GroupedStatistics>chunk(1, new DataSourceTransactionManager(database))
+                .reader(new RollupStatisticsReader(CountryStatisticsReader.databaseCustomerReader(database), sets, 12))
+                .writer(GroupedStatisticsWriter.create(database, sets))
+                .build();
+        Job job = new JobBuilder("customerJob", jobRepository).start(rollup).build();
+        return jobLauncher.run(job, new JobParametersBuilder().addLong("run", ++run).toJobParameters());
+    }
+
+    private void insertCustomer(long id, String country, double purchaseAmount) {
+        jdbcTemplate.update("INSERT INTO customers(id, first_name, last_name, email, country, purchase_amount) "
+                + "VALUES (?, 'Ana', 'Diaz', ?, ?, ?)", id, "ana" + id + "@example.com", country, purchaseAmount);
+    }
+}
@@ -0,0 +1,136 @@
+package com.dariel.batchdemo.processing;
+
+import com.dariel.batchdemo.advanced.aggregation.CountryAggregation;
+import com.dariel.batchdemo.advanced.aggregation.ExternalHashAggregator;
+import com.dariel.batchdemo.advanced.aggregation.GroupingKey;
+import com.dariel.batchdemo.advanced.processing.KeysetPartitionedAggregation;
+import com.dariel.batchdemo.advanced.processing.KeysetPartitionedAggregation.Boundaries;
+import com.dariel.batchdemo.advanced.processing.KeysetPartitionedAggregation.KeyRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for KeysetPartitionedAggregation: key range boundaries and the merged parallel result.
+ */
+class KeysetPartitionedAggregationTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE customers (id BIGINT PRIMARY KEY, first_name VARCHAR(100), "
+                + "last_name VARCHAR(100), email VARCHAR(255), country VARCHAR(50), purchase_amount DOUBLE)");
+
+        // Skewed ids: 9,000 dense ids, then 1,000 ids spread over a range a thousand times wider
+        Random random = new Random(3);
+        String[] countries = {"CHILE", "PERU", "SPAIN", "JAPAN", "KENYA"};
+        List<Object[]> rows = new ArrayList<>();
+        for (long i = 0; i < 10_000; i++) {
+            long id = i < 9_000 ? i + 1 : 1_000_000 + (i - 9_000) * 10_000;
+            rows.add(new Object[]{id, "First", "Last", "c" + random.nextInt(5_000) + "@mail.com",
+                    countries[random.nextInt(countries.length)], random.nextInt(100_000) / 100.0});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO customers VALUES (?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void ranges_coverAllIdsWithoutOverlap() {
+        for (Boundaries boundaries : Boundaries.values()) {
+            // When
+            List<KeyRange> ranges = new KeysetPartitionedAggregation(database, 4, 2, boundaries).ranges(8);
+
+            // Then - contiguous from MIN(id) to MAX(id)
+            assertThat(ranges).isNotEmpty().hasSizeLessThanOrEqualTo(8);
+            assertThat(ranges.get(0).fromId()).isEqualTo(1);
+            assertThat(ranges.get(ranges.size() - 1).toId()).isEqualTo(1_000_000 + 999 * 10_000);
+            for (int i = 1; i < ranges.size(); i++) {
+                assertThat(ranges.get(i).fromId()).isEqualTo(ranges.get(i - 1).toId() + 1);
+            }
+            assertThat(ranges.stream().mapToLong(this::countIn).sum()).isEqualTo(10_000);
+        }
+    }
+
+    @Test
+    void sampledBoundaries_balanceSkewedIds() {
+        // When
+        List<KeyRange> minMax = new KeysetPartitionedAggregation(database, 4, 2, Boundaries.MIN_MAX).ranges(8);
+        List<KeyRange> sampled = new KeysetPartitionedAggregation(database, 4, 2, Boundaries.SAMPLED).ranges(8);
+
+        // Then - equal widths put 9,000+ customers in the first range; sampling ~1,250 in each
+        assertThat(countIn(minMax.get(0))).isGreaterThan(9_000);
+        assertThat(sampled).hasSize(8);
+        for (KeyRange range : sampled) {
+            assertThat((double) countIn(range)).isCloseTo(1_250, within(625.0));
+        }
+    }
+
+    @Test
+    void aggregateInto_mergesPartialsIntoSameGroupsAsOneScan() throws Exception {
+        // Given - a small memory budget, so some workers spill
+        KeysetPartitionedAggregation parallel = new KeysetPartitionedAggregation(database, 4, 4, Boundaries.SAMPLED);
+
+        // When
+        Map<String, CountryAggregation> actual = new TreeMap<>();
+        long customers;
+        try (ExternalHashAggregator target = new ExternalHashAggregator(Long.MAX_VALUE, spillDirectory)) {
+            customers = parallel.aggregateInto(target, GroupingKey.COUNTRY, 16 * 1024, spillDirectory, 12);
+            for (Iterator<CountryAggregation> groups = target.results(); groups.hasNext(); ) {
+                CountryAggregation group = groups.next();
+                actual.put(group.getCountry(), group);
+            }
+        }
+
+        // Then - same groups as one serial pass over the table
+        Map<String, CountryAggregation> expected = new TreeMap<>();
+        jdbcTemplate.query("SELECT email, country, purchase_amount FROM customers", rs -> {
+            expected.computeIfAbsent(rs.getString("country"), CountryAggregation::new)
+                    .addCustomer(rs.getDouble("purchase_amount"), rs.getString("email"));
+        });
+        assertThat(customers).isEqualTo(10_000);
+        assertThat(actual.keySet()).isEqualTo(expected.keySet());
+        expected.forEach((country, group) -> {
+            CountryAggregation merged = actual.get(country);
+            assertThat(merged.getCount()).isEqualTo(group.getCount());
+            assertThat(merged.getTotalRevenue()).isCloseTo(group.getTotalRevenue(), within(0.001));
+            assertThat(merged.toStatistics().getMedianPurchaseAmount())
+                    .isEqualTo(group.toStatistics().getMedianPurchaseAmount());
+            assertThat(merged.toStatistics().getUniqueEmails()).isEqualTo(group.toStatistics().getUniqueEmails());
+        });
+    }
+
+    private long countIn(KeyRange range) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers WHERE id BETWEEN ? AND ?",
+                Long.class, range.fromId(), range.toId());
+    }
+}
@@ -0,0 +1,153 @@
+package com.dariel.batchdemo.processing;
+
+import com.dariel.batchdemo.basics.config.BasicsJobConfig;
+import com.dariel.batchdemo.basics.domain.Person;
+import com.dariel.batchdemo.basics.processing.PersonProcessor;
+import com.dariel.batchdemo.common.processing.FieldTransform;
+import com.dariel.batchdemo.common.processing.StreamingLineTransformTasklet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for StreamingLineTransformTasklet (the byte-level fast path of basicsJob).
+ */
+class StreamingLineTransformTaskletTest {
+
+    // Plain lines plus the cases the byte scanner hands to the tokenizer or the String transform
+    private static final String INPUT = "firstName,lastName\n"
+            + "Jill,Doe\n"
+            + "  Joe , Doe\t\n"
+            + "Justin,Doe\r\n"
+            + "# a comment line\n"
+            + "\"Smith, Jr\",\"O'Neil\"\n"
+            + "Jürgen,Straße\n"
+            + "Zoë,\n"
+            + "jane,doe";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void execute_sameOutputAsReaderProcessorWriterPipeline() throws Exception {
+        // Given
+        Path input = write("input.csv", INPUT);
+        Path expected = tempDir.resolve("expected.csv");
+        runPipeline(input, expected);
+
+        // When
+        Path actual = tempDir.resolve("actual.csv");
+        StreamingLineTransformTasklet tasklet = tasklet(input, actual, 3);
+        tasklet.open(new ExecutionContext());
+        StepContribution contribution = contribution();
+        while (tasklet.execute(contribution, null) == RepeatStatus.CONTINUABLE) {
+            // one call per chunk
+        }
+        tasklet.close();
+
+        // Then
+        assertThat(Files.readString(actual)).isEqualTo(Files.readString(expected));
+        assertThat(contribution.getReadCount()).isEqualTo(7);
+        assertThat(contribution.getWriteCount()).isEqualTo(7);
+    }
+
+    @Test
+    void restart_afterTwoChunks_continuesAtSavedOffsets() throws Exception {
+        // Given - 1,000 lines, 64 per chunk; the first run stops after two committed chunks
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            content.append("first").append(i).append(",last").append(i).append('\n');
+        }
+        Path input = write("input.csv", "firstName,lastName\n" + content);
+        Path output = tempDir.resolve("output.csv");
+        ExecutionContext context = new ExecutionContext();
+
+        StreamingLineTransformTasklet first = tasklet(input, output, 64);
+        first.open(context);
+        first.execute(contribution(), null);
+        first.update(context);
+        first.execute(contribution(), null);
+        first.update(context);
+        first.execute(contribution(), null); // Written, but its transaction never commits
+        first.close();
+
+        // When
+        StreamingLineTransformTasklet restarted = tasklet(input, output, 64);
+        restarted.open(context);
+        while (restarted.execute(contribution(), null) == RepeatStatus.CONTINUABLE) {
+            restarted.update(context);
+        }
+        restarted.close();
+
+        // Then
+        assertThat(Files.readString(output)).isEqualTo("firstName,lastName\n" + content.toString().toUpperCase());
+    }
+
+    @Test
+    void execute_lineWithWrongFieldCount_failsLikeTheReader() throws Exception {
+        // Given
+        Path input = write("input.csv", "firstName,lastName\nJill,Doe\nJoe,Doe,extra\n");
+        StreamingLineTransformTasklet tasklet = tasklet(input, tempDir.resolve("output.csv"), 10);
+        tasklet.open(new ExecutionContext());
+
+        // When / Then
+        assertThatThrownBy(() -> tasklet.execute(contribution(), null))
+                .isInstanceOf(FlatFileParseException.class)
+                .satisfies(e -> assertThat(((FlatFileParseException) e).getLineNumber()).isEqualTo(3));
+        tasklet.close();
+    }
+
+    private StreamingLineTransformTasklet tasklet(Path input, Path output, int linesPerChunk) {
+        LinkedHashMap<String, FieldTransform> columns = new LinkedHashMap<>();
+        columns.put("firstName", FieldTransform.UPPER_CASE);
+        columns.put("lastName", FieldTransform.UPPER_CASE);
+        return new StreamingLineTransformTasklet(new FileSystemResource(input), 1, output,
+                "firstName,lastName", columns, linesPerChunk);
+    }
+
+    /**
+     * basicsStep's reader, processor and writer, as configured in BasicsJobConfig.
+     */
+    private static void runPipeline(Path input, Path output) throws Exception {
+        BasicsJobConfig config = new BasicsJobConfig();
+        FlatFileItemReader<Person> reader = config.personReader(new FileSystemResource(input));
+        ItemStreamWriter<Person> writer = config.personWriter(new FileSystemResource(output), false, false, 64);
+        PersonProcessor processor = new PersonProcessor();
+
+        reader.open(new ExecutionContext());
+        writer.open(new ExecutionContext());
+        Person person;
+        while ((person = reader.read()) != null) {
+            writer.write(Chunk.of(processor.process(person)));
+        }
+        writer.close();
+        reader.close();
+    }
+
+    private static StepContribution contribution() {
+        return new StepContribution(new StepExecution("basicsStreamingStep", new JobExecution(1L)));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
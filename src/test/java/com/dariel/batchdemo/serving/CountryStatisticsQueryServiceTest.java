@@ -0,0 +1,119 @@
+package com.dariel.batchdemo.serving;
+
+import com.dariel.batchdemo.advanced.domain.CountryStatistics;
+import com.dariel.batchdemo.advanced.serving.CountryStatisticsQueryService;
+import com.dariel.batchdemo.advanced.serving.CountryStatisticsSnapshot;
+import com.dariel.batchdemo.advanced.serving.CountryStatisticsView;
+import com.dariel.batchdemo.advanced.serving.SnapshotPublishingListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the in-memory statistics snapshots and their publication after aggregateStep.
+ */
+class CountryStatisticsQueryServiceTest {
+
+    private final CountryStatisticsQueryService queryService = new CountryStatisticsQueryService();
+
+    @Test
+    void publish_indexesByCountryAndRevenue_andCopiesTheRows() {
+        // Given
+        CountryStatistics chile = new CountryStatistics("CHILE", 3L, 300.0, 100.0);
+        List<CountryStatistics> rows = List.of(
+                chile,
+                new CountryStatistics("JAPAN", 2L, 900.0, 450.0),
+                new CountryStatistics("SPAIN", 5L, 500.0, 100.0));
+
+        // When
+        CountryStatisticsSnapshot snapshot = queryService.publish(rows, 7L);
+        chile.setTotalRevenue(1_000_000.0); // Later changes to the beans must not leak in
+
+        // Then
+        assertThat(snapshot.getVersion()).isEqualTo(1);
+        assertThat(snapshot.getJobExecutionId()).isEqualTo(7);
+        assertThat(queryService.find("CHILE")).contains(new CountryStatisticsView("CHILE", 3, 300.0, 100.0, 0, 0, 0, 0, 0));
+        assertThat(queryService.find("ATLANTIS")).isEmpty();
+        assertThat(queryService.topByRevenue(2)).extracting(CountryStatisticsView::country)
+                .containsExactly("JAPAN", "SPAIN");
+        assertThat(snapshot.topByRevenue(10)).hasSize(3);
+    }
+
+    @Test
+    void listener_publishesOnlyCommittedChunks_ofCompletedNonRestartedSteps() {
+        // Given
+        SnapshotPublishingListener listener = new SnapshotPublishingListener(queryService);
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution("aggregateStep", 1L);
+        ChunkContext chunkContext = new ChunkContext(new StepContext(stepExecution));
+
+        // When - one committed chunk, one rolled back chunk
+        listener.beforeStep(stepExecution);
+        listener.afterWrite(new Chunk<>(new CountryStatistics("CHILE", 1L, 10.0, 10.0)));
+        listener.afterChunk(chunkContext);
+        listener.afterWrite(new Chunk<>(new CountryStatistics("JAPAN", 1L, 20.0, 20.0)));
+        listener.afterChunkError(chunkContext);
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        listener.afterStep(stepExecution);
+
+        // Then
+        assertThat(queryService.current().all()).extracting(CountryStatisticsView::country).containsExactly("CHILE");
+
+        // When - a restarted step (its execution context is carried over) completes
+        StepExecution restart = MetaDataInstanceFactory.createStepExecution("aggregateStep", 2L);
+        restart.getExecutionContext().putString(TaskletStep.TASKLET_TYPE_KEY, "ChunkOrientedTasklet");
+        listener.beforeStep(restart);
+        listener.afterWrite(new Chunk<>(new CountryStatistics("SPAIN", 1L, 30.0, 30.0)));
+        listener.afterChunk(new ChunkContext(new StepContext(restart)));
+        restart.setStatus(BatchStatus.COMPLETED);
+        listener.afterStep(restart);
+
+        // Then - its partial results are not published
+        assertThat(queryService.current().getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void readers_duringPublications_alwaysSeeOneConsistentSnapshot() throws Exception {
+        // Given - version n holds n rows with revenue n each
+        AtomicBoolean publishing = new AtomicBoolean(true);
+        AtomicReference<String> inconsistency = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (publishing.get()) {
+                CountryStatisticsSnapshot snapshot = queryService.current();
+                long version = snapshot.getVersion();
+                boolean consistent = snapshot.size() == version
+                        && snapshot.all().stream().allMatch(row -> row.totalRevenue() == version);
+                if (!consistent) {
+                    inconsistency.set("version " + version + " with " + snapshot.size() + " rows");
+                }
+            }
+        });
+        reader.start();
+
+        // When
+        for (int version = 1; version <= 500; version++) {
+            List<CountryStatistics> rows = new ArrayList<>();
+            for (int row = 0; row < version; row++) {
+                rows.add(new CountryStatistics("COUNTRY-" + row, 1L, (double) version, (double) version));
+            }
+            queryService.publish(rows, version);
+        }
+        publishing.set(false);
+        reader.join();
+
+        // Then
+        assertThat(inconsistency.get()).isNull();
+        assertThat(queryService.current().getVersion()).isEqualTo(500);
+    }
+}
@@ -0,0 +1,157 @@
+package com.dariel.batchdemo.sharding;
+
+import com.dariel.batchdemo.advanced.aggregation.CountryAggregation;
+import com.dariel.batchdemo.advanced.aggregation.ExternalHashAggregator;
+import com.dariel.batchdemo.advanced.aggregation.GroupingKey;
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.sharding.CustomerShards;
+import com.dariel.batchdemo.advanced.sharding.ShardKey;
+import com.dariel.batchdemo.advanced.sharding.ShardedCustomerReader;
+import com.dariel.batchdemo.advanced.sharding.ShardedItemWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for CustomerShards, with three H2 in-memory databases standing in for the shards.
+ */
+class CustomerShardsTest {
+
+    private static final String[] COUNTRIES = {"CHILE", "PERU", "SPAIN", "JAPAN", "KENYA", "CANADA"};
+
+    @TempDir
+    Path spillDirectory;
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<>();
+    private CustomerShards shards;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            databases.add(new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .addScript("schema.sql")
+                    .build());
+        }
+        shards = new CustomerShards(new ArrayList<DataSource>(databases), ShardKey.ID);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        shards.close();
+        databases.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    @Test
+    void writer_routesEveryCustomerToExactlyOneShard() throws Exception {
+        // Given
+        List<Customer> customers = customers(3_000);
+        ShardedItemWriter<Customer> writer = shards.writer();
+
+        // When - written in chunks of 100, the last chunk twice (as after a rollback)
+        for (int from = 0; from < customers.size(); from += 100) {
+            writer.write(new Chunk<>(customers.subList(from, from + 100)));
+        }
+        writer.write(new Chunk<>(customers.subList(2_900, 3_000)));
+
+        // Then - each customer is in the shard its id hashes to, and only there
+        long total = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(databases.get(shard));
+            List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM customers", Long.class);
+            for (Long id : ids) {
+                assertThat(shards.shardOf(customers.get((int) (id - 1)))).isEqualTo(shard);
+            }
+            // Hashed ids spread evenly
+            assertThat((double) ids.size()).isCloseTo(1_000, within(150.0));
+            total += ids.size();
+        }
+        assertThat(total).isEqualTo(3_000);
+    }
+
+    @Test
+    void countryKey_keepsACountryOnOneShard() {
+        // Given
+        CustomerShards byCountry = new CustomerShards(new ArrayList<DataSource>(databases), ShardKey.COUNTRY);
+
+        // Then
+        for (Customer customer : customers(500)) {
+            Customer sameCountry = new Customer(999L, "Other", "Customer", "o@mail.com", customer.getCountry(), 1.0);
+            assertThat(byCountry.shardOf(customer)).isEqualTo(byCountry.shardOf(sameCountry));
+        }
+    }
+
+    @Test
+    void aggregationAndReader_gatherAllShards() throws Exception {
+        // Given
+        List<Customer> customers = customers(2_000);
+        shards.writer().write(new Chunk<>(customers));
+
+        // When - scatter-gather aggregation
+        Map<String, CountryAggregation> actual = new TreeMap<>();
+        long aggregated;
+        try (ExternalHashAggregator target = new ExternalHashAggregator(Long.MAX_VALUE, spillDirectory)) {
+            aggregated = shards.aggregation().aggregateInto(target, GroupingKey.COUNTRY, Long.MAX_VALUE, spillDirectory, 12);
+            for (Iterator<CountryAggregation> groups = target.results(); groups.hasNext(); ) {
+                CountryAggregation group = groups.next();
+                actual.put(group.getCountry(), group);
+            }
+        }
+
+        // Then - same groups as aggregating the customers directly
+        Map<String, CountryAggregation> expected = new TreeMap<>();
+        for (Customer customer : customers) {
+            expected.computeIfAbsent(customer.getCountry(), CountryAggregation::new)
+                    .addCustomer(customer.getPurchaseAmount(), customer.getEmail());
+        }
+        assertThat(aggregated).isEqualTo(2_000);
+        assertThat(actual.keySet()).isEqualTo(expected.keySet());
+        expected.forEach((country, group) -> {
+            assertThat(actual.get(country).getCount()).isEqualTo(group.getCount());
+            assertThat(actual.get(country).getTotalRevenue()).isCloseTo(group.getTotalRevenue(), within(0.001));
+        });
+
+        // And the reader returns every customer once, shard after shard
+        ShardedCustomerReader reader = shards.reader();
+        reader.open(new ExecutionContext());
+        Set<Long> ids = new HashSet<>();
+        Customer customer;
+        while ((customer = reader.read()) != null) {
+            assertThat(ids.add(customer.getId())).isTrue();
+        }
+        reader.close();
+        assertThat(ids).hasSize(2_000);
+    }
+
+    private static List<Customer> customers(int count) {
+        Random random = new Random(11);
+        List<Customer> customers = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            customers.add(new Customer(id, "First", "Last", "c" + id + "@mail.com",
+                    COUNTRIES[random.nextInt(COUNTRIES.length)], random.nextInt(100_000) / 100.0));
+        }
+        return customers;
+    }
+}
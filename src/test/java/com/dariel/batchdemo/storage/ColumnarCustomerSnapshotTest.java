@@ -0,0 +1,198 @@
+package com.dariel.batchdemo.storage;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.storage.ColumnarCustomerReader;
+import com.dariel.batchdemo.advanced.storage.ColumnarCustomerWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the columnar customer snapshot (writer + memory-mapped reader).
+ */
+class ColumnarCustomerSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeThenRead_roundTripsAllRowsAcrossBlocks() throws Exception {
+        // Given - a block size of 4, so every commit completes a block
+        Path file = tempDir.resolve("customers.col");
+        ColumnarCustomerWriter writer = new ColumnarCustomerWriter(file, 4);
+        ExecutionContext context = new ExecutionContext();
+        writer.open(context);
+
+        // When
+        writer.write(chunkOf(1, 10));
+        writer.update(context);
+        writer.write(chunkOf(11, 25));
+        writer.update(context);
+        complete(writer);
+        writer.close();
+
+        // Then
+        List<Customer> customers = readAll(file, new ExecutionContext());
+        assertThat(customers).hasSize(25);
+        assertThat(customers.get(0).getId()).isEqualTo(1L);
+        assertThat(customers.get(0).getCountry()).isEqualTo("COUNTRY-1");
+        assertThat(customers.get(0).getPurchaseAmount()).isEqualTo(10.5);
+        assertThat(customers.get(0).getEmail()).isEqualTo("c1@example.com");
+        assertThat(customers.get(24).getId()).isEqualTo(25L);
+        assertThat(customers.get(24).getCountry()).isEqualTo("COUNTRY-4");
+    }
+
+    @Test
+    void restartedWriter_dropsRowsOfUncommittedChunk() throws Exception {
+        // Given - first chunk committed, second chunk written but never committed (crash)
+        Path file = tempDir.resolve("customers.col");
+        ExecutionContext committed = new ExecutionContext();
+        ColumnarCustomerWriter writer = new ColumnarCustomerWriter(file, 4);
+        writer.open(committed);
+        writer.write(chunkOf(1, 10));
+        writer.update(committed);
+        writer.write(chunkOf(11, 20));
+        writer.close();
+
+        // When - restart from the committed context and write the second chunk again
+        ColumnarCustomerWriter restarted = new ColumnarCustomerWriter(file, 4);
+        restarted.open(new ExecutionContext(committed));
+        restarted.write(chunkOf(11, 20));
+        restarted.update(committed);
+        complete(restarted);
+        restarted.close();
+
+        // Then - no duplicates and the dictionary is still consistent
+        List<Customer> customers = readAll(file, new ExecutionContext());
+        assertThat(customers).extracting(Customer::getId)
+                .containsExactlyElementsOf(ids(1, 20));
+        assertThat(customers.get(19).getCountry()).isEqualTo("COUNTRY-" + (20 % 7));
+    }
+
+    @Test
+    void restartedWriter_keepsCommittedRowsThatHadNotReachedABlock() throws Exception {
+        // Given - two committed chunks that do not fill a block, then a crash in the third
+        Path file = tempDir.resolve("customers.col");
+        ExecutionContext committed = new ExecutionContext();
+        ColumnarCustomerWriter writer = new ColumnarCustomerWriter(file, 100);
+        writer.open(committed);
+        writer.write(chunkOf(1, 10));
+        writer.update(committed);
+        writer.write(chunkOf(11, 20));
+        writer.update(committed);
+        writer.write(chunkOf(21, 30));
+        writer.close();
+
+        // When - restart from the committed context and write the third chunk again
+        ColumnarCustomerWriter restarted = new ColumnarCustomerWriter(file, 100);
+        restarted.open(new ExecutionContext(committed));
+        restarted.write(chunkOf(21, 30));
+        restarted.update(committed);
+        complete(restarted);
+        restarted.close();
+
+        // Then - the journaled rows were restored, in order and with their emails
+        List<Customer> customers = readAll(file, new ExecutionContext());
+        assertThat(customers).extracting(Customer::getId).containsExactlyElementsOf(ids(1, 30));
+        assertThat(customers.get(14).getEmail()).isEqualTo("c15@example.com");
+        assertThat(customers.get(14).getCountry()).isEqualTo("COUNTRY-" + (15 % 7));
+    }
+
+    @Test
+    void closeAfterFailedChunk_writesNoRowsPastTheLastCommit() throws Exception {
+        // Given - one committed block, then a chunk that was rolled back
+        Path file = tempDir.resolve("customers.col");
+        ExecutionContext committed = new ExecutionContext();
+        ColumnarCustomerWriter writer = new ColumnarCustomerWriter(file, 4);
+        writer.open(committed);
+        writer.write(chunkOf(1, 10));
+        writer.update(committed);
+        writer.write(chunkOf(11, 20));
+
+        // When - the step fails and closes its streams
+        writer.afterStep(stepExecution(BatchStatus.FAILED));
+        writer.close();
+
+        // Then - the file ends where the committed context says it does
+        assertThat(Files.size(file)).isEqualTo(committed.getLong("columnarCustomerWriter.position"));
+        assertThat(readAll(file, new ExecutionContext())).extracting(Customer::getId)
+                .containsExactlyElementsOf(ids(1, 10));
+    }
+
+    @Test
+    void restartedReader_resumesAtSavedItem() throws Exception {
+        // Given
+        Path file = tempDir.resolve("customers.col");
+        ColumnarCustomerWriter writer = new ColumnarCustomerWriter(file, 4);
+        writer.open(new ExecutionContext());
+        writer.write(chunkOf(1, 30));
+        writer.update(new ExecutionContext());
+        complete(writer);
+        writer.close();
+
+        ExecutionContext context = new ExecutionContext();
+        ColumnarCustomerReader reader = new ColumnarCustomerReader(file);
+        reader.open(context);
+        for (int i = 0; i < 13; i++) {
+            reader.read();
+        }
+        reader.update(context);
+        reader.close();
+
+        // When
+        List<Customer> remaining = readAll(file, context);
+
+        // Then
+        assertThat(remaining).extracting(Customer::getId).containsExactlyElementsOf(ids(14, 30));
+    }
+
+    private static void complete(ColumnarCustomerWriter writer) {
+        writer.afterStep(stepExecution(BatchStatus.COMPLETED));
+    }
+
+    private static StepExecution stepExecution(BatchStatus status) {
+        StepExecution stepExecution = new StepExecution("processStep", new JobExecution(1L));
+        stepExecution.setStatus(status);
+        return stepExecution;
+    }
+
+    private static List<Customer> readAll(Path file, ExecutionContext context) throws Exception {
+        ColumnarCustomerReader reader = new ColumnarCustomerReader(file);
+        reader.open(context);
+        List<Customer> customers = new ArrayList<>();
+        Customer customer;
+        while ((customer = reader.read()) != null) {
+            customers.add(customer);
+        }
+        reader.close();
+        return customers;
+    }
+
+    private static Chunk<Customer> chunkOf(int firstId, int lastId) {
+        Chunk<Customer> chunk = new Chunk<>();
+        for (int id = firstId; id <= lastId; id++) {
+            chunk.add(new Customer((long) id, "first", "last", "c" + id + "@example.com",
+                    "COUNTRY-" + (id % 7), id + 9.5));
+        }
+        return chunk;
+    }
+
+    private static List<Long> ids(int first, int last) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = first; id <= last; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
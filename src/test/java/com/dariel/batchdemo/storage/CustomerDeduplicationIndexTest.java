@@ -0,0 +1,68 @@
+package com.dariel.batchdemo.storage;
+
+import com.dariel.batchdemo.advanced.storage.CustomerDeduplicationIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for CustomerDeduplicationIndex.
+ */
+class CustomerDeduplicationIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keys_surviveReopenAndGrowth() throws Exception {
+        // Given - more keys than the initial table can hold, so it has to grow
+        Path file = tempDir.resolve("dedup.idx");
+        try (CustomerDeduplicationIndex index = new CustomerDeduplicationIndex(file)) {
+            for (long id = 1; id <= 100_000; id++) {
+                index.add(CustomerDeduplicationIndex.idKey(id));
+            }
+        }
+
+        // When
+        try (CustomerDeduplicationIndex reopened = new CustomerDeduplicationIndex(file)) {
+            // Then
+            assertThat(reopened.size()).isEqualTo(100_000);
+            assertThat(reopened.contains(CustomerDeduplicationIndex.idKey(1L))).isTrue();
+            assertThat(reopened.contains(CustomerDeduplicationIndex.idKey(100_000L))).isTrue();
+            assertThat(reopened.contains(CustomerDeduplicationIndex.idKey(100_001L))).isFalse();
+        }
+    }
+
+    @Test
+    void emailKey_ignoresCaseAndSurroundingSpaces() throws Exception {
+        // Given
+        try (CustomerDeduplicationIndex index = new CustomerDeduplicationIndex(tempDir.resolve("dedup.idx"))) {
+            index.add(CustomerDeduplicationIndex.emailKey("Sarah.Nelson@Example.com"));
+
+            // Then
+            assertThat(index.contains(CustomerDeduplicationIndex.emailKey("  sarah.nelson@example.com "))).isTrue();
+            assertThat(index.contains(CustomerDeduplicationIndex.emailKey("sarah.nelson@example.org"))).isFalse();
+        }
+    }
+
+    @Test
+    void unknownKeys_mostlyAnsweredByBloomFilter() throws Exception {
+        // Given
+        try (CustomerDeduplicationIndex index = new CustomerDeduplicationIndex(tempDir.resolve("dedup.idx"))) {
+            for (long id = 1; id <= 10_000; id++) {
+                index.add(CustomerDeduplicationIndex.idKey(id));
+            }
+
+            // When - look up 10,000 keys that were never added
+            for (long id = 20_001; id <= 30_000; id++) {
+                assertThat(index.contains(CustomerDeduplicationIndex.idKey(id))).isFalse();
+            }
+
+            // Then - the on-disk table was probed for only a small fraction of them
+            assertThat(index.getBloomRejections()).isGreaterThan(9_500);
+        }
+    }
+}
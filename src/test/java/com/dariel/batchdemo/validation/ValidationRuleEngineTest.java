@@ -0,0 +1,105 @@
+package com.dariel.batchdemo.validation;
+
+import com.dariel.batchdemo.advanced.domain.Customer;
+import com.dariel.batchdemo.advanced.validation.RuleDefinition;
+import com.dariel.batchdemo.advanced.validation.RuleOperator;
+import com.dariel.batchdemo.advanced.validation.ValidationRuleEngine;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for ValidationRuleEngine.
+ */
+class ValidationRuleEngineTest {
+
+    @Test
+    void defaultRules_matchOriginalValidation() {
+        // Given
+        ValidationRuleEngine engine = ValidationRuleEngine.compile(ValidationRuleEngine.DEFAULT_RULES);
+
+        // Then
+        assertThat(engine.test(customer("a@example.com", 10.0))).isTrue();
+        assertThat(engine.test(customer("not-an-email", 10.0))).isFalse();
+        assertThat(engine.test(customer(null, 10.0))).isFalse();
+        assertThat(engine.test(customer("a@example.com", -5.0))).isFalse();
+        assertThat(engine.test(customer("a@example.com", 0.0))).isFalse();
+        assertThat(engine.test(customer("a@example.com", null))).isFalse();
+    }
+
+    @Test
+    void test_selectiveCheapRuleMovesToFront() {
+        // Given - an expensive regex that rarely rejects, then a cheap check that rejects half
+        ValidationRuleEngine engine = ValidationRuleEngine.compile(List.of(
+                new RuleDefinition("email-regex", "email", RuleOperator.MATCHES, "[^@]+@[^@]+"),
+                new RuleDefinition("positive-amount", "purchaseAmount", RuleOperator.GREATER_THAN, "0")), 100);
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            engine.test(customer("c" + i + "@example.com", i % 2 == 0 ? 10.0 : -10.0));
+        }
+
+        // Then
+        List<ValidationRuleEngine.RuleStatistics> statistics = engine.statistics();
+        assertThat(statistics).extracting(ValidationRuleEngine.RuleStatistics::rule)
+                .containsExactly("positive-amount", "email-regex");
+        assertThat(statistics.get(0).rejected()).isGreaterThan(400);
+    }
+
+    @Test
+    void resetCounters_clearsCountsButKeepsOrder() {
+        // Given
+        ValidationRuleEngine engine = ValidationRuleEngine.compile(ValidationRuleEngine.DEFAULT_RULES, 10);
+        for (int i = 0; i < 50; i++) {
+            engine.test(customer("a@example.com", -1.0));
+        }
+
+        // When
+        engine.resetCounters();
+
+        // Then
+        assertThat(engine.statistics().get(0).rule()).isEqualTo("positive-purchase-amount");
+        assertThat(engine.statistics()).allSatisfy(rule -> assertThat(rule.evaluated()).isZero());
+    }
+
+    @Test
+    void compile_operatorNotMatchingFieldType_failsAtStartup() {
+        assertThatThrownBy(() -> ValidationRuleEngine.compile(List.of(
+                new RuleDefinition("bad", "purchaseAmount", RuleOperator.CONTAINS, "@"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ValidationRuleEngine.compile(List.of(
+                new RuleDefinition("bad", "shoeSize", RuleOperator.NOT_BLANK, null))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void compile_missingOrInvalidValue_failsAtStartupNamingTheRule() {
+        for (RuleOperator operator : List.of(RuleOperator.CONTAINS, RuleOperator.MAX_LENGTH, RuleOperator.MATCHES)) {
+            assertThatThrownBy(() -> ValidationRuleEngine.compile(List.of(
+                    new RuleDefinition("no-value", "email", operator, null))))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("no-value");
+        }
+        for (RuleOperator operator : List.of(RuleOperator.GREATER_THAN, RuleOperator.LESS_THAN)) {
+            assertThatThrownBy(() -> ValidationRuleEngine.compile(List.of(
+                    new RuleDefinition("no-value", "purchaseAmount", operator, " "))))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("no-value");
+        }
+        assertThatThrownBy(() -> ValidationRuleEngine.compile(List.of(
+                new RuleDefinition("not-a-number", "purchaseAmount", RuleOperator.GREATER_THAN, "ten"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not-a-number");
+        // NOT_BLANK has no operand
+        assertThat(ValidationRuleEngine.compile(List.of(
+                new RuleDefinition("has-email", "email", RuleOperator.NOT_BLANK, null))).test(customer("a@b", 1.0)))
+                .isTrue();
+    }
+
+    private static Customer customer(String email, Double amount) {
+        return new Customer(1L, "first", "last", email, "Chile", amount);
+    }
+}